@@ -65,5 +65,7 @@
 }
 include("worldedit-libs:core:ap")
 
+include("worldedit-benchmarks")
+
 
 enableFeaturePreview("TYPESAFE_PROJECT_ACCESSORS")
@@ -0,0 +1,42 @@
+plugins {
+    `java-library`
+    id("buildlogic.common-java")
+}
+
+project.description = "Benchmarks"
+
+dependencies {
+    implementation(project(":worldedit-core"))
+    implementation(libs.fastutil)
+    implementation(libs.guava)
+    implementation(libs.jmh.core)
+    annotationProcessor(libs.jmh.generator.annprocess)
+
+    // compileOnly in core, but required on the classpath to actually run the hot paths
+    runtimeOnly(libs.lz4Java)
+    runtimeOnly(libs.sparsebitset)
+    runtimeOnly(libs.parallelgzip)
+    runtimeOnly(libs.adventureApi)
+    runtimeOnly(libs.log4j.core)
+}
+
+// Benchmarks are not published and have no javadoc worth shipping
+tasks.named<Javadoc>("javadoc") {
+    enabled = false
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks. Use -Pjmh.includes=<regex> to filter and -Pjmh.args=\"...\" to pass JMH options."
+    dependsOn("classes")
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    jvmArgs("--add-modules=jdk.incubator.vector")
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    doFirst {
+        results.get().asFile.parentFile.mkdirs()
+    }
+    args(providers.gradleProperty("jmh.includes").getOrElse(".*"))
+    args("-rf", "json", "-rff", results.get().asFile.absolutePath)
+    providers.gradleProperty("jmh.args").orNull?.split(' ')?.filter { it.isNotBlank() }?.let { args(it) }
+}
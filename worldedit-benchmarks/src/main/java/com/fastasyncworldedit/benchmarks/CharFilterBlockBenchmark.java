@@ -0,0 +1,114 @@
+package com.fastasyncworldedit.benchmarks;
+
+import com.fastasyncworldedit.benchmarks.util.BenchmarkBootstrap;
+import com.fastasyncworldedit.benchmarks.util.SyntheticWorld;
+import com.fastasyncworldedit.core.extent.filter.block.CharFilterBlock;
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharSetBlocks;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw per-block iteration cost of {@link CharFilterBlock} over every section of a single chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CharFilterBlockBenchmark {
+
+    private IChunkGet get;
+    private CharFilterBlock block;
+    private int minLayer;
+    private int maxLayer;
+    private char replacement;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkBootstrap.init();
+        SyntheticWorld world = new SyntheticWorld(63, 42L);
+        this.get = world.get(0, 0);
+        this.block = new CharFilterBlock(world);
+        this.block.initChunk(0, 0);
+        this.minLayer = get.getMinSectionPosition();
+        this.maxLayer = get.getMaxSectionPosition();
+        this.replacement = BlockTypes.GLASS.getDefaultState().getOrdinalChar();
+    }
+
+    @Benchmark
+    public long readOrdinals() {
+        OrdinalSumFilter filter = new OrdinalSumFilter();
+        IChunkSet set = CharSetBlocks.newInstance(0, 0);
+        for (int layer = minLayer; layer <= maxLayer; layer++) {
+            block.initLayer(get, set, layer);
+            block.filter(filter);
+        }
+        return filter.sum;
+    }
+
+    @Benchmark
+    public IChunkSet writeOrdinals() {
+        SetOrdinalFilter filter = new SetOrdinalFilter(replacement);
+        IChunkSet set = CharSetBlocks.newInstance(0, 0);
+        for (int layer = minLayer; layer <= maxLayer; layer++) {
+            block.initLayer(get, set, layer);
+            block.filter(filter);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public long readOrdinalsSubRange() {
+        OrdinalSumFilter filter = new OrdinalSumFilter();
+        IChunkSet set = CharSetBlocks.newInstance(0, 0);
+        for (int layer = minLayer; layer <= maxLayer; layer++) {
+            block.initLayer(get, set, layer);
+            block.filter(filter, 2, 1, 2, 13, 14, 13);
+        }
+        return filter.sum;
+    }
+
+    private static final class OrdinalSumFilter implements Filter {
+
+        private long sum;
+
+        @Override
+        public void applyBlock(FilterBlock block) {
+            sum += block.getOrdinal();
+        }
+
+    }
+
+    private static final class SetOrdinalFilter implements Filter {
+
+        private final char ordinal;
+
+        private SetOrdinalFilter(char ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public void applyBlock(FilterBlock block) {
+            block.setOrdinal(ordinal);
+        }
+
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.fastasyncworldedit.benchmarks;
+
+import com.fastasyncworldedit.benchmarks.util.BenchmarkBootstrap;
+import com.fastasyncworldedit.core.FaweCache;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Palette conversion of a single section via {@link FaweCache#toPalette(int, char[])}, for a varying number of distinct
+ * states per section.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaletteBenchmark {
+
+    @Param({"1", "2", "8", "24"})
+    public int distinctStates;
+
+    private char[] section;
+
+    @Setup
+    public void setup() {
+        BenchmarkBootstrap.init();
+        int available = BlockTypesCache.states.length - BlockTypesCache.ReservedIDs.AIR;
+        int distinct = Math.min(distinctStates, available);
+        SplittableRandom random = new SplittableRandom(42L);
+        this.section = new char[4096];
+        for (int i = 0; i < section.length; i++) {
+            section[i] = (char) (BlockTypesCache.ReservedIDs.AIR + random.nextInt(distinct));
+        }
+    }
+
+    @Benchmark
+    public FaweCache.Palette toPalette() {
+        return FaweCache.INSTANCE.toPalette(0, section);
+    }
+
+    @Benchmark
+    public FaweCache.Palette toPaletteUnstretched() {
+        return FaweCache.INSTANCE.toPaletteUnstretched(0, section);
+    }
+
+}
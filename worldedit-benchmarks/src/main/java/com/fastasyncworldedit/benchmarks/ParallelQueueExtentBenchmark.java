@@ -0,0 +1,92 @@
+package com.fastasyncworldedit.benchmarks;
+
+import com.fastasyncworldedit.benchmarks.util.BenchmarkBootstrap;
+import com.fastasyncworldedit.benchmarks.util.SyntheticWorld;
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.function.mask.BlockMaskBuilder;
+import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end cost of //set and //replace style edits through {@link ParallelQueueExtent}, including chunk submission. Use
+ * the {@code parallelThreads} and {@code targetSize} parameters to compare queue settings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ParallelQueueExtentBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int parallelThreads;
+
+    @Param({"64", "256"})
+    public int targetSize;
+
+    /**
+     * Width and length of the edited region in chunks.
+     */
+    @Param({"8", "32"})
+    public int sizeChunks;
+
+    private CuboidRegion region;
+    private ParallelQueueExtent extent;
+    private Pattern pattern;
+    private Mask mask;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        BenchmarkBootstrap.init(parallelThreads, targetSize);
+        this.pattern = BlockTypes.GLASS.getDefaultState();
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() {
+        // Fresh world per iteration, so replace always has the same amount of work
+        SyntheticWorld world = new SyntheticWorld(63, 42L);
+        int size = sizeChunks << 4;
+        this.region = new CuboidRegion(
+                world,
+                BlockVector3.at(0, world.getMinY(), 0),
+                BlockVector3.at(size - 1, world.getSurfaceY(), size - 1)
+        );
+        this.extent = new ParallelQueueExtent(Fawe.instance().getQueueHandler(), world, true, null);
+        this.mask = new BlockMaskBuilder().add(BlockTypes.STONE.getDefaultState()).build(extent);
+    }
+
+    @Benchmark
+    public int setBlocks() {
+        return extent.setBlocks(region, pattern);
+    }
+
+    @Benchmark
+    public int replaceBlocks() {
+        return extent.replaceBlocks(region, mask, pattern);
+    }
+
+    @Benchmark
+    public int countBlocks() {
+        return extent.countBlocks(region, mask);
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.fastasyncworldedit.benchmarks;
+
+import com.fastasyncworldedit.benchmarks.util.BenchmarkBootstrap;
+import com.fastasyncworldedit.core.extent.clipboard.CPUOptimizedClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.io.FastSchematicReaderV3;
+import com.fastasyncworldedit.core.extent.clipboard.io.FastSchematicWriterV3;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.BuiltInClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory write and read of Sponge V3 schematics through {@link FastSchematicWriterV3} and {@link FastSchematicReaderV3}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SchematicRoundTripBenchmark {
+
+    /**
+     * Edge length of the cubic clipboard.
+     */
+    @Param({"32", "128"})
+    public int size;
+
+    private Clipboard clipboard;
+    private byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException, WorldEditException {
+        BenchmarkBootstrap.init();
+        CuboidRegion region = new CuboidRegion(null, BlockVector3.ZERO, BlockVector3.at(size - 1, size - 1, size - 1), false);
+        this.clipboard = new BlockArrayClipboard(region, new CPUOptimizedClipboard(region));
+        BlockState[] palette = {
+                BlockTypes.STONE.getDefaultState(),
+                BlockTypes.DIRT.getDefaultState(),
+                BlockTypes.COBBLESTONE.getDefaultState(),
+                BlockTypes.OAK_PLANKS.getDefaultState(),
+                BlockTypes.GLASS.getDefaultState(),
+                BlockTypes.AIR.getDefaultState()
+        };
+        SplittableRandom random = new SplittableRandom(42L);
+        for (int y = 0; y < size; y++) {
+            for (int z = 0; z < size; z++) {
+                for (int x = 0; x < size; x++) {
+                    // Mostly uniform layers with some noise, similar to typical builds
+                    BlockState state = random.nextInt(8) == 0 ? palette[random.nextInt(palette.length)] : palette[y % 4];
+                    clipboard.setBlock(x, y, z, state);
+                }
+            }
+        }
+        this.serialized = write();
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ClipboardWriter writer = BuiltInClipboardFormat.FAST_V3.getWriter(out)) {
+            writer.write(clipboard);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Clipboard read() throws IOException {
+        try (ClipboardReader reader = BuiltInClipboardFormat.FAST_V3.getReader(new ByteArrayInputStream(serialized))) {
+            return reader.read(UUID.randomUUID(), dimensions -> {
+                CuboidRegion region = new CuboidRegion(null, BlockVector3.ZERO, dimensions.subtract(BlockVector3.ONE), false);
+                return new BlockArrayClipboard(region, new CPUOptimizedClipboard(region));
+            });
+        }
+    }
+
+}
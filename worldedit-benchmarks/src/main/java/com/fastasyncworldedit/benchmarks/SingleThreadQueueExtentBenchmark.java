@@ -0,0 +1,84 @@
+package com.fastasyncworldedit.benchmarks;
+
+import com.fastasyncworldedit.benchmarks.util.BenchmarkBootstrap;
+import com.fastasyncworldedit.benchmarks.util.SyntheticWorld;
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.queue.IChunkCache;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.fastasyncworldedit.core.queue.implementation.SingleThreadQueueExtent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup/creation cost of {@link SingleThreadQueueExtent#getOrCreateChunk(int, int)}. Submission is disabled, so only the
+ * chunk map and holder creation are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SingleThreadQueueExtentBenchmark {
+
+    private static final int CHUNKS = 1024;
+
+    /**
+     * Number of distinct chunks cycled through for the lookup benchmark.
+     */
+    @Param({"1", "64", "512"})
+    public int workingSet;
+
+    private SyntheticWorld world;
+    private IChunkCache<IChunkGet> cacheGet;
+    private SingleThreadQueueExtent lookupQueue;
+    private SingleThreadQueueExtent createQueue;
+
+    @Setup
+    public void setup() {
+        BenchmarkBootstrap.init();
+        this.world = new SyntheticWorld(63, 42L);
+        this.cacheGet = Fawe.instance().getQueueHandler().getOrCreateWorldCache(world);
+        this.lookupQueue = new SingleThreadQueueExtent();
+        this.lookupQueue.init(world, cacheGet, null);
+        this.lookupQueue.disableQueue();
+        this.createQueue = new SingleThreadQueueExtent();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void lookup(Blackhole blackhole) {
+        int side = Math.max(1, (int) Math.sqrt(workingSet));
+        for (int i = 0; i < CHUNKS; i++) {
+            int index = i % workingSet;
+            IQueueChunk<?> chunk = lookupQueue.getOrCreateChunk(index % side, index / side);
+            blackhole.consume(chunk);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CHUNKS)
+    public void create(Blackhole blackhole) {
+        createQueue.init(world, cacheGet, null);
+        createQueue.disableQueue();
+        for (int i = 0; i < CHUNKS; i++) {
+            IQueueChunk<?> chunk = createQueue.getOrCreateChunk(i & 31, i >> 5);
+            blackhole.consume(chunk);
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.sk89q.worldedit.world.registry.BundledBlockRegistry;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Block registry exposing a fixed set of property-less blocks, so {@link com.sk89q.worldedit.world.block.BlockTypesCache} can
+ * be initialised without a running server. Material data is still served from the bundled registry data.
+ */
+class BenchmarkBlockRegistry extends BundledBlockRegistry {
+
+    static final List<String> BLOCKS = List.of(
+            "minecraft:air",
+            "minecraft:cave_air",
+            "minecraft:void_air",
+            "minecraft:stone",
+            "minecraft:granite",
+            "minecraft:diorite",
+            "minecraft:andesite",
+            "minecraft:dirt",
+            "minecraft:coarse_dirt",
+            "minecraft:cobblestone",
+            "minecraft:oak_planks",
+            "minecraft:bedrock",
+            "minecraft:sand",
+            "minecraft:gravel",
+            "minecraft:gold_ore",
+            "minecraft:iron_ore",
+            "minecraft:coal_ore",
+            "minecraft:glass",
+            "minecraft:lapis_block",
+            "minecraft:sandstone",
+            "minecraft:white_wool",
+            "minecraft:gold_block",
+            "minecraft:iron_block",
+            "minecraft:bricks",
+            "minecraft:obsidian",
+            "minecraft:diamond_block",
+            "minecraft:netherrack",
+            "minecraft:glowstone",
+            "minecraft:end_stone",
+            "minecraft:emerald_block",
+            "minecraft:quartz_block",
+            "minecraft:terracotta"
+    );
+
+    @Override
+    public Collection<String> values() {
+        return BLOCKS;
+    }
+
+}
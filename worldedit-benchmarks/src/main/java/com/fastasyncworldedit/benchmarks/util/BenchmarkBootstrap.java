@@ -0,0 +1,82 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.world.block.BlockTypes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Sets up a headless WorldEdit platform and FAWE instance once per JVM. JMH forks a new JVM per parameter combination, so
+ * queue settings given here are applied before the {@link com.fastasyncworldedit.core.queue.implementation.QueueHandler}
+ * pools are created.
+ */
+public final class BenchmarkBootstrap {
+
+    private static boolean initialized;
+
+    private BenchmarkBootstrap() {
+    }
+
+    /**
+     * Initialise the platform using the default queue settings.
+     */
+    public static void init() {
+        init(-1, -1);
+    }
+
+    /**
+     * Initialise the platform.
+     *
+     * @param parallelThreads value for {@code queue.parallel-threads}, or a value below 1 to keep the default
+     * @param targetSize      value for {@code queue.target-size}, or a value below 1 to keep the default
+     */
+    public static synchronized void init(int parallelThreads, int targetSize) {
+        if (initialized) {
+            return;
+        }
+        WorldEdit.getInstance().getPlatformManager().register(new BenchmarkPlatform());
+        WorldEdit.getInstance().getPlatformManager().handlePlatformsRegistered(null);
+
+        final File directory;
+        try {
+            directory = Files.createTempDirectory("fawe-benchmark").toFile();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create benchmark directory", e);
+        }
+        directory.deleteOnExit();
+
+        // FAWE treats the thread it was created on as the server's main thread
+        ScheduledExecutorService main = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "FAWE Benchmark Main");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            main.submit(() -> {
+                Fawe.set(new BenchmarkFawe(directory, new BenchmarkTaskManager(main)));
+                return null;
+            }).get();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not initialise FAWE", e);
+        }
+
+        if (parallelThreads > 0) {
+            Settings.settings().QUEUE.PARALLEL_THREADS = parallelThreads;
+        }
+        if (targetSize > 0) {
+            Settings.settings().QUEUE.TARGET_SIZE = targetSize;
+        }
+        // Force block registry initialisation outside any measurement
+        BlockTypes.STONE.getDefaultState();
+        // Create the queue handler (and thus its pools) with the configured settings
+        Fawe.instance().getQueueHandler();
+        initialized = true;
+    }
+
+}
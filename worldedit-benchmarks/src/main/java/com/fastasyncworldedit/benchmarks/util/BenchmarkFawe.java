@@ -0,0 +1,75 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.fastasyncworldedit.core.FAWEPlatformAdapterImpl;
+import com.fastasyncworldedit.core.IFawe;
+import com.fastasyncworldedit.core.queue.implementation.QueueHandler;
+import com.fastasyncworldedit.core.queue.implementation.preloader.Preloader;
+import com.fastasyncworldedit.core.regions.FaweMaskManager;
+import com.fastasyncworldedit.core.util.TaskManager;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+class BenchmarkFawe implements IFawe {
+
+    private final File directory;
+    private final TaskManager taskManager;
+    private QueueHandler queueHandler;
+
+    BenchmarkFawe(File directory, TaskManager taskManager) {
+        this.directory = directory;
+        this.taskManager = taskManager;
+    }
+
+    @Override
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public TaskManager getTaskManager() {
+        return taskManager;
+    }
+
+    @Override
+    public Collection<FaweMaskManager> getMaskManagers() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getPlatform() {
+        return "Benchmark";
+    }
+
+    @Override
+    public UUID getUUID(String name) {
+        return null;
+    }
+
+    @Override
+    public String getName(UUID uuid) {
+        return null;
+    }
+
+    @Override
+    public synchronized QueueHandler getQueueHandler() {
+        if (queueHandler == null) {
+            queueHandler = new BenchmarkQueueHandler();
+        }
+        return queueHandler;
+    }
+
+    @Override
+    public Preloader getPreloader(boolean initialise) {
+        return null;
+    }
+
+    @Override
+    public FAWEPlatformAdapterImpl getPlatformAdapter() {
+        return (chunk, mask, lighting) -> {
+        };
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.fastasyncworldedit.core.queue.implementation.QueueHandler;
+
+/**
+ * There is no server to freeze physics on, so unsafe sections are no-ops.
+ */
+class BenchmarkQueueHandler extends QueueHandler {
+
+    @Override
+    public void startUnsafe(boolean parallel) {
+    }
+
+    @Override
+    public void endUnsafe(boolean parallel) {
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledRegistries;
+
+class BenchmarkRegistries extends BundledRegistries {
+
+    private static final BenchmarkRegistries INSTANCE = new BenchmarkRegistries();
+    private final BlockRegistry blockRegistry = new BenchmarkBlockRegistry();
+
+    private BenchmarkRegistries() {
+    }
+
+    @Override
+    public BlockRegistry getBlockRegistry() {
+        return blockRegistry;
+    }
+
+    static BenchmarkRegistries getInstance() {
+        return INSTANCE;
+    }
+
+}
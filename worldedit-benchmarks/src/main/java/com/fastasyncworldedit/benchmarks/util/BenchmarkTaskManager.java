@@ -0,0 +1,78 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.fastasyncworldedit.core.util.TaskManager;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Task manager backed by a single "main" thread ticking every 50ms and a small async scheduler.
+ */
+class BenchmarkTaskManager extends TaskManager {
+
+    private static final long TICK_MS = 50;
+
+    private final ScheduledExecutorService main;
+    private final ScheduledExecutorService async = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "FAWE Benchmark Async");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Integer, Future<?>> tasks = new ConcurrentHashMap<>();
+    private final AtomicInteger taskId = new AtomicInteger();
+
+    BenchmarkTaskManager(ScheduledExecutorService main) {
+        this.main = main;
+    }
+
+    @Override
+    public int repeat(@Nonnull final Runnable runnable, final int interval) {
+        return track(main.scheduleAtFixedRate(runnable, 0, Math.max(1, interval) * TICK_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public int repeatAsync(@Nonnull final Runnable runnable, final int interval) {
+        return track(async.scheduleAtFixedRate(runnable, 0, Math.max(1, interval) * TICK_MS, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void async(@Nonnull final Runnable runnable) {
+        async.execute(runnable);
+    }
+
+    @Override
+    public void task(@Nonnull final Runnable runnable) {
+        main.execute(runnable);
+    }
+
+    @Override
+    public void later(@Nonnull final Runnable runnable, final int delay) {
+        main.schedule(runnable, delay * TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void laterAsync(@Nonnull final Runnable runnable, final int delay) {
+        async.schedule(runnable, delay * TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void cancel(final int task) {
+        Future<?> future = tasks.remove(task);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private int track(Future<?> future) {
+        int id = taskId.incrementAndGet();
+        tasks.put(id, future);
+        return id;
+    }
+
+}
@@ -0,0 +1,156 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.fastasyncworldedit.core.extent.processor.heightmap.HeightMapType;
+import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharGetBlocks;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * Chunk GET of a {@link SyntheticWorld}. Sections are populated eagerly on creation and edits submitted through
+ * {@link #call(IQueueExtent, IChunkSet, Runnable)} are written straight back into the section arrays.
+ */
+class SyntheticChunk extends CharGetBlocks {
+
+    private final SyntheticWorld world;
+
+    SyntheticChunk(SyntheticWorld world, int chunkX, int chunkZ, int minSectionPosition, int maxSectionPosition) {
+        super(minSectionPosition, maxSectionPosition);
+        this.world = world;
+        init(chunkX, chunkZ);
+        for (int section = minSectionPosition; section <= maxSectionPosition; section++) {
+            blocks[section - minSectionPosition] = world.copySection(chunkX, chunkZ, section);
+        }
+    }
+
+    @Override
+    public synchronized <T extends Future<T>> T call(IQueueExtent<? extends IChunk> owner, IChunkSet set, Runnable finalize) {
+        for (int layer = set.getMinSectionPosition(); layer <= set.getMaxSectionPosition(); layer++) {
+            char[] setArr = set.loadIfPresent(layer);
+            if (setArr == null || layer < minSectionPosition || layer > maxSectionPosition) {
+                continue;
+            }
+            char[] arr = load(layer);
+            for (int i = 0; i < 4096; i++) {
+                char value = setArr[i];
+                if (value != BlockTypesCache.ReservedIDs.__RESERVED__) {
+                    arr[i] = value;
+                }
+            }
+        }
+        if (finalize != null) {
+            finalize.run();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean trim(boolean aggressive) {
+        // Data is the "world" itself, it must not be discarded
+        return false;
+    }
+
+    @Override
+    public boolean trim(boolean aggressive, int layer) {
+        return false;
+    }
+
+    @Override
+    public BiomeType getBiomeType(int x, int y, int z) {
+        return BiomeTypes.PLAINS;
+    }
+
+    @Override
+    public void removeSectionLighting(int layer, boolean sky) {
+    }
+
+    @Override
+    public Map<BlockVector3, FaweCompoundTag> tiles() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public @Nullable FaweCompoundTag tile(int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    public Collection<FaweCompoundTag> entities() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public @Nullable FaweCompoundTag entity(UUID uuid) {
+        return null;
+    }
+
+    @Override
+    public Set<Entity> getFullEntities() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public int getSkyLight(int x, int y, int z) {
+        return y > world.getSurfaceY() ? 15 : 0;
+    }
+
+    @Override
+    public int getEmittedLight(int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public int[] getHeightMap(HeightMapType type) {
+        int[] heightMap = new int[256];
+        Arrays.fill(heightMap, world.getSurfaceY() + 1 - world.getMinY());
+        return heightMap;
+    }
+
+    @Override
+    public boolean isCreateCopy() {
+        return false;
+    }
+
+    @Override
+    public int setCreateCopy(boolean createCopy) {
+        return -1;
+    }
+
+    @Override
+    public void setLightingToGet(char[][] lighting, int startSectionIndex, int endSectionIndex) {
+    }
+
+    @Override
+    public void setSkyLightingToGet(char[][] lighting, int startSectionIndex, int endSectionIndex) {
+    }
+
+    @Override
+    public void setHeightmapToGet(HeightMapType type, int[] data) {
+    }
+
+    @Override
+    public int getMaxY() {
+        return world.getMaxY();
+    }
+
+    @Override
+    public int getMinY() {
+        return world.getMinY();
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.fastasyncworldedit.benchmarks.util;
+
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.sk89q.worldedit.world.NullWorld;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * An in-memory world of layered terrain. Every chunk is generated from a small pool of pre-computed section templates, so
+ * chunk "loads" cost roughly the same as copying decoded sections out of a real chunk, and results are reproducible for a
+ * given seed.
+ */
+public class SyntheticWorld extends NullWorld {
+
+    private static final int TEMPLATE_VARIANTS = 8;
+
+    private final int surfaceY;
+    private final int minSection;
+    private final int maxSection;
+    private final char[][][] templates;
+
+    /**
+     * New synthetic world.
+     *
+     * @param surfaceY highest y (inclusive) containing solid blocks
+     * @param seed     seed used to scatter ores/variation into the templates
+     */
+    public SyntheticWorld(int surfaceY, long seed) {
+        this.surfaceY = surfaceY;
+        this.minSection = getMinY() >> 4;
+        this.maxSection = getMaxY() >> 4;
+        this.templates = new char[maxSection - minSection + 1][][];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int section = minSection; section <= Math.min(maxSection, surfaceY >> 4); section++) {
+            char[][] variants = new char[TEMPLATE_VARIANTS][];
+            for (int v = 0; v < TEMPLATE_VARIANTS; v++) {
+                variants[v] = generateSection(section, random);
+            }
+            templates[section - minSection] = variants;
+        }
+    }
+
+    private char[] generateSection(int section, SplittableRandom random) {
+        final char air = BlockTypesCache.ReservedIDs.AIR;
+        final char bedrock = BlockTypes.BEDROCK.getDefaultState().getOrdinalChar();
+        final char stone = BlockTypes.STONE.getDefaultState().getOrdinalChar();
+        final char dirt = BlockTypes.DIRT.getDefaultState().getOrdinalChar();
+        final char sand = BlockTypes.SAND.getDefaultState().getOrdinalChar();
+        final char[] ores = {
+                BlockTypes.COAL_ORE.getDefaultState().getOrdinalChar(),
+                BlockTypes.IRON_ORE.getDefaultState().getOrdinalChar(),
+                BlockTypes.GOLD_ORE.getDefaultState().getOrdinalChar(),
+                BlockTypes.GRANITE.getDefaultState().getOrdinalChar(),
+                BlockTypes.GRAVEL.getDefaultState().getOrdinalChar()
+        };
+        char[] data = new char[4096];
+        Arrays.fill(data, air);
+        int minY = getMinY();
+        for (int index = 0; index < 4096; index++) {
+            int y = (section << 4) + (index >> 8);
+            char value;
+            if (y > surfaceY) {
+                value = air;
+            } else if (y == minY) {
+                value = bedrock;
+            } else if (y == surfaceY) {
+                value = random.nextInt(8) == 0 ? sand : dirt;
+            } else if (y > surfaceY - 4) {
+                value = dirt;
+            } else if (random.nextInt(32) == 0) {
+                value = ores[random.nextInt(ores.length)];
+            } else {
+                value = stone;
+            }
+            data[index] = value;
+        }
+        return data;
+    }
+
+    /**
+     * Get a fresh copy of the generated data for the given chunk section, or null if the section is empty.
+     */
+    char[] copySection(int chunkX, int chunkZ, int section) {
+        char[][] variants = templates[section - minSection];
+        if (variants == null) {
+            return null;
+        }
+        int variant = Math.floorMod(chunkX * 31 + chunkZ * 17 + section, TEMPLATE_VARIANTS);
+        return variants[variant].clone();
+    }
+
+    public int getSurfaceY() {
+        return surfaceY;
+    }
+
+    @Override
+    public String getName() {
+        return "benchmark";
+    }
+
+    @Override
+    public String getNameUnsafe() {
+        return "benchmark";
+    }
+
+    @Override
+    public IChunkGet get(int x, int z) {
+        return new SyntheticChunk(this, x, z, minSection, maxSection);
+    }
+
+}
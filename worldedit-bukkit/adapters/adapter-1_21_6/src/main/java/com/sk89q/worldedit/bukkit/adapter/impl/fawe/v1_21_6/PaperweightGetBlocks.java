@@ -10,6 +10,7 @@
 import com.fastasyncworldedit.core.math.BitArrayUnstretched;
 import com.fastasyncworldedit.core.math.IntPair;
 import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
+import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.fastasyncworldedit.core.util.MathMan;
 import com.fastasyncworldedit.core.util.NbtUtils;
@@ -876,6 +877,33 @@ public char[] update(int layer, char[] data, boolean aggressive) {
         }
     }
 
+    @Override
+    public void countBlocks(int layer, BlockCounter counter) {
+        char[] loaded = loadIfPresent(layer);
+        if (loaded != null) {
+            IChunkGet.countRuns(loaded, counter);
+            return;
+        }
+        LevelChunkSection section = getSections(false)[layer - getMinSectionPosition()];
+        if (section == null) {
+            counter.add((char) BlockTypesCache.ReservedIDs.AIR, 4096);
+            return;
+        }
+        Semaphore lock = PaperweightPlatformAdapter.applyLock(section);
+        synchronized (lock) {
+            try {
+                lock.acquire();
+                // Counts per palette entry, or all at once for single valued sections, without expanding the section
+                section.getStates().count((state, count) -> counter.add(ordinal(state, adapter), count));
+            } catch (InterruptedException e) {
+                LOGGER.error("Could not count blocks of section", e);
+                throw new RuntimeException(e);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
     private char ordinal(BlockState ibd, PaperweightFaweAdapter adapter) {
         if (ibd == null) {
             return BlockTypesCache.ReservedIDs.AIR;
@@ -5,6 +5,7 @@
 import com.fastasyncworldedit.core.FaweCache;
 import com.fastasyncworldedit.core.extent.clipboard.io.FastSchematicReaderV2;
 import com.fastasyncworldedit.core.extent.clipboard.io.FastSchematicWriterV2;
+import com.fastasyncworldedit.core.internal.io.ParallelGzipOutputStream;
 import com.fastasyncworldedit.core.jnbt.CompressedCompoundTag;
 import com.fastasyncworldedit.core.jnbt.CompressedSchematicTag;
 import com.fastasyncworldedit.core.util.IOUtil;
@@ -34,7 +35,6 @@
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import net.jpountz.lz4.LZ4BlockInputStream;
-import org.anarres.parallelgzip.ParallelGZIPOutputStream;
 import org.apache.logging.log4j.Logger;
 import org.enginehub.linbus.stream.LinBinaryIO;
 
@@ -183,19 +183,19 @@ public boolean save(CompoundTag tag, String path) {
                     Clipboard clipboard = (Clipboard) cTag.getSource();
                     try (OutputStream stream = new FileOutputStream(tmp);
                          NBTOutputStream output = new NBTOutputStream(
-                                 new BufferedOutputStream(new ParallelGZIPOutputStream(stream)))) {
+                                 new BufferedOutputStream(new ParallelGzipOutputStream(stream)))) {
                         new FastSchematicWriterV2(output).write(clipboard);
                     }
                 } else {
                     try (OutputStream stream = new FileOutputStream(tmp);
-                         BufferedOutputStream output = new BufferedOutputStream(new ParallelGZIPOutputStream(stream))) {
+                         BufferedOutputStream output = new BufferedOutputStream(new ParallelGzipOutputStream(stream))) {
                         LZ4BlockInputStream is = cTag.adapt(cTag.getSource());
                         IOUtil.copy(is, output);
                     }
                 }
             } else {
                 try (OutputStream stream = new FileOutputStream(tmp);
-                     NBTOutputStream output = new NBTOutputStream(new ParallelGZIPOutputStream(stream))) {
+                     NBTOutputStream output = new NBTOutputStream(new ParallelGzipOutputStream(stream))) {
                     Map<String, Tag<?, ?>> map = tag.getValue();
                     output.writeNamedTag("Schematic", map.getOrDefault("Schematic", tag));
                 }
@@ -226,7 +226,7 @@ public void run(OutputStream output) {
                     BuiltInClipboardFormat.FAST.write(output, clipboard);
                 }
                 try {
-                    try (ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream(output)) {
+                    try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(output)) {
                         try (NBTOutputStream nos = new NBTOutputStream(gzip)) {
                             Map<String, Tag<?, ?>> map = weTag.getValue();
                             nos.writeNamedTag("Schematic", map.getOrDefault("Schematic", weTag));
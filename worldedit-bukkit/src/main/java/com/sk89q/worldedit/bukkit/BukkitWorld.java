@@ -381,6 +381,17 @@ public void checkLoadedChunk(BlockVector3 pt) {
         //FAWE end
     }
 
+    //FAWE start
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        // Paper can tell from any thread, Spigot only from the main thread
+        if (Fawe.isMainThread() || PaperLib.isPaper()) {
+            return getWorld().isChunkLoaded(chunkX, chunkZ);
+        }
+        return TaskManager.taskManager().sync(() -> getWorld().isChunkLoaded(chunkX, chunkZ));
+    }
+    //FAWE end
+
     @Override
     public boolean equals(Object other) {
         final World ref = worldRef.get();
@@ -19,9 +19,14 @@
 
 package com.sk89q.worldedit.cli;
 
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.world.anvil.HeightMapMCAGenerator;
+import com.fastasyncworldedit.core.world.anvil.MCAWorldProcessor;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.extension.platform.Actor;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.regions.selector.CuboidRegionSelector;
 import com.sk89q.worldedit.regions.selector.ExtendingCuboidRegionSelector;
 import com.sk89q.worldedit.util.formatting.text.TextComponent;
@@ -29,7 +34,13 @@
 import com.sk89q.worldedit.world.World;
 import org.enginehub.piston.annotation.Command;
 import org.enginehub.piston.annotation.CommandContainer;
+import org.enginehub.piston.annotation.param.Arg;
+import org.enginehub.piston.annotation.param.ArgFlag;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.ExecutionException;
 
 @CommandContainer
@@ -65,4 +76,65 @@ public void await() {
         }
     }
 
+    @Command(
+            name = "anvilreplace",
+            desc = "Replace blocks in the region files of a world folder that is not loaded by a server"
+    )
+    public void anvilReplace(
+            Actor actor,
+            @Arg(desc = "The world or region folder")
+                    String folder,
+            @Arg(desc = "The mask representing blocks to replace")
+                    Mask from,
+            @Arg(desc = "The pattern of blocks to replace with")
+                    Pattern to
+    ) throws IOException {
+        Path path = Path.of(folder);
+        if (!Files.isDirectory(path)) {
+            actor.printError(TextComponent.of("Not a folder: " + path));
+            return;
+        }
+        MCAWorldProcessor processor = new MCAWorldProcessor(path);
+        long start = System.currentTimeMillis();
+        processor.apply(from.toFilter(to), null);
+        actor.printInfo(TextComponent.of(String.format(
+                "Changed %d chunks in %s (%d skipped) in %dms.",
+                processor.getChunksChanged(),
+                processor.getRegionFolder(),
+                processor.getChunksSkipped(),
+                System.currentTimeMillis() - start
+        )));
+    }
+
+    @Command(
+            name = "heightmapgen",
+            desc = "Generate the region files of a world from a height map image"
+    )
+    public void heightMapGen(
+            Actor actor,
+            @Arg(desc = "The height map image")
+                    String heightMap,
+            @Arg(desc = "The world folder to write to")
+                    String folder,
+            @ArgFlag(name = 'c', desc = "An image of the same size used to colour the surface", def = "")
+                    String colorImage,
+            @ArgFlag(name = 'w', desc = "The height to fill with water", def = "-64")
+                    int waterHeight
+    ) throws IOException {
+        HeightMapMCAGenerator generator = new HeightMapMCAGenerator(new File(heightMap), Path.of(folder))
+                .setWaterHeight(waterHeight);
+        if (!colorImage.isEmpty()) {
+            generator.setColor(new File(colorImage), Fawe.instance().getTextureUtil());
+        }
+        long start = System.currentTimeMillis();
+        generator.generate();
+        actor.printInfo(TextComponent.of(String.format(
+                "Generated %dx%d blocks into %s in %dms.",
+                generator.getWidth(),
+                generator.getLength(),
+                folder,
+                System.currentTimeMillis() - start
+        )));
+    }
+
 }
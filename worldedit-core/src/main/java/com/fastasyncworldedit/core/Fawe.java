@@ -13,6 +13,8 @@
 import com.fastasyncworldedit.core.util.TaskManager;
 import com.fastasyncworldedit.core.util.TextureUtil;
 import com.fastasyncworldedit.core.util.WEManager;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
+import com.fastasyncworldedit.core.util.metrics.PrometheusFileExporter;
 import com.fastasyncworldedit.core.util.task.KeyQueuedExecutorService;
 import com.fastasyncworldedit.core.util.task.UUIDKeyQueuedThreadFactory;
 import com.github.luben.zstd.Zstd;
@@ -136,6 +138,15 @@ private Fawe(final IFawe implementation) {
             }
         }, 0);
         TaskManager.taskManager().repeatAsync(MemUtil::checkAndSetApproachingLimit, 1);
+        if (!Settings.settings().METRICS.EXPORT_FILE.isEmpty()) {
+            FaweMetrics.addExporter(new PrometheusFileExporter(
+                    MainUtil.getFile(this.implementation.getDirectory(), Settings.settings().METRICS.EXPORT_FILE).toPath()
+            ));
+            TaskManager.taskManager().repeatAsync(
+                    FaweMetrics::export,
+                    Math.max(1, Settings.settings().METRICS.EXPORT_INTERVAL) * 20
+            );
+        }
 
         TaskManager.taskManager().repeat(timer, 1);
         uuidKeyQueuedExecutorService = new KeyQueuedExecutorService<>(new ThreadPoolExecutor(
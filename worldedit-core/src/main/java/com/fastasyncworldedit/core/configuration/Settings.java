@@ -88,6 +88,8 @@ public class Settings extends Config {
     @Create
     public GENERAL GENERAL;
     @Create
+    public METRICS METRICS;
+    @Create
     public ConfigBlock<LIMITS> LIMITS;
 
     private Settings() {
@@ -536,6 +538,16 @@ public static class HISTORY {
                 " - Must be in the range [64, 33554432]",
         })
         public int BUFFER_SIZE = 531441;
+        @Comment({
+                "Compress history and the NBT of clipboards on disk with zstd, using a dictionary trained on this server's history:",
+                " - Replaces compression-level for these files",
+                " - Until enough history has been sampled to train the dictionary, zstd is used without one",
+                " - Dictionaries are stored in a zstd-dictionaries folder next to the history folder and must not be deleted",
+                "   while history written with them exists",
+        })
+        public boolean ZSTD_DICTIONARY = false;
+        @Comment("The zstd compression level used with zstd-dictionary (1-22)")
+        public int ZSTD_DICTIONARY_LEVEL = 3;
 
         @Comment("Delete history on disk after a number of days")
         public int DELETE_AFTER_DAYS = 7;
@@ -562,6 +574,13 @@ public static class HISTORY {
                 " - Reduces history size by ~10%",
         })
         public boolean SMALL_EDITS = false;
+        @Comment({
+                "Store block history as separately compressed chunks with an index at the end of the file:",
+                " - Undoing, rolling back or inspecting part of an edit only reads the affected chunks",
+                " - Edits spanning many chunks are slightly larger on disk",
+                " - History stored this way cannot be read by older FAWE versions",
+        })
+        public boolean CHUNK_INDEX = false;
 
     }
 
@@ -622,6 +641,21 @@ public static class QUEUE {
         })
         public boolean ASYNC_CHUNK_LOAD_WRITE = true;
 
+        @Comment({
+                "Estimated memory in MiB used to keep chunks read by edits cached between edits",
+                " - Repeated edits of the same area do not need to read and decode the chunks again",
+                " - Shared between all worlds and players, least recently used chunks are evicted first",
+                " - Off by default, as chunks changed outside of FAWE are only picked up after chunk-cache-revalidate-ms",
+                " - Set to 0 to only cache chunks for the duration of an edit",
+        })
+        public int CHUNK_CACHE_SIZE_MB = 0;
+
+        @Comment({
+                "Time in milliseconds after which a cached chunk is read again from the world before being used, to pick up",
+                "changes made outside of FAWE, however often it is used in between",
+        })
+        public int CHUNK_CACHE_REVALIDATE_MS = 1000;
+
         @Comment({
                 "Percentage of queue.target-size to use per thread in multi-threaded operations",
                 " - Minimum of 100 / queue.parallel-threads (queue.target-size split across threads)",
@@ -633,6 +667,15 @@ public static class QUEUE {
         @ComputedFrom(node = "queue.parallel-threads", computer = ConfigOptComputation.THREAD_TARGET_SIZE_COMPUTATION.class)
         public int THREAD_TARGET_SIZE_PERCENT = 100 * 2 / Runtime.getRuntime().availableProcessors();
 
+        @Comment({
+                "If edits should be scheduled by region file (32x32 chunks) rather than by position alone",
+                " - Chunks which are already loaded are edited first",
+                " - The other chunks are loaded asynchronously in batches of up to preload-chunk-count chunks,",
+                "   each batch being requested while the one before it is edited",
+                " - Reduces waiting on chunk loads for large edits in terrain which is not loaded",
+        })
+        public boolean REGION_FILE_SCHEDULING = false;
+
         public static class PROGRESS {
 
             @Comment({"Display constant titles about the progress of a user's edit",
@@ -665,6 +708,13 @@ public static class EXPERIMENTAL {
                 " - 0 means undo operations are not batched."})
         public int UNDO_BATCH_SIZE = 128;
 
+        @Comment({
+                "[SAFE] Apply the block changes of undo and redo operations in parallel, bucketed by chunk",
+                " - Changes to the same position are still applied in the order they were recorded",
+                " - Only used if the edit runs on parallel threads and does not use a block bag",
+        })
+        public boolean PARALLEL_UNDO = false;
+
         @Comment({
                 "[UNSAFE] Directly modify the region files. (OBSOLETE - USE ANVIL COMMANDS)",
                 " - IMPROPER USE CAN CAUSE WORLD CORRUPTION!",
@@ -798,6 +848,13 @@ public static class CLIPBOARD {
                 " - Uses 2 bytes per block",
         })
         public boolean USE_DISK = true;
+        @Comment({
+                "Store the clipboard on disk in tiles of 16x16x16 blocks (only relevant if clipboard.use-disk is enabled)",
+                " - Pastes read the clipboard tile by tile and uniform tiles take no space",
+                " - Tiles are compressed when the clipboard is closed if compression-level is above 0",
+                " - Clipboards larger than 2 GB are always stored in tiles",
+        })
+        public boolean TILED_DISK = false;
         @Comment({
                 "Compress the clipboard to reduce the size:",
                 " - TODO: Buffered random access with compression is not implemented on disk yet",
@@ -825,6 +882,17 @@ public static class CLIPBOARD {
                 " - May run into issues where a file lock is not correctly lifted"
         })
         public boolean LOCK_CLIPBOARD_FILE = false;
+        @Comment({
+                "The number of blocks compressed at once when saving schematics with gzip",
+                " - 0 = queue.parallel-threads",
+                " - 1 = compress on the saving thread only",
+        })
+        public int GZIP_THREADS = 0;
+        @Comment({
+                "The size in KiB of the blocks compressed at once when saving schematics with gzip",
+                " - Larger blocks compress slightly better, smaller blocks spread better over the threads",
+        })
+        public int GZIP_BLOCK_SIZE = 128;
 
     }
 
@@ -844,6 +912,11 @@ public static class LIGHTING {
         public int MODE = 1;
         @Comment({"If existing lighting should be removed before relighting"})
         public boolean REMOVE_FIRST = true;
+        @Comment({
+                "If sky light should be recomputed on several threads",
+                " - Chunks are lit in wavefronts, so the result is the same as when lighting them one after another",
+        })
+        public boolean PARALLEL_SKY_LIGHT = false;
 
     }
 
@@ -861,4 +934,18 @@ public static class GENERAL {
 
     }
 
+    public static class METRICS {
+
+        @Comment({
+                "The file metrics are periodically written to in the Prometheus text format, relative to the FAWE folder",
+                " - e.g. to be picked up by the node_exporter textfile collector",
+                " - Leave empty to disable exporting. Metrics can still be viewed with /fawe metrics",
+        })
+        public String EXPORT_FILE = "";
+
+        @Comment({"The interval in seconds at which metrics are exported"})
+        public int EXPORT_INTERVAL = 15;
+
+    }
+
 }
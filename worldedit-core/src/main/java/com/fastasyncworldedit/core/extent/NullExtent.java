@@ -287,6 +287,19 @@ public int setBlocks(Set<BlockVector3> vset, Pattern pattern) {
         throw reason;
     }
 
+    @Override
+    public int floodFill(
+            Set<BlockVector3> seeds,
+            Mask mask,
+            Pattern pattern,
+            BlockVector3[] directions,
+            int maxDepth,
+            int minY,
+            int maxY
+    ) throws MaxChangedBlocksException {
+        throw reason;
+    }
+
     @Override
     public int getNearestSurfaceLayer(int x, int z, int y, int minY, int maxY) {
         throw reason;
@@ -192,6 +192,19 @@ public int setBlocks(Set<BlockVector3> vset, Pattern pattern) {
         return getExtent().setBlocks(vset, pattern);
     }
 
+    @Override
+    public int floodFill(
+            Set<BlockVector3> seeds,
+            Mask mask,
+            Pattern pattern,
+            BlockVector3[] directions,
+            int maxDepth,
+            int minY,
+            int maxY
+    ) throws MaxChangedBlocksException {
+        return getExtent().floodFill(seeds, mask, pattern, directions, maxDepth, minY, maxY);
+    }
+
     @Override
     public BlockState getBlock(BlockVector3 position) {
         return getExtent().getBlock(position);
@@ -150,6 +150,16 @@ public BlockState getBlock(int x, int y, int z) {
         return getBlock(getIndex(x, y, z));
     }
 
+    @Override
+    public char getOrdinal(int x, int y, int z) {
+        return states[getIndex(x, y, z)];
+    }
+
+    @Override
+    public void getOrdinals(int x, int y, int z, char[] dest, int destPos, int length) {
+        System.arraycopy(states, getIndex(x, y, z), dest, destPos, length);
+    }
+
     @Override
     public Collection<CompoundTag> getTileEntities() {
         convertTilesToIndex();
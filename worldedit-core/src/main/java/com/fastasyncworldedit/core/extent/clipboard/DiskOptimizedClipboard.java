@@ -4,6 +4,7 @@
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.internal.exception.FaweClipboardVersionMismatchException;
 import com.fastasyncworldedit.core.internal.io.ByteBufferInputStream;
+import com.fastasyncworldedit.core.internal.io.ZstdDictionaries;
 import com.fastasyncworldedit.core.jnbt.streamer.IntValueReader;
 import com.fastasyncworldedit.core.math.IntTriple;
 import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
@@ -558,10 +559,9 @@ private void writeNBTToDisk() throws IOException {
             boolean entitiesFit = false;
             // Closing a BAOS does nothing
             ByteArrayOutputStream baOS = new ByteArrayOutputStream();
-            try (NBTOutputStream nbtOS = new NBTOutputStream(MainUtil.getCompressedOS(
-                    baOS,
-                    Settings.settings().CLIPBOARD.COMPRESSION_LEVEL
-            ))) {
+            try (NBTOutputStream nbtOS = new NBTOutputStream(Settings.settings().HISTORY.ZSTD_DICTIONARY
+                    ? ZstdDictionaries.getCompressedOS(baOS, Settings.settings().HISTORY.BUFFER_SIZE)
+                    : MainUtil.getCompressedOS(baOS, Settings.settings().CLIPBOARD.COMPRESSION_LEVEL))) {
                 if (!nbtMap.isEmpty()) {
                     try {
                         for (FaweCompoundTag tag : nbtMap.values()) {
@@ -713,6 +713,16 @@ public BlockState getBlock(int x, int y, int z) {
         return getBlock(getIndex(x, y, z));
     }
 
+    @Override
+    public char getOrdinal(int x, int y, int z) {
+        return byteBuffer.getChar(headerSize + (getIndex(x, y, z) << 1));
+    }
+
+    @Override
+    public void getOrdinals(int x, int y, int z, char[] dest, int destPos, int length) {
+        byteBuffer.slice(headerSize + (getIndex(x, y, z) << 1), length << 1).asCharBuffer().get(dest, destPos, length);
+    }
+
     @Override
     public boolean tile(final int x, final int y, final int z, final FaweCompoundTag tile) throws WorldEditException {
         nbtMap.put(new IntTriple(x, y, z), NbtUtils.withPosition(tile, x, y, z));
@@ -760,6 +770,32 @@ public <B extends BlockStateHolder<B>> boolean setBlock(int i, B block) {
         return false;
     }
 
+    /**
+     * Store a raw value at an index, without resolving it to a block state. Used to store the palette indices of a
+     * schematic which is read before its palette is known.
+     *
+     * @param index the index
+     * @param value the value to store
+     * @see #remapOrdinals(char[])
+     */
+    public void setOrdinal(int index, char value) {
+        byteBuffer.putChar(headerSize + (index << 1), value);
+    }
+
+    /**
+     * Replace each stored value by the block state ordinal it maps to.
+     *
+     * @param mapping the block state ordinal for each stored value. Values outside the mapping are replaced by air.
+     */
+    public void remapOrdinals(char[] mapping) {
+        int volume = getVolume();
+        for (int i = 0; i < volume; i++) {
+            int diskIndex = headerSize + (i << 1);
+            char value = byteBuffer.getChar(diskIndex);
+            byteBuffer.putChar(diskIndex, value < mapping.length ? mapping[value] : BlockTypesCache.ReservedIDs.AIR);
+        }
+    }
+
     private static class LockHolder {
 
         final FileLock lock;
@@ -52,6 +52,22 @@ public LinearClipboard(BlockVector3 dimensions, BlockVector3 offset) {
 
     public abstract BiomeType getBiome(int index);
 
+    /**
+     * Get the ordinal of the block at the given position, relative to the clipboard min.
+     */
+    public char getOrdinal(int x, int y, int z) {
+        return getBlock(x, y, z).getOrdinalChar();
+    }
+
+    /**
+     * Copy the ordinals of a row of blocks along the x-axis, starting at the given position relative to the clipboard min.
+     */
+    public void getOrdinals(int x, int y, int z, char[] dest, int destPos, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[destPos + i] = getOrdinal(x + i, y, z);
+        }
+    }
+
     /**
      * The locations provided are relative to the clipboard min
      */
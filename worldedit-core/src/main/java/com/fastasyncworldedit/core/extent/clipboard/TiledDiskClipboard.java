@@ -0,0 +1,961 @@
+package com.fastasyncworldedit.core.extent.clipboard;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.jnbt.streamer.IntValueReader;
+import com.fastasyncworldedit.core.math.IntTriple;
+import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.util.MainUtil;
+import com.fastasyncworldedit.core.util.NbtUtils;
+import com.fastasyncworldedit.core.util.ReflectionUtils;
+import com.google.common.collect.Collections2;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.DoubleTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.logging.log4j.Logger;
+import org.enginehub.linbus.tree.LinCompoundTag;
+import org.enginehub.linbus.tree.LinTagType;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A clipboard with disk backed storage in tiles of 16x16x16 blocks, which are stored in the order of chunk sections.
+ * <p>
+ * The file starts with a header and an index of the tiles, followed by the tile data. A tile is either uniform, in which
+ * case its block is stored in the index and it takes no space, stored raw, or compressed with lz4. Raw tiles are mapped
+ * in segments as they are accessed, so the clipboard is not limited by the size of a single mapping. Compressed tiles are
+ * written when the clipboard is closed and expanded again when they are written to.
+ * <p>
+ * Like {@link DiskOptimizedClipboard}, tile entities and entities are kept in memory and stored behind the tiles on close.
+ */
+public class TiledDiskClipboard extends LinearClipboard {
+
+    public static final int VERSION = 1;
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+    private static final char MAGIC = 0x7469;
+    private static final int HEADER_SIZE = 64;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final int TILE_VOLUME = 16 * 16 * 16;
+    private static final int BIOME_BYTES = 4 * 4 * 4;
+    private static final int SLOT_BYTES = (TILE_VOLUME << 1) + BIOME_BYTES;
+    private static final int SLOTS_PER_SEGMENT = 1024;
+    private static final long SEGMENT_BYTES = (long) SLOTS_PER_SEGMENT * SLOT_BYTES;
+    // a tile state is its payload shifted left by two, ored with its kind. The payload of a uniform tile is its ordinal,
+    // the payload of a raw or compressed tile is its offset in the file.
+    private static final int UNIFORM = 0;
+    private static final int RAW = 1;
+    private static final int COMPRESSED = 2;
+    private static final int KIND_MASK = 3;
+
+    private final HashMap<IntTriple, FaweCompoundTag> nbtMap = new HashMap<>();
+    private final File file;
+    private final int tilesX;
+    private final int tilesZ;
+    private final int tileCount;
+    private final long dataStart;
+    private final AtomicLongArray tiles;
+    private final int[] compressedLengths;
+
+    private RandomAccessFile braf;
+    private FileChannel fileChannel;
+    // replaced rather than modified when a segment is mapped, so it can be read without locking
+    private volatile MappedByteBuffer[] segments;
+    private long nextFree;
+    private volatile boolean hasBiomes;
+
+    /**
+     * Creates a new TiledDiskClipboard for the given region. Creates or overwrites a file using the given UUID as a name.
+     */
+    public TiledDiskClipboard(Region region, UUID uuid) {
+        this(
+                region.getDimensions(),
+                MainUtil.getFile(
+                        Fawe.instance() != null ? Fawe.platform().getDirectory() : new File("."),
+                        Settings.settings().PATHS.CLIPBOARD + File.separator + uuid + ".bd"
+                )
+        );
+        setOffset(region.getMinimumPoint());
+        setOrigin(region.getMinimumPoint());
+    }
+
+    /**
+     * New TiledDiskClipboard. If the file specified exists, then it will be completely overwritten. To load an existing
+     * clipboard, use {@link TiledDiskClipboard#loadFromFile(File)}.
+     */
+    public TiledDiskClipboard(BlockVector3 dimensions, File file) {
+        super(dimensions, BlockVector3.ZERO);
+        this.file = file;
+        this.tilesX = (getWidth() + 15) >> 4;
+        this.tilesZ = (getLength() + 15) >> 4;
+        this.tileCount = tilesX * tilesZ * ((getHeight() + 15) >> 4);
+        this.dataStart = HEADER_SIZE + (long) tileCount * INDEX_ENTRY_SIZE;
+        this.tiles = new AtomicLongArray(tileCount);
+        this.compressedLengths = new int[tileCount];
+        this.nextFree = dataStart;
+        try {
+            File parent = file.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            this.braf = new RandomAccessFile(file, "rw");
+            braf.setLength(0);
+            braf.setLength(dataStart);
+            init();
+        } catch (IOException e) {
+            release();
+            throw new RuntimeException(e);
+        } catch (Throwable t) {
+            release();
+            throw t;
+        }
+    }
+
+    private TiledDiskClipboard(File file, DataInputStream header) throws IOException {
+        super(BlockVector3.at(header.readInt(), header.readInt(), header.readInt()), BlockVector3.ZERO);
+        this.file = file;
+        this.tilesX = (getWidth() + 15) >> 4;
+        this.tilesZ = (getLength() + 15) >> 4;
+        this.tileCount = tilesX * tilesZ * ((getHeight() + 15) >> 4);
+        this.dataStart = HEADER_SIZE + (long) tileCount * INDEX_ENTRY_SIZE;
+        this.tiles = new AtomicLongArray(tileCount);
+        this.compressedLengths = new int[tileCount];
+        try {
+            BlockVector3 origin = BlockVector3.at(header.readInt(), header.readInt(), header.readInt());
+            super.setOffset(BlockVector3.at(header.readInt(), header.readInt(), header.readInt()));
+            super.setOrigin(origin);
+            this.hasBiomes = header.readBoolean();
+            header.readBoolean();
+            int nbtCount = header.readInt();
+            int entitiesCount = header.readInt();
+            long footerOffset = header.readLong();
+            int footerLength = header.readInt();
+            header.skipBytes(HEADER_SIZE - 62);
+            for (int i = 0; i < tileCount; i++) {
+                tiles.set(i, header.readLong());
+                compressedLengths[i] = header.readInt();
+            }
+            this.braf = new RandomAccessFile(file, "rw");
+            init();
+            long end = footerOffset >= dataStart ? footerOffset : braf.length();
+            this.nextFree = dataStart + (end - dataStart + SLOT_BYTES - 1) / SLOT_BYTES * SLOT_BYTES;
+            if (Settings.settings().CLIPBOARD.SAVE_CLIPBOARD_NBT_TO_DISK && nbtCount + entitiesCount > 0) {
+                loadNBTFromFileFooter(footerOffset, footerLength, nbtCount, entitiesCount);
+            }
+        } catch (Throwable t) {
+            // Do not write back a clipboard which failed to load
+            release();
+            throw t;
+        }
+    }
+
+    /**
+     * Load a file written by a TiledDiskClipboard.
+     *
+     * @param file File to load
+     * @return new {@link TiledDiskClipboard} instance.
+     */
+    public static TiledDiskClipboard loadFromFile(File file) {
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (is.readChar() != MAGIC || is.readChar() != VERSION) {
+                throw new IllegalArgumentException("Not a tiled clipboard file: " + file.getName());
+            }
+            return new TiledDiskClipboard(file, is);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * {@return if the file was written by a TiledDiskClipboard}
+     *
+     * @param file the file to check
+     */
+    public static boolean isTiledFile(File file) {
+        try (DataInputStream is = new DataInputStream(new FileInputStream(file))) {
+            return is.readChar() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void init() throws IOException {
+        this.fileChannel = braf.getChannel();
+        if (Settings.settings().CLIPBOARD.LOCK_CLIPBOARD_FILE) {
+            // Rethrows an OverlappingFileLockException to prevent clipboard access
+            this.fileChannel.lock();
+        }
+        this.segments = new MappedByteBuffer[(tileCount + SLOTS_PER_SEGMENT - 1) / SLOTS_PER_SEGMENT + 1];
+    }
+
+    private void loadNBTFromFileFooter(long footerOffset, int footerLength, int nbtCount, int entitiesCount) {
+        ByteBuffer footer = ByteBuffer.allocate(footerLength);
+        try {
+            readFully(footer, footerOffset);
+            ByteArrayInputStream in = new ByteArrayInputStream(footer.array());
+            try (NBTInputStream nbtIS = new NBTInputStream(MainUtil.getCompressedIS(in))) {
+                Iterator<CompoundTag> iter = nbtIS.toIterator();
+                while (nbtCount > 0 && iter.hasNext()) {
+                    LinCompoundTag tag = iter.next().toLinTag();
+                    int x = tag.getTag("x", LinTagType.intTag()).valueAsInt();
+                    int y = tag.getTag("y", LinTagType.intTag()).valueAsInt();
+                    int z = tag.getTag("z", LinTagType.intTag()).valueAsInt();
+                    nbtMap.put(new IntTriple(x, y, z), FaweCompoundTag.of(tag));
+                    nbtCount--;
+                }
+                while (entitiesCount > 0 && iter.hasNext()) {
+                    CompoundTag tag = iter.next();
+                    List<DoubleTag> pos = tag.getList("Pos", DoubleTag.class);
+                    if (pos.size() < 3) {
+                        LOGGER.warn("Missing pos tag: {}", tag);
+                        return;
+                    }
+                    entities.add(new BlockArrayClipboard.ClipboardEntity(
+                            this,
+                            pos.get(0).getValue(),
+                            pos.get(1).getValue(),
+                            pos.get(2).getValue(),
+                            0f,
+                            0f,
+                            new BaseEntity(tag)
+                    ));
+                    entitiesCount--;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Unable to load NBT data of clipboard {}", file.getName(), e);
+        }
+    }
+
+    @Override
+    public URI getURI() {
+        return file.toURI();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Wrap this clipboard in a {@link BlockArrayClipboard} at its stored offset.
+     *
+     * @return the clipboard, never {@code null}
+     * @throws RuntimeException if the clipboard cannot be created, e.g. as the file is corrupt
+     */
+    public BlockArrayClipboard toClipboard() {
+        try {
+            Region region = getRegion();
+            region.shift(offset);
+            BlockArrayClipboard clipboard = new BlockArrayClipboard(region, this);
+            clipboard.setOrigin(getOrigin().add(offset));
+            return clipboard;
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to create a clipboard from {}", file.getName(), e);
+            throw e;
+        }
+    }
+
+    private int tileIndex(int x, int y, int z) {
+        return (x >> 4) + ((z >> 4) + (y >> 4) * tilesZ) * tilesX;
+    }
+
+    private static int blockIndex(int x, int y, int z) {
+        return (x & 15) | (z & 15) << 4 | (y & 15) << 8;
+    }
+
+    private static int biomeIndex(int x, int y, int z) {
+        return ((x & 15) >> 2) | ((z & 15) >> 2) << 2 | ((y & 15) >> 2) << 4;
+    }
+
+    private MappedByteBuffer segment(long offset) {
+        int index = (int) ((offset - dataStart) / SEGMENT_BYTES);
+        MappedByteBuffer[] segments = this.segments;
+        if (index < segments.length && segments[index] != null) {
+            return segments[index];
+        }
+        return mapSegment(index);
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int index) {
+        MappedByteBuffer[] segments = this.segments;
+        if (index < segments.length && segments[index] != null) {
+            return segments[index];
+        }
+        MappedByteBuffer segment;
+        try {
+            segment = fileChannel.map(FileChannel.MapMode.READ_WRITE, dataStart + index * SEGMENT_BYTES, SEGMENT_BYTES);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        MappedByteBuffer[] copy = Arrays.copyOf(segments, Math.max(segments.length, index + 1));
+        copy[index] = segment;
+        this.segments = copy;
+        return segment;
+    }
+
+    private int position(long offset) {
+        return (int) ((offset - dataStart) % SEGMENT_BYTES);
+    }
+
+    /**
+     * Get the offset of the raw data of a tile, expanding the tile into raw storage if it is uniform or compressed.
+     */
+    private long rawOffset(int tile) {
+        long state = tiles.get(tile);
+        if (((int) state & KIND_MASK) == RAW) {
+            return state >>> 2;
+        }
+        return expand(tile);
+    }
+
+    private synchronized long expand(int tile) {
+        long state = tiles.get(tile);
+        int kind = (int) state & KIND_MASK;
+        if (kind == RAW) {
+            return state >>> 2;
+        }
+        long offset = nextFree;
+        nextFree += SLOT_BYTES;
+        ByteBuffer slot = segment(offset).duplicate();
+        slot.position(position(offset));
+        if (kind == UNIFORM) {
+            char ordinal = (char) (state >>> 2);
+            for (int i = 0; i < TILE_VOLUME; i++) {
+                slot.putChar(ordinal);
+            }
+            for (int i = 0; i < BIOME_BYTES; i++) {
+                slot.put((byte) 0);
+            }
+        } else {
+            slot.put(decompress(tile, state >>> 2));
+        }
+        tiles.set(tile, offset << 2 | RAW);
+        return offset;
+    }
+
+    private byte[] decompress(int tile, long offset) {
+        ByteBuffer compressed = ByteBuffer.allocate(compressedLengths[tile]);
+        try {
+            readFully(compressed, offset);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return MainUtil.decompress(compressed.array(), new byte[SLOT_BYTES], SLOT_BYTES, 1);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of clipboard file " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Read the blocks of a tile without expanding it.
+     *
+     * @param tile   the index of the tile
+     * @param blocks the array to read the ordinals into, in the order of chunk sections
+     */
+    private void readTile(int tile, char[] blocks) {
+        long state = tiles.get(tile);
+        switch ((int) state & KIND_MASK) {
+            case UNIFORM -> Arrays.fill(blocks, (char) (state >>> 2));
+            case RAW -> {
+                long offset = state >>> 2;
+                ByteBuffer slot = segment(offset).duplicate();
+                slot.position(position(offset));
+                slot.asCharBuffer().get(blocks, 0, TILE_VOLUME);
+            }
+            default -> ByteBuffer.wrap(decompress(tile, state >>> 2)).asCharBuffer().get(blocks, 0, TILE_VOLUME);
+        }
+    }
+
+    @Override
+    public char getOrdinal(int x, int y, int z) {
+        int tile = tileIndex(x, y, z);
+        long state = tiles.get(tile);
+        if (((int) state & KIND_MASK) == UNIFORM) {
+            return (char) (state >>> 2);
+        }
+        long offset = rawOffset(tile);
+        return segment(offset).getChar(position(offset) + (blockIndex(x, y, z) << 1));
+    }
+
+    private void setOrdinal(int x, int y, int z, char ordinal) {
+        int tile = tileIndex(x, y, z);
+        long state = tiles.get(tile);
+        if (state == ((long) ordinal << 2 | UNIFORM)) {
+            return;
+        }
+        long offset = rawOffset(tile);
+        segment(offset).putChar(position(offset) + (blockIndex(x, y, z) << 1), ordinal);
+    }
+
+    @Override
+    public boolean hasBiomes() {
+        return hasBiomes;
+    }
+
+    @Override
+    public boolean setBiome(BlockVector3 position, BiomeType biome) {
+        return setBiome(position.x(), position.y(), position.z(), biome);
+    }
+
+    @Override
+    public boolean setBiome(int x, int y, int z, BiomeType biome) {
+        hasBiomes = true;
+        long offset = rawOffset(tileIndex(x, y, z));
+        segment(offset).put(position(offset) + (TILE_VOLUME << 1) + biomeIndex(x, y, z), (byte) biome.getInternalId());
+        return true;
+    }
+
+    /**
+     * Set the biome at the block with the given index.
+     *
+     * @param index the index of the block, as used by {@link #setBlock(int, BlockStateHolder)}
+     * @param biome the biome
+     */
+    @Override
+    public void setBiome(int index, BiomeType biome) {
+        int y = index / getArea();
+        int newI = index - y * getArea();
+        int z = newI / getWidth();
+        setBiome(newI - z * getWidth(), y, z, biome);
+    }
+
+    /**
+     * Get the biome at the block with the given index.
+     *
+     * @param index the index of the block, as used by {@link #getBlock(int)}
+     */
+    @Override
+    public BiomeType getBiome(int index) {
+        int y = index / getArea();
+        int newI = index - y * getArea();
+        int z = newI / getWidth();
+        return getBiomeType(newI - z * getWidth(), y, z);
+    }
+
+    @Override
+    public BiomeType getBiomeType(int x, int y, int z) {
+        if (!hasBiomes()) {
+            return null;
+        }
+        int tile = tileIndex(x, y, z);
+        if (((int) tiles.get(tile) & KIND_MASK) == UNIFORM) {
+            return BiomeTypes.get(0);
+        }
+        long offset = rawOffset(tile);
+        return BiomeTypes.get(segment(offset).get(position(offset) + (TILE_VOLUME << 1) + biomeIndex(x, y, z)) & 0xFF);
+    }
+
+    @Override
+    public BiomeType getBiome(BlockVector3 position) {
+        return getBiomeType(position.x(), position.y(), position.z());
+    }
+
+    @Override
+    public void streamBiomes(IntValueReader task) {
+        if (!hasBiomes()) {
+            return;
+        }
+        try {
+            for (int y = 0; y < getHeight(); y++) {
+                for (int z = 0; z < getLength(); z++) {
+                    for (int x = 0; x < getWidth(); x++) {
+                        task.applyInt(getIndex(x, y, z), getBiomeType(x, y, z).getInternalId());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public int getIndex(int x, int y, int z) {
+        return x + y * getArea() + z * getWidth();
+    }
+
+    @Override
+    public Collection<CompoundTag> getTileEntities() {
+        return Collections2.transform(nbtMap.values(), fct -> new CompoundTag(fct.linTag()));
+    }
+
+    private BaseBlock toBaseBlock(BlockState state, int x, int y, int z) {
+        if (state.getMaterial().hasContainer() && !nbtMap.isEmpty()) {
+            FaweCompoundTag nbt = nbtMap.get(new IntTriple(x, y, z));
+            return state.toBaseBlock(nbt == null ? null : nbt.linTag());
+        }
+        return state.toBaseBlock();
+    }
+
+    @Override
+    public BaseBlock getFullBlock(int x, int y, int z) {
+        return toBaseBlock(getBlock(x, y, z), x, y, z);
+    }
+
+    @Override
+    public BaseBlock getFullBlock(int i) {
+        int y = i / getArea();
+        int newI = i - y * getArea();
+        int z = newI / getWidth();
+        return getFullBlock(newI - z * getWidth(), y, z);
+    }
+
+    @Override
+    public BlockState getBlock(int x, int y, int z) {
+        return BlockState.getFromOrdinal(getOrdinal(x, y, z));
+    }
+
+    @Override
+    public BlockState getBlock(int i) {
+        int y = i / getArea();
+        int newI = i - y * getArea();
+        int z = newI / getWidth();
+        return getBlock(newI - z * getWidth(), y, z);
+    }
+
+    @Override
+    public boolean tile(final int x, final int y, final int z, final FaweCompoundTag tile) {
+        nbtMap.put(new IntTriple(x, y, z), NbtUtils.withPosition(tile, x, y, z));
+        return true;
+    }
+
+    @Override
+    public <B extends BlockStateHolder<B>> boolean setBlock(int x, int y, int z, B block) {
+        char ordinal = block.getOrdinalChar();
+        if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+            ordinal = BlockTypesCache.ReservedIDs.AIR;
+        }
+        setOrdinal(x, y, z, ordinal);
+        if (block instanceof BaseBlock && block.hasNbtData()) {
+            setTile(x, y, z, block.getNbtData());
+        }
+        return true;
+    }
+
+    @Override
+    public <B extends BlockStateHolder<B>> boolean setBlock(int i, B block) {
+        int y = i / getArea();
+        int newI = i - y * getArea();
+        int z = newI / getWidth();
+        return setBlock(newI - z * getWidth(), y, z, block);
+    }
+
+    @Override
+    public void paste(Extent extent, BlockVector3 to, boolean pasteAir, boolean pasteEntities, boolean pasteBiomes) {
+        pasteTiles(extent, to.subtract(getOrigin()), pasteAir, pasteEntities, pasteBiomes);
+    }
+
+    /**
+     * Paste the clipboard tile by tile. When pasting into an {@link EditSession}, the tiles are read by the workers of
+     * its queue for the chunks they are pasted into.
+     *
+     * @param extent        the extent to paste into
+     * @param translation   the translation from the position of a block in this clipboard to its position in the extent
+     * @param pasteAir      if air should be pasted
+     * @param pasteEntities if entities should be pasted
+     * @param pasteBiomes   if biomes should be pasted
+     */
+    public void pasteTiles(
+            Extent extent, BlockVector3 translation, boolean pasteAir, boolean pasteEntities,
+            boolean pasteBiomes
+    ) {
+        boolean close = false;
+        if (extent instanceof World world) {
+            close = true;
+            extent = WorldEdit
+                    .getInstance()
+                    .newEditSessionBuilder()
+                    .world(world)
+                    .checkMemory(false)
+                    .allowedRegionsEverywhere()
+                    .limitUnlimited()
+                    .changeSetNull()
+                    .build();
+        }
+        pasteBiomes &= hasBiomes();
+        PasteFilter filter = new PasteFilter(translation, pasteAir, pasteBiomes);
+        if (extent instanceof EditSession editSession) {
+            Region region = new CuboidRegion(translation, getMaximumPoint().add(translation));
+            editSession.apply(region, filter, true);
+        } else {
+            filter.pasteSequentially(extent);
+        }
+        if (pasteEntities) {
+            for (Entity entity : getEntities()) {
+                // skip players on pasting schematic
+                if (entity.getState() != null && entity.getState().getType().id().equals("minecraft:player")) {
+                    continue;
+                }
+                Location pos = entity.getLocation();
+                Location newPos = new Location(pos.getExtent(), pos.x() + translation.x(), pos.y() + translation.y(),
+                        pos.z() + translation.z(), pos.getYaw(), pos.getPitch()
+                );
+                extent.createEntity(newPos, entity.getState());
+            }
+        }
+        if (close) {
+            ((EditSession) extent).close();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (fileChannel == null) {
+            return;
+        }
+        try {
+            for (MappedByteBuffer segment : segments) {
+                if (segment != null) {
+                    segment.force();
+                }
+            }
+            // Without the footer, so a clipboard recovered after a crash ignores the space behind the tiles
+            writeHeader(fileChannel, states(), compressedLengths, 0, 0, nextFree, 0);
+        } catch (IOException e) {
+            LOGGER.error("Unable to flush clipboard {}", file.getName(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (fileChannel == null) {
+            return;
+        }
+        int level = Settings.settings().CLIPBOARD.COMPRESSION_LEVEL;
+        try {
+            if (level > 0) {
+                File tmp = new File(file.getPath() + ".tmp");
+                try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+                    out.setLength(0);
+                    writeCompacted(out.getChannel(), level);
+                }
+                release();
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to compress clipboard {}, saving it uncompressed.", file.getName(), e);
+        }
+        try {
+            if (fileChannel != null) {
+                long end = writeMetadata(fileChannel, states(), compressedLengths, nextFree);
+                release();
+                try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                    out.setLength(end);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to save clipboard {} to disk.", file.getName(), e);
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        if (segments != null) {
+            for (MappedByteBuffer segment : segments) {
+                if (segment != null) {
+                    ReflectionUtils.getUnsafe().invokeCleaner(segment);
+                }
+            }
+            segments = null;
+        }
+        try {
+            if (fileChannel != null) {
+                fileChannel.close();
+            }
+            if (braf != null) {
+                braf.close();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not close file channel on clipboard {}. If this belongs to a player, the server may " +
+                    "need to be restarted for clipboard use to work.", file.getName(), e);
+        }
+        fileChannel = null;
+        braf = null;
+    }
+
+    private long[] states() {
+        long[] states = new long[tileCount];
+        for (int i = 0; i < tileCount; i++) {
+            states[i] = tiles.get(i);
+        }
+        return states;
+    }
+
+    /**
+     * Write the clipboard to a new file, with uniform tiles collapsed into the index and other tiles compressed if that
+     * makes them smaller.
+     */
+    private void writeCompacted(FileChannel out, int level) throws IOException {
+        long[] states = new long[tileCount];
+        int[] lengths = new int[tileCount];
+        IntArrayList rawTiles = new IntArrayList();
+        byte[] slot = new byte[SLOT_BYTES];
+        byte[] buffer = new byte[MainUtil.getMaxCompressedLength(SLOT_BYTES)];
+        long position = dataStart;
+        for (int tile = 0; tile < tileCount; tile++) {
+            long state = tiles.get(tile);
+            if (((int) state & KIND_MASK) == UNIFORM) {
+                states[tile] = state;
+                continue;
+            }
+            readSlot(tile, state, slot);
+            if (!hasBiomes && isUniform(slot)) {
+                states[tile] = (long) ((slot[0] & 0xFF) << 8 | (slot[1] & 0xFF)) << 2 | UNIFORM;
+                continue;
+            }
+            byte[] compressed = MainUtil.compress(slot, buffer, level);
+            // Not worth decompressing for a small gain
+            if (compressed.length > SLOT_BYTES - (SLOT_BYTES >> 3)) {
+                rawTiles.add(tile);
+                continue;
+            }
+            writeFully(out, ByteBuffer.wrap(compressed), position);
+            states[tile] = position << 2 | COMPRESSED;
+            lengths[tile] = compressed.length;
+            position += compressed.length;
+        }
+        position = dataStart + (position - dataStart + SLOT_BYTES - 1) / SLOT_BYTES * SLOT_BYTES;
+        for (int i = 0; i < rawTiles.size(); i++) {
+            int tile = rawTiles.getInt(i);
+            readSlot(tile, tiles.get(tile), slot);
+            writeFully(out, ByteBuffer.wrap(slot), position);
+            states[tile] = position << 2 | RAW;
+            position += SLOT_BYTES;
+        }
+        writeMetadata(out, states, lengths, position);
+    }
+
+    private void readSlot(int tile, long state, byte[] slot) {
+        if (((int) state & KIND_MASK) == RAW) {
+            long offset = state >>> 2;
+            ByteBuffer buffer = segment(offset).duplicate();
+            buffer.position(position(offset));
+            buffer.get(slot);
+        } else {
+            System.arraycopy(decompress(tile, state >>> 2), 0, slot, 0, SLOT_BYTES);
+        }
+    }
+
+    private static boolean isUniform(byte[] slot) {
+        byte high = slot[0];
+        byte low = slot[1];
+        for (int i = 2; i < TILE_VOLUME << 1; i += 2) {
+            if (slot[i] != high || slot[i + 1] != low) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the tile entities and entities at the given offset, followed by the header and index.
+     *
+     * @return the end of the written data
+     */
+    private long writeMetadata(FileChannel out, long[] states, int[] lengths, long footerOffset) throws IOException {
+        int nbtCount = 0;
+        int entitiesCount = 0;
+        int footerLength = 0;
+        if (Settings.settings().CLIPBOARD.SAVE_CLIPBOARD_NBT_TO_DISK && (!nbtMap.isEmpty() || !entities.isEmpty())) {
+            // Closing a BAOS does nothing
+            ByteArrayOutputStream baOS = new ByteArrayOutputStream();
+            try (NBTOutputStream nbtOS = new NBTOutputStream(MainUtil.getCompressedOS(
+                    baOS,
+                    Settings.settings().CLIPBOARD.COMPRESSION_LEVEL
+            ))) {
+                for (FaweCompoundTag tag : nbtMap.values()) {
+                    nbtOS.writeTag(new CompoundTag(tag.linTag()));
+                    nbtCount++;
+                }
+                for (BlockArrayClipboard.ClipboardEntity entity : entities) {
+                    if (entity.getState() == null || entity.getState().getNbtData() == null) {
+                        continue;
+                    }
+                    HashMap<String, Tag<?, ?>> value = new HashMap<>(entity.getState().getNbtData().getValue());
+                    List<DoubleTag> pos = new ArrayList<>(3);
+                    pos.add(new DoubleTag(entity.getLocation().x()));
+                    pos.add(new DoubleTag(entity.getLocation().y()));
+                    pos.add(new DoubleTag(entity.getLocation().z()));
+                    value.put("Pos", new ListTag(DoubleTag.class, pos));
+                    nbtOS.writeTag(new CompoundTag(value));
+                    entitiesCount++;
+                }
+            }
+            footerLength = baOS.size();
+            writeFully(out, ByteBuffer.wrap(baOS.toByteArray()), footerOffset);
+        }
+        writeHeader(out, states, lengths, nbtCount, entitiesCount, footerOffset, footerLength);
+        return footerOffset + footerLength;
+    }
+
+    private void writeHeader(
+            FileChannel out, long[] states, int[] lengths, int nbtCount, int entitiesCount, long footerOffset,
+            int footerLength
+    ) throws IOException {
+        BlockVector3 origin = getOrigin().subtract(offset);
+        ByteBuffer header = ByteBuffer.allocate((int) dataStart);
+        header.putChar(MAGIC).putChar((char) VERSION);
+        header.putInt(getWidth()).putInt(getHeight()).putInt(getLength());
+        header.putInt(origin.x()).putInt(origin.y()).putInt(origin.z());
+        header.putInt(offset.x()).putInt(offset.y()).putInt(offset.z());
+        header.put((byte) (hasBiomes ? 1 : 0)).put((byte) 0);
+        header.putInt(nbtCount).putInt(entitiesCount);
+        header.putLong(footerOffset).putInt(footerLength);
+        header.position(HEADER_SIZE);
+        for (int i = 0; i < tileCount; i++) {
+            header.putLong(states[i]).putInt(lengths[i]);
+        }
+        header.flip();
+        writeFully(out, header, 0);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Sets the blocks of this clipboard, translated, reading each tile once per worker.
+     */
+    private final class PasteFilter implements Filter {
+
+        private final BlockVector3 translation;
+        private final boolean pasteAir;
+        private final boolean pasteBiomes;
+        // A chunk section overlaps at most two tiles along each axis, which differ in the lowest bit of their tile coordinate
+        private final char[][] cache = new char[8][TILE_VOLUME];
+        private final int[] cached = new int[8];
+
+        private PasteFilter(BlockVector3 translation, boolean pasteAir, boolean pasteBiomes) {
+            this.translation = translation;
+            this.pasteAir = pasteAir;
+            this.pasteBiomes = pasteBiomes;
+            Arrays.fill(cached, -1);
+        }
+
+        private char[] tile(int x, int y, int z) {
+            int slot = (x >> 4 & 1) | (y >> 4 & 1) << 1 | (z >> 4 & 1) << 2;
+            int tile = tileIndex(x, y, z);
+            char[] blocks = cache[slot];
+            if (cached[slot] != tile) {
+                readTile(tile, blocks);
+                cached[slot] = tile;
+            }
+            return blocks;
+        }
+
+        @Override
+        public void applyBlock(FilterBlock block) {
+            int x = block.x() - translation.x();
+            int y = block.y() - translation.y();
+            int z = block.z() - translation.z();
+            if (pasteBiomes) {
+                block.setBiome(getBiomeType(x, y, z));
+            }
+            char ordinal = tile(x, y, z)[blockIndex(x, y, z)];
+            if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+                return;
+            }
+            BlockState state = BlockState.getFromOrdinal(ordinal);
+            if (!pasteAir && state.getBlockType().getMaterial().isAir()) {
+                return;
+            }
+            if (state.getMaterial().hasContainer() && !nbtMap.isEmpty()) {
+                block.setFullBlock(toBaseBlock(state, x, y, z));
+            } else {
+                block.setBlock(state);
+            }
+        }
+
+        private void pasteSequentially(Extent extent) {
+            for (int ty = 0; ty < getHeight(); ty += 16) {
+                for (int tz = 0; tz < getLength(); tz += 16) {
+                    for (int tx = 0; tx < getWidth(); tx += 16) {
+                        char[] blocks = tile(tx, ty, tz);
+                        for (int y = ty; y < Math.min(ty + 16, getHeight()); y++) {
+                            for (int z = tz; z < Math.min(tz + 16, getLength()); z++) {
+                                for (int x = tx; x < Math.min(tx + 16, getWidth()); x++) {
+                                    pasteBlock(extent, x, y, z, blocks[blockIndex(x, y, z)]);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        private void pasteBlock(Extent extent, int x, int y, int z, char ordinal) {
+            int xx = x + translation.x();
+            int yy = y + translation.y();
+            int zz = z + translation.z();
+            if (pasteBiomes) {
+                extent.setBiome(xx, yy, zz, getBiomeType(x, y, z));
+            }
+            if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+                return;
+            }
+            BlockState state = BlockState.getFromOrdinal(ordinal);
+            if (!pasteAir && state.getBlockType().getMaterial().isAir()) {
+                return;
+            }
+            extent.setBlock(xx, yy, zz, toBaseBlock(state, x, y, z));
+        }
+
+        @Override
+        public PasteFilter fork() {
+            return new PasteFilter(translation, pasteAir, pasteBiomes);
+        }
+
+    }
+
+}
@@ -1,5 +1,10 @@
 package com.fastasyncworldedit.core.extent.clipboard;
 
+import com.fastasyncworldedit.core.extent.processor.ChunkSnapshotProcessor;
+import com.fastasyncworldedit.core.extent.processor.EmptyBatchProcessor;
+import com.fastasyncworldedit.core.extent.processor.ExtentBatchProcessorHolder;
+import com.fastasyncworldedit.core.extent.processor.MultiBatchProcessor;
+import com.fastasyncworldedit.core.util.ExtentTraverser;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.EditSessionBuilder;
 import com.sk89q.worldedit.WorldEdit;
@@ -14,6 +19,7 @@
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -25,6 +31,8 @@ public class WorldCopyClipboard extends ReadOnlyClipboard {
     private final boolean hasBiomes;
     private final boolean hasEntities;
     private final Extent extent;
+    @Nullable
+    private final ChunkSnapshotProcessor snapshots;
 
     /**
      * @deprecated use {@link WorldCopyClipboard#of(Extent, Region)}
@@ -43,13 +51,18 @@ public WorldCopyClipboard(Supplier<Extent> supplier, Region region, boolean hasE
         this.hasBiomes = hasBiomes;
         this.hasEntities = hasEntities;
         this.extent = supplier.get();
+        this.snapshots = null;
     }
 
-    private WorldCopyClipboard(Extent extent, Region region, boolean hasEntities, boolean hasBiomes) {
+    private WorldCopyClipboard(
+            Extent extent, Region region, boolean hasEntities, boolean hasBiomes,
+            @Nullable ChunkSnapshotProcessor snapshots
+    ) {
         super(region);
         this.hasBiomes = hasBiomes;
         this.hasEntities = hasEntities;
         this.extent = extent;
+        this.snapshots = snapshots;
     }
 
     public static WorldCopyClipboard of(Extent extent, Region region) {
@@ -61,7 +74,75 @@ public static WorldCopyClipboard of(Extent extent, Region region, boolean hasEnt
     }
 
     public static WorldCopyClipboard of(Extent extent, Region region, boolean hasEntities, boolean hasBiomes) {
-        return new WorldCopyClipboard(extent, region, hasEntities, hasBiomes);
+        return new WorldCopyClipboard(extent, region, hasEntities, hasBiomes, null);
+    }
+
+    /**
+     * Create a copy-on-write clipboard of the region. The blocks are read from the extent when they are requested, but the
+     * chunk sections about to be changed through the extent, or through an extent passed to {@link #trackChanges(Extent)},
+     * are copied before the changes are applied, while only the changed sections are held in memory.
+     * <p>
+     * Only changes made through these extents are seen. Changes made any other way, e.g. by the edit sessions of later
+     * commands or by the server itself, are read from the world as they are.
+     *
+     * @param extent      the extent to read from, which should process its changes by chunk
+     * @param region      the region to copy
+     * @param hasEntities if entities should be copied
+     * @param hasBiomes   if biomes should be copied
+     * @return the clipboard
+     */
+    public static WorldCopyClipboard copyOnWrite(Extent extent, Region region, boolean hasEntities, boolean hasBiomes) {
+        WorldCopyClipboard clipboard = new WorldCopyClipboard(extent, region, hasEntities, hasBiomes,
+                new ChunkSnapshotProcessor(region, hasBiomes)
+        );
+        clipboard.trackChanges(extent);
+        return clipboard;
+    }
+
+    /**
+     * {@return if the clipboard keeps the contents of the region from when it was created}
+     */
+    public boolean isCopyOnWrite() {
+        return snapshots != null;
+    }
+
+    /**
+     * Copy the chunk sections of this clipboard changed through the extent before the changes are applied.
+     *
+     * @param extent the extent
+     * @return if the changes are tracked, i.e. this is a {@link #isCopyOnWrite() copy-on-write} clipboard and the extent
+     *         processes its changes by chunk
+     */
+    public boolean trackChanges(Extent extent) {
+        if (snapshots == null) {
+            return false;
+        }
+        ExtentBatchProcessorHolder holder = new ExtentTraverser<>(extent).findAndGet(ExtentBatchProcessorHolder.class);
+        if (holder == null) {
+            return false;
+        }
+        holder.addProcessor(snapshots);
+        return true;
+    }
+
+    /**
+     * Stop copying the chunk sections of this clipboard changed through the extent, e.g. once all blocks have been read.
+     *
+     * @param extent an extent previously passed to {@link #trackChanges(Extent)}
+     */
+    public void untrackChanges(Extent extent) {
+        if (snapshots == null) {
+            return;
+        }
+        ExtentBatchProcessorHolder holder = new ExtentTraverser<>(extent).findAndGet(ExtentBatchProcessorHolder.class);
+        if (holder == null) {
+            return;
+        }
+        if (holder.getProcessor() == snapshots) {
+            holder.setProcessor(EmptyBatchProcessor.getInstance());
+        } else if (holder.getProcessor() instanceof MultiBatchProcessor multi) {
+            multi.removeBatchProcessor(snapshots);
+        }
     }
 
     public Extent getExtent() {
@@ -70,22 +151,40 @@ public Extent getExtent() {
 
     @Override
     public BaseBlock getFullBlock(int x, int y, int z) {
+        if (snapshots != null) {
+            BaseBlock block = snapshots.getFullBlock(x, y, z);
+            if (block != null) {
+                return block;
+            }
+        }
         return getExtent().getFullBlock(x, y, z);
     }
 
     @Override
     public BlockState getBlock(int x, int y, int z) {
+        if (snapshots != null) {
+            BlockState block = snapshots.getBlock(x, y, z);
+            if (block != null) {
+                return block;
+            }
+        }
         return getExtent().getBlock(x, y, z);
     }
 
     @Override
     public BiomeType getBiomeType(int x, int y, int z) {
+        if (snapshots != null) {
+            BiomeType biome = snapshots.getBiomeType(x, y, z);
+            if (biome != null) {
+                return biome;
+            }
+        }
         return getExtent().getBiomeType(x, y, z);
     }
 
     @Override
     public BiomeType getBiome(BlockVector3 position) {
-        return getExtent().getBiomeType(position.x(), position.y(), position.z());
+        return getBiomeType(position.x(), position.y(), position.z());
     }
 
     @Override
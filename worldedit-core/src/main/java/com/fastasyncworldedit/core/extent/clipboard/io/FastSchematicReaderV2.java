@@ -46,6 +46,8 @@
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -56,6 +58,7 @@
 public class FastSchematicReaderV2 extends NBTSchematicReader {
 
     private static final Logger LOGGER = LogManagerCompat.getLogger();
+    private static final int MIN_CONCURRENT_FIXES = 64;
     private final NBTInputStream inputStream;
     private final DataFixer fixer;
     private int dataVersion = -1;
@@ -64,6 +67,7 @@ public class FastSchematicReaderV2 extends NBTSchematicReader {
 
     private FastByteArrayOutputStream blocksOut;
     private FaweOutputStream blocks;
+    private int blocksLength;
 
     private FastByteArrayOutputStream biomesOut;
     private FaweOutputStream biomes;
@@ -183,6 +187,7 @@ public StreamDelegate createDelegate() {
         });
         StreamDelegate blockData = schematic.add("BlockData");
         blockData.withInfo((length, type) -> {
+            blocksLength = length;
             blocksOut = new FastByteArrayOutputStream();
             blocks = new FaweOutputStream(new LZ4BlockOutputStream(blocksOut));
         });
@@ -273,7 +278,14 @@ public Clipboard read(UUID uuid, Function<BlockVector3, Clipboard> createOutput)
             try (FaweInputStream fis = new FaweInputStream(new LZ4BlockInputStream(new FastByteArraysInputStream(blocksOut.toByteArrays())))) {
                 if (clipboard instanceof LinearClipboard linear) {
                     int volume = width * height * length;
-                    if (palette.length < 128) {
+                    if (blocksLength >= ParallelPaletteDecoder.MIN_PARALLEL_LENGTH
+                            && ParallelPaletteDecoder.supportsParallelWrites(clipboard)) {
+                        ParallelPaletteDecoder.decode(fis, blocksLength, palette.length >= 128, (index, ordinal) -> {
+                            if (index < volume) {
+                                linear.setBlock(index, getBlockState(ordinal));
+                            }
+                        });
+                    } else if (palette.length < 128) {
                         for (int index = 0; index < volume; index++) {
                             int ordinal = fis.read();
                             linear.setBlock(index, getBlockState(ordinal));
@@ -321,6 +333,10 @@ public Clipboard read(UUID uuid, Function<BlockVector3, Clipboard> createOutput)
         }
         // tiles
         if (tiles != null && !tiles.isEmpty()) {
+            // Fixing up is the expensive part, so it runs on the fork join pool if there are many tiles
+            List<PendingTile> pendingTiles = fixer != null && dataVersion != -1 && tiles.size() >= MIN_CONCURRENT_FIXES
+                    ? new ArrayList<>(tiles.size())
+                    : null;
             for (Map<String, Object> tileRaw : tiles) {
                 CompoundTag tile = FaweCache.INSTANCE.asTag(tileRaw);
 
@@ -355,13 +371,34 @@ public Clipboard read(UUID uuid, Function<BlockVector3, Clipboard> createOutput)
                 values.remove("Id");
                 values.remove("Pos");
 
+                CompoundTag unfixed = new CompoundTag(values);
+                if (pendingTiles != null) {
+                    pendingTiles.add(new PendingTile(x, y, z, ParallelPaletteDecoder.executor()
+                            .submit(() -> fixBlockEntity(unfixed))));
+                    continue;
+                }
                 clipboard.setTile(
                         x,
                         y,
                         z,
-                        fixBlockEntity(new CompoundTag(values))
+                        fixBlockEntity(unfixed)
                 );
             }
+            if (pendingTiles != null) {
+                for (PendingTile tile : pendingTiles) {
+                    try {
+                        clipboard.setTile(tile.x(), tile.y(), tile.z(), tile.tag().get());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while fixing up tiles", e);
+                    } catch (ExecutionException e) {
+                        throw new IOException(
+                                "Failed to fix up tile at " + tile.x() + "," + tile.y() + "," + tile.z(),
+                                e.getCause()
+                        );
+                    }
+                }
+            }
         }
 
         // entities
@@ -422,4 +459,11 @@ public void close() throws IOException {
         inputStream.close();
     }
 
+    /**
+     * A tile read from the schematic, while its data is fixed up.
+     */
+    private record PendingTile(int x, int y, int z, Future<CompoundTag> tag) {
+
+    }
+
 }
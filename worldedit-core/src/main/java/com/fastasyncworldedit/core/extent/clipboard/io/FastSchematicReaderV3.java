@@ -1,5 +1,6 @@
 package com.fastasyncworldedit.core.extent.clipboard.io;
 
+import com.fastasyncworldedit.core.extent.clipboard.DiskOptimizedClipboard;
 import com.fastasyncworldedit.core.extent.clipboard.LinearClipboard;
 import com.fastasyncworldedit.core.extent.clipboard.SimpleClipboard;
 import com.fastasyncworldedit.core.internal.io.ResettableFileInputStream;
@@ -54,12 +55,16 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
@@ -80,6 +85,8 @@ public class FastSchematicReaderV3 implements ClipboardReader {
     private static final byte CACHE_IDENTIFIER_BIOMES = 0x02;
     private static final byte CACHE_IDENTIFIER_ENTITIES = 0x03;
     private static final byte CACHE_IDENTIFIER_BLOCK_TILE_ENTITIES = 0x04;
+    // Entity containers are fixed up on the fork join pool if there are at least this many
+    private static final int MIN_CONCURRENT_FIXES = 64;
 
     private final InputStream parentStream;
     private final MutableBlockVector3 dimensions = MutableBlockVector3.at(0, 0, 0);
@@ -102,6 +109,10 @@ public class FastSchematicReaderV3 implements ClipboardReader {
     private byte[] paletteCache;
     private OutputStream dataCacheWriter;
     private OutputStream paletteCacheWriter;
+    // Set if the block data came before the block palette and was stored as palette indices in a disk clipboard
+    private boolean blockDataStaged;
+    // Set if blocks may be written to the clipboard from several threads, see ParallelPaletteDecoder
+    private boolean parallelBlockWrites;
 
 
     public FastSchematicReaderV3(@NonNull InputStream stream) {
@@ -176,6 +187,7 @@ public Clipboard read(final UUID uuid, final Function<BlockVector3, Clipboard> c
             }
             if (clipboard == null && this.areDimensionsAvailable()) {
                 clipboard = createOutput.apply(this.dimensions);
+                this.parallelBlockWrites = ParallelPaletteDecoder.supportsParallelWrites(clipboard);
             }
         }
 
@@ -191,6 +203,9 @@ public Clipboard read(final UUID uuid, final Function<BlockVector3, Clipboard> c
         } else if (this.dataCacheWriter != null || this.paletteCacheWriter != null) {
             readRemainingDataCache(clipboard);
         }
+        if (this.blockDataStaged) {
+            this.remapStagedBlockData((DiskOptimizedClipboard) clipboard);
+        }
 
         clipboard.setOrigin(this.offset.multiply(-1));
         if (clipboard instanceof SimpleClipboard simpleClipboard && !this.offset.equals(BlockVector3.ZERO)) {
@@ -239,8 +254,9 @@ private void readRemainingDataCache(Clipboard clipboard) throws IOException {
              final NBTInputStream cacheNbtIn = new NBTInputStream(cacheStream)) {
             while ((identifier = cacheStream.readByte()) != CACHE_IDENTIFIER_END) {
                 switch (identifier) {
-                    case CACHE_IDENTIFIER_BLOCK -> this.readPaletteData(cacheStream, this.getBlockWriter(clipboard));
-                    case CACHE_IDENTIFIER_BIOMES -> this.readPaletteData(cacheStream, this.getBiomeWriter(clipboard));
+                    case CACHE_IDENTIFIER_BLOCK ->
+                            this.readPaletteData(cacheStream, this.getBlockWriter(clipboard), this.parallelBlockWrites);
+                    case CACHE_IDENTIFIER_BIOMES -> this.readPaletteData(cacheStream, this.getBiomeWriter(clipboard), false);
                     case CACHE_IDENTIFIER_ENTITIES -> {
                         cacheStream.skipNBytes(1); // list child type (TAG_Compound)
                         this.readEntityContainers(
@@ -321,6 +337,7 @@ private void readBlocks(Clipboard target) throws IOException {
                 () -> this.blockPalette[0] != null,
                 this.provideBlockPaletteInitializer(),
                 this.getBlockWriter(target),
+                target instanceof DiskOptimizedClipboard disk ? disk::setOrdinal : null,
                 (type, tag) -> {
                     if (!tag.equals("BlockEntities")) {
                         try {
@@ -347,6 +364,7 @@ private void readBiomes(Clipboard target) throws IOException {
                 () -> this.biomePalette[0] != null,
                 this.provideBiomePaletteInitializer(),
                 this.getBiomeWriter(target),
+                null,
                 (type, tag) -> {
                     try {
                         this.nbtInputStream.readTagPayloadLazy(type, 0);
@@ -414,6 +432,8 @@ private void readEntityContainers(
         String id;
         byte type;
         int count = stream.readInt();
+        // Fixing up is the expensive part, so it runs on the fork join pool while the following entries are read
+        List<PendingEntity> pending = this.dataFixer.isActive() && count >= MIN_CONCURRENT_FIXES ? new ArrayList<>(count) : null;
         while (count-- > 0) {
             x = -1;
             y = -1;
@@ -473,6 +493,12 @@ private void readEntityContainers(
                 continue;
             }
             tag = tag.toBuilder().putString("id", id).remove("Id").build();
+            if (pending != null) {
+                final LinCompoundTag unfixed = tag;
+                pending.add(new PendingEntity(x, y, z, id, ParallelPaletteDecoder.executor()
+                        .submit(() -> this.dataFixer.fixUp(fixType, unfixed))));
+                continue;
+            }
             tag = this.dataFixer.fixUp(fixType, tag);
             if (tag == null) {
                 LOGGER.warn("Failed to fix-up entity for {} @ {},{},{} - skipping", id, x, y, z);
@@ -480,6 +506,27 @@ private void readEntityContainers(
             }
             transformer.transform(x, y, z, id, tag);
         }
+        if (pending == null) {
+            return;
+        }
+        for (PendingEntity entity : pending) {
+            try {
+                tag = entity.tag().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while fixing up entities", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to fix-up entity " + entity.id(), e.getCause());
+            }
+            if (tag == null) {
+                LOGGER.warn(
+                        "Failed to fix-up entity for {} @ {},{},{} - skipping",
+                        entity.id(), entity.x(), entity.y(), entity.z()
+                );
+                continue;
+            }
+            transformer.transform(entity.x(), entity.y(), entity.z(), entity.id(), tag);
+        }
     }
 
     /**
@@ -488,6 +535,8 @@ private void readEntityContainers(
      *
      * @param paletteInitializer Invoked for each 'Palette' entry using the actual palette value (e.g. block state) + index
      * @param paletteDataApplier Invoked for each 'Data' entry using the data index and the palette index at the data index
+     * @param stagingApplier     If not {@code null}, invoked instead of the paletteDataApplier when the 'Data' entries come
+     *                           before the palette, to store the palette indices in the clipboard until the palette is known
      */
     private void readPalette(
             boolean hasClipboard,
@@ -495,9 +544,11 @@ private void readPalette(
             BooleanSupplier paletteAlreadyInitialized,
             PaletteInitializer paletteInitializer,
             PaletteDataApplier paletteDataApplier,
+            @Nullable PaletteDataApplier stagingApplier,
             AdditionalTagConsumer additionalTag
     ) throws IOException {
         boolean hasPalette = paletteAlreadyInitialized.getAsBoolean();
+        boolean parallel = paletteType == CACHE_IDENTIFIER_BLOCK && this.parallelBlockWrites;
         byte type;
         String tag;
         while ((type = this.dataInputStream.readByte()) != NBTConstants.TYPE_END) {
@@ -525,6 +576,13 @@ private void readPalette(
                 continue;
             }
             if (tag.equals("Data")) {
+                if (!hasPalette && hasClipboard && stagingApplier != null) {
+                    // Palette not yet available - store the palette indices in the clipboard and map them afterwards,
+                    // instead of caching or skipping the whole data
+                    this.readPaletteData(this.dataInputStream, stagingApplier, parallel);
+                    this.blockDataStaged = true;
+                    continue;
+                }
                 // No palette or dimensions are yet available
                 if (!hasPalette || this.dataFixer == null || !hasClipboard) {
                     if (this.supportsReset()) {
@@ -540,15 +598,27 @@ private void readPalette(
                     IOUtil.copy(this.dataInputStream, cacheWriter, byteLen);
                     continue;
                 }
-                this.readPaletteData(this.dataInputStream, paletteDataApplier);
+                this.readPaletteData(this.dataInputStream, paletteDataApplier, parallel);
+                if (stagingApplier != null) {
+                    this.blockDataStaged = false;
+                }
                 continue;
             }
             additionalTag.accept(type, tag);
         }
     }
 
-    private void readPaletteData(DataInputStream stream, PaletteDataApplier applier) throws IOException {
+    /**
+     * Reads the 'Data' byte array and passes each entry to the applier.
+     *
+     * @param parallel if the entries of large data may be decoded and applied by several threads at once
+     */
+    private void readPaletteData(DataInputStream stream, PaletteDataApplier applier, boolean parallel) throws IOException {
         int length = stream.readInt();
+        if (parallel && length >= ParallelPaletteDecoder.MIN_PARALLEL_LENGTH) {
+            ParallelPaletteDecoder.decode(stream, length, needsVarIntReading(length), applier::apply);
+            return;
+        }
         // Write data into clipboard
         int i = 0;
         if (needsVarIntReading(length)) {
@@ -585,6 +655,27 @@ private boolean readPaletteMap(DataInputStream stream, PaletteInitializer initia
         return true;
     }
 
+    /**
+     * Maps the palette indices stored in the clipboard by the staging applier (see
+     * {@link #readPalette(boolean, byte, BooleanSupplier, PaletteInitializer, PaletteDataApplier, PaletteDataApplier,
+     * AdditionalTagConsumer)}) to the block states of the now available palette.
+     *
+     * @param clipboard The clipboard containing the palette indices.
+     * @throws IOException if the palette was not found.
+     */
+    private void remapStagedBlockData(DiskOptimizedClipboard clipboard) throws IOException {
+        if (this.blockPalette == null || this.blockPalette[0] == null) {
+            throw new IOException("Invalid schematic - missing block palette");
+        }
+        char[] mapping = new char[this.blockPalette.length];
+        for (int i = 0; i < mapping.length; i++) {
+            BlockState state = this.blockPalette[i];
+            mapping[i] = state == null ? BlockTypesCache.ReservedIDs.AIR : state.getOrdinalChar();
+        }
+        clipboard.remapOrdinals(mapping);
+        this.blockDataStaged = false;
+    }
+
     private void indexToPosition(int index, PositionConsumer supplier) {
         int y = index / (dimensions.x() * dimensions.z());
         int remainder = index - (y * dimensions.x() * dimensions.z());
@@ -763,6 +854,13 @@ private static void skipHeader(DataInputStream dataInputStream) throws IOExcepti
         dataInputStream.skipNBytes(1 + 2 + 9); // as above + 9 bytes = "Schematic"
     }
 
+    /**
+     * An entity container read from the stream, while its data is fixed up.
+     */
+    private record PendingEntity(double x, double y, double z, String id, Future<LinCompoundTag> tag) {
+
+    }
+
     @ApiStatus.Internal
     @FunctionalInterface
     private interface PositionConsumer {
@@ -1,5 +1,6 @@
 package com.fastasyncworldedit.core.extent.clipboard.io;
 
+import com.fastasyncworldedit.core.extent.clipboard.LinearClipboard;
 import com.fastasyncworldedit.core.function.visitor.Order;
 import com.fastasyncworldedit.core.util.IOUtil;
 import com.sk89q.jnbt.CompoundTag;
@@ -10,26 +11,29 @@
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.extension.platform.Capability;
 import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardWriter;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.biome.BiomeType;
-import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockTypesCache;
 import net.jpountz.lz4.LZ4BlockInputStream;
 import net.jpountz.lz4.LZ4BlockOutputStream;
 import org.enginehub.linbus.tree.LinCompoundTag;
 
+import javax.annotation.Nullable;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 
 /**
@@ -117,8 +121,16 @@ private void writeBlocks(NBTOutputStream blocks, Clipboard clipboard) throws IOE
             this.writePalette(
                     blocks,
                     BlockTypesCache.states.length,
-                    pos -> {
-                        BaseBlock block = pos.getFullBlock(clipboard);
+                    pos -> pos.getFullBlock(clipboard),
+                    block -> {
+                        char ordinal = block.getOrdinalChar();
+                        if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+                            ordinal = BlockTypesCache.ReservedIDs.AIR;
+                        }
+                        return ordinal;
+                    },
+                    BlockStateHolder::getAsString,
+                    (pos, block) -> {
                         LinCompoundTag tag;
                         if ((tag = block.getNbt()) != null) {
                             tiles[0]++;
@@ -136,16 +148,7 @@ private void writeBlocks(NBTOutputStream blocks, Clipboard clipboard) throws IOE
                                 throw new RuntimeException("Failed to write tile data", e);
                             }
                         }
-                        return block.toImmutableState();
-                    },
-                    block -> {
-                        char ordinal = block.getOrdinalChar();
-                        if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
-                            ordinal = BlockTypesCache.ReservedIDs.AIR;
-                        }
-                        return ordinal;
                     },
-                    BlockStateHolder::getAsString,
                     clipboard
             );
             lz4Stream.finish();
@@ -169,6 +172,7 @@ private void writeBiomes(NBTOutputStream biomes, Clipboard clipboard) throws IOE
                 pos -> pos.getBiome(clipboard),
                 biome -> (char) biome.getInternalId(),
                 BiomeType::id,
+                null,
                 clipboard
         );
     }
@@ -214,16 +218,31 @@ private void writeEntity(NBTOutputStream out, Clipboard clipboard, Entity entity
         out.write(NBTConstants.TYPE_END); // End the compound
     }
 
+    /**
+     * Write the palette and the data of the clipboard. If the contents of the clipboard can not change while it is
+     * written, the data is streamed to the output in a second pass over the clipboard, after the palette was collected
+     * and written in the first. Otherwise, the data is buffered while the palette is written.
+     *
+     * @param dataVisitor invoked once for each position and its object while the data is written
+     */
     private <T> void writePalette(
             NBTOutputStream out, int capacity,
             Function<BlockVector3, T> objectResolver,
             Function<T, Character> ordinalResolver,
             Function<T, String> paletteEntryResolver,
+            @Nullable BiConsumer<BlockVector3, T> dataVisitor,
             Clipboard clipboard
     ) throws IOException {
+        if (supportsStreaming(clipboard)) {
+            this.writePaletteStreaming(
+                    out, capacity, objectResolver, ordinalResolver, paletteEntryResolver, dataVisitor, clipboard
+            );
+            return;
+        }
         int dataBytesUsed = 0;
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        try (LZ4BlockOutputStream dataOut = new LZ4BlockOutputStream(bytes)) {
+        try (LZ4BlockOutputStream lz4Out = new LZ4BlockOutputStream(bytes);
+             DataOutputStream dataOut = new DataOutputStream(lz4Out)) {
             int index = 0;
             char[] palette = new char[capacity];
             Arrays.fill(palette, Character.MAX_VALUE);
@@ -233,6 +252,9 @@ private <T> void writePalette(
             while (iterator.hasNext()) {
                 BlockVector3 pos = iterator.next();
                 T obj = objectResolver.apply(pos);
+                if (dataVisitor != null) {
+                    dataVisitor.accept(pos, obj);
+                }
                 char ordinal = ordinalResolver.apply(obj);
                 char value = palette[ordinal];
                 if (value == Character.MAX_VALUE) {
@@ -242,17 +264,12 @@ private <T> void writePalette(
                     }
                     out.writeNamedTag(paletteEntryResolver.apply(obj), value);
                 }
-                if ((value & -128) != 0) {
-                    dataBytesUsed++;
-                    dataOut.write(value & 127 | 128);
-                    value >>>= 7;
-                }
-                dataOut.write(value);
-                dataBytesUsed++;
+                dataBytesUsed += writeVarInt(dataOut, value);
             }
             // End Palette tag
             out.write(NBTConstants.TYPE_END);
-            dataOut.finish();
+            dataOut.flush();
+            lz4Out.finish();
         } finally {
             // Write Data tag
             if (dataBytesUsed > 0) {
@@ -265,6 +282,84 @@ private <T> void writePalette(
         }
     }
 
+    private <T> void writePaletteStreaming(
+            NBTOutputStream out, int capacity,
+            Function<BlockVector3, T> objectResolver,
+            Function<T, Character> ordinalResolver,
+            Function<T, String> paletteEntryResolver,
+            @Nullable BiConsumer<BlockVector3, T> dataVisitor,
+            Clipboard clipboard
+    ) throws IOException {
+        int index = 0;
+        long dataBytes = 0;
+        char[] palette = new char[capacity];
+        Arrays.fill(palette, Character.MAX_VALUE);
+        // First pass: write the palette and measure the data
+        out.writeNamedTagName("Palette", NBTConstants.TYPE_COMPOUND);
+        Iterator<BlockVector3> iterator = clipboard.iterator(Order.YZX);
+        while (iterator.hasNext()) {
+            T obj = objectResolver.apply(iterator.next());
+            char ordinal = ordinalResolver.apply(obj);
+            char value = palette[ordinal];
+            if (value == Character.MAX_VALUE) {
+                palette[ordinal] = value = (char) index++;
+                if (index >= palette.length) {
+                    throw new IOException("insufficient palette capacity: " + palette.length + ", index: " + index);
+                }
+                out.writeNamedTag(paletteEntryResolver.apply(obj), value);
+            }
+            dataBytes += varIntSize(value);
+        }
+        out.write(NBTConstants.TYPE_END);
+        if (dataBytes == 0) {
+            return;
+        }
+        if (dataBytes > Integer.MAX_VALUE) {
+            throw new IOException("Data too large for a byte array tag: " + dataBytes + " bytes");
+        }
+        // Second pass: write the data straight to the output
+        out.writeNamedTagName("Data", NBTConstants.TYPE_BYTE_ARRAY);
+        out.writeInt((int) dataBytes);
+        iterator = clipboard.iterator(Order.YZX);
+        while (iterator.hasNext()) {
+            BlockVector3 pos = iterator.next();
+            T obj = objectResolver.apply(pos);
+            if (dataVisitor != null) {
+                dataVisitor.accept(pos, obj);
+            }
+            char value = palette[ordinalResolver.apply(obj)];
+            if (value == Character.MAX_VALUE) {
+                throw new IOException("Clipboard changed while it was written at " + pos);
+            }
+            writeVarInt(out, value);
+        }
+    }
+
+    /**
+     * {@return if the contents of the clipboard can not change while it is written, so it can be iterated twice}
+     */
+    private static boolean supportsStreaming(Clipboard clipboard) {
+        if (clipboard instanceof BlockArrayClipboard blockArrayClipboard) {
+            clipboard = blockArrayClipboard.getParent();
+        }
+        return clipboard instanceof LinearClipboard;
+    }
+
+    private static int writeVarInt(DataOutput out, int value) throws IOException {
+        int bytes = 1;
+        while ((value & -128) != 0) {
+            out.write(value & 127 | 128);
+            value >>>= 7;
+            bytes++;
+        }
+        out.write(value);
+        return bytes;
+    }
+
+    private static int varIntSize(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : 3;
+    }
+
     private void writeMetadata(NBTOutputStream metadata, Clipboard clipboard) throws IOException {
         metadata.writeNamedTag("Date", System.currentTimeMillis());
         metadata.writeLazyCompoundTag("WorldEdit", out -> {
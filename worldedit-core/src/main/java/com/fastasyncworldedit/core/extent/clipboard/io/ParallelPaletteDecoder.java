@@ -0,0 +1,161 @@
+package com.fastasyncworldedit.core.extent.clipboard.io;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.extent.clipboard.CPUOptimizedClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.DiskOptimizedClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.TiledDiskClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes the palette indices of schematic data on the primary fork join pool. The calling thread reads (and thereby
+ * decompresses) the data in segments ending at var-int boundaries, counts the entries of each segment and hands it to a
+ * worker, which decodes it and applies the entries to their disjoint range of indices.
+ */
+final class ParallelPaletteDecoder {
+
+    /**
+     * Data shorter than this many bytes is decoded on the calling thread.
+     */
+    static final int MIN_PARALLEL_LENGTH = 1 << 20;
+    private static final int SEGMENT_SIZE = 1 << 18;
+    // a var-int of a char takes at most 3 bytes, so a segment is extended by at most 2 bytes to end at a boundary
+    private static final int MAX_VAR_INT_OVERHANG = 2;
+
+    private ParallelPaletteDecoder() {
+    }
+
+    /**
+     * {@return if blocks may be set at different indices of the clipboard from several threads at once}
+     *
+     * @param clipboard the clipboard
+     */
+    static boolean supportsParallelWrites(Clipboard clipboard) {
+        return clipboard instanceof CPUOptimizedClipboard || clipboard instanceof DiskOptimizedClipboard
+                || clipboard instanceof TiledDiskClipboard;
+    }
+
+    /**
+     * Decode the entries of the data.
+     *
+     * @param in       the input, positioned at the start of the data
+     * @param length   the length of the data in bytes
+     * @param varInt   if the entries are var-ints, otherwise each byte is an entry
+     * @param consumer called with the index and value of each entry, from several threads for different indices
+     * @throws IOException on I/O error
+     */
+    static void decode(DataInput in, int length, boolean varInt, EntryConsumer consumer) throws IOException {
+        ExecutorService pool = executor();
+        int maxPending = Math.max(1, Settings.settings().QUEUE.PARALLEL_THREADS) * 2;
+        ArrayDeque<Future<?>> pending = new ArrayDeque<>(maxPending);
+        int index = 0;
+        int remaining = length;
+        try {
+            while (remaining > 0) {
+                int size = Math.min(SEGMENT_SIZE, remaining);
+                byte[] segment = new byte[size + MAX_VAR_INT_OVERHANG];
+                in.readFully(segment, 0, size);
+                remaining -= size;
+                int count = size;
+                if (varInt) {
+                    while ((segment[size - 1] & 0x80) != 0 && remaining > 0) {
+                        if (size == segment.length) {
+                            throw new IOException("Invalid var-int in schematic data at byte " + (length - remaining));
+                        }
+                        segment[size++] = in.readByte();
+                        remaining--;
+                    }
+                    count = countVarInts(segment, size);
+                }
+                final int start = index;
+                final int end = size;
+                pending.add(pool.submit(() -> decodeSegment(segment, end, start, varInt, consumer)));
+                index += count;
+                if (pending.size() >= maxPending) {
+                    await(pending.poll());
+                }
+            }
+            while (!pending.isEmpty()) {
+                await(pending.poll());
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+        }
+    }
+
+    /**
+     * {@return the primary fork join pool, or the common pool if FAWE is not running, e.g. in tests or standalone tools}
+     */
+    static ExecutorService executor() {
+        final Fawe fawe = Fawe.instance();
+        return fawe != null ? fawe.getQueueHandler().getForkJoinPoolPrimary() : ForkJoinPool.commonPool();
+    }
+
+    private static int countVarInts(byte[] data, int size) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if ((data[i] & 0x80) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void decodeSegment(byte[] data, int size, int index, boolean varInt, EntryConsumer consumer) {
+        if (!varInt) {
+            for (int i = 0; i < size; i++) {
+                consumer.accept(index++, (char) (data[i] & 0xFF));
+            }
+            return;
+        }
+        int value = 0;
+        int shift = 0;
+        for (int i = 0; i < size; i++) {
+            byte b = data[i];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                consumer.accept(index++, (char) value);
+                value = 0;
+                shift = 0;
+            } else {
+                shift += 7;
+            }
+        }
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while decoding schematic data", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to decode schematic data", e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+
+        /**
+         * Called for each entry of the data.
+         *
+         * @param index the index of the entry
+         * @param value the value of the entry, i.e. the palette index
+         */
+        void accept(int index, char value);
+
+    }
+
+}
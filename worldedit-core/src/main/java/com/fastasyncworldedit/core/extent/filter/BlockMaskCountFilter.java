@@ -0,0 +1,85 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.function.mask.ABlockMask;
+import com.fastasyncworldedit.core.internal.simd.SimdSupport;
+import com.fastasyncworldedit.core.internal.simd.VectorFacade;
+import com.fastasyncworldedit.core.internal.simd.VectorizedFilter;
+import com.fastasyncworldedit.core.internal.simd.VectorizedMask;
+import com.fastasyncworldedit.core.queue.BlockCountingFilter;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import jdk.incubator.vector.VectorMask;
+
+import javax.annotation.Nullable;
+
+/**
+ * Counts the blocks matching a block mask. Fully covered sections are counted in bulk, see {@link BlockCountingFilter},
+ * while partially covered sections are compared block by block, or vector by vector if the vector API is used.
+ */
+public class BlockMaskCountFilter extends ForkedFilter<BlockMaskCountFilter> implements VectorizedFilter,
+        BlockCountingFilter {
+
+    private final boolean[] table;
+    @Nullable
+    private final VectorizedMask vectorizedMask;
+    private long total;
+
+    public BlockMaskCountFilter(ABlockMask mask) {
+        super(null);
+        this.table = mask.toOrdinalTable();
+        this.vectorizedMask = SimdSupport.vectorizedTargetMask(mask);
+    }
+
+    private BlockMaskCountFilter(BlockMaskCountFilter root) {
+        super(root);
+        this.table = root.table;
+        this.vectorizedMask = root.vectorizedMask;
+    }
+
+    @Override
+    public BlockMaskCountFilter init() {
+        return new BlockMaskCountFilter(this);
+    }
+
+    @Override
+    public void join(BlockMaskCountFilter filter) {
+        this.total += filter.getLongTotal();
+    }
+
+    @Override
+    public final void applyBlock(FilterBlock block) {
+        if (table[block.getOrdinal()]) {
+            total++;
+        }
+    }
+
+    @Override
+    public final void add(char ordinal, int count) {
+        if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
+            ordinal = BlockTypesCache.ReservedIDs.AIR;
+        }
+        if (table[ordinal]) {
+            total += count;
+        }
+    }
+
+    @Override
+    public void applyVector(final VectorFacade get, final VectorFacade set, final VectorMask<Short> mask) {
+        // only called if the vector API is used, in which case every block mask is vectorized
+        total += mask.and(vectorizedMask.compareVector(set, get, mask.vectorSpecies())).trueCount();
+    }
+
+    /**
+     * Get the number of blocks counted. Counts beyond {@link Integer#MAX_VALUE} are capped.
+     *
+     * @return the number of blocks
+     */
+    public int getTotal() {
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    public long getLongTotal() {
+        return total;
+    }
+
+}
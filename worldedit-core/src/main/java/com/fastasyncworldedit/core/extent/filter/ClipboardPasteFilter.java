@@ -0,0 +1,345 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.clipboard.LinearClipboard;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import org.jetbrains.annotations.VisibleForTesting;
+
+import javax.annotation.Nullable;
+
+/**
+ * Pastes a {@link LinearClipboard} into the chunks of a queue by copying its rows into the block sections to be set,
+ * instead of reading, transforming and setting every block on its own. Sections covered entirely are set as a whole.
+ * <p>
+ * Only transforms {@link #supports(Transform) mapping the horizontal axes onto each other} are supported, i.e.
+ * rotations around the y-axis by multiples of 90 degrees and flips.
+ */
+public class ClipboardPasteFilter extends ForkedFilter<ClipboardPasteFilter> {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte PLAIN = 1;
+    private static final byte CONTAINER = 2;
+
+    private final LinearClipboard clipboard;
+    private final BlockVector3 from;
+    private final BlockVector3 to;
+    @Nullable
+    private final Transform transform;
+    private final boolean pasteAir;
+    private final boolean pasteBiomes;
+    private final CuboidRegion destination;
+    // The horizontal part of the transform, mapping offsets in the clipboard to offsets in the world. Its transpose is
+    // its inverse.
+    private final int xx;
+    private final int xz;
+    private final int zx;
+    private final int zz;
+    private final char[] row = new char[16];
+    @Nullable
+    private char[] remap;
+    @Nullable
+    private byte[] containers;
+    private long affected;
+
+    /**
+     * Create a new filter.
+     *
+     * @param clipboard   the clipboard to paste
+     * @param from        the position in the clipboard, relative to its minimum, which is pasted at {@code to}
+     * @param to          the position to paste at
+     * @param transform   the transform to apply, or {@code null} for none
+     * @param pasteAir    if air should be pasted
+     * @param pasteBiomes if biomes should be pasted
+     * @throws IllegalArgumentException if the transform is not supported
+     */
+    public ClipboardPasteFilter(
+            LinearClipboard clipboard, BlockVector3 from, BlockVector3 to, @Nullable Transform transform,
+            boolean pasteAir, boolean pasteBiomes
+    ) {
+        super(null);
+        if (transform != null && transform.isIdentity()) {
+            transform = null;
+        }
+        if (transform != null && !supports(transform)) {
+            throw new IllegalArgumentException("Unsupported transform " + transform);
+        }
+        this.clipboard = clipboard;
+        this.from = from;
+        this.to = to;
+        this.transform = transform;
+        this.pasteAir = pasteAir;
+        this.pasteBiomes = pasteBiomes;
+        if (transform == null) {
+            this.xx = this.zz = 1;
+            this.xz = this.zx = 0;
+        } else {
+            double[] c = ((AffineTransform) transform).coefficients();
+            this.xx = (int) c[0];
+            this.xz = (int) c[2];
+            this.zx = (int) c[8];
+            this.zz = (int) c[10];
+        }
+        BlockVector3 max = clipboard.getDimensions().subtract(BlockVector3.ONE);
+        this.destination = new CuboidRegion(toWorld(BlockVector3.ZERO), toWorld(max));
+    }
+
+    private ClipboardPasteFilter(ClipboardPasteFilter root) {
+        super(root);
+        this.clipboard = root.clipboard;
+        this.from = root.from;
+        this.to = root.to;
+        this.transform = root.transform;
+        this.pasteAir = root.pasteAir;
+        this.pasteBiomes = root.pasteBiomes;
+        this.destination = root.destination;
+        this.xx = root.xx;
+        this.xz = root.xz;
+        this.zx = root.zx;
+        this.zz = root.zz;
+    }
+
+    /**
+     * {@return if the filter can paste with the transform} This is the case for affine transforms mapping the x- and
+     * z-axis onto each other, keeping the y-axis and without translation.
+     *
+     * @param transform the transform
+     */
+    public static boolean supports(Transform transform) {
+        if (transform.isIdentity()) {
+            return true;
+        }
+        if (!(transform instanceof AffineTransform affine) || affine.isOffAxis()) {
+            return false;
+        }
+        double[] c = affine.coefficients();
+        return c[1] == 0 && c[3] == 0 && c[4] == 0 && c[5] == 1 && c[6] == 0 && c[7] == 0 && c[9] == 0 && c[11] == 0
+                && c[0] * c[10] - c[2] * c[8] != 0;
+    }
+
+    /**
+     * {@return the region pasted into}
+     */
+    public Region getRegion() {
+        return destination;
+    }
+
+    /**
+     * {@return the number of blocks pasted}
+     */
+    public long getAffected() {
+        return affected;
+    }
+
+    @Override
+    public ClipboardPasteFilter init() {
+        return new ClipboardPasteFilter(this);
+    }
+
+    @Override
+    public void join(ClipboardPasteFilter filter) {
+        this.affected += filter.affected;
+    }
+
+    private BlockVector3 toWorld(BlockVector3 local) {
+        int dx = local.x() - from.x();
+        int dz = local.z() - from.z();
+        return BlockVector3.at(
+                to.x() + xx * dx + xz * dz,
+                to.y() + local.y() - from.y(),
+                to.z() + zx * dx + zz * dz
+        );
+    }
+
+    @Override
+    public <T extends IChunk> T applyChunk(T chunk, @Nullable Region region) {
+        BlockVector3 min = destination.getMinimumPoint();
+        BlockVector3 max = destination.getMaximumPoint();
+        int bx = chunk.getX() << 4;
+        int bz = chunk.getZ() << 4;
+        int minX = Math.max(bx, min.x());
+        int maxX = Math.min(bx + 15, max.x());
+        int minZ = Math.max(bz, min.z());
+        int maxZ = Math.min(bz + 15, max.z());
+        int minY = Math.max(chunk.getMinY(), min.y());
+        int maxY = Math.min(chunk.getMaxY(), max.y());
+        if (minX > maxX || minZ > maxZ || minY > maxY) {
+            return null;
+        }
+        boolean columns = minX == bx && maxX == bx + 15 && minZ == bz && maxZ == bz + 15;
+        for (int layer = minY >> 4; layer <= maxY >> 4; layer++) {
+            int y0 = Math.max(minY, layer << 4);
+            int y1 = Math.min(maxY, (layer << 4) + 15);
+            boolean whole = pasteAir && columns && y1 - y0 == 15;
+            char[] section = whole ? new char[4096] : chunk.loadSet(layer);
+            if (section == null) {
+                continue;
+            }
+            boolean tiles = false;
+            for (int y = y0; y <= y1; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    tiles |= pasteRow(section, (y & 15) << 8 | (z & 15) << 4 | (minX & 15), minX, maxX - minX + 1, y, z);
+                }
+            }
+            if (whole) {
+                chunk.setBlocks(layer, section);
+            }
+            if (tiles) {
+                pasteTiles(chunk, section, minX, maxX, y0, y1, minZ, maxZ);
+            }
+            if (pasteBiomes) {
+                pasteBiomes(chunk, minX, maxX, y0, y1, minZ, maxZ);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Paste a row of blocks along the x-axis into the section, returning if any of them may have a tile entity.
+     */
+    private boolean pasteRow(char[] section, int index, int x, int length, int y, int z) {
+        int dx = x - to.x();
+        int dz = z - to.z();
+        int sx = from.x() + xx * dx + zx * dz;
+        int sy = from.y() + y - to.y();
+        int sz = from.z() + xz * dx + zz * dz;
+        char[] buffer;
+        int start = 0;
+        int step = 1;
+        if (xz == 0) {
+            if (transform == null && pasteAir) {
+                // The rows of the clipboard are the rows of the section
+                clipboard.getOrdinals(sx, sy, sz, section, index, length);
+                affected += length;
+                return hasContainer(section, index, length);
+            }
+            buffer = row;
+            if (xx < 0) {
+                clipboard.getOrdinals(sx - length + 1, sy, sz, buffer, 0, length);
+                start = length - 1;
+                step = -1;
+            } else {
+                clipboard.getOrdinals(sx, sy, sz, buffer, 0, length);
+            }
+        } else {
+            // The row is a column of the clipboard
+            buffer = row;
+            for (int i = 0; i < length; i++) {
+                buffer[i] = clipboard.getOrdinal(sx, sy, sz + i * xz);
+            }
+        }
+        boolean tiles = false;
+        for (int i = 0, j = start; i < length; i++, j += step) {
+            char ordinal = buffer[j];
+            if (ordinal <= BlockTypesCache.ReservedIDs.VOID_AIR && (!pasteAir
+                    || ordinal == BlockTypesCache.ReservedIDs.__RESERVED__)) {
+                continue;
+            }
+            if (transform != null) {
+                ordinal = transformed(ordinal);
+            }
+            section[index + i] = ordinal;
+            tiles |= isContainer(ordinal);
+            affected++;
+        }
+        return tiles;
+    }
+
+    private void pasteTiles(IChunk chunk, char[] section, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (!isContainer(section[(y & 15) << 8 | (z & 15) << 4 | (x & 15)])) {
+                        continue;
+                    }
+                    int dx = x - to.x();
+                    int dz = z - to.z();
+                    BaseBlock block = clipboard.getFullBlock(
+                            from.x() + xx * dx + zx * dz,
+                            from.y() + y - to.y(),
+                            from.z() + xz * dx + zz * dz
+                    );
+                    if (!block.hasNbtData()) {
+                        continue;
+                    }
+                    if (transform != null) {
+                        block = BlockTransformExtent.transform(block, transform);
+                    }
+                    block.applyTileEntity(chunk, x & 15, y, z & 15);
+                }
+            }
+        }
+    }
+
+    private void pasteBiomes(IChunk chunk, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        // Biomes are stored per 4x4x4 cell, so set them once per cell
+        for (int y = minY; y <= maxY; y = (y | 3) + 1) {
+            for (int z = minZ; z <= maxZ; z = (z | 3) + 1) {
+                for (int x = minX; x <= maxX; x = (x | 3) + 1) {
+                    int dx = x - to.x();
+                    int dz = z - to.z();
+                    BiomeType biome = clipboard.getBiomeType(
+                            from.x() + xx * dx + zx * dz,
+                            from.y() + y - to.y(),
+                            from.z() + xz * dx + zz * dz
+                    );
+                    if (biome != null) {
+                        chunk.setBiome(x & 15, y, z & 15, biome);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * {@return the ordinal of the block state transformed by the transform of this filter}
+     *
+     * @param ordinal the ordinal of the block state
+     */
+    @VisibleForTesting
+    char transformed(char ordinal) {
+        if (remap == null) {
+            remap = new char[BlockTypesCache.states.length];
+        }
+        char result = remap[ordinal];
+        if (result == 0) {
+            result = BlockTransformExtent.transform(BlockTypesCache.states[ordinal], transform).getOrdinalChar();
+            remap[ordinal] = result;
+        }
+        return result;
+    }
+
+    private boolean hasContainer(char[] ordinals, int index, int length) {
+        boolean result = false;
+        for (int i = index; i < index + length; i++) {
+            result |= isContainer(ordinals[i]);
+        }
+        return result;
+    }
+
+    /**
+     * {@return if the block state may have a tile entity}
+     *
+     * @param ordinal the ordinal of the block state
+     */
+    @VisibleForTesting
+    boolean isContainer(char ordinal) {
+        if (containers == null) {
+            containers = new byte[BlockTypesCache.states.length];
+        }
+        byte container = containers[ordinal];
+        if (container == UNKNOWN) {
+            container = BlockTypesCache.states[ordinal].getMaterial().hasContainer() ? CONTAINER : PLAIN;
+            containers[ordinal] = container;
+        }
+        return container == CONTAINER;
+    }
+
+}
@@ -3,11 +3,12 @@
 import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 import com.fastasyncworldedit.core.internal.simd.VectorFacade;
 import com.fastasyncworldedit.core.internal.simd.VectorizedFilter;
+import com.fastasyncworldedit.core.queue.BlockCountingFilter;
 import jdk.incubator.vector.VectorMask;
 
-public class CountFilter extends ForkedFilter<CountFilter> implements VectorizedFilter {
+public class CountFilter extends ForkedFilter<CountFilter> implements VectorizedFilter, BlockCountingFilter {
 
-    private int total;
+    private long total;
 
     public CountFilter() {
         super(null);
@@ -24,7 +25,7 @@ public CountFilter init() {
 
     @Override
     public void join(CountFilter filter) {
-        this.total += filter.getTotal();
+        this.total += filter.getLongTotal();
     }
 
     @Override
@@ -32,7 +33,21 @@ public final void applyBlock(FilterBlock block) {
         total++;
     }
 
+    @Override
+    public final void add(char ordinal, int count) {
+        total += count;
+    }
+
+    /**
+     * Get the number of blocks counted. Counts beyond {@link Integer#MAX_VALUE} are capped.
+     *
+     * @return the number of blocks
+     */
     public int getTotal() {
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    public long getLongTotal() {
         return total;
     }
 
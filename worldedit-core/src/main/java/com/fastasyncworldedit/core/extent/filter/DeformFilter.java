@@ -0,0 +1,85 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+
+/**
+ * Deforms a region by an expression with the provided slots {@code x}, {@code y} and {@code z}: each block is set to
+ * the block at the position the variables hold after the evaluation.
+ * <p>
+ * When filtering the chunks of a queue, the blocks are read from the world as it was before the deform.
+ */
+public class DeformFilter extends ExpressionFilter {
+
+    private final Vector3 zero;
+    private final Vector3 unit;
+    private final Vector3 zero2;
+    private final int minY;
+    private final int maxY;
+    private Extent source;
+
+    /**
+     * Create a new deform filter.
+     *
+     * @param expression the expression, with the provided slots {@code x}, {@code y} and {@code z}
+     * @param timeout    the timeout of a single evaluation in milliseconds
+     * @param zero       the origin of the coordinate system
+     * @param unit       the scale of the coordinate system
+     * @param minY       the minimum y of the world
+     * @param maxY       the maximum y of the world
+     */
+    public DeformFilter(Expression expression, int timeout, Vector3 zero, Vector3 unit, int minY, int maxY) {
+        super(expression, 3, timeout);
+        this.zero = zero;
+        this.unit = unit;
+        this.zero2 = zero.add(0.5, 0.5, 0.5);
+        this.minY = minY;
+        this.maxY = maxY;
+    }
+
+    private DeformFilter(DeformFilter root) {
+        super(root, root.expression.clone());
+        this.zero = root.zero;
+        this.unit = root.unit;
+        this.zero2 = root.zero2;
+        this.minY = root.minY;
+        this.maxY = root.maxY;
+    }
+
+    @Override
+    protected boolean collect(FilterBlock block, int index) {
+        source = block.getExtent();
+        values[0][index] = (block.x() - zero.x()) / unit.x();
+        values[1][index] = (block.y() - zero.y()) / unit.y();
+        values[2][index] = (block.z() - zero.z()) / unit.z();
+        return true;
+    }
+
+    @Override
+    protected BaseBlock getBlock(int index, int x, int y, int z) {
+        int xv = (int) Math.floor(outputs[0][index] * unit.x() + zero2.x());
+        int yv = (int) Math.floor(outputs[1][index] * unit.y() + zero2.y());
+        int zv = (int) Math.floor(outputs[2][index] * unit.z() + zero2.z());
+        BlockState state;
+        if (yv < minY || yv > maxY) {
+            state = BlockTypes.AIR.getDefaultState();
+        } else if (source instanceof IQueueExtent<?> queue) {
+            state = queue.getCachedGet(xv >> 4, zv >> 4).getBlock(xv & 15, yv, zv & 15);
+        } else {
+            state = source.getBlock(xv, yv, zv);
+        }
+        return state.toBaseBlock();
+    }
+
+    @Override
+    public DeformFilter fork() {
+        return new DeformFilter(this);
+    }
+
+}
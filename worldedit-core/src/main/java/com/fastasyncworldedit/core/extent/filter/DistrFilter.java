@@ -2,21 +2,31 @@
 
 import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
 import com.fastasyncworldedit.core.function.mask.ABlockMask;
+import com.fastasyncworldedit.core.queue.BlockCountingFilter;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.util.Countable;
 import com.sk89q.worldedit.util.formatting.text.TextComponent;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.chars.Char2LongMap;
+import it.unimi.dsi.fastutil.chars.Char2LongMaps;
+import it.unimi.dsi.fastutil.chars.Char2LongOpenHashMap;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-public class DistrFilter extends ForkedFilter<DistrFilter> {
+/**
+ * Counts the blocks of each state. Counts are kept in a sparse histogram per fork, and fully covered sections are
+ * counted in bulk, see {@link BlockCountingFilter}.
+ */
+public class DistrFilter extends ForkedFilter<DistrFilter> implements BlockCountingFilter {
 
-    private final int[] counter = new int[BlockTypesCache.states.length];
+    private final Char2LongOpenHashMap counter = new Char2LongOpenHashMap();
+    // consecutive blocks are mostly the same, so count runs before touching the histogram
+    private char run;
+    private long runLength;
 
     public DistrFilter() {
         super(null);
@@ -33,61 +43,112 @@ public DistrFilter init() {
 
     @Override
     public void join(DistrFilter filter) {
-        for (int i = 0; i < filter.counter.length; i++) {
-            this.counter[i] += filter.counter[i];
+        filter.flushRun();
+        for (Char2LongMap.Entry entry : Char2LongMaps.fastIterable(filter.counter)) {
+            this.counter.addTo(entry.getCharKey(), entry.getLongValue());
         }
     }
 
     @Override
     public final void applyBlock(FilterBlock block) {
-        int ordinal = block.getOrdinal();
+        add((char) block.getOrdinal(), 1);
+    }
+
+    @Override
+    public final void add(char ordinal, int count) {
         if (ordinal == BlockTypesCache.ReservedIDs.__RESERVED__) {
             ordinal = BlockTypesCache.ReservedIDs.AIR;
         }
-        counter[ordinal]++;
+        if (ordinal == run) {
+            runLength += count;
+        } else {
+            flushRun();
+            run = ordinal;
+            runLength = count;
+        }
+    }
+
+    private void flushRun() {
+        if (runLength != 0) {
+            counter.addTo(run, runLength);
+            runLength = 0;
+        }
     }
 
+    private static int saturate(long value) {
+        return (int) Math.min(Integer.MAX_VALUE, value);
+    }
+
+    /**
+     * Get the number of blocks matching a mask. Counts beyond {@link Integer#MAX_VALUE} are capped.
+     *
+     * @param mask the mask
+     * @return the number of matching blocks
+     */
     public int getTotal(ABlockMask mask) {
-        int total = 0;
-        for (int i = 0; i < counter.length; i++) {
-            int value = counter[i];
-            if (value != 0 && mask.test(BlockTypesCache.states[i])) {
-                total += value;
+        return saturate(getLongTotal(mask));
+    }
+
+    /**
+     * Get the number of blocks matching a mask.
+     *
+     * @param mask the mask
+     * @return the number of matching blocks
+     */
+    public long getLongTotal(ABlockMask mask) {
+        flushRun();
+        long total = 0;
+        for (Char2LongMap.Entry entry : Char2LongMaps.fastIterable(counter)) {
+            if (mask.test(BlockTypesCache.states[entry.getCharKey()])) {
+                total += entry.getLongValue();
             }
         }
         return total;
     }
 
+    /**
+     * Get the number of blocks counted. Counts beyond {@link Integer#MAX_VALUE} are capped.
+     *
+     * @return the number of blocks
+     */
     public int getTotal() {
-        return Arrays.stream(counter).sum();
+        return saturate(getLongTotal());
+    }
+
+    /**
+     * {@return the number of blocks counted}
+     */
+    public long getLongTotal() {
+        flushRun();
+        long total = 0;
+        for (long value : counter.values()) {
+            total += value;
+        }
+        return total;
     }
 
     public List<Countable<BlockState>> getDistribution() {
-        final List<Countable<BlockState>> distribution = new ArrayList<>();
-        for (int i = 0; i < counter.length; i++) {
-            final int count = counter[i];
-            if (count != 0) {
-                distribution.add(new Countable<>(BlockTypesCache.states[i], count));
-            }
+        flushRun();
+        final List<Countable<BlockState>> distribution = new ArrayList<>(counter.size());
+        for (Char2LongMap.Entry entry : Char2LongMaps.fastIterable(counter)) {
+            distribution.add(new Countable<>(BlockTypesCache.states[entry.getCharKey()], saturate(entry.getLongValue())));
         }
         Collections.sort(distribution);
         return distribution;
     }
 
     public List<Countable<BlockType>> getTypeDistribution() {
+        flushRun();
         final List<Countable<BlockType>> distribution = new ArrayList<>();
-        int[] typeCounter = new int[BlockTypesCache.values.length];
-        for (int i = 0; i < counter.length; i++) {
-            final int count = counter[i];
-            if (count != 0) {
-                BlockState state = BlockTypesCache.states[i];
-                typeCounter[state.getBlockType().getInternalId()] += count;
-            }
+        long[] typeCounter = new long[BlockTypesCache.values.length];
+        for (Char2LongMap.Entry entry : Char2LongMaps.fastIterable(counter)) {
+            BlockState state = BlockTypesCache.states[entry.getCharKey()];
+            typeCounter[state.getBlockType().getInternalId()] += entry.getLongValue();
         }
         for (int i = 0; i < typeCounter.length; i++) {
-            final int count = typeCounter[i];
+            final long count = typeCounter[i];
             if (count != 0) {
-                distribution.add(new Countable<>(BlockTypesCache.values[i], count));
+                distribution.add(new Countable<>(BlockTypesCache.values[i], saturate(count)));
             }
         }
         Collections.sort(distribution);
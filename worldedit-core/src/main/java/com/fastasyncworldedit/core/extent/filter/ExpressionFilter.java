@@ -0,0 +1,231 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.sk89q.worldedit.internal.expression.EvaluationException;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.block.BaseBlock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A filter evaluating an expression for its blocks in batches. The inputs of the blocks of a chunk are collected while
+ * it is filtered, evaluated together once a section's worth of blocks is collected or the chunk is finished, and the
+ * resulting blocks are written to the chunk.
+ * <p>
+ * Expressions which are not {@linkplain Expression#isPure() pure} are evaluated as soon as a block is collected, as
+ * they may depend on the block currently being evaluated.
+ */
+public abstract class ExpressionFilter implements Filter {
+
+    /**
+     * The maximum number of blocks evaluated at once.
+     */
+    protected static final int BATCH_SIZE = 4096;
+
+    protected final Expression expression;
+    protected final int timeout;
+    /**
+     * The values of the provided slots of the expression for each block of the batch.
+     */
+    protected final double[][] values;
+    /**
+     * The values of the provided slots of the expression after each evaluation.
+     */
+    protected final double[][] outputs;
+    protected final double[] results = new double[BATCH_SIZE];
+    private final int[] blockX = new int[BATCH_SIZE];
+    private final int[] blockY = new int[BATCH_SIZE];
+    private final int[] blockZ = new int[BATCH_SIZE];
+    private final boolean[] failed = new boolean[BATCH_SIZE];
+    private final double[][] singleValues;
+    private final double[][] singleOutputs;
+    private final double[] singleResult = new double[1];
+    private final boolean batch;
+    private final AtomicInteger affected;
+    private final AtomicReference<EvaluationException> error;
+    private int size;
+    @Nullable
+    private IChunk chunk;
+
+    /**
+     * Create a new filter.
+     *
+     * @param expression the expression
+     * @param slots      the number of provided slots of the expression
+     * @param timeout    the timeout of a single evaluation in milliseconds
+     */
+    protected ExpressionFilter(Expression expression, int slots, int timeout) {
+        this(expression, slots, timeout, new AtomicInteger(), new AtomicReference<>());
+    }
+
+    /**
+     * Create a fork of a filter, sharing its counters.
+     *
+     * @param root       the filter forked
+     * @param expression the copy of the expression for the fork
+     */
+    protected ExpressionFilter(ExpressionFilter root, Expression expression) {
+        this(expression, root.values.length, root.timeout, root.affected, root.error);
+    }
+
+    private ExpressionFilter(
+            Expression expression,
+            int slots,
+            int timeout,
+            AtomicInteger affected,
+            AtomicReference<EvaluationException> error
+    ) {
+        this.expression = expression;
+        this.timeout = timeout;
+        this.values = new double[slots][BATCH_SIZE];
+        this.outputs = new double[slots][BATCH_SIZE];
+        this.singleValues = new double[slots][1];
+        this.singleOutputs = new double[slots][1];
+        this.batch = expression.isPure();
+        this.affected = affected;
+        this.error = error;
+    }
+
+    /**
+     * Set the values of the provided slots for a block.
+     *
+     * @param block the block
+     * @param index the index of the block in the batch
+     * @return {@code false} to skip the block
+     */
+    protected abstract boolean collect(FilterBlock block, int index);
+
+    /**
+     * Get the block to set after the expression was evaluated.
+     *
+     * @param index the index of the block in the batch
+     * @param x     the x coordinate of the block
+     * @param y     the y coordinate of the block
+     * @param z     the z coordinate of the block
+     * @return the block to set, or {@code null} to keep the block
+     */
+    @Nullable
+    protected abstract BaseBlock getBlock(int index, int x, int y, int z);
+
+    /**
+     * Handle the failed evaluation of a block. By default, the first error is kept and the remaining blocks are skipped.
+     *
+     * @param e the error
+     */
+    protected void onError(EvaluationException e) {
+        error.compareAndSet(null, e);
+    }
+
+    @Override
+    public abstract ExpressionFilter fork();
+
+    @Override
+    public @Nonnull <T extends IChunk> T applyChunk(T chunk, @Nullable Region region) {
+        this.chunk = chunk;
+        return chunk;
+    }
+
+    @Override
+    public void applyBlock(FilterBlock block) {
+        if (error.get() != null) {
+            return;
+        }
+        int index = size;
+        if (!collect(block, index)) {
+            return;
+        }
+        blockX[index] = block.x();
+        blockY[index] = block.y();
+        blockZ[index] = block.z();
+        size++;
+        if (chunk == null) {
+            // not filtering the chunks of a queue, so the block is written right away
+            flush(block);
+        } else if (!batch || size == BATCH_SIZE) {
+            flush(null);
+        }
+    }
+
+    @Override
+    public void finishChunk(IChunk chunk) {
+        flush(null);
+        this.chunk = null;
+    }
+
+    private void flush(@Nullable FilterBlock block) {
+        if (size == 0) {
+            return;
+        }
+        try {
+            try {
+                expression.evaluate(values, results, outputs, size, timeout);
+            } catch (EvaluationException e) {
+                // evaluate the blocks one by one, so one failing block does not fail the others
+                for (int i = 0; i < size; i++) {
+                    try {
+                        evaluateSingle(i);
+                    } catch (EvaluationException e1) {
+                        onError(e1);
+                        failed[i] = true;
+                    }
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (failed[i]) {
+                    failed[i] = false;
+                    continue;
+                }
+                BaseBlock result = getBlock(i, blockX[i], blockY[i], blockZ[i]);
+                if (result != null && write(block, blockX[i], blockY[i], blockZ[i], result)) {
+                    affected.incrementAndGet();
+                }
+            }
+        } finally {
+            size = 0;
+        }
+    }
+
+    private void evaluateSingle(int index) {
+        for (int slot = 0; slot < values.length; slot++) {
+            singleValues[slot][0] = values[slot][index];
+        }
+        expression.evaluate(singleValues, singleResult, singleOutputs, 1, timeout);
+        results[index] = singleResult[0];
+        for (int slot = 0; slot < outputs.length; slot++) {
+            outputs[slot][index] = singleOutputs[slot][0];
+        }
+    }
+
+    private boolean write(@Nullable FilterBlock block, int x, int y, int z, BaseBlock result) {
+        if (chunk != null) {
+            return chunk.setBlock(x & 15, y, z & 15, result);
+        }
+        if (block != null) {
+            block.setFullBlock(result);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * {@return the number of blocks set by this filter and its forks}
+     */
+    public int getAffected() {
+        return affected.get();
+    }
+
+    /**
+     * {@return the first error of this filter and its forks which was not handled}
+     */
+    @Nullable
+    public EvaluationException getError() {
+        return error.get();
+    }
+
+}
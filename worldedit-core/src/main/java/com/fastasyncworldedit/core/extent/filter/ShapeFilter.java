@@ -0,0 +1,129 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.internal.expression.EvaluationException;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionTimeoutException;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.registry.LegacyMapper;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a solid shape defined by an expression with the provided slots {@code x}, {@code y}, {@code z},
+ * {@code type} and {@code data}, as done by //generate. Blocks for which the expression results in a positive value are
+ * set to the pattern, or to the legacy block given by {@code type} and {@code data} if the expression changed them.
+ */
+public class ShapeFilter extends ExpressionFilter {
+
+    private final Vector3 zero;
+    private final Vector3 unit;
+    private final Pattern pattern;
+    private final AtomicInteger timedOut;
+    @Nullable
+    private final WorldEditExpressionEnvironment environment;
+    private final BaseBlock[] materials = new BaseBlock[BATCH_SIZE];
+
+    /**
+     * Create a new shape filter.
+     *
+     * @param expression the expression, with the provided slots {@code x}, {@code y}, {@code z}, {@code type} and
+     *                   {@code data}
+     * @param timeout    the timeout of a single evaluation in milliseconds
+     * @param zero       the origin of the coordinate system
+     * @param unit       the scale of the coordinate system
+     * @param pattern    the default material of the shape
+     */
+    public ShapeFilter(Expression expression, int timeout, Vector3 zero, Vector3 unit, Pattern pattern) {
+        super(expression, 5, timeout);
+        this.zero = zero;
+        this.unit = unit;
+        this.pattern = pattern;
+        this.timedOut = new AtomicInteger();
+        this.environment = getEnvironment(expression);
+    }
+
+    private ShapeFilter(ShapeFilter root) {
+        super(root, root.expression.clone());
+        this.zero = root.zero;
+        this.unit = root.unit;
+        this.pattern = root.pattern.fork();
+        this.timedOut = root.timedOut;
+        this.environment = getEnvironment(expression);
+    }
+
+    @Nullable
+    private static WorldEditExpressionEnvironment getEnvironment(Expression expression) {
+        return expression.getEnvironment() instanceof WorldEditExpressionEnvironment environment ? environment : null;
+    }
+
+    @Override
+    protected boolean collect(FilterBlock block, int index) {
+        int x = block.x();
+        int y = block.y();
+        int z = block.z();
+        if (environment != null) {
+            environment.setCurrentBlock(x, y, z);
+        }
+        BaseBlock material = pattern.applyBlock(block);
+        int[] legacy = LegacyMapper.getInstance().getLegacyFromBlock(material.toImmutableState());
+        int typeVar = 0;
+        int dataVar = 0;
+        if (legacy != null) {
+            typeVar = legacy[0];
+            if (legacy.length > 1) {
+                dataVar = legacy[1];
+            }
+        }
+        values[0][index] = (x - zero.x()) / unit.x();
+        values[1][index] = (y - zero.y()) / unit.y();
+        values[2][index] = (z - zero.z()) / unit.z();
+        values[3][index] = typeVar;
+        values[4][index] = dataVar;
+        materials[index] = material;
+        return true;
+    }
+
+    @Override
+    protected BaseBlock getBlock(int index, int x, int y, int z) {
+        BaseBlock material = materials[index];
+        materials[index] = null;
+        if (results[index] <= 0) {
+            return null;
+        }
+        int newType = (int) outputs[3][index];
+        int newData = (int) outputs[4][index];
+        if (newType != (int) values[3][index] || newData != (int) values[4][index]) {
+            BlockState state = LegacyMapper.getInstance().getBlockFromLegacy(newType, newData);
+            return state == null ? material : state.toBaseBlock();
+        }
+        return material;
+    }
+
+    @Override
+    protected void onError(EvaluationException e) {
+        if (e instanceof ExpressionTimeoutException) {
+            timedOut.incrementAndGet();
+        } else {
+            super.onError(e);
+        }
+    }
+
+    /**
+     * {@return the number of blocks of this filter and its forks which took too long to evaluate}
+     */
+    public int getTimedOut() {
+        return timedOut.get();
+    }
+
+    @Override
+    public ShapeFilter fork() {
+        return new ShapeFilter(this);
+    }
+
+}
@@ -9,6 +9,7 @@
 import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.fastasyncworldedit.core.queue.implementation.Flood;
 import com.fastasyncworldedit.core.queue.implementation.blocks.CharGetBlocks;
+import com.fastasyncworldedit.core.regions.SectionMask;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -93,26 +94,26 @@ public synchronized final ChunkFilterBlock initLayer(IBlocks iget, IChunkSet ise
 
     @Override
     public synchronized void flood(
-            IChunkGet iget, IChunkSet iset, int layer, Flood flood,
+            IChunkGet iget, IChunkSet iset, int layer, Flood.Worker flood,
             FilterBlockMask mask
     ) {
         final int maxDepth = flood.getMaxDepth();
-        final boolean checkDepth = maxDepth < Character.MAX_VALUE;
-        if (initLayer(iget, iset, layer) != null) { // TODO replace with hasSection
-            while ((index = flood.poll()) != -1) {
-                x = index & 15;
-                z = index >> 4 & 15;
-                y = index >> 8 & 15;
-
-                if (mask.applyBlock(this)) {
-                    int depth = index >> 12;
-
-                    if (checkDepth && depth > maxDepth) {
-                        continue;
-                    }
+        initLayer(iget, iset, layer);
+        // floods commonly spread into sections that do not exist yet, so always read actual (air) data
+        getArr = iget.load(layer);
+        int value;
+        while ((value = flood.poll()) != -1) {
+            int depth = value >> 12;
+            if (depth > maxDepth) {
+                continue;
+            }
+            index = value & 4095;
+            x = index & 15;
+            z = index >> 4 & 15;
+            y = index >> 8;
 
-                    flood.apply(x, y, z, depth);
-                }
+            if (mask.applyBlock(this)) {
+                flood.apply(x, y, z, depth);
             }
         }
     }
@@ -172,6 +173,24 @@ public synchronized final void filter(Filter filter, Region region) {
         }
     }
 
+    @Override
+    public synchronized final void filter(Filter filter, SectionMask mask) {
+        for (y = 0, index = 0; y < 16; y++) {
+            for (z = 0; z < 16; z++) {
+                int row = mask.getRow(y, z);
+                if (row == 0) {
+                    index += 16;
+                    continue;
+                }
+                for (x = 0; x < 16; x++, index++) {
+                    if ((row >> x & 1) != 0) {
+                        filter.applyBlock(this);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public synchronized void filter(Filter filter) {
         for (y = 0, index = 0; y < 16; y++) {
@@ -1,5 +1,6 @@
 package com.fastasyncworldedit.core.extent.filter.block;
 
+import com.fastasyncworldedit.core.queue.BlockCountingFilter;
 import com.fastasyncworldedit.core.queue.Filter;
 import com.fastasyncworldedit.core.queue.FilterBlockMask;
 import com.fastasyncworldedit.core.queue.IBlocks;
@@ -7,6 +8,7 @@
 import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.fastasyncworldedit.core.queue.implementation.Flood;
+import com.fastasyncworldedit.core.regions.SectionMask;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.regions.Region;
 
@@ -32,9 +34,12 @@ public ChunkFilterBlock(Extent extent) {
      */
     public abstract ChunkFilterBlock initLayer(IBlocks iget, IChunkSet iset, int layer);
 
+    /**
+     * Drain the queued flood positions of a chunk layer. The chunk coordinates need to be initialized first.
+     */
     public abstract void flood(
             IChunkGet iget, IChunkSet iset, int layer,
-            Flood flood, FilterBlockMask mask
+            Flood.Worker flood, FilterBlockMask mask
     );
 
 
@@ -66,6 +71,11 @@ public abstract void filter(
      */
     public abstract void filter(Filter filter, Region region);
 
+    /**
+     * Filter the blocks of the layer in the mask.
+     */
+    public abstract void filter(Filter filter, SectionMask mask);
+
     /**
      * Filter with a chunk object.
      */
@@ -99,6 +109,10 @@ public synchronized final IChunkSet filter(
                 if (!full && !get.hasSection(layer)) {
                     continue;
                 }
+                if (filter instanceof BlockCountingFilter counter) {
+                    get.countBlocks(layer, counter);
+                    continue;
+                }
                 initLayer(get, set, layer);
                 filter(filter);
             }
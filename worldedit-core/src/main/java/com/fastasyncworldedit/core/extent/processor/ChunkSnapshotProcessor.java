@@ -0,0 +1,226 @@
+package com.fastasyncworldedit.core.extent.processor;
+
+import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
+import com.fastasyncworldedit.core.queue.IBatchProcessor;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps a copy of the chunk sections inside a region from before they are first changed, so the region can still be
+ * read as it was after the changes were applied to the world. Only the sections about to be changed are copied.
+ */
+public class ChunkSnapshotProcessor implements IBatchProcessor {
+
+    private final BlockVector3 min;
+    private final BlockVector3 max;
+    private final boolean biomes;
+    private final Map<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new processor.
+     *
+     * @param region the region to keep the blocks of
+     * @param biomes if the biomes should be kept as well
+     */
+    public ChunkSnapshotProcessor(Region region, boolean biomes) {
+        this.min = region.getMinimumPoint();
+        this.max = region.getMaximumPoint();
+        this.biomes = biomes;
+    }
+
+    @Override
+    public IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
+        int bx = chunk.getX() << 4;
+        int bz = chunk.getZ() << 4;
+        if (bx > max.x() || bx + 15 < min.x() || bz > max.z() || bz + 15 < min.z()) {
+            return set;
+        }
+        int minLayer = Math.max(get.getMinSectionPosition(), min.y() >> 4);
+        int maxLayer = Math.min(get.getMaxSectionPosition(), max.y() >> 4);
+        Snapshot snapshot = null;
+        boolean[] copy = null;
+        for (int layer = minLayer; layer <= maxLayer; layer++) {
+            boolean blocks = set.hasSection(layer);
+            boolean layerBiomes = biomes && set.hasBiomes(layer);
+            if (!blocks && !layerBiomes) {
+                continue;
+            }
+            if (snapshot == null) {
+                snapshot = snapshots.computeIfAbsent(
+                        MathMan.pairInt(chunk.getX(), chunk.getZ()),
+                        k -> new Snapshot(get.getMinSectionPosition(), get.getSectionCount(), biomes)
+                );
+            }
+            int index = layer - snapshot.minSection;
+            if (blocks && snapshot.blocks.get(index) == null) {
+                if (copy == null) {
+                    copy = new boolean[snapshot.blocks.length()];
+                }
+                copy[index] = true;
+            }
+            if (layerBiomes && snapshot.biomes.get(index) == null) {
+                BiomeType[] data = new BiomeType[64];
+                for (int i = 0; i < 64; i++) {
+                    data[i] = get.getBiomeType((i & 3) << 2, layer << 4 | (i >> 4) << 2, i & 12);
+                }
+                snapshot.biomes.set(index, data);
+            }
+        }
+        if (copy == null) {
+            return set;
+        }
+        // The tiles are kept before the blocks, as they are only looked up for the kept blocks
+        for (Map.Entry<BlockVector3, FaweCompoundTag> entry : get.tiles().entrySet()) {
+            int index = (entry.getKey().y() >> 4) - snapshot.minSection;
+            if (index >= 0 && index < copy.length && copy[index]) {
+                snapshot.tiles.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (int index = 0; index < copy.length; index++) {
+            if (!copy[index]) {
+                continue;
+            }
+            char[] data = get.load(index + snapshot.minSection);
+            if (data == null) {
+                data = new char[4096];
+                Arrays.fill(data, (char) BlockTypesCache.ReservedIDs.AIR);
+            } else {
+                data = data.clone();
+            }
+            snapshot.blocks.set(index, data);
+        }
+        return set;
+    }
+
+    /**
+     * {@return the block at the position as it was before it was first changed, or {@code null} if it was not changed}
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     */
+    @Nullable
+    public BlockState getBlock(int x, int y, int z) {
+        int ordinal = getOrdinal(x, y, z);
+        return ordinal == -1 ? null : BlockTypesCache.states[ordinal];
+    }
+
+    /**
+     * {@return the ordinal of the block at the position as it was before it was first changed, or -1 if it was not changed}
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     */
+    public int getOrdinal(int x, int y, int z) {
+        char[] blocks = getBlocks(getSnapshot(x, z), y);
+        return blocks == null ? -1 : blocks[(y & 15) << 8 | (z & 15) << 4 | (x & 15)];
+    }
+
+    /**
+     * {@return the block at the position as it was before it was first changed, or {@code null} if it was not changed}
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     */
+    @Nullable
+    public BaseBlock getFullBlock(int x, int y, int z) {
+        Snapshot snapshot = getSnapshot(x, z);
+        char[] blocks = getBlocks(snapshot, y);
+        if (blocks == null) {
+            return null;
+        }
+        BlockState state = BlockTypesCache.states[blocks[(y & 15) << 8 | (z & 15) << 4 | (x & 15)]];
+        if (state.getMaterial().hasContainer()) {
+            FaweCompoundTag tile = snapshot.tiles.get(BlockVector3.at(x, y, z));
+            if (tile != null) {
+                return state.toBaseBlock(tile.linTag());
+            }
+        }
+        return state.toBaseBlock();
+    }
+
+    /**
+     * {@return the biome at the position as it was before it was first changed, or {@code null} if it was not changed}
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     */
+    @Nullable
+    public BiomeType getBiomeType(int x, int y, int z) {
+        Snapshot snapshot = getSnapshot(x, z);
+        if (snapshot == null || snapshot.biomes == null) {
+            return null;
+        }
+        int index = (y >> 4) - snapshot.minSection;
+        if (index < 0 || index >= snapshot.biomes.length()) {
+            return null;
+        }
+        BiomeType[] data = snapshot.biomes.get(index);
+        return data == null ? null : data[(y & 12) << 2 | (z & 12) | (x & 12) >> 2];
+    }
+
+    @Nullable
+    private Snapshot getSnapshot(int x, int z) {
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        return snapshots.get(MathMan.pairInt(x >> 4, z >> 4));
+    }
+
+    @Nullable
+    private static char[] getBlocks(@Nullable Snapshot snapshot, int y) {
+        if (snapshot == null) {
+            return null;
+        }
+        int index = (y >> 4) - snapshot.minSection;
+        if (index < 0 || index >= snapshot.blocks.length()) {
+            return null;
+        }
+        return snapshot.blocks.get(index);
+    }
+
+    @Override
+    public Extent construct(Extent child) {
+        throw new UnsupportedOperationException("Processing only");
+    }
+
+    @Override
+    public ProcessorScope getScope() {
+        return ProcessorScope.READING_BLOCKS;
+    }
+
+    private static final class Snapshot {
+
+        private final int minSection;
+        private final AtomicReferenceArray<char[]> blocks;
+        @Nullable
+        private final AtomicReferenceArray<BiomeType[]> biomes;
+        private final Map<BlockVector3, FaweCompoundTag> tiles = new ConcurrentHashMap<>();
+
+        private Snapshot(int minSection, int sectionCount, boolean biomes) {
+            this.minSection = minSection;
+            this.blocks = new AtomicReferenceArray<>(sectionCount);
+            this.biomes = biomes ? new AtomicReferenceArray<>(sectionCount) : null;
+        }
+
+    }
+
+}
@@ -7,9 +7,9 @@
 import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
 import com.fastasyncworldedit.core.util.MathMan;
 import com.fastasyncworldedit.core.util.TaskManager;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
 import com.fastasyncworldedit.core.util.task.RunnableVal;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
-import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.registry.state.DirectionalProperty;
 import com.sk89q.worldedit.registry.state.EnumProperty;
 import com.sk89q.worldedit.registry.state.Property;
@@ -17,23 +17,25 @@
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockTypes;
 import com.sk89q.worldedit.world.registry.BlockMaterial;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -42,6 +44,10 @@ public class NMSRelighter implements Relighter {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
 
     private static final int DISPATCH_SIZE = 64;
+    // The distance in chunks up to which a block light update may read or change chunks
+    private static final int BLOCK_LIGHT_RADIUS = 2;
+    // The distance in chunks up to which chunks with block light updates are updated in the same group
+    private static final int GROUP_DISTANCE = BLOCK_LIGHT_RADIUS * 2;
     private static final DirectionalProperty stairDirection;
     private static final EnumProperty stairHalf;
     private static final EnumProperty stairShape;
@@ -56,7 +62,6 @@ public class NMSRelighter implements Relighter {
 
     private final IQueueExtent<?> queue;
     private final Map<Long, RelightSkyEntry> skyToRelight;
-    private final Object present = new Object();
     private final Map<Long, Integer> chunksToSend;
     private final ConcurrentLinkedQueue<RelightSkyEntry> extendSkyToRelight = new ConcurrentLinkedQueue<>();
     private final Map<Long, long[][][] /* z y x */> lightQueue;
@@ -211,27 +216,96 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
         if (size == 0) {
             return;
         }
-        Queue<BlockVector3> lightPropagationQueue = new LinkedList<>();
-        Queue<LightRemovalNode> lightRemovalQueue = new LinkedList<>();
-        Map<BlockVector3, Object> visited = new HashMap<>(32);
-        Map<BlockVector3, Object> removalVisited = new HashMap<>(32);
-
         // Make sure BlockTypes is initialised so we can check block characteristics later if needed
         BlockTypes.STONE.getMaterial();
 
+        Long2ObjectOpenHashMap<long[][][]> chunks = new Long2ObjectOpenHashMap<>(size);
         Iterator<Map.Entry<Long, long[][][]>> iter = map.entrySet().iterator();
         while (iter.hasNext() && size-- > 0) {
             Map.Entry<Long, long[][][]> entry = iter.next();
-            long index = entry.getKey();
+            chunks.put((long) entry.getKey(), entry.getValue());
+            iter.remove();
+        }
+        List<Long2ObjectOpenHashMap<long[][][]>> groups = groupBlockLightUpdates(chunks);
+        if (groups.size() == 1) {
+            updateBlockLight(groups.get(0), null);
+            return;
+        }
+        // The chunks are looked up in the queue beforehand, so the workers never access the queue itself. Getting a chunk
+        // from the queue may submit another chunk, which could be one a different group is updating
+        Long2ObjectOpenHashMap<ChunkHolder<?>> holders = new Long2ObjectOpenHashMap<>();
+        for (Long2ObjectOpenHashMap<long[][][]> group : groups) {
+            for (long pair : group.keySet()) {
+                int chunkX = MathMan.unpairIntX(pair);
+                int chunkZ = MathMan.unpairIntY(pair);
+                for (int z = chunkZ - BLOCK_LIGHT_RADIUS; z <= chunkZ + BLOCK_LIGHT_RADIUS; z++) {
+                    for (int x = chunkX - BLOCK_LIGHT_RADIUS; x <= chunkX + BLOCK_LIGHT_RADIUS; x++) {
+                        resolveChunk(holders, x, z);
+                    }
+                }
+            }
+        }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(groups.size());
+        for (Long2ObjectOpenHashMap<long[][][]> group : groups) {
+            tasks.add(ForkJoinTask.adapt(() -> updateBlockLight(group, holders)));
+        }
+        Fawe.instance().getQueueHandler().submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+    }
+
+    /**
+     * Split the chunks with block light updates into groups which can be updated independently of each other. Light
+     * spreads at most 15 blocks, so removing the light around a chunk and spreading it back in from the edge of the
+     * removed light reaches at most the chunks two chunks away. The chunks of different groups are further apart than
+     * twice that, so no chunk is read or changed by more than one group.
+     */
+    private static List<Long2ObjectOpenHashMap<long[][][]>> groupBlockLightUpdates(Long2ObjectOpenHashMap<long[][][]> chunks) {
+        List<Long2ObjectOpenHashMap<long[][][]>> groups = new ArrayList<>();
+        LongArrayFIFOQueue next = new LongArrayFIFOQueue();
+        while (!chunks.isEmpty()) {
+            Long2ObjectOpenHashMap<long[][][]> group = new Long2ObjectOpenHashMap<>();
+            long first = chunks.keySet().iterator().nextLong();
+            group.put(first, chunks.remove(first));
+            next.enqueue(first);
+            while (!next.isEmpty()) {
+                long pair = next.dequeueLong();
+                int chunkX = MathMan.unpairIntX(pair);
+                int chunkZ = MathMan.unpairIntY(pair);
+                for (int z = chunkZ - GROUP_DISTANCE; z <= chunkZ + GROUP_DISTANCE; z++) {
+                    for (int x = chunkX - GROUP_DISTANCE; x <= chunkX + GROUP_DISTANCE; x++) {
+                        long other = MathMan.pairInt(x, z);
+                        long[][][] blocks = chunks.remove(other);
+                        if (blocks != null) {
+                            group.put(other, blocks);
+                            next.enqueue(other);
+                        }
+                    }
+                }
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Update the block light of a group of chunks.
+     *
+     * @param chunks  the positions to update in each chunk
+     * @param holders the chunks to read and change, which must contain every chunk within {@link #BLOCK_LIGHT_RADIUS} of
+     *                the chunks to update, or {@code null} to get chunks from the queue as they are needed
+     */
+    private void updateBlockLight(
+            Long2ObjectOpenHashMap<long[][][]> chunks,
+            @Nullable Long2ObjectOpenHashMap<ChunkHolder<?>> holders
+    ) {
+        BlockLightUpdate update = new BlockLightUpdate(holders);
+        for (Long2ObjectMap.Entry<long[][][]> entry : chunks.long2ObjectEntrySet()) {
+            long index = entry.getLongKey();
             long[][][] blocks = entry.getValue();
             int chunkX = MathMan.unpairIntX(index);
             int chunkZ = MathMan.unpairIntY(index);
             int bx = chunkX << 4;
             int bz = chunkZ << 4;
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunkX, chunkZ);
-            if (!iChunk.isInit()) {
-                iChunk.init(queue, chunkX, chunkZ);
-            }
+            ChunkHolder<?> iChunk = update.getChunk(chunkX, chunkZ);
             for (int lz = 0; lz < blocks.length; lz++) {
                 long[][] m1 = blocks[lz];
                 if (m1 == null) {
@@ -255,13 +329,13 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
                                     int newLevel = iChunk.getBrightness(lx, y, lz);
                                     if (oldLevel != newLevel) {
                                         iChunk.setBlockLight(lx, y, lz, newLevel);
-                                        BlockVector3 node = BlockVector3.at(x, y, z);
                                         if (newLevel < oldLevel) {
-                                            removalVisited.put(node, present);
-                                            lightRemovalQueue.add(new LightRemovalNode(node, oldLevel));
+                                            update.removalVisited.add(x, y, z);
+                                            update.removalQueue.enqueue(pack(x, y, z));
+                                            update.removalQueue.enqueue(oldLevel);
                                         } else {
-                                            visited.put(node, present);
-                                            lightPropagationQueue.add(node);
+                                            update.visited.add(x, y, z);
+                                            update.propagationQueue.enqueue(pack(x, y, z));
                                         }
                                     }
                                 }
@@ -270,113 +344,80 @@ public void updateBlockLight(Map<Long, long[][][]> map) {
                     }
                 }
             }
-            iter.remove();
         }
 
+        LongArrayFIFOQueue lightRemovalQueue = update.removalQueue;
         while (!lightRemovalQueue.isEmpty()) {
-            LightRemovalNode val = lightRemovalQueue.poll();
-            BlockVector3 node = val.pos();
-            int lightLevel = val.previous();
-
-            this.computeRemoveBlockLight(
-                    node.x() - 1,
-                    node.y(),
-                    node.z(),
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
-            this.computeRemoveBlockLight(
-                    node.x() + 1,
-                    node.y(),
-                    node.z(),
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
-            if (node.y() > minY) {
-                this.computeRemoveBlockLight(
-                        node.x(),
-                        node.y() - 1,
-                        node.z(),
-                        lightLevel,
-                        lightRemovalQueue,
-                        lightPropagationQueue,
-                        removalVisited,
-                        visited
-                );
-            }
-            if (node.y() < maxY) {
-                this.computeRemoveBlockLight(
-                        node.x(),
-                        node.y() + 1,
-                        node.z(),
-                        lightLevel,
-                        lightRemovalQueue,
-                        lightPropagationQueue,
-                        removalVisited,
-                        visited
-                );
-            }
-            this.computeRemoveBlockLight(
-                    node.x(),
-                    node.y(),
-                    node.z() - 1,
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
-            this.computeRemoveBlockLight(
-                    node.x(),
-                    node.y(),
-                    node.z() + 1,
-                    lightLevel,
-                    lightRemovalQueue,
-                    lightPropagationQueue,
-                    removalVisited,
-                    visited
-            );
+            long node = lightRemovalQueue.dequeueLong();
+            int lightLevel = (int) lightRemovalQueue.dequeueLong();
+            int x = unpackX(node);
+            int y = unpackY(node);
+            int z = unpackZ(node);
+
+            this.computeRemoveBlockLight(x - 1, y, z, lightLevel, update);
+            this.computeRemoveBlockLight(x + 1, y, z, lightLevel, update);
+            if (y > minY) {
+                this.computeRemoveBlockLight(x, y - 1, z, lightLevel, update);
+            }
+            if (y < maxY) {
+                this.computeRemoveBlockLight(x, y + 1, z, lightLevel, update);
+            }
+            this.computeRemoveBlockLight(x, y, z - 1, lightLevel, update);
+            this.computeRemoveBlockLight(x, y, z + 1, lightLevel, update);
         }
 
+        LongArrayFIFOQueue lightPropagationQueue = update.propagationQueue;
         while (!lightPropagationQueue.isEmpty()) {
-            BlockVector3 node = lightPropagationQueue.poll();
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(node.x() >> 4, node.z() >> 4);
-            if (!iChunk.isInit()) {
-                iChunk.init(queue, node.x() >> 4, node.z() >> 4);
-            }
-            int lightLevel = iChunk.getEmittedLight(node.x() & 15, node.y(), node.z() & 15);
-            BlockState state = this.queue.getBlock(node.x(), node.y(), node.z());
-            String id = state.getBlockType().id().toLowerCase(Locale.ROOT);
+            long node = lightPropagationQueue.dequeueLong();
+            int x = unpackX(node);
+            int y = unpackY(node);
+            int z = unpackZ(node);
+            ChunkHolder<?> iChunk = update.getChunk(x >> 4, z >> 4);
+            int lightLevel = iChunk.getEmittedLight(x & 15, y, z & 15);
             if (lightLevel <= 1) {
                 continue;
             }
+            BlockState state = iChunk.getBlock(x & 15, y, z & 15);
+            String id = state.getBlockType().id().toLowerCase(Locale.ROOT);
             if (id.contains("slab")) {
                 boolean top = state.getState(slabHalf).equalsIgnoreCase("top");
-                computeSlab(node.x(), node.y(), node.z(), lightLevel, lightPropagationQueue, visited, top);
+                computeSlab(x, y, z, lightLevel, update, top);
             } else if (id.contains("stair")) {
                 boolean top = state.getState(stairHalf).equalsIgnoreCase("top");
                 Direction direction = getStairDir(state);
                 String shape = getStairShape(state);
-                computeStair(node.x(), node.y(), node.z(), lightLevel, lightPropagationQueue, visited, top, direction, shape);
+                computeStair(x, y, z, lightLevel, update, top, direction, shape);
             } else {
-                computeNormal(node.x(), node.y(), node.z(), lightLevel, lightPropagationQueue, visited);
+                computeNormal(x, y, z, lightLevel, update);
             }
         }
     }
 
+    /**
+     * Pack a block position into a long, with 26 bits for x and z and 12 bits for y.
+     */
+    private static long pack(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    private static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
     private void computeStair(
             int x,
             int y,
             int z,
             int currentLight,
-            Queue<BlockVector3> queue,
-            Map<BlockVector3, Object> visited,
+            BlockLightUpdate update,
             boolean top,
             Direction direction,
             String shape
@@ -388,12 +429,12 @@ private void computeStair(
                     "inner_left") || direction == Direction.EAST && !shape.startsWith("outer"))) {
                 break east;
             }
-            BlockState state = this.queue.getBlock(x + 1, y, z);
+            BlockState state = update.getBlock(x + 1, y, z);
             if (!(checkStairEast(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break east;
             }
             if (!state.getBlockType().id().toLowerCase(Locale.ROOT).contains("stair")) {
-                this.computeSpreadBlockLight(x + 1, y, z, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x + 1, y, z, currentLight, update);
                 break east;
             }
             Direction otherDir = getStairDir(state);
@@ -430,7 +471,7 @@ private void computeStair(
                     }
                     break;
             }
-            this.computeSpreadBlockLight(x + 1, y, z, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x + 1, y, z, currentLight, update);
         }
         west:
         {
@@ -439,12 +480,12 @@ private void computeStair(
                     "inner_left") || direction == Direction.WEST && !shape.startsWith("outer"))) {
                 break west;
             }
-            BlockState state = this.queue.getBlock(x - 1, y, z);
+            BlockState state = update.getBlock(x - 1, y, z);
             if (!(checkStairWest(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break west;
             }
             if (!state.getBlockType().id().toLowerCase(Locale.ROOT).contains("stair")) {
-                this.computeSpreadBlockLight(x - 1, y, z, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x - 1, y, z, currentLight, update);
                 break west;
             }
             Direction otherDir = getStairDir(state);
@@ -481,7 +522,7 @@ private void computeStair(
                     }
                     break;
             }
-            this.computeSpreadBlockLight(x - 1, y, z, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x - 1, y, z, currentLight, update);
         }
         south:
         {
@@ -490,12 +531,12 @@ private void computeStair(
                     "inner_left") || direction == Direction.SOUTH && !shape.startsWith("outer"))) {
                 break south;
             }
-            BlockState state = this.queue.getBlock(x, y, z + 1);
+            BlockState state = update.getBlock(x, y, z + 1);
             if (!(checkStairSouth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break south;
             }
             if (!state.getBlockType().id().toLowerCase(Locale.ROOT).contains("stair")) {
-                this.computeSpreadBlockLight(x, y, z + 1, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x, y, z + 1, currentLight, update);
                 break south;
             }
             Direction otherDir = getStairDir(state);
@@ -532,7 +573,7 @@ private void computeStair(
                     }
                     break;
             }
-            this.computeSpreadBlockLight(x, y, z + 1, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x, y, z + 1, currentLight, update);
         }
         north:
         {
@@ -541,12 +582,12 @@ private void computeStair(
                     "inner_left") || direction == Direction.NORTH && !shape.startsWith("outer"))) {
                 break north;
             }
-            BlockState state = this.queue.getBlock(x, y, z - 1);
+            BlockState state = update.getBlock(x, y, z - 1);
             if (!(checkStairNorth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom"))) {
                 break north;
             }
             if (!state.getBlockType().id().toLowerCase(Locale.ROOT).contains("stair")) {
-                this.computeSpreadBlockLight(x, y, z - 1, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x, y, z - 1, currentLight, update);
                 break north;
             }
             Direction otherDir = getStairDir(state);
@@ -583,9 +624,9 @@ private void computeStair(
                     }
                     break;
             }
-            this.computeSpreadBlockLight(x, y, z - 1, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x, y, z - 1, currentLight, update);
         }
-        computeUpDown(x, y, z, currentLight, queue, visited, top);
+        computeUpDown(x, y, z, currentLight, update, top);
 
     }
 
@@ -594,39 +635,38 @@ private void computeSlab(
             int y,
             int z,
             int currentLight,
-            Queue<BlockVector3> queue,
-            Map<BlockVector3, Object> visited,
+            BlockLightUpdate update,
             boolean top
     ) {
         {
             // Block East
-            BlockState state = this.queue.getBlock(x + 1, y, z);
+            BlockState state = update.getBlock(x + 1, y, z);
             if (checkStairEast(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
-                this.computeSpreadBlockLight(x + 1, y, z, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x + 1, y, z, currentLight, update);
             }
         }
         {
             // Block West
-            BlockState state = this.queue.getBlock(x - 1, y, z);
+            BlockState state = update.getBlock(x - 1, y, z);
             if (checkStairWest(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
-                this.computeSpreadBlockLight(x - 1, y, z, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x - 1, y, z, currentLight, update);
             }
         }
         {
             // Block South
-            BlockState state = this.queue.getBlock(x, y, z + 1);
+            BlockState state = update.getBlock(x, y, z + 1);
             if (checkStairSouth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
-                this.computeSpreadBlockLight(x, y, z + 1, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x, y, z + 1, currentLight, update);
             }
         }
         {
             // Block North
-            BlockState state = this.queue.getBlock(x, y, z - 1);
+            BlockState state = update.getBlock(x, y, z - 1);
             if (checkStairNorth(state) && isStairOrTrueTop(state, top) && isSlabOrTrueValue(state, top ? "top" : "bottom")) {
-                this.computeSpreadBlockLight(x, y, z - 1, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x, y, z - 1, currentLight, update);
             }
         }
-        computeUpDown(x, y, z, currentLight, queue, visited, top);
+        computeUpDown(x, y, z, currentLight, update, top);
     }
 
     private void computeUpDown(
@@ -634,17 +674,16 @@ private void computeUpDown(
             int y,
             int z,
             int currentLight,
-            Queue<BlockVector3> queue,
-            Map<BlockVector3, Object> visited,
+            BlockLightUpdate update,
             boolean top
     ) {
-        BlockState state = this.queue.getBlock(x, y - 1, z);
+        BlockState state = update.getBlock(x, y - 1, z);
         if (y > 0 && top && isSlabOrTrueValue(state, "bottom") && isStairOrTrueTop(state, false)) {
-            this.computeSpreadBlockLight(x, y - 1, z, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x, y - 1, z, currentLight, update);
         }
-        state = this.queue.getBlock(x, y + 1, z);
+        state = update.getBlock(x, y + 1, z);
         if (y < maxY && !top && isSlabOrTrueValue(state, "top") && isStairOrTrueTop(state, true)) {
-            this.computeSpreadBlockLight(x, y + 1, z, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x, y + 1, z, currentLight, update);
         }
     }
 
@@ -653,44 +692,43 @@ private void computeNormal(
             int y,
             int z,
             int currentLight,
-            Queue<BlockVector3> queue,
-            Map<BlockVector3, Object> visited
+            BlockLightUpdate update
     ) {
         {
             // Block East
-            BlockState state = this.queue.getBlock(x + 1, y, z);
+            BlockState state = update.getBlock(x + 1, y, z);
             if (checkStairEast(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
-                this.computeSpreadBlockLight(x + 1, y, z, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x + 1, y, z, currentLight, update);
             }
         }
         {
             // Block West
-            BlockState state = this.queue.getBlock(x - 1, y, z);
+            BlockState state = update.getBlock(x - 1, y, z);
             if (checkStairWest(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
-                this.computeSpreadBlockLight(x - 1, y, z, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x - 1, y, z, currentLight, update);
             }
         }
         {
             // Block South
-            BlockState state = this.queue.getBlock(x, y, z + 1);
+            BlockState state = update.getBlock(x, y, z + 1);
             if (checkStairSouth(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
-                this.computeSpreadBlockLight(x, y, z + 1, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x, y, z + 1, currentLight, update);
             }
         }
         {
             // Block North
-            BlockState state = this.queue.getBlock(x, y, z - 1);
+            BlockState state = update.getBlock(x, y, z - 1);
             if (checkStairNorth(state) && (isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(state, "bottom"))) {
-                this.computeSpreadBlockLight(x, y, z - 1, currentLight, queue, visited);
+                this.computeSpreadBlockLight(x, y, z - 1, currentLight, update);
             }
         }
-        BlockState state = this.queue.getBlock(x, y - 1, z);
+        BlockState state = update.getBlock(x, y - 1, z);
         if (y > 0 && isSlabOrTrueValue(state, "bottom") && isStairOrTrueTop(state, false)) {
-            this.computeSpreadBlockLight(x, y - 1, z, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x, y - 1, z, currentLight, update);
         }
-        state = this.queue.getBlock(x, y + 1, z);
+        state = update.getBlock(x, y + 1, z);
         if (y < maxY && isSlabOrTrueValue(state, "top") && isStairOrTrueTop(state, false)) {
-            this.computeSpreadBlockLight(x, y + 1, z, currentLight, queue, visited);
+            this.computeSpreadBlockLight(x, y + 1, z, currentLight, update);
         }
     }
 
@@ -787,33 +825,18 @@ private void computeRemoveBlockLight(
             int y,
             int z,
             int currentLight,
-            Queue<LightRemovalNode> queue,
-            Queue<BlockVector3> spreadQueue,
-            Map<BlockVector3, Object> visited,
-            Map<BlockVector3, Object> spreadVisited
+            BlockLightUpdate update
     ) {
-        ChunkHolder<?> iChunk = (ChunkHolder<?>) this.queue.getOrCreateChunk(x >> 4, z >> 4);
-        if (!iChunk.isInit()) {
-            iChunk.init(this.queue, x >> 4, z >> 4);
-        }
+        ChunkHolder<?> iChunk = update.getChunk(x >> 4, z >> 4);
         int current = iChunk.getEmittedLight(x & 15, y, z & 15);
         if (current != 0 && current < currentLight) {
             iChunk.setBlockLight(x, y, z, 0);
-            if (current > 1) {
-                visited.computeIfAbsent(
-                        BlockVector3.at(x, y, z), k -> {
-                            queue.add(new LightRemovalNode(k, current));
-                            return present;
-                        }
-                );
+            if (current > 1 && update.removalVisited.add(x, y, z)) {
+                update.removalQueue.enqueue(pack(x, y, z));
+                update.removalQueue.enqueue(current);
             }
-        } else if (current >= currentLight) {
-            spreadVisited.computeIfAbsent(
-                    BlockVector3.at(x, y, z), k -> {
-                        spreadQueue.add(k);
-                        return present;
-                    }
-            );
+        } else if (current >= currentLight && update.visited.add(x, y, z)) {
+            update.propagationQueue.enqueue(pack(x, y, z));
         }
     }
 
@@ -822,28 +845,19 @@ private void computeSpreadBlockLight(
             int y,
             int z,
             int currentLight,
-            Queue<BlockVector3> queue,
-            Map<BlockVector3, Object> visited
+            BlockLightUpdate update
     ) {
-        BlockMaterial material = this.queue.getBlock(x, y, z).getMaterial();
+        BlockMaterial material = update.getBlock(x, y, z).getMaterial();
         boolean solidNeedsLight = (!material.isSolid() || !material.isFullCube()) && material.getLightOpacity() > 0 && material.getLightValue() == 0;
         int correctedLight = !solidNeedsLight ? currentLight - Math.max(1, material.getLightOpacity()) : currentLight - 1;
         if (currentLight > 0) {
-            ChunkHolder<?> iChunk = (ChunkHolder<?>) this.queue.getOrCreateChunk(x >> 4, z >> 4);
-            if (!iChunk.isInit()) {
-                iChunk.init(this.queue, x >> 4, z >> 4);
-            }
+            ChunkHolder<?> iChunk = update.getChunk(x >> 4, z >> 4);
             int current = iChunk.getEmittedLight(x & 15, y, z & 15);
             if (currentLight > current) {
                 iChunk.setBlockLight(x & 15, y, z & 15, currentLight);
-                visited.computeIfAbsent(
-                        BlockVector3.at(x, y, z), k -> {
-                            if (correctedLight > 1) {
-                                queue.add(k);
-                            }
-                            return present;
-                        }
-                );
+                if (update.visited.add(x, y, z) && correctedLight > 1) {
+                    update.propagationQueue.enqueue(pack(x, y, z));
+                }
             }
         }
     }
@@ -853,7 +867,9 @@ public void fixLightingSafe(boolean sky) {
             return;
         }
         if (sky) {
+            final long start = FaweMetrics.RELIGHT_SKY.start();
             fixSkyLighting();
+            FaweMetrics.RELIGHT_SKY.record(start);
         } else {
             synchronized (this) {
                 Map<Long, RelightSkyEntry> map = getSkyMap();
@@ -865,8 +881,12 @@ public void fixLightingSafe(boolean sky) {
                 }
             }
         }
+        long start = FaweMetrics.RELIGHT_BLOCK.start();
         fixBlockLighting();
+        FaweMetrics.RELIGHT_BLOCK.record(start);
+        start = FaweMetrics.RELIGHT_SEND.start();
         sendChunks();
+        FaweMetrics.RELIGHT_SEND.record(start);
     }
 
     public void fixBlockLighting() {
@@ -957,14 +977,21 @@ public synchronized void fixSkyLighting() {
         }
         Collections.sort(chunksList);
         int size = chunksList.size();
+        boolean parallel = Settings.settings().LIGHTING.PARALLEL_SKY_LIGHT && Settings.settings().QUEUE.PARALLEL_THREADS > 1;
         if (size > DISPATCH_SIZE) {
             int amount = (size + DISPATCH_SIZE - 1) / DISPATCH_SIZE;
             for (int i = 0; i < amount; i++) {
                 int start = i * DISPATCH_SIZE;
                 int end = Math.min(size, start + DISPATCH_SIZE);
                 List<RelightSkyEntry> sub = chunksList.subList(start, end);
-                fixSkyLighting(sub);
+                if (parallel) {
+                    fixSkyLightingParallel(sub);
+                } else {
+                    fixSkyLighting(sub);
+                }
             }
+        } else if (parallel && size > 1) {
+            fixSkyLightingParallel(chunksList);
         } else {
             fixSkyLighting(chunksList);
         }
@@ -992,117 +1019,11 @@ public void fill(byte[] mask, ChunkHolder<?> iChunk, int y, byte reason) {
 
     private void fixSkyLighting(List<RelightSkyEntry> sorted) {
         RelightSkyEntry[] chunks = sorted.toArray(new RelightSkyEntry[0]);
-        boolean remove = this.removeFirst;
-        BlockVectorSet chunkSet = null;
-        if (remove) {
-            BlockVectorSet tmpSet = new BlockVectorSet();
-            chunkSet = new BlockVectorSet();
-            for (RelightSkyEntry chunk : chunks) {
-                tmpSet.add(chunk.x, 0, chunk.z);
-            }
-            for (RelightSkyEntry chunk : chunks) {
-                int x = chunk.x;
-                int z = chunk.z;
-                if (tmpSet.contains(x + 1, 0, z) && tmpSet.contains(x - 1, 0, z) && tmpSet.contains(
-                        x,
-                        0,
-                        z + 1
-                ) && tmpSet.contains(x, 0, z - 1)) {
-                    chunkSet.add(x, 0, z);
-                }
-            }
-        }
+        BlockVectorSet chunkSet = this.removeFirst ? getEnclosedChunks(chunks) : null;
         for (int y = maxY; y > minY; y--) {
             for (RelightSkyEntry chunk : chunks) { // Propagate skylight
-                int layer = (y - minY) >> 4;
-                byte[] mask = chunk.mask;
-                int bx = chunk.x << 4;
-                int bz = chunk.z << 4;
                 ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z);
-                if (chunk.fix[layer] != SkipReason.NONE) {
-                    if ((y & 15) == 0 && layer != 0 && chunk.fix[layer - 1] == SkipReason.NONE) {
-                        fill(mask, iChunk, y, chunk.fix[layer]);
-                    }
-                    continue;
-                }
-                if (!iChunk.isInit()) {
-                    iChunk.init(queue, chunk.x, chunk.z);
-                }
-                chunk.smooth = false;
-
-                if (remove && (y & 15) == 15 && chunkSet.contains(chunk.x, 0, chunk.z)) {
-                    iChunk.removeSectionLighting(y >> 4, true);
-                }
-
-                for (int j = 0; j < 256; j++) {
-                    int x = j & 15;
-                    int z = j >> 4;
-                    byte value = mask[j];
-                    BlockState state = iChunk.getBlock(x, y, z);
-                    BlockMaterial material = state.getMaterial();
-                    int opacity = material.getLightOpacity();
-                    int brightness = material.getLightValue();
-                    if (brightness > 0 && brightness != iChunk.getEmittedLight(x, y, z)) {
-                        addLightUpdate(bx + x, y, bz + z);
-                    }
-
-                    switch (value) {
-                        case 0:
-                            if (opacity > 1) {
-                                iChunk.setSkyLight(x, y, z, 0);
-                                continue;
-                            }
-                            break;
-                        case 1:
-                        case 2:
-                        case 3:
-                        case 4:
-                        case 5:
-                        case 6:
-                        case 7:
-                        case 8:
-                        case 9:
-                        case 10:
-                        case 11:
-                        case 12:
-                        case 13:
-                        case 14:
-                            if (opacity >= value) {
-                                mask[j] = 0;
-                                if (!isStairOrTrueTop(state, true) || !(isSlabOrTrueValue(
-                                        state,
-                                        "top"
-                                ) || isSlabOrTrueValue(state, "double"))) {
-                                    iChunk.setSkyLight(x, y, z, value);
-                                } else {
-                                    iChunk.setSkyLight(x, y, z, 0);
-                                }
-                                continue;
-                            }
-                            if (opacity <= 1) {
-                                mask[j] = --value;
-                            } else {
-                                mask[j] = value = (byte) Math.max(0, value - opacity);
-                            }
-                            break;
-                        case 15:
-                            if (opacity > 0) {
-                                value -= (byte) opacity;
-                                mask[j] = value;
-                            }
-                            if (!isStairOrTrueTop(state, true) || !(isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(
-                                    state,
-                                    "double"
-                            ))) {
-                                iChunk.setSkyLight(x, y, z, value + opacity);
-                            } else {
-                                iChunk.setSkyLight(x, y, z, value);
-                            }
-                            continue;
-                    }
-                    chunk.smooth = true;
-                    iChunk.setSkyLight(x, y, z, value);
-                }
+                propagateSkyLight(chunk, iChunk, y, chunkSet, null);
             }
             for (RelightSkyEntry chunk : chunks) { // Smooth forwards
                 if (chunk.smooth) {
@@ -1118,8 +1039,234 @@ private void fixSkyLighting(List<RelightSkyEntry> sorted) {
         }
     }
 
-    private void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
+    /**
+     * Fix the sky light of the chunks on the primary fork join pool. Each layer is first lit from above in every chunk
+     * at once. It is then smoothed in wavefronts along the diagonals of the chunk grid, forwards and then backwards.
+     * Chunks on one diagonal are never next to each other, and smoothing a chunk only reads the neighbours on the
+     * previous diagonal, so the result is the same as smoothing the chunks one after another.
+     */
+    private void fixSkyLightingParallel(List<RelightSkyEntry> sorted) {
+        RelightSkyEntry[] chunks = sorted.toArray(new RelightSkyEntry[0]);
+        BlockVectorSet chunkSet = this.removeFirst ? getEnclosedChunks(chunks) : null;
+        // The chunks are looked up in the queue beforehand, so the workers never access the queue itself
+        Long2ObjectOpenHashMap<ChunkHolder<?>> holders = new Long2ObjectOpenHashMap<>(chunks.length * 3);
+        for (RelightSkyEntry chunk : chunks) {
+            resolveChunk(holders, chunk.x, chunk.z);
+            resolveChunk(holders, chunk.x - 1, chunk.z);
+            resolveChunk(holders, chunk.x + 1, chunk.z);
+            resolveChunk(holders, chunk.x, chunk.z - 1);
+            resolveChunk(holders, chunk.x, chunk.z + 1);
+        }
+        RelightSkyEntry[][] wavefronts = getWavefronts(chunks);
+        LongArrayList[] lightUpdates = new LongArrayList[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            lightUpdates[i] = new LongArrayList();
+        }
+        Fawe.instance().getQueueHandler().submit(() -> {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks.length);
+            for (int y = maxY; y > minY; y--) {
+                final int layerY = y;
+                tasks.clear();
+                for (int i = 0; i < chunks.length; i++) {
+                    RelightSkyEntry chunk = chunks[i];
+                    ChunkHolder<?> iChunk = holders.get(MathMan.pairInt(chunk.x, chunk.z));
+                    LongArrayList updates = lightUpdates[i];
+                    tasks.add(ForkJoinTask.adapt(() -> propagateSkyLight(chunk, iChunk, layerY, chunkSet, updates)));
+                }
+                ForkJoinTask.invokeAll(tasks);
+                for (RelightSkyEntry[] wavefront : wavefronts) { // Smooth forwards
+                    smoothSkyLight(wavefront, holders, layerY, true, tasks);
+                }
+                for (int i = wavefronts.length - 1; i >= 0; i--) { // Smooth backwards
+                    smoothSkyLight(wavefronts[i], holders, layerY, false, tasks);
+                }
+            }
+        }).join();
+        for (LongArrayList updates : lightUpdates) {
+            for (int i = 0; i < updates.size(); i++) {
+                long pos = updates.getLong(i);
+                addLightUpdate(unpackX(pos), unpackY(pos), unpackZ(pos));
+            }
+        }
+    }
+
+    private void resolveChunk(Long2ObjectOpenHashMap<ChunkHolder<?>> holders, int chunkX, int chunkZ) {
+        long pair = MathMan.pairInt(chunkX, chunkZ);
+        if (!holders.containsKey(pair)) {
+            ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunkX, chunkZ);
+            if (!iChunk.isInit()) {
+                iChunk.init(queue, chunkX, chunkZ);
+            }
+            holders.put(pair, iChunk);
+        }
+    }
+
+    private void smoothSkyLight(
+            RelightSkyEntry[] wavefront,
+            Long2ObjectOpenHashMap<ChunkHolder<?>> holders,
+            int y,
+            boolean direction,
+            List<ForkJoinTask<?>> tasks
+    ) {
+        tasks.clear();
+        int offset = direction ? -1 : 1;
+        for (RelightSkyEntry chunk : wavefront) {
+            if (chunk.smooth) {
+                ChunkHolder<?> iChunk = holders.get(MathMan.pairInt(chunk.x, chunk.z));
+                ChunkHolder<?> iChunkx = holders.get(MathMan.pairInt(chunk.x + offset, chunk.z));
+                ChunkHolder<?> iChunkz = holders.get(MathMan.pairInt(chunk.x, chunk.z + offset));
+                tasks.add(ForkJoinTask.adapt(() -> smoothSkyLight(chunk, iChunk, iChunkx, iChunkz, y, direction)));
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+    }
+
+    /**
+     * {@return the chunks grouped by the diagonal of the chunk grid they are on, in the order of the diagonals}
+     */
+    private static RelightSkyEntry[][] getWavefronts(RelightSkyEntry[] chunks) {
+        RelightSkyEntry[] byDiagonal = chunks.clone();
+        Arrays.sort(byDiagonal, Comparator.comparingInt(chunk -> chunk.x + chunk.z));
+        List<RelightSkyEntry[]> wavefronts = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= byDiagonal.length; i++) {
+            if (i == byDiagonal.length || byDiagonal[i].x + byDiagonal[i].z != byDiagonal[start].x + byDiagonal[start].z) {
+                wavefronts.add(Arrays.copyOfRange(byDiagonal, start, i));
+                start = i;
+            }
+        }
+        return wavefronts.toArray(new RelightSkyEntry[0][]);
+    }
+
+    /**
+     * {@return the chunks which have all four neighbours in the chunks as well}
+     */
+    private static BlockVectorSet getEnclosedChunks(RelightSkyEntry[] chunks) {
+        BlockVectorSet chunkSet = new BlockVectorSet();
+        BlockVectorSet tmpSet = new BlockVectorSet();
+        for (RelightSkyEntry chunk : chunks) {
+            tmpSet.add(chunk.x, 0, chunk.z);
+        }
+        for (RelightSkyEntry chunk : chunks) {
+            int x = chunk.x;
+            int z = chunk.z;
+            if (tmpSet.contains(x + 1, 0, z) && tmpSet.contains(x - 1, 0, z) && tmpSet.contains(
+                    x,
+                    0,
+                    z + 1
+            ) && tmpSet.contains(x, 0, z - 1)) {
+                chunkSet.add(x, 0, z);
+            }
+        }
+        return chunkSet;
+    }
+
+    /**
+     * Light the layer of the chunk from the layer above. Blocks whose emitted light is outdated are added to the light
+     * updates if given, otherwise they are added to the block light queue directly.
+     */
+    private void propagateSkyLight(
+            RelightSkyEntry chunk,
+            ChunkHolder<?> iChunk,
+            int y,
+            @Nullable BlockVectorSet chunkSet,
+            @Nullable LongArrayList lightUpdates
+    ) {
+        int layer = (y - minY) >> 4;
         byte[] mask = chunk.mask;
+        int bx = chunk.x << 4;
+        int bz = chunk.z << 4;
+        if (chunk.fix[layer] != SkipReason.NONE) {
+            if ((y & 15) == 0 && layer != 0 && chunk.fix[layer - 1] == SkipReason.NONE) {
+                fill(mask, iChunk, y, chunk.fix[layer]);
+            }
+            return;
+        }
+        if (!iChunk.isInit()) {
+            iChunk.init(queue, chunk.x, chunk.z);
+        }
+        chunk.smooth = false;
+
+        if (chunkSet != null && (y & 15) == 15 && chunkSet.contains(chunk.x, 0, chunk.z)) {
+            iChunk.removeSectionLighting(y >> 4, true);
+        }
+
+        for (int j = 0; j < 256; j++) {
+            int x = j & 15;
+            int z = j >> 4;
+            byte value = mask[j];
+            BlockState state = iChunk.getBlock(x, y, z);
+            BlockMaterial material = state.getMaterial();
+            int opacity = material.getLightOpacity();
+            int brightness = material.getLightValue();
+            if (brightness > 0 && brightness != iChunk.getEmittedLight(x, y, z)) {
+                if (lightUpdates != null) {
+                    lightUpdates.add(pack(bx + x, y, bz + z));
+                } else {
+                    addLightUpdate(bx + x, y, bz + z);
+                }
+            }
+
+            switch (value) {
+                case 0:
+                    if (opacity > 1) {
+                        iChunk.setSkyLight(x, y, z, 0);
+                        continue;
+                    }
+                    break;
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                case 8:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 13:
+                case 14:
+                    if (opacity >= value) {
+                        mask[j] = 0;
+                        if (!isStairOrTrueTop(state, true) || !(isSlabOrTrueValue(
+                                state,
+                                "top"
+                        ) || isSlabOrTrueValue(state, "double"))) {
+                            iChunk.setSkyLight(x, y, z, value);
+                        } else {
+                            iChunk.setSkyLight(x, y, z, 0);
+                        }
+                        continue;
+                    }
+                    if (opacity <= 1) {
+                        mask[j] = --value;
+                    } else {
+                        mask[j] = value = (byte) Math.max(0, value - opacity);
+                    }
+                    break;
+                case 15:
+                    if (opacity > 0) {
+                        value -= (byte) opacity;
+                        mask[j] = value;
+                    }
+                    if (!isStairOrTrueTop(state, true) || !(isSlabOrTrueValue(state, "top") || isSlabOrTrueValue(
+                            state,
+                            "double"
+                    ))) {
+                        iChunk.setSkyLight(x, y, z, value + opacity);
+                    } else {
+                        iChunk.setSkyLight(x, y, z, value);
+                    }
+                    continue;
+            }
+            chunk.smooth = true;
+            iChunk.setSkyLight(x, y, z, value);
+        }
+    }
+
+    private void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
         ChunkHolder<?> iChunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z);
         ChunkHolder<?> iChunkx;
         ChunkHolder<?> iChunkz;
@@ -1135,6 +1282,29 @@ private void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
             if (!iChunkz.isInit()) {
                 iChunkz.init(queue, chunk.x, chunk.z - 1);
             }
+        } else {
+            iChunkx = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x + 1, chunk.z);
+            iChunkz = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z + 1);
+            if (!iChunkx.isInit()) {
+                iChunkx.init(queue, chunk.x - 1, chunk.z);
+            }
+            if (!iChunkz.isInit()) {
+                iChunkz.init(queue, chunk.x, chunk.z - 1);
+            }
+        }
+        smoothSkyLight(chunk, iChunk, iChunkx, iChunkz, y, direction);
+    }
+
+    private void smoothSkyLight(
+            RelightSkyEntry chunk,
+            ChunkHolder<?> iChunk,
+            ChunkHolder<?> iChunkx,
+            ChunkHolder<?> iChunkz,
+            int y,
+            boolean direction
+    ) {
+        byte[] mask = chunk.mask;
+        if (direction) {
             for (int j = 0; j < 256; j++) {
                 int x = j & 15;
                 int z = j >> 4;
@@ -1173,14 +1343,6 @@ private void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
                 }
             }
         } else {
-            iChunkx = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x + 1, chunk.z);
-            iChunkz = (ChunkHolder<?>) queue.getOrCreateChunk(chunk.x, chunk.z + 1);
-            if (!iChunkx.isInit()) {
-                iChunkx.init(queue, chunk.x - 1, chunk.z);
-            }
-            if (!iChunkz.isInit()) {
-                iChunkz.init(queue, chunk.x, chunk.z - 1);
-            }
             for (int j = 255; j >= 0; j--) {
                 int x = j & 15;
                 int z = j >> 4;
@@ -1221,7 +1383,88 @@ private void smoothSkyLight(RelightSkyEntry chunk, int y, boolean direction) {
         }
     }
 
-    private record LightRemovalNode(BlockVector3 pos, int previous) {
+    /**
+     * The state of a block light update of a group of chunks. The chunks are only looked up in the queue once, so groups
+     * of chunks can be updated on different threads.
+     */
+    private final class BlockLightUpdate {
+
+        // the chunks resolved beforehand, or null if chunks are taken from the queue
+        @Nullable
+        private final Long2ObjectOpenHashMap<ChunkHolder<?>> resolved;
+        private final Long2ObjectOpenHashMap<ChunkHolder<?>> chunks;
+        private final LongArrayFIFOQueue propagationQueue = new LongArrayFIFOQueue();
+        // The packed position followed by the previous light level of each node
+        private final LongArrayFIFOQueue removalQueue = new LongArrayFIFOQueue();
+        private final SectionBitSet visited = new SectionBitSet();
+        private final SectionBitSet removalVisited = new SectionBitSet();
+        private ChunkHolder<?> lastChunk;
+
+        private BlockLightUpdate(@Nullable Long2ObjectOpenHashMap<ChunkHolder<?>> resolved) {
+            this.resolved = resolved;
+            this.chunks = resolved != null ? resolved : new Long2ObjectOpenHashMap<>();
+        }
+
+        private ChunkHolder<?> getChunk(int chunkX, int chunkZ) {
+            ChunkHolder<?> chunk = lastChunk;
+            if (chunk != null && chunk.getX() == chunkX && chunk.getZ() == chunkZ) {
+                return chunk;
+            }
+            long pair = MathMan.pairInt(chunkX, chunkZ);
+            chunk = chunks.get(pair);
+            if (chunk == null) {
+                if (resolved != null) {
+                    throw new IllegalStateException("Block light spread to chunk " + chunkX + ", " + chunkZ
+                            + " which was not resolved before the update");
+                }
+                chunk = (ChunkHolder<?>) queue.getOrCreateChunk(chunkX, chunkZ);
+                if (!chunk.isInit()) {
+                    chunk.init(queue, chunkX, chunkZ);
+                }
+                chunks.put(pair, chunk);
+            }
+            lastChunk = chunk;
+            return chunk;
+        }
+
+        private BlockState getBlock(int x, int y, int z) {
+            return getChunk(x >> 4, z >> 4).getBlock(x & 15, y, z & 15);
+        }
+
+    }
+
+    /**
+     * A set of block positions, kept as a bitset for each chunk section.
+     */
+    private static final class SectionBitSet {
+
+        private final Long2ObjectOpenHashMap<long[]> sections = new Long2ObjectOpenHashMap<>();
+        private long lastSection;
+        private long[] lastBits;
+
+        /**
+         * Add the position, returning if it was not in the set yet.
+         */
+        private boolean add(int x, int y, int z) {
+            long section = pack(x & ~15, y & ~15, z & ~15);
+            long[] bits = lastBits;
+            if (bits == null || section != lastSection) {
+                bits = sections.get(section);
+                if (bits == null) {
+                    bits = new long[64];
+                    sections.put(section, bits);
+                }
+                lastSection = section;
+                lastBits = bits;
+            }
+            int index = (y & 15) << 8 | (z & 15) << 4 | (x & 15);
+            long mask = 1L << index;
+            if ((bits[index >> 6] & mask) != 0) {
+                return false;
+            }
+            bits[index >> 6] |= mask;
+            return true;
+        }
 
     }
 
@@ -31,6 +31,21 @@ public boolean test(BlockVector3 vector) {
 
     public abstract boolean test(BlockState state);
 
+    /**
+     * Get a table of the block states matched by this mask, indexed by ordinal. Modifying the table does not modify
+     * this mask.
+     *
+     * @return the table of matched ordinals
+     */
+    public boolean[] toOrdinalTable() {
+        boolean[] table = new boolean[BlockTypesCache.states.length];
+        for (int i = 0; i < table.length; i++) {
+            BlockState state = BlockTypesCache.states[i];
+            table[i] = state != null && test(state);
+        }
+        return table;
+    }
+
     @Override
     public String toString() {
         List<String> strings = new ArrayList<>();
@@ -5,25 +5,43 @@
 import com.fastasyncworldedit.core.database.DBHandler;
 import com.fastasyncworldedit.core.database.RollbackDatabase;
 import com.fastasyncworldedit.core.history.changeset.FaweStreamChangeSet;
+import com.fastasyncworldedit.core.history.change.MutableFullBlockChange;
 import com.fastasyncworldedit.core.history.changeset.SimpleChangeSetSummary;
+import com.fastasyncworldedit.core.internal.io.ByteBufferInputStream;
 import com.fastasyncworldedit.core.internal.io.FaweInputStream;
 import com.fastasyncworldedit.core.internal.io.FaweOutputStream;
 import com.fastasyncworldedit.core.math.IntPair;
 import com.fastasyncworldedit.core.util.MainUtil;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
 import com.sk89q.jnbt.NBTInputStream;
 import com.sk89q.jnbt.NBTOutputStream;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.function.operation.ChangeSetExecutor;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.World;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.VisibleForTesting;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -40,6 +58,16 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     private static final Map<String, Map<UUID, Integer>> NEXT_INDEX = new ConcurrentHashMap<>();
 
+    // "FAWI", never the first bytes of a sequential block file, which start with the compression mode
+    private static final int INDEX_MAGIC = 0x46415749;
+    // magic + mode + version + origin
+    private static final int INDEX_HEADER_SIZE = 14;
+    // chunk x + chunk z + offset + length
+    private static final int INDEX_ENTRY_SIZE = 20;
+    // index offset + entries + magic
+    private static final int INDEX_TRAILER_SIZE = 16;
+    private static final int INDEX_BLOCK_BUFFER = 1 << 16;
+
     private UUID uuid;
     private File bdFile;
     private File bioFile;
@@ -56,8 +84,32 @@ public class DiskStorageHistory extends FaweStreamChangeSet {
      *
      * [contents]...
      * { short rel x, short rel z, unsigned byte y, short combinedFrom, short combinedTo }
+     *
+     * Chunk indexed block data
+     *
+     * [header]
+     * {int magic, byte mode, byte version, int origin x, int origin z}
+     *
+     * [blocks]...
+     * { compressed contents of a single chunk, delta encoding restarts at each block }
+     *
+     * [index]...
+     * { int chunk x, int chunk z, long offset, int length }
+     *
+     * [trailer]
+     * { long index offset, int entries, int magic }
      */
     private FaweOutputStream osBD;
+    private final boolean writeChunkIndex = Settings.settings().HISTORY.CHUNK_INDEX;
+    private FileChannel chBD;
+    private ByteArrayOutputStream bdChunk;
+    private ByteArrayOutputStream bdIndexBytes;
+    private DataOutputStream bdIndex;
+    private int bdIndexEntries;
+    private int bdChunkX;
+    private int bdChunkZ;
+    // The regions a partial undo or redo is restricted to
+    private Region[] regions;
     // biome
     private FaweOutputStream osBIO;
     // NBT From
@@ -144,8 +196,11 @@ public void undo(Actor actor, Region[] regions) {
             e.printStackTrace();
             return;
         }
+        this.regions = regions;
         try (EditSession session = toEditSession(actor, regions)) {
             session.setBlocks(this, ChangeSetExecutor.Type.UNDO);
+        } finally {
+            this.regions = null;
         }
     }
 
@@ -160,8 +215,13 @@ public void redo(Actor actor, Region[] regions) {
             e.printStackTrace();
             return;
         }
-        EditSession session = toEditSession(actor, regions);
-        session.setBlocks(this, ChangeSetExecutor.Type.REDO);
+        this.regions = regions;
+        try {
+            EditSession session = toEditSession(actor, regions);
+            session.setBlocks(this, ChangeSetExecutor.Type.REDO);
+        } finally {
+            this.regions = null;
+        }
     }
 
     public void redo(Actor actor) {
@@ -233,8 +293,12 @@ public void flush() {
     public void close() throws IOException {
         super.close();
         synchronized (this) {
+            boolean written = chBD != null || osBD != null || osBIO != null || osNBTF != null || osNBTT != null
+                    || osENTCF != null || osENTCT != null;
             try {
-                if (osBD != null) {
+                if (chBD != null) {
+                    closeChunkIndexed();
+                } else if (osBD != null) {
                     osBD.close();
                     osBD = null;
                 }
@@ -261,6 +325,9 @@ public void close() throws IOException {
             } catch (Exception e) {
                 e.printStackTrace();
             }
+            if (written) {
+                FaweMetrics.HISTORY_WRITE_BYTES.add(getSizeOnDisk());
+            }
         }
     }
 
@@ -276,7 +343,7 @@ public long getSizeInMemory() {
 
     @Override
     public long getSizeOnDisk() {
-        int total = 0;
+        long total = 0;
         if (bdFile.exists()) {
             total += bdFile.length();
         }
@@ -284,22 +351,25 @@ public long getSizeOnDisk() {
             total += bioFile.length();
         }
         if (nbtfFile.exists()) {
-            total += entfFile.length();
+            total += nbtfFile.length();
         }
         if (nbttFile.exists()) {
-            total += entfFile.length();
+            total += nbttFile.length();
         }
         if (entfFile.exists()) {
             total += entfFile.length();
         }
         if (enttFile.exists()) {
-            total += entfFile.length();
+            total += enttFile.length();
         }
         return total;
     }
 
     @Override
     public FaweOutputStream getBlockOS(int x, int y, int z) throws IOException {
+        if (writeChunkIndex) {
+            return getChunkIndexedOS(x, y, z);
+        }
         if (osBD != null) {
             return osBD;
         }
@@ -312,6 +382,165 @@ public FaweOutputStream getBlockOS(int x, int y, int z) throws IOException {
         }
     }
 
+    private synchronized FaweOutputStream getChunkIndexedOS(int x, int y, int z) throws IOException {
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        if (chBD == null) {
+            bdFile.getParentFile().mkdirs();
+            chBD = FileChannel.open(
+                    bdFile.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE
+            );
+            ByteArrayOutputStream header = new ByteArrayOutputStream(INDEX_HEADER_SIZE);
+            new DataOutputStream(header).writeInt(INDEX_MAGIC);
+            writeHeader(header, x, y, z);
+            writeFully(chBD, ByteBuffer.wrap(header.toByteArray()));
+            bdChunk = new ByteArrayOutputStream(INDEX_BLOCK_BUFFER);
+            bdIndexBytes = new ByteArrayOutputStream();
+            bdIndex = new DataOutputStream(bdIndexBytes);
+            bdIndexEntries = 0;
+            startChunk(chunkX, chunkZ);
+        } else if (chunkX != bdChunkX || chunkZ != bdChunkZ) {
+            finishChunk();
+            startChunk(chunkX, chunkZ);
+        }
+        return osBD;
+    }
+
+    private void startChunk(int chunkX, int chunkZ) throws IOException {
+        bdChunkX = chunkX;
+        bdChunkZ = chunkZ;
+        bdChunk.reset();
+        osBD = getCompressedOS(bdChunk, INDEX_BLOCK_BUFFER);
+        resetStreamDelegates();
+    }
+
+    private void finishChunk() throws IOException {
+        osBD.close();
+        bdIndex.writeInt(bdChunkX);
+        bdIndex.writeInt(bdChunkZ);
+        bdIndex.writeLong(chBD.position());
+        bdIndex.writeInt(bdChunk.size());
+        bdIndexEntries++;
+        writeFully(chBD, ByteBuffer.wrap(bdChunk.toByteArray()));
+    }
+
+    private void closeChunkIndexed() throws IOException {
+        try {
+            finishChunk();
+            long indexOffset = chBD.position();
+            writeFully(chBD, ByteBuffer.wrap(bdIndexBytes.toByteArray()));
+            ByteBuffer trailer = ByteBuffer.allocate(INDEX_TRAILER_SIZE);
+            trailer.putLong(indexOffset).putInt(bdIndexEntries).putInt(INDEX_MAGIC).flip();
+            writeFully(chBD, trailer);
+        } finally {
+            chBD.close();
+            chBD = null;
+            osBD = null;
+            bdChunk = null;
+            bdIndexBytes = null;
+            bdIndex = null;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * {@return if the block file uses the chunk indexed format}
+     */
+    public boolean isChunkIndexed() {
+        if (bdFile.length() < INDEX_HEADER_SIZE + INDEX_TRAILER_SIZE) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(bdFile))) {
+            return in.readInt() == INDEX_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Map the compressed chunk blocks that intersect the given regions and read the header.
+     */
+    private List<ChunkBlock> mapChunkBlocks(@Nullable Region[] regions) throws IOException {
+        try (FileChannel channel = FileChannel.open(bdFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - INDEX_TRAILER_SIZE, INDEX_TRAILER_SIZE);
+            long indexOffset = trailer.getLong();
+            int entries = trailer.getInt();
+            if (trailer.getInt() != INDEX_MAGIC) {
+                throw new IOException("Incomplete block history file " + bdFile);
+            }
+            readHeader(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 4, INDEX_HEADER_SIZE - 4)));
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) entries * INDEX_ENTRY_SIZE);
+            // Blocks can only be sliced out of a single mapping below 2GiB, larger files are mapped per block
+            MappedByteBuffer data = indexOffset <= Integer.MAX_VALUE
+                    ? channel.map(FileChannel.MapMode.READ_ONLY, 0, indexOffset)
+                    : null;
+            List<ChunkBlock> blocks = new ArrayList<>();
+            for (int i = 0; i < entries; i++) {
+                int chunkX = index.getInt();
+                int chunkZ = index.getInt();
+                long offset = index.getLong();
+                int length = index.getInt();
+                if (!intersects(chunkX, chunkZ, regions)) {
+                    continue;
+                }
+                ByteBuffer block = data != null
+                        ? data.slice((int) offset, length)
+                        : channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                blocks.add(new ChunkBlock(chunkX, chunkZ, block));
+            }
+            return blocks;
+        }
+    }
+
+    private static boolean intersects(int chunkX, int chunkZ, @Nullable Region[] regions) {
+        if (regions == null) {
+            return true;
+        }
+        int bx = chunkX << 4;
+        int bz = chunkZ << 4;
+        for (Region region : regions) {
+            BlockVector3 min = region.getMinimumPoint();
+            BlockVector3 max = region.getMaximumPoint();
+            if (bx <= max.x() && bx + 15 >= min.x() && bz <= max.z() && bz + 15 >= min.z()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restrict the block changes read to the given regions, as a partial undo or redo does.
+     *
+     * @param regions the regions, or {@code null} to read every change
+     */
+    @VisibleForTesting
+    void setRegions(@Nullable Region[] regions) {
+        this.regions = regions;
+    }
+
+    @Override
+    protected boolean acceptBlock(int x, int y, int z) {
+        Region[] regions = this.regions;
+        if (regions == null) {
+            return true;
+        }
+        for (Region region : regions) {
+            if (region.contains(x, y, z)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public FaweOutputStream getBiomeOS() throws IOException {
         if (osBIO != null) {
@@ -375,6 +604,9 @@ public FaweInputStream getBlockIS() throws IOException {
             return null;
         }
         try {
+            if (isChunkIndexed()) {
+                return new FaweInputStream(new ChunkBlockInputStream(mapChunkBlocks(regions)));
+            }
             FaweInputStream is = MainUtil.getCompressedIS(new FileInputStream(bdFile));
             readHeader(is);
             return is;
@@ -451,16 +683,64 @@ public NBTInputStream getTileRemoveIS() throws IOException {
 
     @Override
     public SimpleChangeSetSummary summarize(Region region, boolean shallow) {
-        if (bdFile.exists()) {
+        if (!bdFile.exists()) {
+            return null;
+        }
+        if (!isChunkIndexed()) {
             return super.summarize(region, shallow);
         }
-        return null;
+        List<ChunkBlock> blocks;
+        try {
+            blocks = mapChunkBlocks(region == null ? null : new Region[]{region});
+        } catch (IOException e) {
+            LOGGER.error("Could not summarize block history file {}", bdFile, e);
+            return summarizeShallow();
+        }
+        SimpleChangeSetSummary summary = summarizeShallow();
+        if (shallow) {
+            for (ChunkBlock block : blocks) {
+                summary.minX = Math.min(summary.minX, block.chunkX() << 4);
+                summary.minZ = Math.min(summary.minZ, block.chunkZ() << 4);
+                summary.maxX = Math.max(summary.maxX, (block.chunkX() << 4) + 15);
+                summary.maxZ = Math.max(summary.maxZ, (block.chunkZ() << 4) + 15);
+            }
+            return summary;
+        }
+        int ox = getOriginX();
+        int oz = getOriginZ();
+        int amount = (Settings.settings().HISTORY.BUFFER_SIZE - HEADER_SIZE) / 9;
+        try (FaweInputStream fis = new FaweInputStream(new ChunkBlockInputStream(blocks))) {
+            MutableFullBlockChange change = new MutableFullBlockChange(null, 0, false);
+            for (int i = 0; i < amount; i++) {
+                int x = posDel.readX(fis) + ox;
+                int y = posDel.readY(fis);
+                int z = posDel.readZ(fis) + oz;
+                idDel.readCombined(fis, change);
+                if (region == null || region.contains(x, y, z)) {
+                    summary.add(x, z, change.to);
+                }
+            }
+        } catch (EOFException ignored) {
+        } catch (IOException e) {
+            LOGGER.error("Could not summarize block history file {}", bdFile, e);
+        }
+        return summary;
     }
 
     public IntPair readHeader() {
         int ox = getOriginX();
         int oz = getOriginZ();
-        if (ox == 0 && oz == 0 && bdFile.exists()) {
+        if (ox == 0 && oz == 0 && isChunkIndexed()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(bdFile))) {
+                // skip magic, mode and version
+                in.skipNBytes(6);
+                ox = in.readInt();
+                oz = in.readInt();
+                setOrigin(ox, oz);
+            } catch (IOException e) {
+                LOGGER.error("Could not read the header of block history file {}", bdFile, e);
+            }
+        } else if (ox == 0 && oz == 0 && bdFile.exists()) {
             try (FileInputStream fis = new FileInputStream(bdFile)) {
                 final FaweInputStream gis = MainUtil.getCompressedIS(fis);
                 // skip mode
@@ -492,4 +772,70 @@ public void setRecordChanges(boolean recordChanges) {
 
     }
 
+    private record ChunkBlock(int chunkX, int chunkZ, ByteBuffer data) {
+
+    }
+
+    /**
+     * Reads the decompressed contents of consecutive chunk blocks. As delta encoding restarts at every block, the stream
+     * delegates are reset as soon as the last byte of a block has been read, which is always the end of a record.
+     */
+    private final class ChunkBlockInputStream extends InputStream {
+
+        private static final byte[] EMPTY = new byte[0];
+
+        private final Iterator<ChunkBlock> blocks;
+        private byte[] data = EMPTY;
+        private int pos;
+
+        private ChunkBlockInputStream(List<ChunkBlock> blocks) throws IOException {
+            this.blocks = blocks.iterator();
+            nextBlock();
+        }
+
+        private void nextBlock() throws IOException {
+            data = EMPTY;
+            pos = 0;
+            while (data.length == 0 && blocks.hasNext()) {
+                try (FaweInputStream in = MainUtil.getCompressedIS(
+                        new ByteBufferInputStream(blocks.next().data()),
+                        INDEX_BLOCK_BUFFER
+                )) {
+                    data = in.readAllBytes();
+                }
+            }
+            resetStreamDelegates();
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos >= data.length) {
+                return -1;
+            }
+            int value = data[pos++] & 0xFF;
+            if (pos == data.length) {
+                nextBlock();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= data.length) {
+                return -1;
+            }
+            int read = Math.min(len, data.length - pos);
+            System.arraycopy(data, pos, bytes, off, read);
+            pos += read;
+            if (pos == data.length) {
+                nextBlock();
+            }
+            return read;
+        }
+
+    }
+
 }
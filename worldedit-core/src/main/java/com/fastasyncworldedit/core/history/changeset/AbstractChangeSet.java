@@ -11,6 +11,7 @@
 import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.fastasyncworldedit.core.util.NbtUtils;
 import com.fastasyncworldedit.core.util.TaskManager;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
 import com.google.common.util.concurrent.Futures;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.EditSession;
@@ -124,6 +125,7 @@ public Extent construct(Extent child) {
 
     @Override
     public final synchronized IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
+        final long start = FaweMetrics.HISTORY_WRITE.start();
         int bx = chunk.getX() << 4;
         int bz = chunk.getZ() << 4;
 
@@ -222,6 +224,7 @@ public final synchronized IChunkSet processSet(IChunk chunk, IChunkGet get, IChu
                 }
             }
         }
+        FaweMetrics.HISTORY_WRITE.record(start);
         return set;
     }
 
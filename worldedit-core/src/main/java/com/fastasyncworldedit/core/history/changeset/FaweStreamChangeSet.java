@@ -10,6 +10,7 @@
 import com.fastasyncworldedit.core.internal.exception.FaweSmallEditUnsupportedException;
 import com.fastasyncworldedit.core.internal.io.FaweInputStream;
 import com.fastasyncworldedit.core.internal.io.FaweOutputStream;
+import com.fastasyncworldedit.core.internal.io.ZstdDictionaries;
 import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
 import com.fastasyncworldedit.core.util.MainUtil;
 import com.fastasyncworldedit.core.util.MathMan;
@@ -256,6 +257,22 @@ public int readZ(FaweInputStream is) throws IOException {
         }
     }
 
+    /**
+     * Reset the delta state of the position and id delegates, e.g. when starting a new independently readable block.
+     */
+    protected void resetStreamDelegates() {
+        setupStreamDelegates(mode);
+    }
+
+    /**
+     * Filter the block changes read by the block iterators and populators. All changes are accepted by default.
+     *
+     * @return if the block change at the given position should be returned
+     */
+    protected boolean acceptBlock(int x, int y, int z) {
+        return true;
+    }
+
     public void writeHeader(OutputStream os, int x, int y, int z) throws IOException {
         os.write(mode);
         // Allows for version detection of history in case of changes to format.
@@ -287,7 +304,14 @@ public void readHeader(InputStream is) throws IOException {
     }
 
     public FaweOutputStream getCompressedOS(OutputStream os) throws IOException {
-        return MainUtil.getCompressedOS(os, compression);
+        return getCompressedOS(os, Settings.settings().HISTORY.BUFFER_SIZE);
+    }
+
+    public FaweOutputStream getCompressedOS(OutputStream os, int buffer) throws IOException {
+        if (Settings.settings().HISTORY.ZSTD_DICTIONARY) {
+            return ZstdDictionaries.getCompressedOS(os, buffer);
+        }
+        return MainUtil.getCompressedOS(os, compression, buffer);
     }
 
     @Override
@@ -453,10 +477,12 @@ public Iterator<MutableBlockChange> getBlockIterator(final boolean dir) throws I
 
             public MutableBlockChange read() {
                 try {
-                    change.x = posDel.readX(is) + originX;
-                    change.y = posDel.readY(is);
-                    change.z = posDel.readZ(is) + originZ;
-                    idDel.readCombined(is, change, dir);
+                    do {
+                        change.x = posDel.readX(is) + originX;
+                        change.y = posDel.readY(is);
+                        change.z = posDel.readZ(is) + originZ;
+                        idDel.readCombined(is, change, dir);
+                    } while (!acceptBlock(change.x, change.y, change.z));
                     return change;
                 } catch (EOFException ignored) {
                 } catch (Exception e) {
@@ -569,10 +595,12 @@ public Iterator<MutableFullBlockChange> getFullBlockIterator(BlockBag blockBag,
 
             public MutableFullBlockChange read() {
                 try {
-                    change.x = posDel.readX(is) + originX;
-                    change.y = posDel.readY(is);
-                    change.z = posDel.readZ(is) + originZ;
-                    idDel.readCombined(is, change);
+                    do {
+                        change.x = posDel.readX(is) + originX;
+                        change.y = posDel.readY(is);
+                        change.z = posDel.readZ(is) + originZ;
+                        idDel.readCombined(is, change);
+                    } while (!acceptBlock(change.x, change.y, change.z));
                     return change;
                 } catch (EOFException ignored) {
                 } catch (Exception e) {
@@ -873,10 +901,12 @@ class Populator implements ChangePopulator<MutableFullBlockChange> {
             @Override
             public @Nullable MutableFullBlockChange populate(@NotNull final MutableFullBlockChange change) {
                 try {
-                    change.x = posDel.readX(is) + originX;
-                    change.y = posDel.readY(is);
-                    change.z = posDel.readZ(is) + originZ;
-                    idDel.readCombined(is, change);
+                    do {
+                        change.x = posDel.readX(is) + originX;
+                        change.y = posDel.readY(is);
+                        change.z = posDel.readZ(is) + originZ;
+                        idDel.readCombined(is, change);
+                    } while (!acceptBlock(change.x, change.y, change.z));
                     return change;
                 } catch (EOFException ignored) {
                 } catch (Exception e) {
@@ -915,10 +945,12 @@ class Populator implements ChangePopulator<MutableBlockChange> {
             @Override
             public @Nullable MutableBlockChange populate(@NotNull final MutableBlockChange change) {
                 try {
-                    change.x = posDel.readX(is) + originX;
-                    change.y = posDel.readY(is);
-                    change.z = posDel.readZ(is) + originZ;
-                    idDel.readCombined(is, change, dir);
+                    do {
+                        change.x = posDel.readX(is) + originX;
+                        change.y = posDel.readY(is);
+                        change.z = posDel.readZ(is) + originZ;
+                        idDel.readCombined(is, change, dir);
+                    } while (!acceptBlock(change.x, change.y, change.z));
                     return change;
                 } catch (EOFException ignored) {
                 } catch (Exception e) {
@@ -1071,7 +1103,7 @@ public SimpleChangeSetSummary summarize(Region region, boolean shallow) {
                 for (int i = 0; i < amount; i++) {
                     int x = posDel.readX(fis) + ox;
                     int y = posDel.readY(fis);
-                    int z = posDel.readZ(fis) + ox;
+                    int z = posDel.readZ(fis) + oz;
                     idDel.readCombined(fis, change);
                     summary.add(x, z, change.to);
                 }
@@ -0,0 +1,233 @@
+package com.fastasyncworldedit.core.internal.io;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A gzip output stream deflating blocks of its input on the primary fork join pool, or the common pool if FAWE is not
+ * running. Each block after the first is deflated with the end of the previous block as its dictionary and all but the
+ * last block end with a sync flush, so the output is a single standard gzip member which any gzip reader can decompress.
+ * <p>
+ * Like {@link java.util.zip.GZIPOutputStream}, {@link #flush()} only flushes data which was already compressed.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() ->
+            new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private final OutputStream out;
+    private final int threads;
+    private final int blockSize;
+    private final ArrayDeque<Future<byte[]>> pending;
+    private final CRC32 crc = new CRC32();
+    @Nullable
+    private final ExecutorService executor;
+    private byte[] block;
+    private int blockLength;
+    @Nullable
+    private byte[] previous;
+    private int previousLength;
+    private long size;
+    private boolean headerWritten;
+    private boolean closed;
+
+    /**
+     * Create a new stream with the worker count and block size configured for clipboards.
+     *
+     * @param out the stream to write the compressed data to
+     */
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, Settings.settings().CLIPBOARD.GZIP_THREADS, Settings.settings().CLIPBOARD.GZIP_BLOCK_SIZE * 1024);
+    }
+
+    /**
+     * Create a new stream.
+     *
+     * @param out       the stream to write the compressed data to
+     * @param threads   the number of blocks deflated at once, or {@code 0} for the configured parallel threads
+     * @param blockSize the size of the blocks in bytes, at least 32 KiB
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize) {
+        this.out = out;
+        this.threads = threads > 0 ? threads : Math.max(1, Settings.settings().QUEUE.PARALLEL_THREADS);
+        this.blockSize = Math.max(DICTIONARY_SIZE, blockSize);
+        this.pending = new ArrayDeque<>(this.threads);
+        this.executor = this.threads > 1 ? executor() : null;
+        this.block = new byte[this.blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[blockLength++] = (byte) b;
+        crc.update(b);
+        size++;
+        if (blockLength == blockSize) {
+            submitBlock(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        crc.update(b, off, len);
+        size += len;
+        while (len > 0) {
+            int n = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, n);
+            blockLength += n;
+            off += n;
+            len -= n;
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Writes the blocks which are already compressed and flushes the underlying stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            writeBlock(await(pending.poll()));
+        }
+        out.flush();
+    }
+
+    /**
+     * Compresses the remaining input and writes the gzip trailer, without closing the underlying stream.
+     *
+     * @throws IOException on I/O error
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        submitBlock(true);
+        while (!pending.isEmpty()) {
+            writeBlock(await(pending.poll()));
+        }
+        writeIntLE((int) crc.getValue());
+        writeIntLE((int) size);
+        closed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!closed) {
+                finish();
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            closed = true;
+            out.close();
+        }
+    }
+
+    private static ExecutorService executor() {
+        final Fawe fawe = Fawe.instance();
+        // without a platform, e.g. in tests or standalone tools, there is no queue handler to use
+        return fawe != null ? fawe.getQueueHandler().getForkJoinPoolPrimary() : ForkJoinPool.commonPool();
+    }
+
+    private void submitBlock(boolean last) throws IOException {
+        final byte[] input = block;
+        final int length = blockLength;
+        final byte[] dictionary = previous;
+        final int dictionaryLength = previousLength;
+        if (executor == null) {
+            writeBlock(deflate(input, length, dictionary, dictionaryLength, last));
+        } else {
+            pending.add(executor.submit(() -> deflate(input, length, dictionary, dictionaryLength, last)));
+            if (pending.size() >= threads) {
+                writeBlock(await(pending.poll()));
+            }
+        }
+        if (!last) {
+            previous = input;
+            previousLength = length;
+            block = new byte[blockSize];
+            blockLength = 0;
+        }
+    }
+
+    private static byte[] deflate(byte[] input, int length, @Nullable byte[] dictionary, int dictionaryLength, boolean last) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        if (dictionary != null) {
+            int used = Math.min(DICTIONARY_SIZE, dictionaryLength);
+            deflater.setDictionary(dictionary, dictionaryLength - used, used);
+        }
+        deflater.setInput(input, 0, length);
+        if (last) {
+            deflater.finish();
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(64, length >> 1));
+        byte[] buffer = new byte[16 * 1024];
+        int n;
+        if (last) {
+            while (!deflater.finished()) {
+                n = deflater.deflate(buffer, 0, buffer.length);
+                result.write(buffer, 0, n);
+            }
+        } else {
+            // a sync flush is complete once it does not fill the buffer
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                result.write(buffer, 0, n);
+            } while (n == buffer.length);
+        }
+        return result.toByteArray();
+    }
+
+    private void writeBlock(byte[] data) throws IOException {
+        if (!headerWritten) {
+            out.write(HEADER);
+            headerWritten = true;
+        }
+        out.write(data);
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compress", e.getCause());
+        }
+    }
+
+    private void writeIntLE(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+        out.write((value >>> 16) & 0xFF);
+        out.write((value >>> 24) & 0xFF);
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+}
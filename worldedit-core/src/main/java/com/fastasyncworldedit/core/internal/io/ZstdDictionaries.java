@@ -0,0 +1,237 @@
+package com.fastasyncworldedit.core.internal.io;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.util.MainUtil;
+import com.fastasyncworldedit.core.util.TaskManager;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import it.unimi.dsi.fastutil.io.FastBufferedInputStream;
+import it.unimi.dsi.fastutil.io.FastBufferedOutputStream;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zstd compression with a dictionary trained on the history written by this server. History entries and clipboard NBT
+ * are small and very similar to each other, which plain zstd can't take advantage of.
+ * <p>
+ * Until a dictionary exists, streams are written without one and sampled. Once enough samples have been collected, a
+ * dictionary is trained asynchronously and stored as {@code <version>.dict} next to the history folder. Every stream
+ * records the version of the dictionary it was written with, so dictionaries must be kept as long as history using them
+ * exists.
+ */
+public final class ZstdDictionaries {
+
+    /**
+     * The compression mode written as the first byte of a stream, recognised by {@link MainUtil#getCompressedIS(InputStream)}.
+     */
+    public static final int MODE = 127;
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    // zstd's default dictionary size, trained from ~100x as much sample data
+    private static final int DICTIONARY_SIZE = 112640;
+    private static final int SAMPLE_BUFFER_SIZE = DICTIONARY_SIZE * 100;
+    private static final int MAX_SAMPLE_SIZE = 1 << 17;
+
+    private static final Map<Integer, byte[]> DICTIONARIES = new ConcurrentHashMap<>();
+    // 0 if no dictionary has been trained yet, -1 if not yet read from disk
+    private static volatile int currentVersion = -1;
+    private static ZstdDictTrainer trainer;
+    private static int sampledBytes;
+    private static boolean training;
+
+    private ZstdDictionaries() {
+    }
+
+    /**
+     * Get the folder the dictionaries are stored in.
+     *
+     * @return the dictionary folder
+     */
+    public static File getFolder() {
+        File history = MainUtil.getFile(Fawe.platform().getDirectory(), Settings.settings().PATHS.HISTORY);
+        return new File(history.getAbsoluteFile().getParentFile(), "zstd-dictionaries");
+    }
+
+    /**
+     * {@return the version of the dictionary new streams are written with, or 0 if none has been trained yet}
+     */
+    public static int getCurrentVersion() {
+        int version = currentVersion;
+        if (version == -1) {
+            synchronized (ZstdDictionaries.class) {
+                if ((version = currentVersion) == -1) {
+                    version = 0;
+                    File[] files = getFolder().listFiles((dir, name) -> name.endsWith(".dict"));
+                    if (files != null) {
+                        for (File file : files) {
+                            String name = file.getName();
+                            try {
+                                version = Math.max(version, Integer.parseInt(name.substring(0, name.length() - 5)));
+                            } catch (NumberFormatException ignored) {
+                            }
+                        }
+                    }
+                    currentVersion = version;
+                }
+            }
+        }
+        return version;
+    }
+
+    private static byte[] getDictionary(int version) throws IOException {
+        byte[] dictionary = DICTIONARIES.get(version);
+        if (dictionary == null) {
+            File file = new File(getFolder(), version + ".dict");
+            if (!file.exists()) {
+                throw new IOException("Missing zstd dictionary " + file);
+            }
+            dictionary = Files.readAllBytes(file.toPath());
+            DICTIONARIES.putIfAbsent(version, dictionary);
+        }
+        return dictionary;
+    }
+
+    /**
+     * Get a stream compressing with the current dictionary. The stream starts with {@link #MODE} and the dictionary
+     * version.
+     *
+     * @param os     the stream to write the compressed data to
+     * @param buffer the buffer size
+     * @return the compressing stream
+     */
+    public static FaweOutputStream getCompressedOS(OutputStream os, int buffer) throws IOException {
+        int version = getCurrentVersion();
+        os.write(MODE);
+        os.write(version >>> 24);
+        os.write(version >>> 16);
+        os.write(version >>> 8);
+        os.write(version);
+        ZstdOutputStream zstd = new ZstdOutputStream(
+                new FastBufferedOutputStream(os, buffer),
+                Settings.settings().HISTORY.ZSTD_DICTIONARY_LEVEL
+        );
+        OutputStream out = zstd;
+        if (version != 0) {
+            zstd.setDict(getDictionary(version));
+        } else {
+            out = new SamplingOutputStream(zstd);
+        }
+        return new FaweOutputStream(new FastBufferedOutputStream(out, buffer));
+    }
+
+    /**
+     * Get a stream decompressing a stream written by {@link #getCompressedOS(OutputStream, int)}, after its
+     * {@link #MODE} byte has been read.
+     *
+     * @param is     the compressed stream, positioned at the dictionary version
+     * @param buffer the buffer size
+     * @return the decompressing stream
+     */
+    public static FaweInputStream getCompressedIS(InputStream is, int buffer) throws IOException {
+        int version = (is.read() << 24) | (is.read() << 16) | (is.read() << 8) | is.read();
+        if (version < 0) {
+            throw new IOException("Truncated zstd dictionary stream header");
+        }
+        ZstdInputStream zstd = new ZstdInputStream(new FastBufferedInputStream(is, buffer));
+        if (version != 0) {
+            zstd.setDict(getDictionary(version));
+        }
+        return new FaweInputStream(new FastBufferedInputStream(zstd));
+    }
+
+    private static synchronized void addSample(byte[] sample) {
+        if (training || sample.length == 0 || getCurrentVersion() != 0) {
+            return;
+        }
+        if (trainer == null) {
+            trainer = new ZstdDictTrainer(SAMPLE_BUFFER_SIZE, DICTIONARY_SIZE);
+            sampledBytes = 0;
+        }
+        sampledBytes += sample.length;
+        if (!trainer.addSample(sample) || sampledBytes >= SAMPLE_BUFFER_SIZE) {
+            final ZstdDictTrainer samples = trainer;
+            trainer = null;
+            training = true;
+            TaskManager.taskManager().async(() -> train(samples));
+        }
+    }
+
+    private static void train(ZstdDictTrainer samples) {
+        try {
+            byte[] dictionary = samples.trainSamples();
+            File folder = getFolder();
+            folder.mkdirs();
+            int version = getCurrentVersion() + 1;
+            Path target = new File(folder, version + ".dict").toPath();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.write(temp, dictionary);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            DICTIONARIES.put(version, dictionary);
+            currentVersion = version;
+            LOGGER.info("Trained zstd dictionary {} ({} bytes)", target, dictionary.length);
+        } catch (Throwable e) {
+            LOGGER.warn("Could not train zstd dictionary, sampling again", e);
+        } finally {
+            synchronized (ZstdDictionaries.class) {
+                training = false;
+            }
+        }
+    }
+
+    /**
+     * Keeps a copy of the first uncompressed bytes written to use as a training sample.
+     */
+    private static final class SamplingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final ByteArrayOutputStream sample = new ByteArrayOutputStream();
+
+        private SamplingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (sample.size() < MAX_SAMPLE_SIZE) {
+                sample.write(b);
+            }
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int remaining = MAX_SAMPLE_SIZE - sample.size();
+            if (remaining > 0) {
+                sample.write(b, off, Math.min(len, remaining));
+            }
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            addSample(sample.toByteArray());
+        }
+
+    }
+
+}
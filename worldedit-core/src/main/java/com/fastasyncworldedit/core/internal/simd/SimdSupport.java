@@ -2,15 +2,18 @@
 
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.extent.filter.block.DelegateFilter;
+import com.fastasyncworldedit.core.function.mask.ABlockMask;
 import com.fastasyncworldedit.core.function.mask.InverseMask;
 import com.fastasyncworldedit.core.function.mask.SingleBlockStateMask;
 import com.fastasyncworldedit.core.queue.Filter;
+import com.sk89q.worldedit.function.mask.BlockTypeMask;
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.mask.InverseSingleBlockStateMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
 import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockTypesCache;
 import jdk.incubator.vector.ShortVector;
@@ -24,6 +27,8 @@ public class SimdSupport {
 
     private static final Logger LOGGER = LogManagerCompat.getLogger();
     private static final boolean VECTOR_API_PRESENT;
+    // the most ordinal ranges a block mask is compared against before falling back to a lookup
+    private static final int MAX_RANGES = 8;
 
     static {
         boolean vectorApiPresent = false;
@@ -59,6 +64,15 @@ public static boolean useVectorApi() {
             case SingleBlockStateMask single -> vectorizedTargetMask(single.getBlockState().getOrdinalChar());
             case InverseSingleBlockStateMask inverse -> vectorizedTargetMaskInverse(inverse.getBlockState().getOrdinalChar());
             case ExistingBlockMask ignored -> vectorizedTargetMaskNonAir();
+            case ABlockMask blockMask -> vectorizedTargetMask(blockMask.toOrdinalTable());
+            case BlockTypeMask typeMask -> {
+                boolean[] table = new boolean[BlockTypesCache.states.length];
+                for (int i = 0; i < table.length; i++) {
+                    BlockState state = BlockTypesCache.states[i];
+                    table[i] = state != null && typeMask.test(state);
+                }
+                yield vectorizedTargetMask(table);
+            }
             case InverseMask inverse -> {
                 final VectorizedMask base = vectorizedTargetMask(inverse.inverse());
                 if (base == null) {
@@ -83,6 +97,68 @@ private static VectorizedMask vectorizedTargetMaskInverse(char ordinal) {
         return (set, get, species) -> get.get(species).compare(VectorOperators.NE, (short) ordinal);
     }
 
+    /**
+     * Get a vectorized mask matching the ordinals set in a table. States of a block type have consecutive ordinals, so
+     * masks of a few block types or states are matched by comparing against a few ordinal ranges. Other tables are
+     * looked up lane by lane.
+     *
+     * @param table the matched ordinals
+     * @return the vectorized mask
+     */
+    static VectorizedMask vectorizedTargetMask(boolean[] table) {
+        int setRuns = countRuns(table, true);
+        int unsetRuns = countRuns(table, false);
+        if (Math.min(setRuns, unsetRuns) <= MAX_RANGES) {
+            final boolean inverse = unsetRuns < setRuns;
+            final short[] start = new short[inverse ? unsetRuns : setRuns];
+            final short[] span = new short[start.length];
+            int run = 0;
+            for (int i = 0; i < table.length; i++) {
+                if (table[i] != inverse && (i == 0 || table[i - 1] == inverse)) {
+                    int end = i;
+                    while (end + 1 < table.length && table[end + 1] != inverse) {
+                        end++;
+                    }
+                    start[run] = (short) i;
+                    span[run] = (short) (end - i);
+                    run++;
+                }
+            }
+            if (start.length == 0) {
+                // nothing or everything is matched
+                return (set, get, species) -> species.maskAll(inverse);
+            }
+            return (set, get, species) -> {
+                ShortVector vector = get.get(species);
+                // ordinal in [start, start + span] <=> (ordinal - start) <= span, unsigned
+                VectorMask<Short> mask = vector.sub(start[0]).compare(VectorOperators.UNSIGNED_LE, span[0]);
+                for (int i = 1; i < start.length; i++) {
+                    mask = mask.or(vector.sub(start[i]).compare(VectorOperators.UNSIGNED_LE, span[i]));
+                }
+                return inverse ? mask.not() : mask;
+            };
+        }
+        return (set, get, species) -> {
+            short[] lanes = get.get(species).toArray();
+            boolean[] matches = new boolean[lanes.length];
+            for (int i = 0; i < lanes.length; i++) {
+                int ordinal = lanes[i] & 0xFFFF;
+                matches[i] = ordinal < table.length && table[ordinal];
+            }
+            return VectorMask.fromArray(species, matches, 0);
+        };
+    }
+
+    private static int countRuns(boolean[] table, boolean value) {
+        int runs = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] == value && (i == 0 || table[i - 1] != value)) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
     public static @Nullable VectorizedFilter vectorizedPattern(Pattern pattern) {
         if (!useVectorApi()) {
             return null;
@@ -196,6 +196,21 @@ public BlockVector3 next() {
         };
     }
 
+    /**
+     * Visit each point contained in the set without creating a {@link BlockVector3} per point
+     *
+     * @param visitor visitor to use, the index passed is the index within the backing local set
+     */
+    public void forEach(LocalBlockVectorSet.BlockVectorSetVisitor visitor) {
+        for (Long2ObjectMap.Entry<LocalBlockVectorSet> entry : localSets.long2ObjectEntrySet()) {
+            long triple = entry.getLongKey();
+            int bx = (int) MathMan.untripleWorldCoordX(triple) << 11;
+            int by = (int) MathMan.untripleWorldCoordY(triple) << 9;
+            int bz = (int) MathMan.untripleWorldCoordZ(triple) << 11;
+            entry.getValue().forEach((x, y, z, index) -> visitor.run(bx + x, by + y, bz + z, index));
+        }
+    }
+
     @Override
     public boolean add(BlockVector3 vector) {
         return add(vector.x(), vector.y(), vector.z());
@@ -0,0 +1,9 @@
+package com.fastasyncworldedit.core.queue;
+
+/**
+ * A filter that only counts blocks by state. Sections entirely inside the filtered region are counted in bulk with
+ * {@link IChunkGet#countBlocks(int, IChunkGet.BlockCounter)} rather than block by block.
+ */
+public interface BlockCountingFilter extends Filter, IChunkGet.BlockCounter {
+
+}
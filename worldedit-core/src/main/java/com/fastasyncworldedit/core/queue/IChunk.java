@@ -1,6 +1,7 @@
 package com.fastasyncworldedit.core.queue;
 
 import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
+import com.fastasyncworldedit.core.queue.implementation.Flood;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 
@@ -53,6 +54,18 @@ default IChunk getRoot() {
         return this;
     }
 
+    /**
+     * Get the blocks of the given layer to be set to the chunk, creating them if necessary. Changes to the returned array
+     * are set to the chunk, with {@link com.sk89q.worldedit.world.block.BlockTypesCache.ReservedIDs#__RESERVED__}
+     * leaving a block unchanged.
+     *
+     * @param layer the layer
+     * @return the blocks to be set, or {@code null} if blocks cannot be set to the chunk
+     */
+    default char[] loadSet(int layer) {
+        return load(layer);
+    }
+
     /**
      * Filter through all the blocks in the chunk
      *
@@ -62,14 +75,14 @@ default IChunk getRoot() {
      */
     void filterBlocks(Filter filter, ChunkFilterBlock block, @Nullable Region region, boolean full);
 
-//    /**
-//     * Flood through all the blocks in the chunk
-//     * TODO not implemented
-//     * @param flood
-//     * @param mask
-//     * @param block
-//     */
-//    void flood(Flood flood, FilterBlockMask mask, ChunkFilterBlock block);
+    /**
+     * Flood through the queued positions of this chunk
+     *
+     * @param flood the worker holding the queued positions
+     * @param mask  called for every queued position, returning {@code true} to expand to its neighbours
+     * @param block the filter block
+     */
+    void flood(Flood.Worker flood, FilterBlockMask mask, ChunkFilterBlock block);
 
     @Override
     default IChunk reset() {
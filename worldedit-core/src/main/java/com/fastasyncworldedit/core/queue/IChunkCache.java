@@ -8,6 +8,16 @@
 
     T get(int chunkX, int chunkZ);
 
+    /**
+     * Remove a chunk from the cache, e.g. because it is being edited. The next {@link #get(int, int)} will return a new
+     * instance.
+     *
+     * @param chunkX chunk x
+     * @param chunkZ chunk z
+     */
+    default void invalidate(int chunkX, int chunkZ) {
+    }
+
     @Override
     default boolean trim(boolean aggressive) {
         return false;
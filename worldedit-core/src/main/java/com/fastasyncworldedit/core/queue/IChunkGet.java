@@ -9,6 +9,7 @@
 import com.sk89q.worldedit.world.biome.BiomeType;
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
 
 import javax.annotation.Nullable;
 import java.util.Set;
@@ -134,4 +135,58 @@ default void unlockCall() {}
      */
     int getMinY();
 
+    /**
+     * Count the blocks of a section by ordinal. Sections that do not exist are counted as
+     * {@link BlockTypesCache.ReservedIDs#__RESERVED__}. Implementations may count from the palette of the section rather
+     * than expanding it to a {@code char[]}.
+     *
+     * @param layer   the section to count
+     * @param counter the counter to add the blocks to
+     */
+    default void countBlocks(int layer, BlockCounter counter) {
+        if (!hasSection(layer)) {
+            counter.add((char) BlockTypesCache.ReservedIDs.__RESERVED__, 4096);
+            return;
+        }
+        countRuns(load(layer), counter);
+    }
+
+    /**
+     * Count the blocks of a section array, adding runs of equal blocks at once.
+     *
+     * @param blocks  the section
+     * @param counter the counter to add the blocks to
+     */
+    static void countRuns(char[] blocks, BlockCounter counter) {
+        char run = blocks[0];
+        int length = 1;
+        for (int i = 1; i < blocks.length; i++) {
+            char ordinal = blocks[i];
+            if (ordinal == run) {
+                length++;
+            } else {
+                counter.add(run, length);
+                run = ordinal;
+                length = 1;
+            }
+        }
+        counter.add(run, length);
+    }
+
+    /**
+     * Receives block counts from {@link #countBlocks(int, BlockCounter)}.
+     */
+    @FunctionalInterface
+    interface BlockCounter {
+
+        /**
+         * Add a number of blocks of the same state.
+         *
+         * @param ordinal the ordinal of the block state
+         * @param count   the number of blocks
+         */
+        void add(char ordinal, int count);
+
+    }
+
 }
@@ -5,9 +5,12 @@
 import com.fastasyncworldedit.core.internal.simd.SimdSupport;
 import com.fastasyncworldedit.core.internal.simd.VectorizedCharFilterBlock;
 import com.fastasyncworldedit.core.internal.simd.VectorizedFilter;
+import com.fastasyncworldedit.core.queue.implementation.Flood;
+import com.fastasyncworldedit.core.regions.ChunkKeys;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.function.operation.Operation;
-import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.SideEffectSet;
@@ -187,13 +190,32 @@ default ChunkFilterBlock apply(
 
     @Override
     default <T extends Filter> T apply(Region region, T filter, boolean full) {
-        final Set<BlockVector2> chunks = region.getChunks();
         ChunkFilterBlock block = null;
-        for (BlockVector2 chunk : chunks) {
-            block = apply(block, filter, region, chunk.x(), chunk.z(), full);
+        for (long chunk : region.getChunkKeys()) {
+            block = apply(block, filter, region, ChunkKeys.x(chunk), ChunkKeys.z(chunk), full);
         }
         flush();
         return filter;
     }
 
+    @Override
+    default int floodFill(
+            Set<BlockVector3> seeds,
+            Mask mask,
+            Pattern pattern,
+            BlockVector3[] directions,
+            int maxDepth,
+            int minY,
+            int maxY
+    ) {
+        Flood flood = new Flood(Integer.MAX_VALUE, maxDepth, directions, minY, maxY);
+        for (BlockVector3 seed : seeds) {
+            flood.start(seed.x(), seed.y(), seed.z());
+        }
+        Flood.Fill fill = new Flood.Fill(seeds, mask, pattern);
+        flood.run(this, fill);
+        flush();
+        return fill.getAffected();
+    }
+
 }
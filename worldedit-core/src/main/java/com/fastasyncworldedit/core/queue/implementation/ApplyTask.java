@@ -4,11 +4,12 @@
 import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
 import com.fastasyncworldedit.core.internal.exception.FaweException;
 import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.regions.ChunkKeys;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
-import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import org.apache.logging.log4j.Logger;
 
+import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -19,19 +20,17 @@
 
     private static final Logger LOGGER = LogManagerCompat.getLogger();
 
-    private static final int INITIAL_REGION_SHIFT = 5;
-    private static final int SHIFT_REDUCTION = 1;
+    // The number of subtasks each task splits its chunks into
+    private static final int SPLIT = 4;
 
     private final CommonState<F> commonState;
     private final Region region;
     private final ApplyTask<F> before;
-    private final int minChunkX;
-    private final int minChunkZ;
-    private final int maxChunkX;
-    private final int maxChunkZ;
-    // Note: shift == INITIAL_REGION_SHIFT means we are in the root node.
-    // compute() relies on that when triggering postProcess
-    private final int shift;
+    // The range of indices of the chunks of this task. As the chunks are in Z-order, each range is a compact area
+    private final int from;
+    private final int to;
+    // the root task flushes the queues once all chunks are processed
+    private final boolean root;
 
     @Override
     public void run() {
@@ -40,6 +39,8 @@ public void run() {
 
     private record CommonState<F extends Filter>(
             F originalFilter,
+            long[] chunks,
+            @Nullable RegionFileSchedule schedule,
             ParallelQueueExtent parallelQueueExtent,
             ConcurrentMap<Thread, ThreadState<F>> stateCache,
             boolean full,
@@ -63,12 +64,16 @@ private ThreadState(SingleThreadQueueExtent queue, F filter) {
 
     ApplyTask(
             final Region region,
+            final long[] chunks,
+            @Nullable final RegionFileSchedule schedule,
             final F filter,
             final ParallelQueueExtent parallelQueueExtent,
             final boolean full, final boolean[] faweExceptionReasonsUsed
     ) {
         this.commonState = new CommonState<>(
                 filter,
+                schedule == null ? chunks : schedule.getChunks(),
+                schedule,
                 parallelQueueExtent,
                 new ConcurrentHashMap<>(),
                 full,
@@ -76,70 +81,52 @@ private ThreadState(SingleThreadQueueExtent queue, F filter) {
         );
         this.region = region.clone();
         this.before = null;
-        final BlockVector3 minimumPoint = region.getMinimumPoint();
-        this.minChunkX = minimumPoint.x() >> 4;
-        this.minChunkZ = minimumPoint.z() >> 4;
-        final BlockVector3 maximumPoint = region.getMaximumPoint();
-        this.maxChunkX = maximumPoint.x() >> 4;
-        this.maxChunkZ = maximumPoint.z() >> 4;
-        this.shift = INITIAL_REGION_SHIFT;
-
+        this.from = 0;
+        this.to = this.commonState.chunks.length;
+        this.root = true;
     }
 
     private ApplyTask(
             final CommonState<F> commonState,
             final Region region,
             final ApplyTask<F> before,
-            final int minChunkX,
-            final int maxChunkX,
-            final int minChunkZ,
-            final int maxChunkZ,
-            final int higherShift
+            final int from,
+            final int to
     ) {
         this.commonState = commonState;
         this.region = region.clone();
-        this.minChunkX = minChunkX;
-        this.maxChunkX = maxChunkX;
-        this.minChunkZ = minChunkZ;
-        this.maxChunkZ = maxChunkZ;
         this.before = before;
-        this.shift = Math.max(0, higherShift - SHIFT_REDUCTION);
+        this.from = from;
+        this.to = to;
+        this.root = false;
     }
 
     @Override
     protected void compute() {
-        if (this.minChunkX != this.maxChunkX || this.minChunkZ != this.maxChunkZ) {
+        if (this.root && this.commonState.schedule != null) {
+            try {
+                computeScheduled(this.commonState.schedule);
+            } finally {
+                this.commonState.schedule.close();
+            }
+            onCompletion();
+            return;
+        }
+        if (this.to - this.from > 1) {
             ApplyTask<F> subtask = null;
-            int minRegionX = this.minChunkX >> this.shift;
-            int minRegionZ = this.minChunkZ >> this.shift;
-            int maxRegionX = this.maxChunkX >> this.shift;
-            int maxRegionZ = this.maxChunkZ >> this.shift;
-            // This task covers multiple regions. Create one subtask per region
-            for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
-                for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
-                    if (shouldProcessDirectly()) {
-                        // assume we should do a bigger batch of work here - the other threads are busy for a while
-                        processRegion(regionX, regionZ, this.shift);
-                        continue;
-                    }
-                    if (this.shift == 0 && !this.region.containsChunk(regionX, regionZ)) {
-                        // if shift == 0, region coords are chunk coords
-                        continue; // chunks not intersecting with the region don't need a task
-                    }
-
-                    // creating more tasks will likely help parallelism as other threads aren't *that* busy
-                    subtask = new ApplyTask<>(
-                            this.commonState,
-                            this.region,
-                            subtask,
-                            regionX << this.shift,
-                            ((regionX + 1) << this.shift) - 1,
-                            regionZ << this.shift,
-                            ((regionZ + 1) << this.shift) - 1,
-                            this.shift
-                    );
-                    subtask.fork();
+            int step = (this.to - this.from + SPLIT - 1) / SPLIT;
+            // This task covers multiple chunks. Create one subtask per part of them
+            for (int start = this.from; start < this.to; start += step) {
+                int end = Math.min(this.to, start + step);
+                if (shouldProcessDirectly(end - start)) {
+                    // assume we should do a bigger batch of work here - the other threads are busy for a while
+                    processChunks(start, end);
+                    continue;
                 }
+
+                // creating more tasks will likely help parallelism as other threads aren't *that* busy
+                subtask = new ApplyTask<>(this.commonState, this.region, subtask, start, end);
+                subtask.fork();
             }
             // try processing tasks in reverse order if not processed already, otherwise "wait" for completion
             while (subtask != null) {
@@ -150,35 +137,49 @@ protected void compute() {
                 }
                 subtask = subtask.before;
             }
-        } else {
+        } else if (this.to > this.from) {
             // we reached a task for a single chunk, let's process it
-            processChunk(this.minChunkX, this.minChunkZ);
+            processChunks(this.from, this.to);
         }
-        if (this.shift == INITIAL_REGION_SHIFT) {
+        if (this.root) {
             onCompletion();
         }
     }
 
-    private boolean shouldProcessDirectly() {
-        return ForkJoinTask.getSurplusQueuedTaskCount() > Math.max(3, 1 << this.shift);
+    private void computeScheduled(RegionFileSchedule schedule) {
+        int batches = schedule.getBatchCount();
+        // the loads of the first batch can be requested while the loaded chunks are edited
+        if (batches > 0) {
+            schedule.request(0);
+        }
+        schedule.report(0, schedule.getLoaded());
+        new ApplyTask<>(this.commonState, this.region, null, 0, schedule.getLoaded()).invoke();
+        for (int batch = 0; batch < batches; batch++) {
+            if (batch + 1 < batches) {
+                schedule.request(batch + 1);
+            }
+            schedule.report(schedule.getBatchStart(batch), schedule.getBatchEnd(batch));
+            new ApplyTask<>(this.commonState, this.region, null, schedule.getBatchStart(batch), schedule.getBatchEnd(batch))
+                    .invoke();
+        }
+    }
+
+    private boolean shouldProcessDirectly(int chunks) {
+        // the side length of the area covered by the chunks
+        return ForkJoinTask.getSurplusQueuedTaskCount() > Math.max(3, (int) Math.sqrt(chunks));
     }
 
-    private void processRegion(int regionX, int regionZ, int shift) {
+    private void processChunks(int from, int to) {
         final ThreadState<F> state = getState();
         this.commonState.parallelQueueExtent.enter(state.queue);
         try {
-            for (int chunkX = regionX << shift; chunkX <= ((regionX  + 1) << shift) - 1; chunkX++) {
-                for (int chunkZ = regionZ << shift; chunkZ <= ((regionZ  + 1) << shift) - 1; chunkZ++) {
-                    if (!this.region.containsChunk(chunkX, chunkZ)) {
-                        continue; // chunks not intersecting with the region must not be processed
-                    }
-                    applyChunk(chunkX, chunkZ, state);
-                }
+            for (int i = from; i < to; i++) {
+                long chunk = this.commonState.chunks[i];
+                applyChunk(ChunkKeys.x(chunk), ChunkKeys.z(chunk), state);
             }
         } finally {
             this.commonState.parallelQueueExtent.exit();
         }
-
     }
 
     @SuppressWarnings("unchecked")
@@ -192,16 +193,6 @@ private ThreadState<F> getState() {
         );
     }
 
-    private void processChunk(int chunkX, int chunkZ) {
-        final ThreadState<F> state = getState();
-        this.commonState.parallelQueueExtent.enter(state.queue);
-        try {
-            applyChunk(chunkX, chunkZ, state);
-        } finally {
-            this.commonState.parallelQueueExtent.exit();
-        }
-    }
-
     private void applyChunk(int chunkX, int chunkZ, ThreadState<F> state) {
         try {
             state.block = state.queue.apply(
@@ -1,197 +1,545 @@
 package com.fastasyncworldedit.core.queue.implementation;
 
-import com.fastasyncworldedit.core.Fawe;
-import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.fastasyncworldedit.core.math.BlockVectorSet;
+import com.fastasyncworldedit.core.queue.FilterBlockMask;
+import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.util.MathMan;
-import com.sk89q.worldedit.util.Direction;
-import com.sk89q.worldedit.world.World;
+import com.sk89q.worldedit.function.mask.AbstractExtentMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+/**
+ * Chunk partitioned flood fill. Every chunk section keeps a 4096 bit visited set and a queue of packed
+ * {@code x | z << 4 | y << 8 | depth << 12} entries. Positions leaving a chunk are buffered by the {@link Worker} draining
+ * that chunk and handed over to the owning chunk between rounds, so workers never share mutable state while a round is
+ * running.
+ * <p>
+ * As chunks are not drained in global breadth first order, a position may be reached by a longer path first. If the depth
+ * is limited, sections keep the smallest depth of each position instead of a visited set, and a position reached by a
+ * shorter path later is queued again and expanded with the smaller depth. The mask is only tested once per position, so
+ * a depth limited flood fills the same positions as a breadth first search.
+ */
 public class Flood {
 
+    private static final int MAX_DEPTH_VALUE = (1 << 19) - 1;
+    private static final int NO_LAYER = Integer.MIN_VALUE;
+    // the state of a position of a depth limited flood: its smallest depth plus one, 0 if never queued, and whether the
+    // mask was tested and accepted it
+    private static final int DEPTH_MASK = (1 << 20) - 1;
+    private static final int POLLED = 1 << 20;
+    private static final int ACCEPTED = 1 << 21;
+
     private final int maxBranch;
     private final int maxDepth;
-    private final Direction[] directions;
-    private final Long2ObjectLinkedOpenHashMap<long[][]> chunkVisits;
-    private final Long2ObjectLinkedOpenHashMap<int[][]> chunkQueues;
-    private int[] queue;
-    private long[] visit;
-    private final int[][] queues;
-    private final long[][] visits;
-    private int chunkX;
-    private int chunkYLayer;
-    private int chunkZ;
-    private final ConcurrentLinkedQueue<int[]> queuePool = new ConcurrentLinkedQueue<>();
+    private final boolean depthLimited;
+    private final int[] dirX;
+    private final int[] dirY;
+    private final int[] dirZ;
+    private final int minY;
+    private final int maxY;
     private final int minSectionPosition;
     private final int maxSectionPosition;
     private final int sectionCount;
+    private final Long2ObjectLinkedOpenHashMap<ChunkState> chunks;
+    private final ConcurrentLinkedQueue<int[]> queuePool = new ConcurrentLinkedQueue<>();
 
-    public Flood(int maxBranch, int maxDepth, Direction[] directions, int minSectionPosition, int maxSectionPosition) {
+    /**
+     * Create a new flood.
+     *
+     * @param maxBranch  the maximum number of neighbours a single position may queue
+     * @param maxDepth   the maximum depth to visit, seeds having a depth of 0
+     * @param directions the offsets of the neighbours to visit, each component must be in the range [-1, 1]
+     * @param minY       minimum y to visit. Inclusive.
+     * @param maxY       maximum y to visit. Inclusive.
+     */
+    public Flood(int maxBranch, int maxDepth, BlockVector3[] directions, int minY, int maxY) {
         this.maxBranch = maxBranch;
-        this.maxDepth = maxDepth;
-        this.directions = directions;
-        this.minSectionPosition = minSectionPosition;
-        this.maxSectionPosition = maxSectionPosition;
+        this.maxDepth = Math.min(maxDepth, MAX_DEPTH_VALUE);
+        // without a limit every reachable position is filled whatever order it is reached in
+        this.depthLimited = this.maxDepth < MAX_DEPTH_VALUE;
+        this.dirX = new int[directions.length];
+        this.dirY = new int[directions.length];
+        this.dirZ = new int[directions.length];
+        for (int i = 0; i < directions.length; i++) {
+            BlockVector3 dir = directions[i];
+            if (Math.abs(dir.x()) > 1 || Math.abs(dir.y()) > 1 || Math.abs(dir.z()) > 1) {
+                throw new IllegalArgumentException("Flood directions must be adjacent offsets: " + dir);
+            }
+            this.dirX[i] = dir.x();
+            this.dirY[i] = dir.y();
+            this.dirZ[i] = dir.z();
+        }
+        this.minY = minY;
+        this.maxY = maxY;
+        this.minSectionPosition = minY >> 4;
+        this.maxSectionPosition = maxY >> 4;
         this.sectionCount = maxSectionPosition - minSectionPosition + 1;
+        this.chunks = new Long2ObjectLinkedOpenHashMap<>();
+    }
 
-        this.queues = new int[27][];
-        this.visits = new long[27][];
+    public int getMaxBranch() {
+        return maxBranch;
+    }
 
-        this.chunkVisits = new Long2ObjectLinkedOpenHashMap<>();
-        this.chunkQueues = new Long2ObjectLinkedOpenHashMap<>();
+    public int getMaxDepth() {
+        return maxDepth;
     }
 
-    public synchronized void run(World world) {
-        QueueHandler queueHandler = Fawe.instance().getQueueHandler();
-        IQueueExtent<IQueueChunk> fq = queueHandler.getQueue(world);
-        while (!chunkQueues.isEmpty()) {
-            long firstKey = chunkQueues.firstLongKey();
-            int x = MathMan.unpairIntX(firstKey);
-            int z = MathMan.unpairIntY(firstKey);
-            int[][] chunkQueue = chunkQueues.get(firstKey);
-            // apply
+    /**
+     * Add a seed position. Must not be called while a round is running.
+     */
+    public void start(int x, int y, int z) {
+        if (y < minY || y > maxY) {
+            return;
         }
+        offer(x, y, z, 0);
     }
 
-    private void init(int chunkX, int chunkYLayer, int chunkZ) {
-        this.chunkX = chunkX;
-        this.chunkYLayer = chunkYLayer;
-        this.chunkZ = chunkZ;
+    /**
+     * @return {@code true} if any chunk still has queued positions
+     */
+    public boolean hasPending() {
+        for (ChunkState state : chunks.values()) {
+            if (state.hasPending()) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    public void start(int x, int y, int z) {
-        push(x, y, z, 0);
+    /**
+     * Drain the flood on the calling thread.
+     *
+     * @param queue the queue to read and write blocks with
+     * @param mask  called for every queued position, returning {@code true} to expand to its neighbours
+     */
+    public void run(IQueueExtent<? extends IChunk> queue, FilterBlockMask mask) {
+        Worker worker = new Worker();
+        ChunkFilterBlock block = queue.createFilterBlock();
+        List<ChunkState>[] batch;
+        while ((batch = nextRound(1)) != null) {
+            for (ChunkState state : batch[0]) {
+                worker.drain(queue.getOrCreateChunk(state.chunkX, state.chunkZ), state, block, mask);
+            }
+            merge(worker);
+        }
+    }
+
+    /**
+     * @return a new worker for draining the chunks of a round
+     */
+    Worker newWorker() {
+        return new Worker();
     }
 
-    private void push(int x, int y, int z, int depth) {
+    /**
+     * Split all chunks with queued positions between the given number of workers. A chunk is always assigned to the same
+     * worker, so a worker may keep the chunks it edited cached in its own queue.
+     *
+     * @param workers the number of workers
+     * @return the chunks each worker should drain, or {@code null} if the flood is complete
+     */
+    @SuppressWarnings("unchecked")
+    List<ChunkState>[] nextRound(int workers) {
+        List<ChunkState>[] batches = null;
+        for (ChunkState state : chunks.values()) {
+            if (!state.hasPending()) {
+                continue;
+            }
+            if (batches == null) {
+                batches = new List[workers];
+                for (int i = 0; i < workers; i++) {
+                    batches[i] = new ArrayList<>();
+                }
+            }
+            int owner = workers == 1 ? 0 : (int) ((HashCommon.mix(state.key) & Long.MAX_VALUE) % workers);
+            batches[owner].add(state);
+        }
+        return batches;
+    }
+
+    /**
+     * Hand the positions a worker queued outside its chunks over to their owning chunks. Must not be called while a round
+     * is running.
+     */
+    void merge(Worker worker) {
+        IntArrayList outbound = worker.outbound;
+        for (int i = 0, size = outbound.size(); i < size; i += 4) {
+            offer(outbound.getInt(i), outbound.getInt(i + 1), outbound.getInt(i + 2), outbound.getInt(i + 3));
+        }
+        outbound.clear();
+    }
+
+    private void offer(int x, int y, int z, int depth) {
         int chunkX = x >> 4;
         int chunkZ = z >> 4;
         long pair = MathMan.pairInt(chunkX, chunkZ);
+        ChunkState state = chunks.get(pair);
+        if (state == null) {
+            chunks.put(pair, state = new ChunkState(pair, chunkX, chunkZ, sectionCount));
+        }
         int layer = (y >> 4) - minSectionPosition;
-        int[] section = getOrCreateQueue(pair, layer);
-        int val = (x & 15) + ((z & 15) << 4) + ((y & 15) << 8) + (depth << 12);
-        push(section, val);
+        int index = (x & 15) | (z & 15) << 4 | (y & 15) << 8;
+        if (visit(state, layer, index, depth)) {
+            state.queues[layer] = push(state.getOrCreateQueue(layer, this), index | depth << 12);
+        }
     }
 
-    private int[] getOrCreateQueue(long pair, int layer) {
-        int[][] arrs = chunkQueues.get(pair);
-        if (arrs == null) {
-            chunkQueues.put(pair, arrs = new int[sectionCount][]);
+    /**
+     * Mark a position of a section as reached at the given depth.
+     *
+     * @return {@code true} if the position must be queued
+     */
+    private boolean visit(ChunkState state, int layer, int index, int depth) {
+        if (!depthLimited) {
+            return !getAndSet(state.getOrCreateVisit(layer), index);
         }
-        int[] section = arrs[layer];
-        if (section == null) {
-            arrs[layer] = section = newQueue();
+        return lowerDepth(state.getOrCreateDepths(layer), index, depth);
+    }
+
+    private static boolean lowerDepth(int[] depths, int index, int depth) {
+        int value = depths[index];
+        if (value != 0 && ((value & DEPTH_MASK) <= depth + 1 || (value & (POLLED | ACCEPTED)) == POLLED)) {
+            // already queued by a path at most as long, or rejected by the mask
+            return false;
         }
-        return section;
+        depths[index] = depth + 1 | value & (POLLED | ACCEPTED);
+        return true;
     }
 
     private int[] newQueue() {
         int[] arr = queuePool.poll();
-        if (arr != null) {
-            arr[0] = 2;
-            arr[1] = 2;
-            return arr;
+        if (arr == null) {
+            // without a depth limit every position is queued at most once, so a section needs at most 4096 slots
+            arr = new int[4096 + 2];
         }
-        return new int[4096];
+        arr[0] = 2;
+        arr[1] = 2;
+        return arr;
     }
 
-    public int poll() {
-        int index = queue[0];
-        if (index == queue[1]) {
-            return -1;
+    /**
+     * Append an entry to a queue, compacting or growing it if it is full.
+     *
+     * @return the queue, which is a new array if it had to grow
+     */
+    private static int[] push(int[] queue, int val) {
+        int tail = queue[1];
+        if (tail == queue.length) {
+            int head = queue[0];
+            int size = tail - head;
+            int[] target = size > queue.length >> 1 ? new int[queue.length << 1] : queue;
+            System.arraycopy(queue, head, target, 2, size);
+            target[0] = 2;
+            tail = size + 2;
+            queue = target;
         }
-        queue[0] = index + 1;
-        return queue[index];
+        queue[tail] = val;
+        queue[1] = tail + 1;
+        return queue;
     }
 
-    private void push(int[] queue, int val) {
-        int indexStart = queue[0];
-        int indexEnd = queue[1];
-        push(indexStart, indexEnd, queue, val);
+    private static boolean isEmpty(int[] queue) {
+        return queue == null || queue[0] == queue[1];
     }
 
-    private void push(int indexStart, int indexEnd, int[] queue, int val) {
-        if (indexStart > 2) {
-            queue[0] = --indexStart;
-            queue[indexStart] = val;
+    public final boolean getAndSet(long[] bits, int i) {
+        int index = i >> 6;
+        long offset = 1L << (i & 0x3F);
+        long val = bits[index];
+        if ((val & offset) != 0) {
+            return true;
         } else {
-            queue[indexEnd] = val;
-            queue[0] = ++indexEnd;
+            bits[index] = val | offset;
+            return false;
         }
     }
 
-    public Direction[] getDirections() {
-        return directions;
-    }
+    static final class ChunkState {
 
-    public int getMaxBranch() {
-        return maxBranch;
-    }
+        private final long key;
+        private final int chunkX;
+        private final int chunkZ;
+        private final long[][] visits;
+        // the depths of the positions of each section, instead of visits if the depth is limited
+        private final int[][] depths;
+        private final int[][] queues;
+
+        private ChunkState(long key, int chunkX, int chunkZ, int sectionCount) {
+            this.key = key;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.visits = new long[sectionCount][];
+            this.depths = new int[sectionCount][];
+            this.queues = new int[sectionCount][];
+        }
+
+        int getChunkX() {
+            return chunkX;
+        }
+
+        int getChunkZ() {
+            return chunkZ;
+        }
+
+        private boolean hasPending() {
+            for (int[] queue : queues) {
+                if (!isEmpty(queue)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private long[] getOrCreateVisit(int layer) {
+            long[] visit = visits[layer];
+            if (visit == null) {
+                visits[layer] = visit = new long[64];
+            }
+            return visit;
+        }
+
+        private int[] getOrCreateDepths(int layer) {
+            int[] depth = depths[layer];
+            if (depth == null) {
+                depths[layer] = depth = new int[4096];
+            }
+            return depth;
+        }
+
+        private int[] getOrCreateQueue(int layer, Flood flood) {
+            int[] queue = queues[layer];
+            if (queue == null) {
+                queues[layer] = queue = flood.newQueue();
+            }
+            return queue;
+        }
 
-    public int getMaxDepth() {
-        return maxDepth;
     }
 
-    public void apply(int x, int y, int z, int depth) {
-        for (int i = 0, j = 0; i < directions.length && j < maxBranch; i++) {
-            final Direction dir = directions[i];
-            final int ty = y + dir.getBlockY();
-            final int tx = x + dir.getBlockX();
-            final int tz = z + dir.getBlockZ();
-
-            int index;
-            long[] visit;
-            int[] queue;
-            final int or = tx | ty | tz;
-            if (or > 15 || or < 0) {
-                visit = this.visit;
-                queue = this.queue;
-                index = tx + (tz << 4) + (ty << 8);
-            } else {
-                int nextX = tx >> 4;
-                int nextY = ty >> 4;
-                int nextZ = tz >> 4;
-                int sectionIndex = nextX + nextZ * 3 + nextZ * 9 + 13;
-                visit = visits[sectionIndex];
-                queue = queues[sectionIndex];
-                if (visit == null || queue == null) {
-                    long pair = MathMan.pairInt(this.chunkX + nextX, this.chunkZ + nextZ);
-                    int layer = this.chunkYLayer + nextY;
-                    if (layer < minSectionPosition || layer > maxSectionPosition) {
-                        continue;
-                    }
-                    queues[sectionIndex] = queue = getOrCreateQueue(pair, layer);
+    /**
+     * Drains queued positions of the chunks it is given. A worker must only be used by one thread at a time.
+     */
+    public final class Worker {
+
+        // (x, y, z, depth) of positions queued outside the current chunk
+        private final IntArrayList outbound = new IntArrayList();
+        private ChunkState state;
+        private int layer;
+        // the local y range of the current section within the height limits
+        private int layerMinY;
+        private int layerMaxY;
+        private int[] queue;
+        private long[] visit;
+        private int[] depths;
+
+        Worker() {
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        void drain(IChunk chunk, ChunkState state, ChunkFilterBlock block, FilterBlockMask mask) {
+            this.state = state;
+            try {
+                chunk.flood(this, mask, block);
+            } finally {
+                this.state = null;
+                this.queue = null;
+                this.visit = null;
+                this.depths = null;
+            }
+        }
+
+        /**
+         * Select the next section of the current chunk with queued positions.
+         *
+         * @return the section position, or {@link Integer#MIN_VALUE} once the chunk has been drained
+         */
+        public int nextLayer() {
+            int[][] queues = state.queues;
+            for (int i = 0; i < queues.length; i++) {
+                int[] queue = queues[i];
+                if (queue == null) {
+                    continue;
+                }
+                if (isEmpty(queue)) {
+                    queues[i] = null;
+                    queuePool.add(queue);
+                    continue;
                 }
-                index = (tx & 15) + ((tz & 15) << 4) + ((ty & 15) << 8);
+                final int sectionY = (i + minSectionPosition) << 4;
+                this.layer = i;
+                this.layerMinY = Math.max(0, minY - sectionY);
+                this.layerMaxY = Math.min(15, maxY - sectionY);
+                this.queue = queue;
+                this.visit = state.visits[i];
+                this.depths = state.depths[i];
+                return i + minSectionPosition;
             }
-            if (!getAndSet(visit, index)) {
+            return NO_LAYER;
+        }
+
+        /**
+         * Poll the next entry of the current section. If the depth is limited, entries superseded by a shorter path are
+         * skipped, and positions the mask already accepted are expanded again with their new depth instead of being
+         * returned.
+         *
+         * @return the packed entry, or -1 if the section is empty
+         */
+        public int poll() {
+            while (true) {
+                // expanding a position may grow the queue
+                int[] queue = this.queue;
+                int index = queue[0];
+                if (index == queue[1]) {
+                    return -1;
+                }
+                queue[0] = index + 1;
+                int value = queue[index];
+                int[] depths = this.depths;
+                if (depths == null) {
+                    return value;
+                }
+                int position = value & 4095;
+                int depth = value >> 12;
+                int state = depths[position];
+                if ((state & DEPTH_MASK) != depth + 1) {
+                    continue;
+                }
+                if ((state & ACCEPTED) != 0) {
+                    apply(position & 15, position >> 8, position >> 4 & 15, depth);
+                    continue;
+                }
+                depths[position] = state | POLLED;
+                return value;
+            }
+        }
+
+        /**
+         * Queue the unvisited neighbours of a position within the current section.
+         */
+        public void apply(int x, int y, int z, int depth) {
+            if (depths != null) {
+                depths[x | z << 4 | y << 8] |= ACCEPTED;
+            }
+            final int nextDepth = Math.min(depth + 1, MAX_DEPTH_VALUE);
+            if (nextDepth > maxDepth) {
+                return;
+            }
+            final int[] dirX = Flood.this.dirX;
+            final int[] dirY = Flood.this.dirY;
+            final int[] dirZ = Flood.this.dirZ;
+            for (int i = 0, j = 0; i < dirX.length && j < maxBranch; i++) {
+                final int tx = x + dirX[i];
+                final int ty = y + dirY[i];
+                final int tz = z + dirZ[i];
+                if ((tx | tz) >= 0 && (tx | tz) <= 15 && ty >= layerMinY && ty <= layerMaxY) {
+                    int index = tx | tz << 4 | ty << 8;
+                    if (depths == null ? !getAndSet(visit, index) : lowerDepth(depths, index, nextDepth)) {
+                        j++;
+                        state.queues[layer] = queue = push(queue, index | nextDepth << 12);
+                    }
+                    continue;
+                }
+                final int worldY = ((layer + minSectionPosition) << 4) + ty;
+                if (worldY < minY || worldY > maxY) {
+                    continue;
+                }
+                if ((tx | tz) >= 0 && (tx | tz) <= 15) {
+                    // same chunk, other section
+                    int targetLayer = layer + (ty >> 4);
+                    int index = tx | tz << 4 | (ty & 15) << 8;
+                    if (visit(state, targetLayer, index, nextDepth)) {
+                        j++;
+                        int[] target = state.getOrCreateQueue(targetLayer, Flood.this);
+                        state.queues[targetLayer] = push(target, index | nextDepth << 12);
+                    }
+                    continue;
+                }
+                // other chunk, the owner checks whether it was visited, or by a shorter path, when merging
                 j++;
-                push(queue, index + (depth << 12));
+                outbound.add((state.chunkX << 4) + tx);
+                outbound.add(worldY);
+                outbound.add((state.chunkZ << 4) + tz);
+                outbound.add(nextDepth);
             }
         }
-    }
 
-    public void set(long[] bits, int i) {
-        bits[i >> 6] |= 1L << (i & 0x3F);
     }
 
-    public final boolean getAndSet(long[] bits, int i) {
-        int index = i >> 6;
-        long offset = 1L << (i & 0x3F);
-        long val = bits[index];
-        if ((val & offset) != 0) {
+    /**
+     * Applies a pattern to seeds and every queued position matching a mask, expanding from each applied position.
+     */
+    public static final class Fill implements FilterBlockMask {
+
+        private final BlockVectorSet seeds;
+        private final Mask mask;
+        private final Pattern pattern;
+        private int affected;
+
+        public Fill(Set<BlockVector3> seeds, Mask mask, Pattern pattern) {
+            this(toSet(seeds), mask, pattern);
+        }
+
+        private Fill(BlockVectorSet seeds, Mask mask, Pattern pattern) {
+            this.seeds = seeds;
+            this.mask = mask;
+            this.pattern = pattern;
+        }
+
+        private static BlockVectorSet toSet(Set<BlockVector3> seeds) {
+            if (seeds instanceof BlockVectorSet set) {
+                return set;
+            }
+            BlockVectorSet set = new BlockVectorSet();
+            set.addAll(seeds);
+            return set;
+        }
+
+        @Override
+        public boolean applyBlock(FilterBlock block) {
+            if (!seeds.contains(block.x(), block.y(), block.z())) {
+                final boolean matches;
+                if (mask instanceof AbstractExtentMask extentMask) {
+                    matches = extentMask.test(block.getExtent(), block);
+                } else {
+                    matches = mask.test(block);
+                }
+                if (!matches) {
+                    return false;
+                }
+            }
+            if (pattern.apply(block, block, block)) {
+                affected++;
+            }
             return true;
-        } else {
-            bits[index] |= offset;
-            return false;
         }
-    }
 
-    public boolean get(long[] bits, int i) {
-        return (bits[i >> 6] & 1L << (i & 0x3F)) != 0;
+        /**
+         * Create a copy for use by another thread. The number of affected blocks is not shared.
+         */
+        public Fill fork() {
+            return new Fill(seeds, mask.copy(), pattern.fork());
+        }
+
+        public int getAffected() {
+            return affected;
+        }
+
     }
 
 }
@@ -0,0 +1,287 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.extent.PassthroughExtent;
+import com.fastasyncworldedit.core.internal.exception.FaweException;
+import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.google.common.base.Throwables;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BlockState;
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Replays block, tile and biome changes, e.g. of an undo or redo, through the workers of a {@link ParallelQueueExtent}.
+ * Changes are bucketed by chunk and every chunk is owned by a single worker with its own queue, so a block and its tile
+ * end up in the same chunk and changes to the same position are applied in the order they were added. Buckets are
+ * applied whenever enough changes have been buffered, and once more when finished.
+ */
+public class ParallelChangeReplay {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    // (position, value) pairs buffered before the buckets are applied, 16MiB
+    private static final int MAX_BUFFERED = 1 << 21;
+    // Flags of the packed position, marking the second value as a tile index or biome id instead of a block ordinal
+    private static final int TILE = 1 << 24;
+    private static final int BIOME = 1 << 25;
+
+    private final ParallelQueueExtent extent;
+    private final QueueHandler handler;
+    private final boolean[] faweExceptionReasonsUsed;
+    private final int minY;
+    private final int maxY;
+    private final int workers;
+    private final Long2ObjectOpenHashMap<IntArrayList>[] buckets;
+    private final ObjectArrayList<CompoundTag>[] tiles;
+    private final IQueueExtent<IQueueChunk>[] queues;
+    private final ForkJoinTask<?>[] tasks;
+    private int buffered;
+
+    @SuppressWarnings("unchecked")
+    ParallelChangeReplay(ParallelQueueExtent extent, QueueHandler handler, boolean[] faweExceptionReasonsUsed, int workers) {
+        this.extent = extent;
+        this.handler = handler;
+        this.faweExceptionReasonsUsed = faweExceptionReasonsUsed;
+        this.minY = extent.getMinY();
+        this.maxY = extent.getMaxY();
+        this.workers = workers;
+        this.buckets = new Long2ObjectOpenHashMap[workers];
+        this.tiles = new ObjectArrayList[workers];
+        for (int i = 0; i < workers; i++) {
+            buckets[i] = new Long2ObjectOpenHashMap<>();
+            tiles[i] = new ObjectArrayList<>();
+        }
+        this.queues = new IQueueExtent[workers];
+        this.tasks = new ForkJoinTask[workers];
+    }
+
+    /**
+     * Add a block change to be replayed.
+     *
+     * @param x       the x coordinate
+     * @param y       the y coordinate
+     * @param z       the z coordinate
+     * @param ordinal the ordinal of the block state to set
+     */
+    public void add(int x, int y, int z, int ordinal) {
+        add(x, y, z, 0, ordinal);
+    }
+
+    /**
+     * Add a tile change to be replayed.
+     *
+     * @param x   the x coordinate
+     * @param y   the y coordinate
+     * @param z   the z coordinate
+     * @param tag the tile to set
+     */
+    public void addTile(int x, int y, int z, CompoundTag tag) {
+        if (y < minY || y > maxY) {
+            return;
+        }
+        ObjectArrayList<CompoundTag> list = tiles[worker(x, z)];
+        list.add(tag);
+        add(x, y, z, TILE, list.size() - 1);
+    }
+
+    /**
+     * Add a biome change to be replayed.
+     *
+     * @param x     the x coordinate
+     * @param y     the y coordinate
+     * @param z     the z coordinate
+     * @param biome the biome to set
+     */
+    public void addBiome(int x, int y, int z, BiomeType biome) {
+        add(x, y, z, BIOME, biome.getInternalId());
+    }
+
+    /**
+     * Get an extent adding the tiles and biomes set on it to this replay, and passing anything else, e.g. entities, to
+     * the parallel extent.
+     *
+     * @return an extent to replay non-block changes on
+     */
+    public Extent getExtent() {
+        return new PassthroughExtent(extent) {
+            @Override
+            public boolean setTile(int x, int y, int z, CompoundTag tile) {
+                addTile(x, y, z, tile);
+                return true;
+            }
+
+            @Override
+            public boolean setBiome(BlockVector3 position, BiomeType biome) {
+                return setBiome(position.x(), position.y(), position.z(), biome);
+            }
+
+            @Override
+            public boolean setBiome(int x, int y, int z, BiomeType biome) {
+                addBiome(x, y, z, biome);
+                return true;
+            }
+        };
+    }
+
+    private int worker(int x, int z) {
+        return Math.floorMod(HashCommon.mix(MathMan.pairInt(x >> 4, z >> 4)), workers);
+    }
+
+    private void add(int x, int y, int z, int flags, int value) {
+        if (y < minY || y > maxY) {
+            return;
+        }
+        long key = MathMan.pairInt(x >> 4, z >> 4);
+        Long2ObjectOpenHashMap<IntArrayList> bucket = buckets[worker(x, z)];
+        IntArrayList list = bucket.get(key);
+        if (list == null) {
+            bucket.put(key, list = new IntArrayList());
+        }
+        // Packed as x | z << 4 | (y - minY) << 8 | flags, followed by the ordinal, tile index or biome id
+        list.add((x & 15) | (z & 15) << 4 | (y - minY) << 8 | flags);
+        list.add(value);
+        if (++buffered >= MAX_BUFFERED) {
+            applyBuffered();
+        }
+    }
+
+    /**
+     * Apply all remaining changes and flush the queues of the workers, blocking until done. The queues are flushed even
+     * if applying the changes failed.
+     *
+     * @throws RuntimeException if a worker failed, with failures of other workers suppressed
+     */
+    public void finish() {
+        Throwable failure = null;
+        try {
+            applyBuffered();
+        } catch (Throwable t) {
+            failure = t;
+        }
+        for (int i = 0; i < workers; i++) {
+            tasks[i] = queues[i] == null ? null : handler.submit(queues[i]::flush);
+        }
+        try {
+            join();
+        } catch (Throwable t) {
+            if (failure == null) {
+                failure = t;
+            } else {
+                failure.addSuppressed(t);
+            }
+        }
+        if (failure != null) {
+            Throwables.throwIfUnchecked(failure);
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private void applyBuffered() {
+        if (buffered == 0) {
+            return;
+        }
+        for (int i = 0; i < workers; i++) {
+            final Long2ObjectOpenHashMap<IntArrayList> bucket = buckets[i];
+            if (bucket.isEmpty()) {
+                tasks[i] = null;
+                continue;
+            }
+            if (queues[i] == null) {
+                queues[i] = extent.getNewQueue();
+            }
+            final IQueueExtent<IQueueChunk> queue = queues[i];
+            final ObjectArrayList<CompoundTag> tiles = this.tiles[i];
+            tasks[i] = handler.submit(() -> apply(queue, bucket, tiles));
+        }
+        try {
+            join();
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                buckets[i].clear();
+                tiles[i].clear();
+            }
+            buffered = 0;
+        }
+    }
+
+    /**
+     * Wait for every submitted task, then rethrow the first failure with any later ones suppressed.
+     */
+    private void join() {
+        Throwable failure = null;
+        for (int i = 0; i < workers; i++) {
+            if (tasks[i] != null) {
+                try {
+                    tasks[i].join();
+                } catch (Throwable e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+                tasks[i] = null;
+            }
+        }
+        if (failure != null) {
+            Throwables.throwIfUnchecked(failure);
+            throw new RuntimeException(failure);
+        }
+    }
+
+    private void apply(
+            IQueueExtent<IQueueChunk> queue,
+            Long2ObjectOpenHashMap<IntArrayList> bucket,
+            ObjectArrayList<CompoundTag> tiles
+    ) {
+        extent.enter(queue);
+        try {
+            for (Long2ObjectMap.Entry<IntArrayList> entry : bucket.long2ObjectEntrySet()) {
+                final int bx = MathMan.unpairIntX(entry.getLongKey()) << 4;
+                final int bz = MathMan.unpairIntY(entry.getLongKey()) << 4;
+                final IntArrayList changes = entry.getValue();
+                try {
+                    for (int i = 0, size = changes.size(); i < size; i += 2) {
+                        int packed = changes.getInt(i);
+                        int value = changes.getInt(i + 1);
+                        int x = bx + (packed & 15);
+                        int y = minY + (packed >> 8 & 4095);
+                        int z = bz + (packed >> 4 & 15);
+                        if ((packed & TILE) != 0) {
+                            queue.setTile(x, y, z, tiles.get(value));
+                        } else if ((packed & BIOME) != 0) {
+                            queue.setBiome(x, y, z, BiomeTypes.get(value));
+                        } else {
+                            queue.setBlock(x, y, z, BlockState.getFromOrdinal(value));
+                        }
+                    }
+                } catch (Throwable t) {
+                    if (t instanceof FaweException faweException) {
+                        Fawe.handleFaweException(faweExceptionReasonsUsed, faweException, LOGGER);
+                    } else if (t.getCause() instanceof FaweException faweException) {
+                        Fawe.handleFaweException(faweExceptionReasonsUsed, faweException, LOGGER);
+                    } else {
+                        throw t;
+                    }
+                }
+            }
+        } finally {
+            extent.exit();
+        }
+    }
+
+}
@@ -1,24 +1,33 @@
 package com.fastasyncworldedit.core.queue.implementation;
 
+import com.fastasyncworldedit.core.Fawe;
 import com.fastasyncworldedit.core.FaweCache;
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.extent.NullExtent;
 import com.fastasyncworldedit.core.extent.PassthroughExtent;
 import com.fastasyncworldedit.core.extent.clipboard.WorldCopyClipboard;
+import com.fastasyncworldedit.core.extent.filter.BlockMaskCountFilter;
 import com.fastasyncworldedit.core.extent.filter.CountFilter;
 import com.fastasyncworldedit.core.extent.filter.DistrFilter;
 import com.fastasyncworldedit.core.extent.filter.LinkedFilter;
 import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
 import com.fastasyncworldedit.core.extent.processor.BatchProcessorHolder;
 import com.fastasyncworldedit.core.extent.processor.MultiBatchProcessor;
+import com.fastasyncworldedit.core.function.mask.ABlockMask;
 import com.fastasyncworldedit.core.function.mask.BlockMaskBuilder;
 import com.fastasyncworldedit.core.internal.exception.FaweException;
 import com.fastasyncworldedit.core.internal.simd.SimdSupport;
 import com.fastasyncworldedit.core.internal.simd.VectorizedFilter;
+import com.fastasyncworldedit.core.math.BlockVectorSet;
+import com.fastasyncworldedit.core.math.LocalBlockVectorSet;
+import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.fastasyncworldedit.core.queue.Filter;
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.regions.ChunkKeys;
+import com.fastasyncworldedit.core.util.MathMan;
 import com.fastasyncworldedit.core.util.task.FaweThreadUtil;
+import com.google.common.base.Throwables;
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.Extent;
@@ -31,7 +40,6 @@
 import com.sk89q.worldedit.function.pattern.BlockPattern;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
-import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Countable;
@@ -41,12 +49,17 @@
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockType;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.apache.logging.log4j.Logger;
 
 import javax.annotation.Nullable;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ForkJoinTask;
 
 public class ParallelQueueExtent extends PassthroughExtent {
@@ -138,23 +151,29 @@ IQueueExtent<IQueueChunk> getNewQueue() {
     @SuppressWarnings("rawtypes")
     public <T extends Filter> T apply(Region region, T filter, boolean full) {
         // The chunks positions to iterate over
-        final Set<BlockVector2> chunks = region.getChunks();
-        final Iterator<BlockVector2> chunksIter = chunks.iterator();
+        final long[] chunks = region.getChunkKeys();
 
         // Get a pool, to operate on the chunks in parallel
-        final int size = Math.min(chunks.size(), Settings.settings().QUEUE.PARALLEL_THREADS);
+        final int size = Math.min(chunks.length, Settings.settings().QUEUE.PARALLEL_THREADS);
         if (size <= 1) {
             // if PQE is ever used with PARALLEL_THREADS = 1, or only one chunk is edited, just run sequentially
             ChunkFilterBlock block = null;
-            while (chunksIter.hasNext()) {
-                BlockVector2 pos = chunksIter.next();
-                block = getExtent().apply(block, filter, region, pos.x(), pos.z(), full);
+            for (long chunk : chunks) {
+                block = getExtent().apply(block, filter, region, ChunkKeys.x(chunk), ChunkKeys.z(chunk), full);
             }
             getExtent().flush();
             filter.finish();
         } else {
+            RegionFileSchedule schedule = null;
+            if (Settings.settings().QUEUE.REGION_FILE_SCHEDULING && world != null) {
+                schedule = new RegionFileSchedule(
+                        world,
+                        chunks,
+                        Math.max(size, Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT)
+                );
+            }
             ForkJoinTask<?> task = this.handler.submit(
-                    new ApplyTask<>(region, filter, this, full, this.faweExceptionReasonsUsed)
+                    new ApplyTask<>(region, chunks, schedule, filter, this, full, this.faweExceptionReasonsUsed)
             );
             // wait for task to finish
             try {
@@ -188,6 +207,10 @@ public void cancel() {
 
     @Override
     public int countBlocks(Region region, Mask searchMask) {
+        if (searchMask instanceof ABlockMask blockMask) {
+            // Fully covered sections are counted from their palette, partially covered ones compare vectors of blocks
+            return apply(region, new BlockMaskCountFilter(blockMask), searchMask.replacesAir()).getTotal();
+        }
         return
                 // Apply a filter over a region
                 apply(region, searchMask
@@ -216,13 +239,239 @@ public int setBlocks(Set<BlockVector3> vset, Pattern pattern) {
             this.changes = setBlocks((Region) vset, pattern);
             return this.changes;
         }
-        // TODO optimize parallel
-        for (BlockVector3 blockVector3 : vset) {
-            if (pattern.apply(this, blockVector3, blockVector3)) {
-                this.changes++;
+        final int size = Settings.settings().QUEUE.PARALLEL_THREADS;
+        // small sets (e.g. a single line) are not worth forking for
+        if (size <= 1 || vset.size() < 4096) {
+            return this.changes = super.setBlocks(vset, pattern);
+        }
+        final int minY = getMinY();
+        final int maxY = getMaxY();
+        // Group by chunk, packing positions as x | z << 4 | (y - minY) << 8
+        final Long2ObjectOpenHashMap<IntArrayList> byChunk = new Long2ObjectOpenHashMap<>();
+        final LocalBlockVectorSet.BlockVectorSetVisitor grouper = (x, y, z, index) -> {
+            if (y < minY || y > maxY) {
+                return;
+            }
+            IntArrayList list = byChunk.get(MathMan.pairInt(x >> 4, z >> 4));
+            if (list == null) {
+                byChunk.put(MathMan.pairInt(x >> 4, z >> 4), list = new IntArrayList());
+            }
+            list.add((x & 15) | (z & 15) << 4 | (y - minY) << 8);
+        };
+        if (vset instanceof BlockVectorSet set) {
+            set.forEach(grouper);
+        } else if (vset instanceof LocalBlockVectorSet set) {
+            set.forEach(grouper);
+        } else {
+            for (BlockVector3 pos : vset) {
+                grouper.run(pos.x(), pos.y(), pos.z(), 0);
+            }
+        }
+        if (byChunk.size() <= 1) {
+            return this.changes = super.setBlocks(vset, pattern);
+        }
+
+        final ConcurrentMap<Thread, SetBlocksState> states = new ConcurrentHashMap<>();
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(byChunk.size());
+        for (Long2ObjectMap.Entry<IntArrayList> entry : byChunk.long2ObjectEntrySet()) {
+            final int chunkX = MathMan.unpairIntX(entry.getLongKey());
+            final int chunkZ = MathMan.unpairIntY(entry.getLongKey());
+            final IntArrayList positions = entry.getValue();
+            tasks.add(ForkJoinTask.adapt(() -> {
+                SetBlocksState state = states.computeIfAbsent(Thread.currentThread(), __ -> new SetBlocksState(
+                        getNewQueue(),
+                        pattern.fork()
+                ));
+                setBlocks(state, chunkX, chunkZ, minY, positions);
+            }));
+        }
+        ForkJoinTask<?> task = this.handler.submit(() -> {
+            ForkJoinTask.invokeAll(tasks);
+            ForkJoinTask.invokeAll(states.values().stream().map(state -> ForkJoinTask.adapt(state.queue::flush)).toList());
+        });
+        try {
+            task.join();
+        } catch (Throwable e) {
+            LOGGER.catching(e);
+        }
+        int total = 0;
+        for (SetBlocksState state : states.values()) {
+            total += state.changes;
+        }
+        return this.changes = total;
+    }
+
+    private void setBlocks(SetBlocksState state, int chunkX, int chunkZ, int minY, IntArrayList positions) {
+        enter(state.queue);
+        try {
+            final MutableBlockVector3 mutable = state.mutable;
+            final int bx = chunkX << 4;
+            final int bz = chunkZ << 4;
+            for (int i = 0, size = positions.size(); i < size; i++) {
+                int packed = positions.getInt(i);
+                mutable.setComponents(bx + (packed & 15), minY + (packed >> 8), bz + (packed >> 4 & 15));
+                if (state.pattern.apply(state.queue, mutable, mutable)) {
+                    state.changes++;
+                }
+            }
+        } catch (Throwable t) {
+            if (t instanceof FaweException faweException) {
+                Fawe.handleFaweException(faweExceptionReasonsUsed, faweException, LOGGER);
+            } else if (t.getCause() instanceof FaweException faweException) {
+                Fawe.handleFaweException(faweExceptionReasonsUsed, faweException, LOGGER);
+            } else {
+                throw t;
             }
+        } finally {
+            exit();
         }
-        return this.changes;
+    }
+
+    private static final class SetBlocksState {
+
+        private final IQueueExtent<IQueueChunk> queue;
+        private final Pattern pattern;
+        private final MutableBlockVector3 mutable = new MutableBlockVector3();
+        private int changes;
+
+        private SetBlocksState(IQueueExtent<IQueueChunk> queue, Pattern pattern) {
+            this.queue = queue;
+            this.pattern = pattern;
+        }
+
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public int floodFill(
+            Set<BlockVector3> seeds,
+            Mask mask,
+            Pattern pattern,
+            BlockVector3[] directions,
+            int maxDepth,
+            int minY,
+            int maxY
+    ) {
+        Flood flood = new Flood(Integer.MAX_VALUE, maxDepth, directions, minY, maxY);
+        for (BlockVector3 seed : seeds) {
+            flood.start(seed.x(), seed.y(), seed.z());
+        }
+        final Flood.Fill fill = new Flood.Fill(seeds, mask, pattern);
+        final int size = Settings.settings().QUEUE.PARALLEL_THREADS;
+        if (size <= 1) {
+            flood.run(getExtent(), fill);
+            getExtent().flush();
+            return this.changes = fill.getAffected();
+        }
+        // Every chunk is owned by one worker, so a worker's queue is the only one ever editing the chunks it owns
+        final IQueueExtent<IQueueChunk>[] queues = new IQueueExtent[size];
+        final Flood.Worker[] workers = new Flood.Worker[size];
+        final Flood.Fill[] fills = new Flood.Fill[size];
+        final ChunkFilterBlock[] blocks = new ChunkFilterBlock[size];
+        final ForkJoinTask<?>[] tasks = new ForkJoinTask[size];
+        List<Flood.ChunkState>[] batches;
+        Throwable failure = null;
+        while (failure == null && (batches = flood.nextRound(size)) != null) {
+            for (int i = 0; i < size; i++) {
+                final List<Flood.ChunkState> batch = batches[i];
+                if (batch.isEmpty()) {
+                    tasks[i] = null;
+                    continue;
+                }
+                if (queues[i] == null) {
+                    queues[i] = getNewQueue();
+                    workers[i] = flood.newWorker();
+                    fills[i] = fill.fork();
+                    blocks[i] = queues[i].createFilterBlock();
+                }
+                final int index = i;
+                tasks[i] = handler.submit(() -> floodChunks(batch, queues[index], workers[index], fills[index], blocks[index]));
+            }
+            // Join every worker before failing, so no queue is still being edited
+            for (int i = 0; i < size; i++) {
+                if (tasks[i] != null) {
+                    try {
+                        tasks[i].join();
+                    } catch (Throwable e) {
+                        if (failure == null) {
+                            failure = e;
+                        } else {
+                            failure.addSuppressed(e);
+                        }
+                    }
+                }
+            }
+            if (failure != null) {
+                break;
+            }
+            for (int i = 0; i < size; i++) {
+                if (workers[i] != null) {
+                    flood.merge(workers[i]);
+                }
+            }
+        }
+        int affected = 0;
+        for (int i = 0; i < size; i++) {
+            if (queues[i] != null) {
+                tasks[i] = handler.submit(queues[i]::flush);
+                affected += fills[i].getAffected();
+            } else {
+                tasks[i] = null;
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            if (task != null) {
+                task.join();
+            }
+        }
+        this.changes = affected;
+        if (failure != null) {
+            // The blocks filled so far were flushed above, so they are kept and recorded in the history
+            Throwables.throwIfUnchecked(failure);
+            throw new RuntimeException(failure);
+        }
+        return affected;
+    }
+
+    private void floodChunks(
+            List<Flood.ChunkState> batch,
+            IQueueExtent<IQueueChunk> queue,
+            Flood.Worker worker,
+            Flood.Fill fill,
+            ChunkFilterBlock block
+    ) {
+        enter(queue);
+        try {
+            for (Flood.ChunkState state : batch) {
+                try {
+                    worker.drain(queue.getOrCreateChunk(state.getChunkX(), state.getChunkZ()), state, block, fill);
+                } catch (Throwable t) {
+                    if (t instanceof FaweException faweException) {
+                        Fawe.handleFaweException(faweExceptionReasonsUsed, faweException, LOGGER);
+                    } else if (t.getCause() instanceof FaweException faweException) {
+                        Fawe.handleFaweException(faweExceptionReasonsUsed, faweException, LOGGER);
+                    } else {
+                        throw t;
+                    }
+                }
+            }
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Create a replay applying block changes, e.g. of an undo or redo, on the parallel threads of this extent.
+     *
+     * @return a new change replay
+     */
+    public ParallelChangeReplay newChangeReplay() {
+        return new ParallelChangeReplay(
+                this,
+                handler,
+                faweExceptionReasonsUsed,
+                Math.max(1, Settings.settings().QUEUE.PARALLEL_THREADS)
+        );
     }
 
     @Override
@@ -11,15 +11,19 @@
 import com.fastasyncworldedit.core.queue.IQueueExtent;
 import com.fastasyncworldedit.core.queue.Trimable;
 import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkCache;
+import com.fastasyncworldedit.core.queue.implementation.chunk.SharedChunkCache;
 import com.fastasyncworldedit.core.util.MemUtil;
 import com.fastasyncworldedit.core.util.TaskManager;
 import com.fastasyncworldedit.core.util.collection.CleanableThreadLocal;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
+import com.fastasyncworldedit.core.util.metrics.MetricsRegistry;
 import com.fastasyncworldedit.core.util.task.FaweForkJoinWorkerThreadFactory;
 import com.fastasyncworldedit.core.wrappers.WorldWrapper;
 import com.google.common.util.concurrent.Futures;
 import com.sk89q.worldedit.world.World;
 import org.jetbrains.annotations.ApiStatus;
 
+import javax.annotation.Nullable;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -87,6 +91,16 @@ public abstract class QueueHandler implements Trimable, Runnable {
     private final ConcurrentLinkedQueue<FutureTask> syncWhenFree = new ConcurrentLinkedQueue<>();
 
     private final Map<World, WeakReference<IChunkCache<IChunkGet>>> chunkGetCache = new HashMap<>();
+    /**
+     * Chunk GET cache kept between edits, null if disabled.
+     */
+    @Nullable
+    private final SharedChunkCache sharedChunkCache = Settings.settings().QUEUE.CHUNK_CACHE_SIZE_MB > 0
+            ? new SharedChunkCache(
+            (long) Settings.settings().QUEUE.CHUNK_CACHE_SIZE_MB << 20,
+            Settings.settings().QUEUE.CHUNK_CACHE_REVALIDATE_MS
+    )
+            : null;
     private final CleanableThreadLocal<IQueueExtent<IQueueChunk>> queuePool = new CleanableThreadLocal<>(QueueHandler.this::create);
     /**
      * Used to calculate elapsed time in milliseconds and ensure block placement doesn't lag the
@@ -97,6 +111,39 @@ public abstract class QueueHandler implements Trimable, Runnable {
 
     protected QueueHandler() {
         TaskManager.taskManager().repeat(this, 1);
+        if (sharedChunkCache != null) {
+            MetricsRegistry registry = FaweMetrics.registry();
+            registry.gauge("fawe_chunk_cache_hits_total", "Chunk GETs served from the shared chunk cache",
+                    sharedChunkCache::getHits, true
+            );
+            registry.gauge("fawe_chunk_cache_misses_total", "Chunk GETs missing from the shared chunk cache",
+                    sharedChunkCache::getMisses, true
+            );
+            registry.gauge("fawe_chunk_cache_evictions_total", "Chunks evicted from the shared chunk cache",
+                    sharedChunkCache::getEvictions, true
+            );
+            registry.gauge("fawe_chunk_cache_invalidations_total", "Chunks invalidated in the shared chunk cache",
+                    sharedChunkCache::getInvalidations, true
+            );
+            registry.gauge("fawe_chunk_cache_chunks", "Chunks held by the shared chunk cache",
+                    sharedChunkCache::size, false
+            );
+            registry.gauge("fawe_chunk_cache_bytes", "Estimated size of the chunks held by the shared chunk cache",
+                    sharedChunkCache::getEstimatedBytes, false
+            );
+        }
+        if (Settings.settings().QUEUE.REGION_FILE_SCHEDULING) {
+            MetricsRegistry registry = FaweMetrics.registry();
+            registry.gauge("fawe_schedule_loaded_chunks", "Loaded chunks queued by parallel edits",
+                    RegionFileSchedule::getQueuedLoaded, false
+            );
+            registry.gauge("fawe_schedule_unloaded_chunks", "Unloaded chunks queued by parallel edits",
+                    RegionFileSchedule::getQueuedUnloaded, false
+            );
+            registry.gauge("fawe_schedule_loading_chunks", "Queued chunks parallel edits requested to be loaded",
+                    RegionFileSchedule::getLoading, false
+            );
+        }
     }
 
     @ApiStatus.Internal
@@ -332,7 +379,7 @@ private <T> Future<T> sync(Runnable run, T value, Queue<FutureTask> queue) {
             run.run();
             return Futures.immediateFuture(value);
         }
-        final FutureTask<T> result = new FutureTask<>(run, value);
+        final FutureTask<T> result = new SyncTask<>(run, value);
         queue.add(result);
         notifySync(queue);
         return result;
@@ -343,7 +390,7 @@ private <T> Future<T> sync(Runnable run, Queue<FutureTask> queue) {
             run.run();
             return Futures.immediateCancelledFuture();
         }
-        final FutureTask<T> result = new FutureTask<>(run, null);
+        final FutureTask<T> result = new SyncTask<>(run, null);
         queue.add(result);
         notifySync(queue);
         return result;
@@ -353,7 +400,7 @@ private <T> Future<T> sync(Callable<T> call, Queue<FutureTask> queue) throws Exc
         if (Fawe.isMainThread()) {
             return Futures.immediateFuture(call.call());
         }
-        final FutureTask<T> result = new FutureTask<>(call);
+        final FutureTask<T> result = new SyncTask<>(call);
         queue.add(result);
         notifySync(queue);
         return result;
@@ -363,7 +410,7 @@ private <T> Future<T> sync(Supplier<T> call, Queue<FutureTask> queue) {
         if (Fawe.isMainThread()) {
             return Futures.immediateFuture(call.get());
         }
-        final FutureTask<T> result = new FutureTask<>(call::get);
+        final FutureTask<T> result = new SyncTask<>(call::get);
         queue.add(result);
         notifySync(queue);
         return result;
@@ -410,12 +457,24 @@ public IChunkCache<IChunkGet> getOrCreateWorldCache(World world) {
                     return cached;
                 }
             }
-            final IChunkCache<IChunkGet> created = new ChunkCache<>(world);
+            final IChunkCache<IChunkGet> created = sharedChunkCache != null
+                    ? sharedChunkCache.forWorld(world)
+                    : new ChunkCache<>(world);
             chunkGetCache.put(world, new WeakReference<>(created));
             return created;
         }
     }
 
+    /**
+     * Get the chunk GET cache shared between edits, e.g. to read its hit/miss counters.
+     *
+     * @return the shared cache, or null if disabled in the config
+     */
+    @Nullable
+    public SharedChunkCache getSharedChunkCache() {
+        return sharedChunkCache;
+    }
+
     public IQueueExtent<IQueueChunk> create() {
         return new SingleThreadQueueExtent();
     }
@@ -517,13 +576,16 @@ public boolean trim(boolean aggressive) {
                 final Map.Entry<World, WeakReference<IChunkCache<IChunkGet>>> entry = iter.next();
                 final WeakReference<IChunkCache<IChunkGet>> value = entry.getValue();
                 final IChunkCache<IChunkGet> cache = value.get();
-                if (cache.trim(aggressive)) {
+                if (cache == null || cache.trim(aggressive)) {
                     iter.remove();
                     continue;
                 }
                 result = false;
             }
         }
+        if (sharedChunkCache != null && !sharedChunkCache.trim(aggressive)) {
+            result = false;
+        }
         return result;
     }
 
@@ -551,4 +613,27 @@ public ExecutorService getForkJoinPoolSecondary() {
         return forkJoinPoolSecondary;
     }
 
+    /**
+     * A sync task recording how long it waited in the queue before being run.
+     */
+    private static final class SyncTask<T> extends FutureTask<T> {
+
+        private final long queued = System.nanoTime();
+
+        private SyncTask(Callable<T> callable) {
+            super(callable);
+        }
+
+        private SyncTask(Runnable runnable, T result) {
+            super(runnable, result);
+        }
+
+        @Override
+        public void run() {
+            FaweMetrics.SYNC_TASK_WAIT.record(queued);
+            super.run();
+        }
+
+    }
+
 }
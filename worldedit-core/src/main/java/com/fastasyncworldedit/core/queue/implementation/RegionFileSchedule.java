@@ -0,0 +1,207 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.regions.ChunkKeys;
+import com.fastasyncworldedit.core.util.TaskManager;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.World;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Orders the chunks of an edit in stages: first the chunks which are already loaded, then the others in batches within
+ * a single region file (32x32 chunks), so the loads of a batch can be requested while the batch before it is edited.
+ * The number of chunks queued in each stage over all schedules is published as metrics by the {@link QueueHandler}.
+ */
+final class RegionFileSchedule {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final LongAdder QUEUED_LOADED = new LongAdder();
+    private static final LongAdder QUEUED_UNLOADED = new LongAdder();
+    private static final LongAdder LOADING = new LongAdder();
+
+    private final World world;
+    private final long[] chunks;
+    private final int loaded;
+    // The start of each batch of unloaded chunks, followed by the end of the last one
+    private final int[] batches;
+    private int requested;
+    // The index after the last chunk handed out to be edited
+    private int edited;
+    // The numbers of chunks this schedule added to the metrics of each stage
+    private int queuedLoaded;
+    private int queuedUnloaded;
+    private int loading;
+
+    /**
+     * Create a new schedule. Whether the chunks are loaded is read once, on the main thread, as platforms may only
+     * tell reliably from there.
+     *
+     * @param world     the world the chunks are in
+     * @param chunks    the keys of the chunks, as of {@link ChunkKeys}, in Z-order
+     * @param batchSize the maximum number of chunks of a batch
+     */
+    RegionFileSchedule(World world, long[] chunks, int batchSize) {
+        this.world = world;
+        this.chunks = new long[chunks.length];
+        long[] unloaded = new long[chunks.length];
+        boolean[] isLoaded = TaskManager.taskManager().sync(() -> {
+            boolean[] result = new boolean[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                result[i] = world.isChunkLoaded(ChunkKeys.x(chunks[i]), ChunkKeys.z(chunks[i]));
+            }
+            return result;
+        });
+        int loaded = 0;
+        int unloadedCount = 0;
+        // Keep the Z-order within both stages, so the chunks of a region file stay contiguous
+        for (int i = 0; i < chunks.length; i++) {
+            if (isLoaded[i]) {
+                this.chunks[loaded++] = chunks[i];
+            } else {
+                unloaded[unloadedCount++] = chunks[i];
+            }
+        }
+        System.arraycopy(unloaded, 0, this.chunks, loaded, unloadedCount);
+        this.loaded = loaded;
+        IntArrayList batches = new IntArrayList();
+        long regionFile = 0;
+        for (int i = loaded; i < chunks.length; i++) {
+            long chunk = this.chunks[i];
+            long chunkRegionFile = ChunkKeys.key(ChunkKeys.x(chunk) >> 5, ChunkKeys.z(chunk) >> 5);
+            if (batches.isEmpty() || chunkRegionFile != regionFile || i - batches.getInt(batches.size() - 1) >= batchSize) {
+                batches.add(i);
+                regionFile = chunkRegionFile;
+            }
+        }
+        batches.add(chunks.length);
+        this.batches = batches.toIntArray();
+        this.requested = loaded;
+        publish(loaded, unloadedCount, 0);
+    }
+
+    /**
+     * {@return the number of loaded chunks queued by all schedules}
+     */
+    static long getQueuedLoaded() {
+        return QUEUED_LOADED.sum();
+    }
+
+    /**
+     * {@return the number of unloaded chunks queued by all schedules, including those being loaded}
+     */
+    static long getQueuedUnloaded() {
+        return QUEUED_UNLOADED.sum();
+    }
+
+    /**
+     * {@return the number of queued chunks all schedules requested to be loaded}
+     */
+    static long getLoading() {
+        return LOADING.sum();
+    }
+
+    /**
+     * {@return the keys of the chunks in the order they should be edited}
+     */
+    long[] getChunks() {
+        return chunks;
+    }
+
+    /**
+     * {@return the number of chunks which were loaded, which come first}
+     */
+    int getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * {@return the number of batches of chunks which were not loaded}
+     */
+    int getBatchCount() {
+        return batches.length - 1;
+    }
+
+    /**
+     * {@return the index of the first chunk of the batch}
+     *
+     * @param batch the batch
+     */
+    int getBatchStart(int batch) {
+        return batches[batch];
+    }
+
+    /**
+     * {@return the index after the last chunk of the batch}
+     *
+     * @param batch the batch
+     */
+    int getBatchEnd(int batch) {
+        return batches[batch + 1];
+    }
+
+    /**
+     * Request the chunks of the batch to be loaded, which the platform may do asynchronously. Chunks which cannot be
+     * requested are loaded when they are edited instead.
+     *
+     * @param batch the batch
+     */
+    void request(int batch) {
+        try {
+            for (int i = getBatchStart(batch); i < getBatchEnd(batch); i++) {
+                world.checkLoadedChunk(BlockVector3.at(ChunkKeys.x(chunks[i]) << 4, 0, ChunkKeys.z(chunks[i]) << 4));
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Could not request the chunks of batch {} in {} to be loaded", batch, world.getName(), e);
+            return;
+        }
+        requested = Math.max(requested, getBatchEnd(batch));
+        publish(queuedLoaded, queuedUnloaded, Math.max(0, requested - Math.max(loaded, edited)));
+    }
+
+    /**
+     * Update the number of chunks queued in each stage when the chunks in the range are about to be edited, and log
+     * them.
+     *
+     * @param start the index of the first chunk about to be edited
+     * @param end   the index after the last chunk about to be edited
+     */
+    void report(int start, int end) {
+        int loadedAfter = Math.max(0, loaded - end);
+        int unloadedAfter = chunks.length - Math.max(loaded, end);
+        int loadingAfter = Math.max(0, requested - Math.max(loaded, end));
+        edited = end;
+        publish(loadedAfter, unloadedAfter, loadingAfter);
+        if (!LOGGER.isDebugEnabled()) {
+            return;
+        }
+        LOGGER.debug(
+                "Editing {} chunks in {}: {} loaded and {} unloaded chunks queued after, of which {} are being loaded",
+                end - start,
+                world.getName(),
+                loadedAfter,
+                unloadedAfter,
+                loadingAfter
+        );
+    }
+
+    /**
+     * Remove the chunks still queued by this schedule from the metrics, once the edit is done or failed.
+     */
+    void close() {
+        publish(0, 0, 0);
+    }
+
+    private void publish(int queuedLoaded, int queuedUnloaded, int loading) {
+        QUEUED_LOADED.add(queuedLoaded - this.queuedLoaded);
+        QUEUED_UNLOADED.add(queuedUnloaded - this.queuedUnloaded);
+        LOADING.add(loading - this.loading);
+        this.queuedLoaded = queuedLoaded;
+        this.queuedUnloaded = queuedUnloaded;
+        this.loading = loading;
+    }
+
+}
@@ -17,6 +17,7 @@
 import com.fastasyncworldedit.core.queue.implementation.blocks.CharSetBlocks;
 import com.fastasyncworldedit.core.queue.implementation.chunk.ChunkHolder;
 import com.fastasyncworldedit.core.queue.implementation.chunk.NullChunk;
+import com.fastasyncworldedit.core.regions.ChunkKeys;
 import com.fastasyncworldedit.core.util.MathMan;
 import com.fastasyncworldedit.core.util.MemUtil;
 import com.fastasyncworldedit.core.wrappers.WorldWrapper;
@@ -24,7 +25,6 @@
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
-import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.SideEffectSet;
@@ -253,6 +253,8 @@ private <V extends Future<V>> V submitUnchecked(IQueueChunk chunk) {
                 return (V) result;
             }
         }
+        // The cached GET no longer reflects the world once this chunk is committed
+        cacheGet.invalidate(chunk.getX(), chunk.getZ());
 
         if (Fawe.isMainThread()) {
             V result = (V) chunk.call();
@@ -379,13 +381,10 @@ public void addChunkLoad(int cx, int cz) {
      */
     public void preload(Region region) {
         if (Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT > 1) {
-            int loadCount = 0;
-            for (BlockVector2 from : region.getChunks()) {
-                if (loadCount >= Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT) {
-                    break;
-                }
-                loadCount++;
-                addChunkLoad(from.x(), from.z());
+            long[] chunks = region.getChunkKeys();
+            int loadCount = Math.min(chunks.length, Settings.settings().QUEUE.PRELOAD_CHUNK_COUNT);
+            for (int i = 0; i < loadCount; i++) {
+                addChunkLoad(ChunkKeys.x(chunks[i]), ChunkKeys.z(chunks[i]));
             }
         }
     }
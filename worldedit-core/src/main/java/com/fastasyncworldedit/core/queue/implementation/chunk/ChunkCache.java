@@ -3,6 +3,7 @@
 import com.fastasyncworldedit.core.queue.IChunkCache;
 import com.fastasyncworldedit.core.queue.Trimable;
 import com.fastasyncworldedit.core.util.MathMan;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
@@ -40,7 +41,10 @@ public synchronized T get(int x, int z) {
     }
 
     public T newChunk(int chunkX, int chunkZ) {
-        return delegate.get(chunkX, chunkZ);
+        final long start = FaweMetrics.CHUNK_GET.start();
+        final T chunk = delegate.get(chunkX, chunkZ);
+        FaweMetrics.CHUNK_GET.record(start);
+        return chunk;
     }
 
     @Override
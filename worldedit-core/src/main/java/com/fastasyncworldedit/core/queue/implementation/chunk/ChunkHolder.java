@@ -5,12 +5,15 @@
 import com.fastasyncworldedit.core.extent.processor.heightmap.HeightMapType;
 import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
 import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.FilterBlockMask;
 import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
 import com.fastasyncworldedit.core.queue.IQueueChunk;
 import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.Flood;
 import com.fastasyncworldedit.core.util.MemUtil;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
 import com.fastasyncworldedit.core.util.task.FaweThreadUtil;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.internal.util.LogManagerCompat;
@@ -120,6 +123,11 @@ public char[] load(int layer) {
         return getOrCreateGet().load(layer);
     }
 
+    @Override
+    public char[] loadSet(int layer) {
+        return delegate.set(this).load(layer);
+    }
+
     @Nullable
     @Override
     public char[] loadIfPresent(final int layer) {
@@ -899,6 +907,17 @@ public synchronized void filterBlocks(Filter filter, ChunkFilterBlock block, @Nu
         }
     }
 
+    @Override
+    public synchronized void flood(Flood.Worker flood, FilterBlockMask mask, ChunkFilterBlock block) {
+        final IChunkGet get = getOrCreateGet();
+        final IChunkSet set = getOrCreateSet();
+        block.initChunk(chunkX, chunkZ);
+        int layer;
+        while ((layer = flood.nextLayer()) != Integer.MIN_VALUE) {
+            block.flood(get, set, layer, flood, mask);
+        }
+    }
+
     @Override
     public synchronized boolean trim(boolean aggressive) {
         // always trim GET. It could be cached elsewhere.
@@ -1027,13 +1046,16 @@ public synchronized T call() {
     @Override
     public <U extends Future<U>> U call(IQueueExtent<? extends IChunk> owner, IChunkSet set, Runnable finalize) {
         if (set != null) {
+            final long start = FaweMetrics.CHUNK_SUBMIT.start();
             IChunkGet get = getOrCreateGet();
             try {
                 get.lockCall();
                 trackExtent();
                 boolean postProcess = !(getExtent().getPostProcessor() instanceof EmptyBatchProcessor);
                 final int copyKey = get.setCreateCopy(postProcess);
+                final long processStart = FaweMetrics.BATCH_PROCESS.start();
                 final IChunkSet iChunkSet = getExtent().processSet(this, get, set);
+                FaweMetrics.BATCH_PROCESS.record(processStart);
                 Runnable finalizer;
                 if (postProcess) {
                     finalizer = () -> {
@@ -1047,6 +1069,7 @@ public <U extends Future<U>> U call(IQueueExtent<? extends IChunk> owner, IChunk
             } finally {
                 get.unlockCall();
                 untrackExtent();
+                FaweMetrics.CHUNK_SUBMIT.record(start);
             }
         }
         return null;
@@ -0,0 +1,244 @@
+package com.fastasyncworldedit.core.queue.implementation.chunk;
+
+import com.fastasyncworldedit.core.queue.IChunkCache;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.util.MathMan;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
+import com.sk89q.worldedit.world.World;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded chunk GET cache shared by all queues of all worlds, evicting the least recently used chunks once the
+ * estimated size of the cached chunks exceeds the configured budget. Unlike {@link ChunkCache}, chunks are kept between
+ * edits, so repeated edits of the same area do not need to read and decode the chunks again.
+ * <p>
+ * Chunks are estimated at their fully decoded size, i.e. one {@code char[4096]} per section, plus the sections of the
+ * platform chunk they keep loaded. Chunks edited by a queue are invalidated when submitted, and chunks read longer ago
+ * than the revalidation interval are read again from the world, to pick up changes made outside of FAWE.
+ */
+public class SharedChunkCache {
+
+    private static final long SECTION_BYTES = 4096 * Character.BYTES;
+    // Upper bound of a section of the platform chunk pinned by a cached chunk: 16 bit block states and two light arrays
+    private static final long PINNED_SECTION_BYTES = 4096 * Short.BYTES + 2 * 2048;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final long maxBytes;
+    private final long revalidateMillis;
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxBytes         the estimated size in bytes the cached chunks may take up
+     * @param revalidateMillis the time after which a chunk is read again from the world before it is used
+     */
+    public SharedChunkCache(long maxBytes, long revalidateMillis) {
+        this.maxBytes = maxBytes;
+        this.revalidateMillis = revalidateMillis;
+    }
+
+    /**
+     * Get the view of this cache for a world. Chunks missing from the cache are read from the world.
+     *
+     * @param world the world
+     * @return chunk cache for the world
+     */
+    public IChunkCache<IChunkGet> forWorld(World world) {
+        return new WorldView(world);
+    }
+
+    private IChunkGet get(World world, int chunkX, int chunkZ) {
+        final Key key = new Key(world, MathMan.pairInt(chunkX, chunkZ));
+        final long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                // Revalidate at most once per interval, however often the chunk is used in between. Trimming the chunk
+                // is not enough, as it may still reference a platform chunk that has since been unloaded
+                if (now - entry.loaded <= revalidateMillis) {
+                    hits.increment();
+                    return entry.get;
+                }
+                remove(key, entry);
+            }
+        }
+        return load(world, key, chunkX, chunkZ, now);
+    }
+
+    private IChunkGet load(World world, Key key, int chunkX, int chunkZ, long now) {
+        misses.increment();
+        // Create the chunk outside the lock, so a miss does not hold up the queues of all worlds
+        final long start = FaweMetrics.CHUNK_GET.start();
+        final IChunkGet get = world.get(chunkX, chunkZ);
+        FaweMetrics.CHUNK_GET.record(start);
+        final Entry created = new Entry(get, weigh(get), now);
+        synchronized (this) {
+            final Entry entry = entries.putIfAbsent(key, created);
+            if (entry != null) {
+                // Another thread cached the chunk in the meantime
+                return entry.get;
+            }
+            bytes += created.bytes;
+            evict();
+        }
+        return get;
+    }
+
+    private static long weigh(IChunkGet get) {
+        return Math.max(1, get.getSectionCount()) * (SECTION_BYTES + PINNED_SECTION_BYTES);
+    }
+
+    private void evict() {
+        final Iterator<Entry> iter = entries.values().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            bytes -= iter.next().bytes;
+            iter.remove();
+            evictions.increment();
+        }
+    }
+
+    private synchronized void invalidate(World world, int chunkX, int chunkZ) {
+        final Entry entry = entries.remove(new Key(world, MathMan.pairInt(chunkX, chunkZ)));
+        if (entry != null) {
+            bytes -= entry.bytes;
+            invalidations.increment();
+        }
+    }
+
+    private void remove(Key key, Entry entry) {
+        // Another thread may have replaced the entry in the meantime
+        if (entries.remove(key, entry)) {
+            bytes -= entry.bytes;
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Remove all chunks of a world, e.g. when it is unloaded.
+     *
+     * @param world the world
+     */
+    public synchronized void invalidate(World world) {
+        final Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet().iterator();
+        while (iter.hasNext()) {
+            final Map.Entry<Key, Entry> entry = iter.next();
+            if (entry.getKey().world.equals(world)) {
+                bytes -= entry.getValue().bytes;
+                iter.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Trim the cache.
+     *
+     * @param aggressive if all chunks should be removed from the cache rather than only those due for revalidation
+     * @return true if the cache is empty
+     */
+    public synchronized boolean trim(boolean aggressive) {
+        if (aggressive) {
+            evictions.add(entries.size());
+            entries.clear();
+            bytes = 0;
+            return true;
+        }
+        final long now = System.currentTimeMillis();
+        final Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            final Entry entry = iter.next();
+            if (now - entry.loaded > revalidateMillis) {
+                bytes -= entry.bytes;
+                iter.remove();
+                evictions.increment();
+            }
+        }
+        return entries.isEmpty();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * {@return the estimated size of the cached chunks in bytes}
+     */
+    public synchronized long getEstimatedBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private record Key(World world, long chunk) {
+
+    }
+
+    private static final class Entry {
+
+        private final IChunkGet get;
+        private final long bytes;
+        private final long loaded;
+
+        private Entry(IChunkGet get, long bytes, long loaded) {
+            this.get = get;
+            this.bytes = bytes;
+            this.loaded = loaded;
+        }
+
+    }
+
+    private final class WorldView implements IChunkCache<IChunkGet> {
+
+        private final World world;
+
+        private WorldView(World world) {
+            this.world = world;
+        }
+
+        @Override
+        public IChunkGet get(int chunkX, int chunkZ) {
+            return SharedChunkCache.this.get(world, chunkX, chunkZ);
+        }
+
+        @Override
+        public void invalidate(int chunkX, int chunkZ) {
+            SharedChunkCache.this.invalidate(world, chunkX, chunkZ);
+        }
+
+        @Override
+        public boolean trim(boolean aggressive) {
+            // Shared between all queues, trimmed as a whole by the QueueHandler
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.fastasyncworldedit.core.regions;
+
+import com.fastasyncworldedit.core.util.MathMan;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Chunk positions packed into longs with {@link MathMan#pairInt(int, int)}, ordered along a Z-order curve.
+ * <p>
+ * The curve is aligned to 32x32 chunk regions, so the chunks of each region file form one contiguous run of the order,
+ * and any run of {@code 4^n} aligned positions covers a square of chunks.
+ *
+ * @see Region#getChunkKeys()
+ */
+public final class ChunkKeys {
+
+    /**
+     * An empty array of chunk keys.
+     */
+    public static final long[] EMPTY = new long[0];
+
+    private static final int REGION_MASK = ~31;
+    // Chunks of a bounding box up to this area are allocated at once, larger ones grow as chunks are accepted
+    private static final int MAX_PREALLOCATED = 1 << 16;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private ChunkKeys() {
+    }
+
+    /**
+     * {@return the key of the chunk}
+     *
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     */
+    public static long key(int chunkX, int chunkZ) {
+        return MathMan.pairInt(chunkX, chunkZ);
+    }
+
+    /**
+     * {@return the x-coordinate of the chunk of the key}
+     *
+     * @param key the key
+     */
+    public static int x(long key) {
+        return MathMan.unpairIntX(key);
+    }
+
+    /**
+     * {@return the z-coordinate of the chunk of the key}
+     *
+     * @param key the key
+     */
+    public static int z(long key) {
+        return MathMan.unpairIntY(key);
+    }
+
+    /**
+     * Collect the keys of the chunks within the bounding box of the region which the filter accepts, in Z-order.
+     *
+     * @param region the region
+     * @param filter the chunks to include
+     * @return the keys of the chunks
+     */
+    public static long[] of(Region region, ChunkFilter filter) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        int minX = min.x() >> 4;
+        int minZ = min.z() >> 4;
+        int maxX = max.x() >> 4;
+        int maxZ = max.z() >> 4;
+        if (minX > maxX || minZ > maxZ) {
+            return EMPTY;
+        }
+        int originX = minX & REGION_MASK;
+        int originZ = minZ & REGION_MASK;
+        // The area may exceed an int for huge regions, of which e.g. only the outline may be accepted
+        long area = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        long[] codes = new long[(int) Math.min(area, MAX_PREALLOCATED)];
+        int size = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                if (filter.test(x, z)) {
+                    if (size == codes.length) {
+                        codes = grow(codes);
+                    }
+                    codes[size++] = interleave(x - originX, z - originZ);
+                }
+            }
+        }
+        return decode(codes, size, originX, originZ);
+    }
+
+    /**
+     * Collect the keys of the chunks in Z-order.
+     *
+     * @param chunks the chunks
+     * @return the keys of the chunks
+     */
+    public static long[] of(Collection<BlockVector2> chunks) {
+        if (chunks.isEmpty()) {
+            return EMPTY;
+        }
+        int originX = Integer.MAX_VALUE;
+        int originZ = Integer.MAX_VALUE;
+        for (BlockVector2 chunk : chunks) {
+            originX = Math.min(originX, chunk.x());
+            originZ = Math.min(originZ, chunk.z());
+        }
+        originX &= REGION_MASK;
+        originZ &= REGION_MASK;
+        long[] codes = new long[chunks.size()];
+        int size = 0;
+        for (BlockVector2 chunk : chunks) {
+            codes[size++] = interleave(chunk.x() - originX, chunk.z() - originZ);
+        }
+        return decode(codes, size, originX, originZ);
+    }
+
+    private static long[] grow(long[] codes) {
+        if (codes.length >= MAX_ARRAY_SIZE) {
+            throw new IllegalStateException("Too many chunks to collect: more than " + MAX_ARRAY_SIZE);
+        }
+        return Arrays.copyOf(codes, (int) Math.min(MAX_ARRAY_SIZE, Math.max(16, codes.length * 2L)));
+    }
+
+    private static long[] decode(long[] codes, int size, int originX, int originZ) {
+        Arrays.sort(codes, 0, size);
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = key(originX + compact(codes[i]), originZ + compact(codes[i] >>> 1));
+        }
+        return keys;
+    }
+
+    // The offsets are non-negative and far below 2^31 for any world, so the codes sort as signed longs
+    private static long interleave(int x, int z) {
+        return spread(x) | spread(z) << 1;
+    }
+
+    private static long spread(int value) {
+        long v = value & 0xFFFFFFFFL;
+        v = (v | v << 16) & 0x0000FFFF0000FFFFL;
+        v = (v | v << 8) & 0x00FF00FF00FF00FFL;
+        v = (v | v << 4) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | v << 2) & 0x3333333333333333L;
+        return (v | v << 1) & 0x5555555555555555L;
+    }
+
+    private static int compact(long code) {
+        long v = code & 0x5555555555555555L;
+        v = (v | v >>> 1) & 0x3333333333333333L;
+        v = (v | v >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | v >>> 4) & 0x00FF00FF00FF00FFL;
+        v = (v | v >>> 8) & 0x0000FFFF0000FFFFL;
+        return (int) ((v | v >>> 16) & 0xFFFFFFFFL);
+    }
+
+    @FunctionalInterface
+    public interface ChunkFilter {
+
+        /**
+         * {@return if the chunk should be included}
+         *
+         * @param chunkX the x-coordinate of the chunk
+         * @param chunkZ the z-coordinate of the chunk
+         */
+        boolean test(int chunkX, int chunkZ);
+
+    }
+
+}
@@ -83,6 +83,11 @@ default Set<BlockVector2> getChunks() {
         return getRegion().getChunks();
     }
 
+    @Override
+    default long[] getChunkKeys() {
+        return getRegion().getChunkKeys();
+    }
+
     @Override
     default Set<BlockVector3> getChunkCubes() {
         return getRegion().getChunkCubes();
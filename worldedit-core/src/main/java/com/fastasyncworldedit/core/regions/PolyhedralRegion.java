@@ -1,5 +1,6 @@
 package com.fastasyncworldedit.core.regions;
 
+import com.fastasyncworldedit.core.math.MutableBlockVector3;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldedit.regions.AbstractRegion;
@@ -318,6 +319,46 @@ public Collection<Triangle> getTriangles() {
         return triangles;
     }
 
+    @Override
+    public SectionMask getSectionMask(int chunkX, int chunkZ, int layer) {
+        if (!isDefined() || !SectionMask.intersects(this, chunkX, chunkZ, layer)) {
+            return SectionMask.EMPTY;
+        }
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        // The region is the surface of the triangles, so only the triangles overlapping the section need to be checked
+        List<Triangle> overlapping = new ArrayList<>();
+        for (Triangle triangle : triangles) {
+            if (triangle.overlaps(bx, by, bz, 16)) {
+                overlapping.add(triangle);
+            }
+        }
+        if (overlapping.isEmpty()) {
+            return SectionMask.EMPTY;
+        }
+        BlockVector3 min = getMinimumPoint();
+        BlockVector3 max = getMaximumPoint();
+        MutableBlockVector3 pos = new MutableBlockVector3();
+        char[] rows = new char[256];
+        for (int y = Math.max(by, min.y()); y <= Math.min(by + 15, max.y()); y++) {
+            for (int z = Math.max(bz, min.z()); z <= Math.min(bz + 15, max.z()); z++) {
+                int row = 0;
+                for (int x = Math.max(bx, min.x()); x <= Math.min(bx + 15, max.x()); x++) {
+                    pos.setComponents(x, y, z);
+                    for (Triangle triangle : overlapping) {
+                        if (triangle.contains(pos)) {
+                            row |= 1 << (x & 15);
+                            break;
+                        }
+                    }
+                }
+                rows[(y & 15) << 4 | (z & 15)] = (char) row;
+            }
+        }
+        return SectionMask.of(rows);
+    }
+
     @Override
     public AbstractRegion clone() {
         return new PolyhedralRegion(this);
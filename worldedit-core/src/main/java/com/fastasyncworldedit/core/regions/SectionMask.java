@@ -0,0 +1,178 @@
+package com.fastasyncworldedit.core.regions;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+
+/**
+ * The blocks of a region within a 16x16x16 chunk section. A section is either entirely {@link #FULL inside} the
+ * region, entirely {@link #EMPTY outside} of it, or partially inside, in which case the blocks inside are kept as a
+ * bitmask of 16 bits per row along the x-axis.
+ *
+ * @see Region#getSectionMask(int, int, int)
+ */
+public final class SectionMask {
+
+    /**
+     * The mask of a section entirely outside the region.
+     */
+    public static final SectionMask EMPTY = new SectionMask(null);
+    /**
+     * The mask of a section entirely inside the region.
+     */
+    public static final SectionMask FULL = new SectionMask(null);
+
+    private static final char FULL_ROW = 0xFFFF;
+
+    // 16 bits for the x-coordinates of each row, indexed by y << 4 | z
+    private final char[] rows;
+
+    private SectionMask(char[] rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Create a mask from the rows of a section, returning {@link #EMPTY} or {@link #FULL} if no or all bits are set.
+     *
+     * @param rows the 16 bits for the x-coordinates of each row, indexed by {@code y << 4 | z}
+     * @return the mask
+     */
+    public static SectionMask of(char[] rows) {
+        if (rows.length != 256) {
+            throw new IllegalArgumentException("A section has 256 rows, not " + rows.length);
+        }
+        boolean empty = true;
+        boolean full = true;
+        for (char row : rows) {
+            empty &= row == 0;
+            full &= row == FULL_ROW;
+        }
+        if (empty) {
+            return EMPTY;
+        }
+        return full ? FULL : new SectionMask(rows);
+    }
+
+    /**
+     * Rasterize the region within the section by checking if it contains each block.
+     *
+     * @param region the region
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     * @param layer  the layer of the section
+     * @return the mask
+     */
+    public static SectionMask rasterize(Region region, int chunkX, int chunkZ, int layer) {
+        if (!intersects(region, chunkX, chunkZ, layer)) {
+            return EMPTY;
+        }
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        char[] rows = new char[256];
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                int row = 0;
+                for (int x = 0; x < 16; x++) {
+                    if (region.contains(bx + x, by + y, bz + z)) {
+                        row |= 1 << x;
+                    }
+                }
+                rows[y << 4 | z] = (char) row;
+            }
+        }
+        return of(rows);
+    }
+
+    /**
+     * Rasterize a region within the section which, for every row, contains the blocks up to some distance from
+     * {@code centerX} only. Only the blocks closest to and furthest from the center are checked for rows entirely inside
+     * or outside the region.
+     *
+     * @param region  the region
+     * @param chunkX  the x-coordinate of the chunk
+     * @param chunkZ  the z-coordinate of the chunk
+     * @param layer   the layer of the section
+     * @param centerX the x-coordinate the region is centered on
+     * @return the mask
+     */
+    public static SectionMask rasterizeCentered(Region region, int chunkX, int chunkZ, int layer, int centerX) {
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        int near = Math.max(0, Math.min(15, centerX - bx));
+        int far = centerX - bx > 7 ? 0 : 15;
+        char[] rows = new char[256];
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                int row = 0;
+                if (region.contains(bx + far, by + y, bz + z)) {
+                    row = FULL_ROW;
+                } else if (region.contains(bx + near, by + y, bz + z)) {
+                    row = 1 << near;
+                    for (int x = near - 1; x >= 0 && region.contains(bx + x, by + y, bz + z); x--) {
+                        row |= 1 << x;
+                    }
+                    for (int x = near + 1; x < 16 && region.contains(bx + x, by + y, bz + z); x++) {
+                        row |= 1 << x;
+                    }
+                }
+                rows[y << 4 | z] = (char) row;
+            }
+        }
+        return of(rows);
+    }
+
+    /**
+     * {@return if the bounding box of the region intersects the section}
+     *
+     * @param region the region
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     * @param layer  the layer of the section
+     */
+    public static boolean intersects(Region region, int chunkX, int chunkZ, int layer) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        return chunkX >= min.x() >> 4 && chunkX <= max.x() >> 4 && chunkZ >= min.z() >> 4 && chunkZ <= max.z() >> 4
+                && layer >= min.y() >> 4 && layer <= max.y() >> 4;
+    }
+
+    /**
+     * {@return if the section is entirely outside the region}
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    /**
+     * {@return if the section is entirely inside the region}
+     */
+    public boolean isFull() {
+        return this == FULL;
+    }
+
+    /**
+     * {@return the bits of the x-coordinates inside the region in the row}
+     *
+     * @param y the y-coordinate within the section
+     * @param z the z-coordinate within the section
+     */
+    public int getRow(int y, int z) {
+        if (rows == null) {
+            return this == FULL ? FULL_ROW : 0;
+        }
+        return rows[y << 4 | z];
+    }
+
+    /**
+     * {@return if the block is inside the region}
+     *
+     * @param x the x-coordinate within the section
+     * @param y the y-coordinate within the section
+     * @param z the z-coordinate within the section
+     */
+    public boolean contains(int x, int y, int z) {
+        return (getRow(y, z) >> x & 1) != 0;
+    }
+
+}
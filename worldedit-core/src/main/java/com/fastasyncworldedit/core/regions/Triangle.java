@@ -85,6 +85,28 @@ public boolean contains(BlockVector3 pos) {
         return overlaps(center, radius, verts);
     }
 
+    /**
+     * {@return if the triangle overlaps the cube, i.e. if any block within it may be {@link #contains(BlockVector3) contained}}
+     *
+     * @param x    the minimum x-coordinate of the cube
+     * @param y    the minimum y-coordinate of the cube
+     * @param z    the minimum z-coordinate of the cube
+     * @param size the side length of the cube
+     */
+    public boolean overlaps(int x, int y, int z, int size) {
+        double half = size / 2d;
+        center[0] = x + half;
+        center[1] = y + half;
+        center[2] = z + half;
+        // The axis tests read the half size of the box from the radius
+        radius[0] = radius[1] = radius[2] = half;
+        try {
+            return overlaps(center, radius, verts);
+        } finally {
+            radius[0] = radius[1] = radius[2] = RADIUS;
+        }
+    }
+
     private void sub(double[] dest, double[] v1, double[] v2) {
         dest[0] = v1[0] - v2[0];
         dest[1] = v1[1] - v2[1];
@@ -8,6 +8,7 @@
 import com.fastasyncworldedit.core.internal.io.AbstractDelegateOutputStream;
 import com.fastasyncworldedit.core.internal.io.FaweInputStream;
 import com.fastasyncworldedit.core.internal.io.FaweOutputStream;
+import com.fastasyncworldedit.core.internal.io.ZstdDictionaries;
 import com.fastasyncworldedit.core.regions.RegionWrapper;
 import com.fastasyncworldedit.core.util.task.RunnableVal;
 import com.fastasyncworldedit.core.util.task.RunnableVal2;
@@ -319,6 +320,9 @@ public static FaweInputStream getCompressedIS(InputStream is) throws IOException
 
     public static FaweInputStream getCompressedIS(InputStream is, int buffer) throws IOException {
         int mode = (byte) is.read();
+        if (mode == ZstdDictionaries.MODE) {
+            return ZstdDictionaries.getCompressedIS(is, buffer);
+        }
         is = new FastBufferedInputStream(is, buffer);
         if (mode == 0) {
             return new FaweInputStream(is);
@@ -1,5 +1,6 @@
 package com.fastasyncworldedit.core.util.collection;
 
+import com.fastasyncworldedit.core.regions.ChunkKeys;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.AbstractRegion;
@@ -105,6 +106,12 @@ public boolean remove(Object o) {
     @Override
     public abstract Set<BlockVector2> getChunks();
 
+    @Override
+    public long[] getChunkKeys() {
+        // Only the chunks with blocks in the set, rather than every chunk of the bounding box
+        return ChunkKeys.of(getChunks());
+    }
+
     @Override
     public abstract Set<BlockVector3> getChunkCubes();
 
@@ -0,0 +1,85 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The metrics of the edit pipeline: loading chunks, running batch processors, submitting chunks, writing history,
+ * relighting and waiting for the main thread. Exporters can be added to publish them periodically.
+ */
+public final class FaweMetrics {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+    private static final List<MetricsExporter> EXPORTERS = new CopyOnWriteArrayList<>();
+
+    public static final LatencyHistogram CHUNK_GET = REGISTRY.histogram(
+            "fawe_chunk_get_seconds",
+            "Time to create the IChunkGet of a chunk not yet cached, including loading the chunk"
+    );
+    public static final LatencyHistogram BATCH_PROCESS = REGISTRY.histogram(
+            "fawe_batch_process_seconds",
+            "Time spent in the batch processors of a chunk before it is applied"
+    );
+    public static final LatencyHistogram CHUNK_SUBMIT = REGISTRY.histogram(
+            "fawe_chunk_submit_seconds",
+            "Time to process and apply an edited chunk in ChunkHolder#call"
+    );
+    public static final LatencyHistogram HISTORY_WRITE = REGISTRY.histogram(
+            "fawe_history_write_seconds",
+            "Time to record the changes of a chunk to its change set"
+    );
+    public static final Counter HISTORY_WRITE_BYTES = REGISTRY.counter(
+            "fawe_history_write_bytes_total",
+            "Bytes of history written to disk"
+    );
+    public static final LatencyHistogram RELIGHT_SKY = REGISTRY.histogram(
+            "fawe_relight_sky_seconds",
+            "Time spent fixing sky light of a relight"
+    );
+    public static final LatencyHistogram RELIGHT_BLOCK = REGISTRY.histogram(
+            "fawe_relight_block_seconds",
+            "Time spent fixing block light of a relight"
+    );
+    public static final LatencyHistogram RELIGHT_SEND = REGISTRY.histogram(
+            "fawe_relight_send_seconds",
+            "Time spent sending relit chunks"
+    );
+    public static final LatencyHistogram SYNC_TASK_WAIT = REGISTRY.histogram(
+            "fawe_sync_task_wait_seconds",
+            "Time tasks wait in the queue of the main thread before running"
+    );
+
+    private FaweMetrics() {
+    }
+
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    public static void addExporter(MetricsExporter exporter) {
+        EXPORTERS.add(exporter);
+    }
+
+    public static void removeExporter(MetricsExporter exporter) {
+        EXPORTERS.remove(exporter);
+    }
+
+    /**
+     * Export the metrics with all registered exporters.
+     */
+    public static void export() {
+        for (MetricsExporter exporter : EXPORTERS) {
+            try {
+                exporter.export(REGISTRY);
+            } catch (Throwable e) {
+                LOGGER.warn("Could not export metrics with {}", exporter.getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A metric read from a supplier when exported, e.g. the counters kept by a cache.
+ */
+public class Gauge extends Metric {
+
+    private final LongSupplier supplier;
+    private final boolean monotonic;
+
+    /**
+     * Create a new gauge.
+     *
+     * @param name      the name
+     * @param help      the description
+     * @param supplier  the supplier of the value
+     * @param monotonic if the value only ever increases, in which case it is exported as a counter
+     */
+    public Gauge(String name, String help, LongSupplier supplier, boolean monotonic) {
+        super(name, help);
+        this.supplier = supplier;
+        this.monotonic = monotonic;
+    }
+
+    public long get() {
+        return supplier.getAsLong();
+    }
+
+    @Override
+    public String getType() {
+        return monotonic ? "counter" : "gauge";
+    }
+
+    @Override
+    public void reset() {
+        // The value is owned by the supplier
+    }
+
+    @Override
+    public String summarize() {
+        return Long.toString(get());
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with fixed buckets from 10 microseconds to 10 seconds. Recording is lock free and safe from
+ * any thread.
+ * <pre>{@code
+ * long start = histogram.start();
+ * ...
+ * histogram.record(start);
+ * }</pre>
+ */
+public class LatencyHistogram extends Metric {
+
+    /**
+     * The inclusive upper bounds of the buckets in nanoseconds. Larger durations fall into an implicit last bucket.
+     */
+    private static final long[] BOUNDS = {
+            10_000L, 50_000L, 100_000L, 500_000L,
+            1_000_000L, 5_000_000L, 10_000_000L, 50_000_000L,
+            100_000_000L, 500_000_000L, 1_000_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram(String name, String help) {
+        super(name, help);
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * {@return the current time to later pass to {@link #record(long)}}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time passed since a call to {@link #start()}.
+     *
+     * @param start the value returned by {@link #start()}
+     */
+    public void record(long start) {
+        observe(System.nanoTime() - start);
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void observe(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int i = 0;
+        while (i < BOUNDS.length && nanos > BOUNDS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * {@return a copy of the bucket upper bounds in nanoseconds}
+     */
+    public long[] getBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * {@return the number of durations in each bucket, the last entry counting durations above all bounds}
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Estimate a percentile from the buckets, as the upper bound of the bucket the percentile falls into.
+     *
+     * @param percentile the percentile, between 0 and 1
+     * @return the estimated duration in nanoseconds
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(BOUNDS[i], getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    @Override
+    public String getType() {
+        return "histogram";
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String summarize() {
+        long n = getCount();
+        if (n == 0) {
+            return "count=0";
+        }
+        return String.format(
+                "count=%d total=%.1fms mean=%.3fms p50<=%.3fms p99<=%.3fms max=%.3fms",
+                n,
+                getSumNanos() / 1e6,
+                getSumNanos() / 1e6 / n,
+                getPercentileNanos(0.5) / 1e6,
+                getPercentileNanos(0.99) / 1e6,
+                getMaxNanos() / 1e6
+        );
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+/**
+ * A named metric held by a {@link MetricsRegistry}.
+ */
+public abstract class Metric {
+
+    private final String name;
+    private final String help;
+
+    protected Metric(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    /**
+     * {@return the Prometheus type of this metric, e.g. {@code counter}}
+     */
+    public abstract String getType();
+
+    /**
+     * Reset this metric to its initial state, if it holds state.
+     */
+    public abstract void reset();
+
+    /**
+     * {@return a short, human readable summary of the current value}
+     */
+    public abstract String summarize();
+
+}
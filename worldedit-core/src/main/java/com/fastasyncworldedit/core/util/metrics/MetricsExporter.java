@@ -0,0 +1,18 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.io.IOException;
+
+/**
+ * Exports the metrics of a registry somewhere, called periodically by {@link FaweMetrics#export()}.
+ */
+public interface MetricsExporter {
+
+    /**
+     * Export the current values of the metrics.
+     *
+     * @param registry the registry to export
+     * @throws IOException if the metrics could not be written
+     */
+    void export(MetricsRegistry registry) throws IOException;
+
+}
@@ -0,0 +1,75 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds metrics by name. Registering a name twice returns the existing metric if it is of the same kind.
+ */
+public class MetricsRegistry {
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public Counter counter(String name, String help) {
+        return register(name, Counter.class, new Counter(name, help));
+    }
+
+    public LatencyHistogram histogram(String name, String help) {
+        return register(name, LatencyHistogram.class, new LatencyHistogram(name, help));
+    }
+
+    /**
+     * Register a gauge, replacing any existing gauge of the same name.
+     *
+     * @param name      the name
+     * @param help      the description
+     * @param supplier  the supplier of the value
+     * @param monotonic if the value only ever increases
+     * @return the gauge
+     */
+    public Gauge gauge(String name, String help, LongSupplier supplier, boolean monotonic) {
+        Gauge gauge = new Gauge(name, help, supplier, monotonic);
+        metrics.compute(name, (key, previous) -> {
+            if (previous != null && !(previous instanceof Gauge)) {
+                throw new IllegalArgumentException("Metric " + name + " is already registered as " + previous.getType());
+            }
+            return gauge;
+        });
+        return gauge;
+    }
+
+    private <T extends Metric> T register(String name, Class<T> type, T metric) {
+        Metric existing = metrics.putIfAbsent(name, metric);
+        if (existing == null) {
+            return metric;
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + existing.getType());
+        }
+        return type.cast(existing);
+    }
+
+    public void remove(String name) {
+        metrics.remove(name);
+    }
+
+    /**
+     * {@return the registered metrics, sorted by name}
+     */
+    public Collection<Metric> getMetrics() {
+        return Collections.unmodifiableCollection(metrics.values());
+    }
+
+    /**
+     * Reset all metrics holding their own state.
+     */
+    public void reset() {
+        for (Metric metric : metrics.values()) {
+            metric.reset();
+        }
+    }
+
+}
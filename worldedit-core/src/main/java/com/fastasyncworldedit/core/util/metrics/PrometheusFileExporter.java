@@ -0,0 +1,70 @@
+package com.fastasyncworldedit.core.util.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes metrics to a file in the Prometheus text exposition format, e.g. for the node_exporter textfile collector.
+ * The file is replaced atomically so it is never read half written.
+ */
+public class PrometheusFileExporter implements MetricsExporter {
+
+    private final Path file;
+
+    public PrometheusFileExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void export(MetricsRegistry registry) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, format(registry), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Format the metrics of a registry in the Prometheus text exposition format. Durations are written in seconds.
+     *
+     * @param registry the registry
+     * @return the formatted metrics
+     */
+    public static String format(MetricsRegistry registry) {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : registry.getMetrics()) {
+            String name = metric.getName();
+            out.append("# HELP ").append(name).append(' ').append(escapeHelp(metric.getHelp())).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(metric.getType()).append('\n');
+            if (metric instanceof LatencyHistogram histogram) {
+                long[] bounds = histogram.getBounds();
+                long[] counts = histogram.getBucketCounts();
+                long cumulative = 0;
+                for (int i = 0; i < bounds.length; i++) {
+                    cumulative += counts[i];
+                    out.append(name).append("_bucket{le=\"").append(bounds[i] / 1e9).append("\"} ")
+                            .append(cumulative).append('\n');
+                }
+                cumulative += counts[bounds.length];
+                out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+                out.append(name).append("_sum ").append(histogram.getSumNanos() / 1e9).append('\n');
+                out.append(name).append("_count ").append(cumulative).append('\n');
+            } else if (metric instanceof Counter counter) {
+                out.append(name).append(' ').append(counter.get()).append('\n');
+            } else if (metric instanceof Gauge gauge) {
+                out.append(name).append(' ').append(gauge.get()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+}
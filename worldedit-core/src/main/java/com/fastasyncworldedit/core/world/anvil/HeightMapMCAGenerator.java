@@ -0,0 +1,540 @@
+package com.fastasyncworldedit.core.world.anvil;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.math.heightmap.ArrayHeightMap;
+import com.fastasyncworldedit.core.math.heightmap.HeightMap;
+import com.fastasyncworldedit.core.util.TextureUtil;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.enginehub.linbus.tree.LinCompoundTag;
+import org.enginehub.linbus.tree.LinListTag;
+import org.enginehub.linbus.tree.LinStringTag;
+import org.enginehub.linbus.tree.LinTagType;
+
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+
+/**
+ * Generates a world from a height map straight into Anvil region files.
+ * <p>
+ * The map is processed in bands of {@value #TILE_SIZE} rows, and each band is split into region sized tiles which
+ * are generated and written on fork-join workers while the next band is being read. Non-interlaced PNG height maps
+ * are decoded one band at a time, so only two bands are held in memory and images far larger than the heap can be
+ * generated. Other images, including interlaced PNG images, are decoded whole and must fit in memory.
+ */
+public class HeightMapMCAGenerator {
+
+    /**
+     * The width and length of a work unit, matching the area of a region file.
+     */
+    public static final int TILE_SIZE = 512;
+
+    private final Source source;
+    private final Path regionFolder;
+    private final int width;
+    private final int length;
+
+    private int minY = -64;
+    private int maxY = 319;
+    private double heightScale = 1;
+    private int waterHeight = Integer.MIN_VALUE;
+    private BlockState floor = BlockTypes.GRASS_BLOCK.getDefaultState();
+    private BlockState main = BlockTypes.STONE.getDefaultState();
+    private BlockState bedrock = BlockTypes.BEDROCK.getDefaultState();
+    private BlockState water = BlockTypes.WATER.getDefaultState();
+    private BiomeType biome = BiomeTypes.PLAINS;
+    @Nullable
+    private File colorImage;
+    @Nullable
+    private TextureUtil textureUtil;
+    private int dataVersion = -1;
+    private int parallelism = Settings.settings().QUEUE.PARALLEL_THREADS;
+
+    /**
+     * Create a generator for a height map image. Pixel brightness (0-255) is used as the height above the minimum
+     * Y of the world, multiplied by {@link #setHeightScale(double)}.
+     *
+     * @param heightImage the height map image
+     * @param folder      the world folder to write the {@code region} folder into
+     * @throws IOException if the image cannot be read
+     */
+    public HeightMapMCAGenerator(File heightImage, Path folder) throws IOException {
+        this(ImageSource.open(heightImage), folder);
+    }
+
+    /**
+     * Create a generator sampling the given height map over {@code width * length} columns, centered on the middle
+     * of the output world.
+     *
+     * @param heightMap the height map, e.g. a {@link com.fastasyncworldedit.core.math.heightmap.ScalableHeightMap}
+     * @param width     the width of the world in blocks
+     * @param length    the length of the world in blocks
+     * @param folder    the world folder to write the {@code region} folder into
+     */
+    public HeightMapMCAGenerator(HeightMap heightMap, int width, int length, Path folder) {
+        this(new HeightMapSource(heightMap, width, length), folder);
+    }
+
+    private HeightMapMCAGenerator(Source source, Path folder) {
+        this.source = source;
+        this.width = source.getWidth();
+        this.length = source.getLength();
+        this.regionFolder = folder.resolve("region");
+    }
+
+    public HeightMapMCAGenerator setHeightRange(int minY, int maxY) {
+        this.minY = minY;
+        this.maxY = maxY;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setHeightScale(double heightScale) {
+        this.heightScale = heightScale;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setWaterHeight(int waterHeight) {
+        this.waterHeight = waterHeight;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setFloor(BlockState floor) {
+        this.floor = floor;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setMain(BlockState main) {
+        this.main = main;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setBedrock(BlockState bedrock) {
+        this.bedrock = bedrock;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setWater(BlockState water) {
+        this.water = water;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setBiome(BiomeType biome) {
+        this.biome = biome;
+        return this;
+    }
+
+    /**
+     * Use an image of the same size as the height map to pick the floor block of each column.
+     *
+     * @param colorImage  the colour image
+     * @param textureUtil the texture util used to map colours to blocks
+     */
+    public HeightMapMCAGenerator setColor(File colorImage, TextureUtil textureUtil) {
+        this.colorImage = colorImage;
+        this.textureUtil = textureUtil;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setDataVersion(int dataVersion) {
+        this.dataVersion = dataVersion;
+        return this;
+    }
+
+    public HeightMapMCAGenerator setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Generate the world, blocking until all region files have been written.
+     *
+     * @throws IOException if an image cannot be read or a region file cannot be written, in which case the region files
+     *                     of the failed band are reported as suppressed exceptions and no further bands are generated
+     */
+    public void generate() throws IOException {
+        if (dataVersion == -1) {
+            dataVersion = WorldEdit.getInstance().getPlatformManager().queryCapability(Capability.WORLD_EDITING).getDataVersion();
+        }
+        Files.createDirectories(regionFolder);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try (Source colors = colorImage == null ? null : ImageSource.open(colorImage)) {
+            if (colors != null && (colors.getWidth() != width || colors.getLength() != length)) {
+                throw new IOException("The colour image must be the same size as the height map");
+            }
+            int bands = (length + TILE_SIZE - 1) / TILE_SIZE;
+            Queue<IOException> failures = new ConcurrentLinkedQueue<>();
+            Band band = readBand(0, colors);
+            for (int i = 0; i < bands; i++) {
+                final Band current = band;
+                ForkJoinTask<?> task = pool.submit(() -> {
+                    ForkJoinTask.invokeAll(tiles(current, failures));
+                });
+                // Read the next band while this one is being generated
+                band = i + 1 < bands ? readBand(i + 1, colors) : null;
+                task.join();
+                if (!failures.isEmpty()) {
+                    IOException failure = new IOException("Failed to write " + failures.size() + " region files");
+                    failures.forEach(failure::addSuppressed);
+                    throw failure;
+                }
+            }
+        } finally {
+            pool.shutdown();
+            source.close();
+        }
+    }
+
+    private Band readBand(int index, @Nullable Source colors) throws IOException {
+        int z0 = index * TILE_SIZE;
+        int rows = Math.min(TILE_SIZE, length - z0);
+        return new Band(index, rows, source.readHeights(z0, rows), colors == null ? null : colors.readColors(z0, rows));
+    }
+
+    private List<ForkJoinTask<?>> tiles(Band band, Queue<IOException> failures) {
+        int tiles = (width + TILE_SIZE - 1) / TILE_SIZE;
+        ForkJoinTask<?>[] tasks = new ForkJoinTask[tiles];
+        for (int i = 0; i < tiles; i++) {
+            final int tileX = i;
+            tasks[i] = ForkJoinTask.adapt(() -> {
+                try {
+                    generateTile(band, tileX);
+                } catch (IOException e) {
+                    failures.add(new IOException("Failed to write region " + tileX + ", " + band.index, e));
+                }
+            });
+        }
+        return Arrays.asList(tasks);
+    }
+
+    private void generateTile(Band band, int tileX) throws IOException {
+        int x0 = tileX * TILE_SIZE;
+        int columns = Math.min(TILE_SIZE, width - x0);
+        char[][] tileHeights = new char[TILE_SIZE][];
+        for (int x = 0; x < columns; x++) {
+            char[] column = band.heights[x0 + x];
+            // the last band is padded, the height map expects a full tile
+            tileHeights[x] = column.length == TILE_SIZE ? column : Arrays.copyOf(column, TILE_SIZE);
+        }
+        for (int x = columns; x < TILE_SIZE; x++) {
+            tileHeights[x] = new char[TILE_SIZE];
+        }
+        // Maps tile local coordinates 1:1 onto the band, in the unit of the source
+        ArrayHeightMap heightMap = new ArrayHeightMap(tileHeights, 256d);
+        heightMap.setSize(TILE_SIZE >> 1);
+
+        TextureUtil texture = textureUtil == null ? null : textureUtil.fork();
+        Int2IntOpenHashMap colorCache = new Int2IntOpenHashMap();
+
+        char[][] sections = new char[(maxY >> 4) - (minY >> 4) + 1][4096];
+        int[] heights = new int[256];
+        char[] floors = new char[256];
+        byte[][] payloads = new byte[1024][];
+        int[] timestamps = new int[1024];
+        int timestamp = (int) (System.currentTimeMillis() / 1000);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, false);
+        byte[] buffer = new byte[8192];
+        try {
+            for (int cz = 0; cz < 32 && cz << 4 < band.rows; cz++) {
+                for (int cx = 0; cx < 32 && cx << 4 < columns; cx++) {
+                    int top = Integer.MIN_VALUE;
+                    for (int z = 0; z < 16; z++) {
+                        for (int x = 0; x < 16; x++) {
+                            int lx = (cx << 4) + x;
+                            int lz = (cz << 4) + z;
+                            int i = z << 4 | x;
+                            if (lx >= columns || lz >= band.rows) {
+                                heights[i] = Integer.MIN_VALUE;
+                                continue;
+                            }
+                            double height = heightMap.getHeight(lx - (TILE_SIZE >> 1), lz - (TILE_SIZE >> 1));
+                            int y = Math.min(maxY, minY + (int) (height * heightScale));
+                            heights[i] = y;
+                            top = Math.max(top, Math.max(y, waterHeight));
+                            floors[i] = floor.getOrdinalChar();
+                            if (texture != null) {
+                                int color = band.colors[lz * width + x0 + lx];
+                                if ((color >> 24 & 0xFF) != 0) {
+                                    floors[i] = (char) colorCache.computeIfAbsent(color, c -> {
+                                        BlockType type = texture.getNearestBlock(c);
+                                        return type == null ? floor.getOrdinal() : type.getDefaultState().getOrdinal();
+                                    });
+                                }
+                            }
+                        }
+                    }
+                    int index = cx + (cz << 5);
+                    payloads[index] = writeChunk(
+                            ((tileX << 5) + cx), ((band.index << 5) + cz), sections, heights, floors, top,
+                            deflater, buffer
+                    );
+                    timestamps[index] = timestamp;
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        MCAFile.write(regionFolder.resolve("r." + tileX + "." + band.index + ".mca"), payloads, timestamps);
+    }
+
+    private byte[] writeChunk(
+            int chunkX, int chunkZ, char[][] sections, int[] heights, char[] floors, int top,
+            Deflater deflater, byte[] buffer
+    ) throws IOException {
+        char air = BlockTypesCache.ReservedIDs.AIR;
+        char bedrockOrdinal = bedrock.getOrdinalChar();
+        char mainOrdinal = main.getOrdinalChar();
+        char waterOrdinal = water.getOrdinalChar();
+        int minSection = minY >> 4;
+        LinListTag.Builder<LinCompoundTag> sectionList = LinListTag.builder(LinTagType.compoundTag());
+        LinCompoundTag biomes = LinCompoundTag.builder()
+                .put("palette", LinListTag.of(LinTagType.stringTag(), List.of(LinStringTag.of(biome.id()))))
+                .build();
+        for (int s = 0; s < sections.length; s++) {
+            int layer = s + minSection;
+            char[] data = sections[s];
+            int by = layer << 4;
+            if (by > top) {
+                Arrays.fill(data, air);
+            } else {
+                for (int i = 0; i < 4096; i++) {
+                    int column = i & 255;
+                    int y = by + (i >> 8);
+                    int height = heights[column];
+                    char value;
+                    if (height == Integer.MIN_VALUE) {
+                        value = air;
+                    } else if (y == minY) {
+                        value = bedrockOrdinal;
+                    } else if (y < height) {
+                        value = mainOrdinal;
+                    } else if (y == height) {
+                        value = floors[column];
+                    } else if (y <= waterHeight) {
+                        value = waterOrdinal;
+                    } else {
+                        value = air;
+                    }
+                    data[i] = value;
+                }
+            }
+            sectionList.add(LinCompoundTag.builder()
+                    .putByte("Y", (byte) layer)
+                    .put("block_states", MCAChunk.encode(data))
+                    .put("biomes", biomes)
+                    .build());
+        }
+        LinCompoundTag chunk = LinCompoundTag.builder()
+                .putInt("DataVersion", dataVersion)
+                .putInt("xPos", chunkX)
+                .putInt("yPos", minSection)
+                .putInt("zPos", chunkZ)
+                .putString("Status", "minecraft:full")
+                .putLong("LastUpdate", 0)
+                .putLong("InhabitedTime", 0)
+                .putByte("isLightOn", (byte) 0)
+                .put("sections", sectionList.build())
+                .put("block_entities", LinListTag.empty(LinTagType.compoundTag()))
+                .build();
+        return MCAFile.writeChunk(chunk, MCAFile.COMPRESSION_ZLIB, deflater, buffer);
+    }
+
+    private record Band(int index, int rows, char[][] heights, @Nullable int[] colors) {
+
+    }
+
+    private interface Source extends Closeable {
+
+        int getWidth();
+
+        int getLength();
+
+        /**
+         * Read the heights of {@code rows} rows starting at {@code z0}, indexed {@code [x][z - z0]}.
+         */
+        char[][] readHeights(int z0, int rows) throws IOException;
+
+        /**
+         * Read the ARGB colours of {@code rows} rows starting at {@code z0}, indexed {@code (z - z0) * width + x}.
+         */
+        int[] readColors(int z0, int rows) throws IOException;
+
+    }
+
+    /**
+     * Reads an image one band at a time. Non-interlaced PNG images are decoded progressively, so the decoded image never
+     * has to fit in memory. Other formats and interlaced PNG images are decoded whole by {@link ImageIO} when the first
+     * band is read, and the decoded image is kept until the source is closed.
+     */
+    private static final class ImageSource implements Source {
+
+        @Nullable
+        private final PngRowReader png;
+        @Nullable
+        private final ImageInputStream stream;
+        @Nullable
+        private final ImageReader reader;
+        private final int width;
+        private final int length;
+        @Nullable
+        private BufferedImage image;
+
+        private ImageSource(PngRowReader png) {
+            this.png = png;
+            this.stream = null;
+            this.reader = null;
+            this.width = png.getWidth();
+            this.length = png.getLength();
+        }
+
+        private ImageSource(ImageInputStream stream, ImageReader reader) throws IOException {
+            this.png = null;
+            this.stream = stream;
+            this.reader = reader;
+            reader.setInput(stream, true, true);
+            this.width = reader.getWidth(0);
+            this.length = reader.getHeight(0);
+        }
+
+        private static ImageSource open(File file) throws IOException {
+            PngRowReader png = PngRowReader.open(file);
+            if (png != null) {
+                return new ImageSource(png);
+            }
+            ImageInputStream stream = ImageIO.createImageInputStream(file);
+            if (stream == null) {
+                throw new IOException("Cannot read " + file);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                stream.close();
+                throw new IOException("Unsupported image format: " + file);
+            }
+            return new ImageSource(stream, readers.next());
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public char[][] readHeights(int z0, int rows) throws IOException {
+            int[] rgb = readColors(z0, rows);
+            char[][] heights = new char[width][rows];
+            double third = 1 / 3.0;
+            double alphaInverse = 1 / 255.0;
+            for (int z = 0, i = 0; z < rows; z++) {
+                for (int x = 0; x < width; x++, i++) {
+                    int pixel = rgb[i];
+                    int red = pixel >> 16 & 0xFF;
+                    int green = pixel >> 8 & 0xFF;
+                    int blue = pixel & 0xFF;
+                    int alpha = pixel >> 24 & 0xFF;
+                    heights[x][z] = (char) (alpha * ((red + green + blue) * third) * alphaInverse);
+                }
+            }
+            return heights;
+        }
+
+        @Override
+        public int[] readColors(int z0, int rows) throws IOException {
+            if (png != null) {
+                return png.readColors(z0, rows);
+            }
+            if (image == null) {
+                // decoding a region decodes all rows before it, so decode the image once instead of once per band
+                image = reader.read(0);
+            }
+            return image.getRGB(0, z0, width, rows, null, 0, width);
+        }
+
+        @Override
+        public void close() throws IOException {
+            image = null;
+            if (png != null) {
+                png.close();
+            } else {
+                reader.dispose();
+                stream.close();
+            }
+        }
+
+    }
+
+    /**
+     * Samples a height map centered on the middle of the world. Heights are used in blocks, as the 0-255 brightness of
+     * an image source is, so they are not scaled but only clamped to the range of a {@code char}.
+     */
+    private record HeightMapSource(HeightMap heightMap, int width, int length) implements Source {
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public char[][] readHeights(int z0, int rows) {
+            char[][] heights = new char[width][rows];
+            int cx = width >> 1;
+            int cz = length >> 1;
+            for (int x = 0; x < width; x++) {
+                for (int z = 0; z < rows; z++) {
+                    heights[x][z] = (char) Math.max(0, Math.min(Character.MAX_VALUE, heightMap.getHeight(x - cx, z0 + z - cz)));
+                }
+            }
+            return heights;
+        }
+
+        @Override
+        public int[] readColors(int z0, int rows) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
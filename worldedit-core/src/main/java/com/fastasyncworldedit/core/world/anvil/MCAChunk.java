@@ -0,0 +1,413 @@
+package com.fastasyncworldedit.core.world.anvil;
+
+import com.fastasyncworldedit.core.extent.processor.heightmap.HeightMapType;
+import com.fastasyncworldedit.core.math.BlockVector3ChunkMap;
+import com.fastasyncworldedit.core.nbt.FaweCompoundTag;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharGetBlocks;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.block.BlockTypesCache;
+import it.unimi.dsi.fastutil.chars.Char2IntOpenHashMap;
+import org.enginehub.linbus.tree.LinByteTag;
+import org.enginehub.linbus.tree.LinCompoundTag;
+import org.enginehub.linbus.tree.LinIntTag;
+import org.enginehub.linbus.tree.LinListTag;
+import org.enginehub.linbus.tree.LinLongArrayTag;
+import org.enginehub.linbus.tree.LinTag;
+import org.enginehub.linbus.tree.LinTagType;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/**
+ * A chunk read from an Anvil region file, decoded into the same section layout as {@link CharGetBlocks}. Only the
+ * paletted section format introduced in 1.18 is supported. Changes submitted through
+ * {@link #call(IQueueExtent, IChunkSet, Runnable)} are applied to the sections and re-encoded by {@link #toTag()}.
+ */
+public class MCAChunk extends CharGetBlocks {
+
+    // Palette entries are shared across all chunks of all regions, so keep the parsed states around
+    private static final Map<LinCompoundTag, Character> PALETTE_CACHE = new ConcurrentHashMap<>();
+
+    private final LinCompoundTag root;
+    private final LinCompoundTag[] sections;
+    private final boolean[] modified;
+    private BlockVector3ChunkMap<FaweCompoundTag> tiles;
+    private boolean tilesModified;
+
+    private MCAChunk(LinCompoundTag root, int chunkX, int chunkZ, int minSection, int maxSection) {
+        super(minSection, maxSection);
+        init(chunkX, chunkZ);
+        this.root = root;
+        this.sections = new LinCompoundTag[sectionCount];
+        this.modified = new boolean[sectionCount];
+    }
+
+    /**
+     * Decode the given chunk tag.
+     *
+     * @param root the root tag of the chunk, as stored in the region file
+     * @return the decoded chunk, or {@code null} if the chunk is not in a supported format
+     * @throws IOException if the chunk references a block unknown to this platform
+     */
+    @Nullable
+    public static MCAChunk read(LinCompoundTag root) throws IOException {
+        LinListTag<LinCompoundTag> sectionList = root.findListTag("sections", LinTagType.compoundTag());
+        LinIntTag xPos = root.findTag("xPos", LinTagType.intTag());
+        LinIntTag zPos = root.findTag("zPos", LinTagType.intTag());
+        if (sectionList == null || xPos == null || zPos == null || sectionList.value().isEmpty()) {
+            return null;
+        }
+        int minSection = Integer.MAX_VALUE;
+        int maxSection = Integer.MIN_VALUE;
+        for (LinCompoundTag section : sectionList.value()) {
+            LinByteTag y = section.findTag("Y", LinTagType.byteTag());
+            if (y == null) {
+                return null;
+            }
+            minSection = Math.min(minSection, y.value());
+            maxSection = Math.max(maxSection, y.value());
+        }
+        MCAChunk chunk = new MCAChunk(root, xPos.valueAsInt(), zPos.valueAsInt(), minSection, maxSection);
+        for (LinCompoundTag section : sectionList.value()) {
+            int index = section.getTag("Y", LinTagType.byteTag()).value() - minSection;
+            chunk.sections[index] = section;
+            LinCompoundTag blockStates = section.findTag("block_states", LinTagType.compoundTag());
+            if (blockStates != null) {
+                chunk.blocks[index] = decode(blockStates);
+            }
+        }
+        return chunk;
+    }
+
+    private static char[] decode(LinCompoundTag blockStates) throws IOException {
+        List<LinCompoundTag> paletteTags = blockStates.getListTag("palette", LinTagType.compoundTag()).value();
+        char[] palette = new char[paletteTags.size()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = toOrdinal(paletteTags.get(i));
+        }
+        char[] data = new char[4096];
+        LinLongArrayTag packed = blockStates.findTag("data", LinTagType.longArrayTag());
+        if (packed == null || palette.length == 1) {
+            Arrays.fill(data, palette[0]);
+            return data;
+        }
+        long[] longs = packed.value();
+        int bits = bitsFor(palette.length);
+        int perLong = 64 / bits;
+        long mask = (1L << bits) - 1;
+        if (longs.length < (4096 + perLong - 1) / perLong) {
+            throw new IOException("Section data is too short for a palette of " + palette.length);
+        }
+        for (int i = 0; i < 4096; i++) {
+            int paletteIndex = (int) (longs[i / perLong] >>> (bits * (i % perLong)) & mask);
+            if (paletteIndex >= palette.length) {
+                throw new IOException("Palette index " + paletteIndex + " exceeds palette size " + palette.length);
+            }
+            data[i] = palette[paletteIndex];
+        }
+        return data;
+    }
+
+    /**
+     * Encode a section of block ordinals into a paletted {@code block_states} tag.
+     */
+    static LinCompoundTag encode(char[] data) {
+        Char2IntOpenHashMap indices = new Char2IntOpenHashMap();
+        indices.defaultReturnValue(-1);
+        LinListTag.Builder<LinCompoundTag> palette = LinListTag.builder(LinTagType.compoundTag());
+        int[] paletteIndices = new int[4096];
+        for (int i = 0; i < 4096; i++) {
+            char ordinal = data[i];
+            int index = indices.get(ordinal);
+            if (index == -1) {
+                index = indices.size();
+                indices.put(ordinal, index);
+                palette.add(toPaletteTag(BlockTypesCache.states[ordinal]));
+            }
+            paletteIndices[i] = index;
+        }
+        LinCompoundTag.Builder blockStates = LinCompoundTag.builder().put("palette", palette.build());
+        if (indices.size() > 1) {
+            int bits = bitsFor(indices.size());
+            int perLong = 64 / bits;
+            long[] longs = new long[(4096 + perLong - 1) / perLong];
+            for (int i = 0; i < 4096; i++) {
+                longs[i / perLong] |= (long) paletteIndices[i] << (bits * (i % perLong));
+            }
+            blockStates.put("data", LinLongArrayTag.of(longs));
+        }
+        return blockStates.build();
+    }
+
+    private static int bitsFor(int paletteSize) {
+        return Math.max(4, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    private static char toOrdinal(LinCompoundTag entry) throws IOException {
+        Character cached = PALETTE_CACHE.get(entry);
+        if (cached != null) {
+            return cached;
+        }
+        String name = entry.getTag("Name", LinTagType.stringTag()).value();
+        BlockType type = BlockTypes.get(name);
+        if (type == null) {
+            throw new IOException("Unknown block type: " + name);
+        }
+        BlockState state = type.getDefaultState();
+        LinCompoundTag properties = entry.findTag("Properties", LinTagType.compoundTag());
+        if (properties != null) {
+            for (Map.Entry<String, LinTag<?>> propertyPair : properties.value().entrySet()) {
+                Property<Object> property = type.getProperty(propertyPair.getKey());
+                if (property == null) {
+                    throw new IOException("Unknown property " + propertyPair.getKey() + " for " + name);
+                }
+                String value = LinTagType.stringTag().cast(propertyPair.getValue()).value();
+                state = state.with(property, property.getValueFor(value));
+            }
+        }
+        char ordinal = state.getOrdinalChar();
+        PALETTE_CACHE.put(entry, ordinal);
+        return ordinal;
+    }
+
+    private static LinCompoundTag toPaletteTag(BlockState state) {
+        LinCompoundTag.Builder entry = LinCompoundTag.builder().putString("Name", state.getBlockType().id());
+        Map<Property<?>, Object> states = state.getStates();
+        if (!states.isEmpty()) {
+            LinCompoundTag.Builder properties = LinCompoundTag.builder();
+            for (Map.Entry<Property<?>, Object> property : states.entrySet()) {
+                properties.putString(property.getKey().getName(), property.getValue().toString().toLowerCase(Locale.ROOT));
+            }
+            entry.put("Properties", properties.build());
+        }
+        return entry.build();
+    }
+
+    /**
+     * {@return whether any section or block entity was changed since this chunk was read}
+     */
+    public boolean isModified() {
+        if (tilesModified) {
+            return true;
+        }
+        for (boolean layer : modified) {
+            if (layer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Re-encode this chunk. Lighting and height maps of a modified chunk are invalidated so the server recomputes them
+     * when the chunk is next loaded.
+     *
+     * @return the chunk tag to store in the region file
+     */
+    public LinCompoundTag toTag() {
+        if (!isModified()) {
+            return root;
+        }
+        LinListTag.Builder<LinCompoundTag> sectionList = LinListTag.builder(LinTagType.compoundTag());
+        for (int i = 0; i < sectionCount; i++) {
+            LinCompoundTag section = sections[i];
+            if (section == null) {
+                continue;
+            }
+            if (modified[i]) {
+                section = section.toBuilder()
+                        .put("block_states", encode(blocks[i]))
+                        .remove("BlockLight")
+                        .remove("SkyLight")
+                        .build();
+            }
+            sectionList.add(section);
+        }
+        LinCompoundTag.Builder builder = root.toBuilder()
+                .put("sections", sectionList.build())
+                .remove("Heightmaps")
+                .putByte("isLightOn", (byte) 0);
+        if (tilesModified) {
+            LinListTag.Builder<LinCompoundTag> tileList = LinListTag.builder(LinTagType.compoundTag());
+            int bx = getX() << 4;
+            int bz = getZ() << 4;
+            for (Map.Entry<BlockVector3, FaweCompoundTag> entry : tiles.entrySet()) {
+                BlockVector3 pos = entry.getKey();
+                tileList.add(entry.getValue().linTag().toBuilder()
+                        .putInt("x", bx + pos.x())
+                        .putInt("y", pos.y())
+                        .putInt("z", bz + pos.z())
+                        .build());
+            }
+            builder.put("block_entities", tileList.build());
+        }
+        return builder.build();
+    }
+
+    private BlockVector3ChunkMap<FaweCompoundTag> loadTiles() {
+        if (tiles == null) {
+            tiles = new BlockVector3ChunkMap<>();
+            LinListTag<LinCompoundTag> list = root.findListTag("block_entities", LinTagType.compoundTag());
+            if (list != null) {
+                for (LinCompoundTag tag : list.value()) {
+                    int x = tag.getTag("x", LinTagType.intTag()).valueAsInt() & 15;
+                    int y = tag.getTag("y", LinTagType.intTag()).valueAsInt();
+                    int z = tag.getTag("z", LinTagType.intTag()).valueAsInt() & 15;
+                    tiles.put(x, y, z, FaweCompoundTag.of(tag));
+                }
+            }
+        }
+        return tiles;
+    }
+
+    @Override
+    public synchronized <T extends Future<T>> T call(IQueueExtent<? extends IChunk> owner, IChunkSet set, Runnable finalize) {
+        BlockVector3ChunkMap<FaweCompoundTag> tiles = loadTiles();
+        for (int layer = Math.max(minSectionPosition, set.getMinSectionPosition());
+             layer <= Math.min(maxSectionPosition, set.getMaxSectionPosition()); layer++) {
+            int index = layer - minSectionPosition;
+            char[] setArr = set.loadIfPresent(layer);
+            if (setArr == null || sections[index] == null) {
+                continue;
+            }
+            char[] arr = load(layer);
+            int by = layer << 4;
+            for (int i = 0; i < 4096; i++) {
+                char value = setArr[i];
+                if (value == BlockTypesCache.ReservedIDs.__RESERVED__ || value == arr[i]) {
+                    continue;
+                }
+                if (BlockTypesCache.states[arr[i]].getBlockType() != BlockTypesCache.states[value].getBlockType()
+                        && tiles.remove(i & 15, by + (i >> 8), i >> 4 & 15) != null) {
+                    tilesModified = true;
+                }
+                arr[i] = value;
+                modified[index] = true;
+            }
+        }
+        for (Map.Entry<BlockVector3, FaweCompoundTag> entry : set.tiles().entrySet()) {
+            BlockVector3 pos = entry.getKey();
+            int layer = pos.y() >> 4;
+            if (layer >= minSectionPosition && layer <= maxSectionPosition) {
+                tiles.put(pos.x(), pos.y(), pos.z(), entry.getValue());
+                tilesModified = true;
+            }
+        }
+        if (finalize != null) {
+            finalize.run();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean trim(boolean aggressive) {
+        // The decoded sections are the only copy of the chunk
+        return false;
+    }
+
+    @Override
+    public boolean trim(boolean aggressive, int layer) {
+        return false;
+    }
+
+    @Override
+    public BiomeType getBiomeType(int x, int y, int z) {
+        return null;
+    }
+
+    @Override
+    public void removeSectionLighting(int layer, boolean sky) {
+    }
+
+    @Override
+    public Map<BlockVector3, FaweCompoundTag> tiles() {
+        return loadTiles();
+    }
+
+    @Override
+    public @Nullable FaweCompoundTag tile(int x, int y, int z) {
+        return loadTiles().get(x, y, z);
+    }
+
+    @Override
+    public Collection<FaweCompoundTag> entities() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public @Nullable FaweCompoundTag entity(UUID uuid) {
+        return null;
+    }
+
+    @Override
+    public Set<Entity> getFullEntities() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public int getSkyLight(int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public int getEmittedLight(int x, int y, int z) {
+        return 0;
+    }
+
+    @Override
+    public int[] getHeightMap(HeightMapType type) {
+        return new int[256];
+    }
+
+    @Override
+    public boolean isCreateCopy() {
+        return false;
+    }
+
+    @Override
+    public int setCreateCopy(boolean createCopy) {
+        return -1;
+    }
+
+    @Override
+    public void setLightingToGet(char[][] lighting, int startSectionIndex, int endSectionIndex) {
+    }
+
+    @Override
+    public void setSkyLightingToGet(char[][] lighting, int startSectionIndex, int endSectionIndex) {
+    }
+
+    @Override
+    public void setHeightmapToGet(HeightMapType type, int[] data) {
+    }
+
+    @Override
+    public int getMaxY() {
+        return (maxSectionPosition << 4) + 15;
+    }
+
+    @Override
+    public int getMinY() {
+        return minSectionPosition << 4;
+    }
+
+}
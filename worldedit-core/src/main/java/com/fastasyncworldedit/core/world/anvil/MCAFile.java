@@ -0,0 +1,219 @@
+package com.fastasyncworldedit.core.world.anvil;
+
+import com.fastasyncworldedit.core.util.MainUtil;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import org.enginehub.linbus.stream.LinBinaryIO;
+import org.enginehub.linbus.tree.LinCompoundTag;
+import org.enginehub.linbus.tree.LinRootEntry;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A memory mapped, read-only view of an Anvil region file. Chunks are addressed by their index
+ * {@code (chunkX & 31) + (chunkZ & 31) * 32} within the region.
+ */
+public class MCAFile implements Closeable {
+
+    public static final int COMPRESSION_GZIP = 1;
+    public static final int COMPRESSION_ZLIB = 2;
+    public static final int COMPRESSION_NONE = 3;
+    public static final int COMPRESSION_LZ4 = 4;
+    /**
+     * Flag set on the compression type if the chunk is stored in a separate {@code .mcc} file.
+     */
+    public static final int EXTERNAL = 128;
+
+    private static final int SECTOR_SIZE = 4096;
+
+    private final Path path;
+    private final int regionX;
+    private final int regionZ;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int[] locations = new int[1024];
+    private final int[] timestamps = new int[1024];
+
+    /**
+     * Map the given region file. The file name must follow the {@code r.<x>.<z>.mca} pattern.
+     *
+     * @param path the region file
+     * @throws IOException if the file cannot be mapped
+     */
+    public MCAFile(Path path) throws IOException {
+        this.path = path;
+        int[] coords = MainUtil.regionNameToCoords(path.getFileName().toString());
+        this.regionX = coords[0];
+        this.regionZ = coords[1];
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        if (buffer.capacity() >= SECTOR_SIZE * 2) {
+            for (int i = 0; i < 1024; i++) {
+                locations[i] = buffer.getInt(i << 2);
+                timestamps[i] = buffer.getInt(SECTOR_SIZE + (i << 2));
+            }
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getX() {
+        return regionX;
+    }
+
+    public int getZ() {
+        return regionZ;
+    }
+
+    public boolean hasChunk(int index) {
+        return locations[index] != 0 && getOffset(index) + 5 <= buffer.capacity();
+    }
+
+    public int getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    private long getOffset(int index) {
+        return (long) (locations[index] >>> 8) * SECTOR_SIZE;
+    }
+
+    /**
+     * Copy the stored payload of a chunk, i.e. the compression type followed by the compressed data.
+     *
+     * @param index the chunk index
+     * @return the payload, or {@code null} if the chunk is absent or corrupt
+     */
+    @Nullable
+    public byte[] readPayload(int index) {
+        if (!hasChunk(index)) {
+            return null;
+        }
+        int offset = (int) getOffset(index);
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + 4L + length > buffer.capacity()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(offset + 4, payload);
+        return payload;
+    }
+
+    /**
+     * Read and decompress a chunk. Chunks stored in an external file are not read.
+     *
+     * @param payload the payload as returned by {@link #readPayload(int)}
+     * @return the root tag of the chunk, or {@code null} if the chunk is stored externally
+     * @throws IOException if the compression type is unknown or the data is corrupt
+     */
+    @Nullable
+    public static LinCompoundTag readChunk(byte[] payload) throws IOException {
+        int type = payload[0] & 0xFF;
+        if ((type & EXTERNAL) != 0) {
+            return null;
+        }
+        InputStream in = new ByteArrayInputStream(payload, 1, payload.length - 1);
+        in = switch (type) {
+            case COMPRESSION_GZIP -> new GZIPInputStream(in);
+            case COMPRESSION_ZLIB -> new InflaterInputStream(in);
+            case COMPRESSION_NONE -> in;
+            case COMPRESSION_LZ4 -> new LZ4BlockInputStream(in);
+            default -> throw new IOException("Unknown chunk compression type " + type);
+        };
+        try (DataInputStream data = new DataInputStream(in)) {
+            return LinRootEntry.readFrom(LinBinaryIO.read(data)).value();
+        }
+    }
+
+    /**
+     * Serialize and compress a chunk. LZ4 is kept for chunks that were stored with it, everything else is written
+     * with zlib.
+     *
+     * @param tag         the root tag of the chunk
+     * @param compression the compression type the chunk was read with
+     * @param deflater    a deflater to reuse, owned by the calling thread
+     * @param buffer      a buffer to reuse, owned by the calling thread
+     * @return the payload to store in the region file
+     */
+    public static byte[] writeChunk(LinCompoundTag tag, int compression, Deflater deflater, byte[] buffer) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(SECTOR_SIZE * 4);
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            LinBinaryIO.write(out, new LinRootEntry("", tag));
+        }
+        byte[] bytes = raw.toByteArray();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length >> 2);
+        if (compression == COMPRESSION_LZ4) {
+            compressed.write(COMPRESSION_LZ4);
+            try (LZ4BlockOutputStream out = new LZ4BlockOutputStream(compressed)) {
+                out.write(bytes);
+            }
+        } else {
+            compressed.write(COMPRESSION_ZLIB);
+            MainUtil.compress(bytes, bytes.length, buffer, compressed, deflater);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Write a region file from chunk payloads. The file is written next to the target and moved over it once
+     * complete.
+     *
+     * @param target     the region file to write
+     * @param payloads   the payload of each chunk index, or {@code null} for absent chunks
+     * @param timestamps the timestamp of each chunk index
+     */
+    public static void write(Path target, byte[][] payloads, int[] timestamps) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(
+                temp,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            ByteBuffer header = ByteBuffer.allocate(SECTOR_SIZE * 2);
+            int sector = 2;
+            for (int i = 0; i < 1024; i++) {
+                byte[] payload = payloads[i];
+                if (payload == null) {
+                    continue;
+                }
+                int sectors = (payload.length + 4 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+                if (sectors > 255) {
+                    throw new IOException("Chunk " + i + " of " + target.getFileName() + " exceeds 1MiB");
+                }
+                ByteBuffer data = ByteBuffer.allocate(sectors * SECTOR_SIZE);
+                data.putInt(payload.length).put(payload).rewind();
+                out.write(data, (long) sector * SECTOR_SIZE);
+                header.putInt(i << 2, sector << 8 | sectors);
+                header.putInt(SECTOR_SIZE + (i << 2), timestamps[i]);
+                sector += sectors;
+            }
+            out.write(header, 0);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.fastasyncworldedit.core.world.anvil;
+
+import com.fastasyncworldedit.core.FaweCache;
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.extent.NullExtent;
+import com.fastasyncworldedit.core.extent.filter.block.CharFilterBlock;
+import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
+import com.fastasyncworldedit.core.internal.exception.FaweException;
+import com.fastasyncworldedit.core.queue.Filter;
+import com.fastasyncworldedit.core.queue.implementation.blocks.CharSetBlocks;
+import com.fastasyncworldedit.core.util.MainUtil;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import org.apache.logging.log4j.Logger;
+import org.enginehub.linbus.tree.LinCompoundTag;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Applies a {@link Filter} to the region files of a world that is not loaded by any server. Each region file is
+ * memory mapped and processed by its own task, with its own fork of the filter, and is only rewritten if a chunk in
+ * it was changed.
+ * <p>
+ * Filters only see the blocks of the chunk they are applied to; reading or writing outside the current chunk fails
+ * for that chunk, which is then left as is. Lighting and height maps of changed chunks are recomputed by the server
+ * when they are next loaded.
+ */
+public class MCAWorldProcessor {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private final Path regionFolder;
+    private final int parallelism;
+    private final AtomicLong chunksChanged = new AtomicLong();
+    private final AtomicLong chunksSkipped = new AtomicLong();
+
+    /**
+     * Create a processor for the given folder.
+     *
+     * @param folder either a world folder or its {@code region} folder
+     */
+    public MCAWorldProcessor(Path folder) {
+        this(folder, Settings.settings().QUEUE.PARALLEL_THREADS);
+    }
+
+    public MCAWorldProcessor(Path folder, int parallelism) {
+        Path region = folder.resolve("region");
+        this.regionFolder = Files.isDirectory(region) ? region : folder;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public Path getRegionFolder() {
+        return regionFolder;
+    }
+
+    /**
+     * {@return the number of chunks that were changed and written back}
+     */
+    public long getChunksChanged() {
+        return chunksChanged.get();
+    }
+
+    /**
+     * {@return the number of chunks that could not be processed, e.g. because they use an unsupported format}
+     */
+    public long getChunksSkipped() {
+        return chunksSkipped.get();
+    }
+
+    /**
+     * Apply the filter to every chunk of every region file, blocking until all files have been processed.
+     *
+     * @param filter the filter to apply
+     * @param region the region to limit the filter to, or {@code null} for the whole world
+     * @return the filter, joined with the forks used for each region file
+     * @throws IOException if the region folder cannot be listed or any region file failed, in which case the failure of
+     *                     each region file is suppressed. The other region files are still processed
+     */
+    public <T extends Filter> T apply(T filter, @Nullable Region region) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(regionFolder)) {
+            files = stream.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith("r.") && name.endsWith(".mca");
+            }).toList();
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(files.size());
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        for (Path file : files) {
+            if (region != null && !intersects(file, region)) {
+                continue;
+            }
+            Filter fork = filter.fork();
+            tasks.add(() -> {
+                try {
+                    apply(file, fork, region);
+                } catch (IOException | RuntimeException e) {
+                    failures.add(new IOException("Failed to process region file " + file.getFileName(), e));
+                }
+                return null;
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing region files in " + regionFolder);
+        } finally {
+            pool.shutdown();
+        }
+        if (!failures.isEmpty()) {
+            IOException failure = new IOException("Failed to process " + failures.size() + " region files in " + regionFolder);
+            failures.forEach(failure::addSuppressed);
+            throw failure;
+        }
+        filter.join();
+        filter.finish();
+        return filter;
+    }
+
+    private static boolean intersects(Path file, Region region) {
+        int[] coords = MainUtil.regionNameToCoords(file.getFileName().toString());
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        return (coords[0] << 9) <= max.x() && (coords[0] << 9) + 511 >= min.x()
+                && (coords[1] << 9) <= max.z() && (coords[1] << 9) + 511 >= min.z();
+    }
+
+    private void apply(Path file, Filter filter, @Nullable Region region) throws IOException {
+        byte[][] payloads = new byte[1024][];
+        int[] timestamps = new int[1024];
+        try (MCAFile mca = new MCAFile(file)) {
+            for (int i = 0; i < 1024; i++) {
+                payloads[i] = mca.readPayload(i);
+                timestamps[i] = mca.getTimestamp(i);
+            }
+        }
+        ChunkFilterBlock block = new CharFilterBlock(new NullExtent(
+                new com.sk89q.worldedit.extent.NullExtent(),
+                FaweCache.OUTSIDE_REGION
+        ));
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, false);
+        byte[] buffer = new byte[8192];
+        int changed = 0;
+        for (int i = 0; i < 1024; i++) {
+            byte[] payload = payloads[i];
+            if (payload == null) {
+                continue;
+            }
+            try {
+                LinCompoundTag tag = MCAFile.readChunk(payload);
+                MCAChunk chunk = tag == null ? null : MCAChunk.read(tag);
+                if (chunk == null) {
+                    chunksSkipped.incrementAndGet();
+                    continue;
+                }
+                if (region != null && !intersects(chunk, region)) {
+                    continue;
+                }
+                if (filter(block, chunk, filter, region)) {
+                    payloads[i] = MCAFile.writeChunk(chunk.toTag(), payload[0], deflater, buffer);
+                    changed++;
+                }
+            } catch (IOException | FaweException e) {
+                chunksSkipped.incrementAndGet();
+                LOGGER.warn("Skipping chunk {} of {}: {}", i, file.getFileName(), e.getMessage());
+            }
+        }
+        deflater.end();
+        if (changed > 0) {
+            MCAFile.write(file, payloads, timestamps);
+            chunksChanged.addAndGet(changed);
+        }
+    }
+
+    private static boolean intersects(MCAChunk chunk, Region region) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        int bx = chunk.getX() << 4;
+        int bz = chunk.getZ() << 4;
+        return bx <= max.x() && bx + 15 >= min.x() && bz <= max.z() && bz + 15 >= min.z();
+    }
+
+    private static boolean filter(ChunkFilterBlock block, MCAChunk chunk, Filter filter, @Nullable Region region) {
+        CharSetBlocks set = CharSetBlocks.newInstance(chunk.getX(), chunk.getZ());
+        try {
+            block.initChunk(chunk.getX(), chunk.getZ());
+            for (int layer = chunk.getMinSectionPosition(); layer <= chunk.getMaxSectionPosition(); layer++) {
+                if (region != null && (layer << 4 > region.getMaximumY() || (layer << 4) + 15 < region.getMinimumY())) {
+                    continue;
+                }
+                block.initLayer(chunk, set, layer);
+                if (region == null) {
+                    block.filter(filter);
+                } else {
+                    block.filter(filter, region);
+                }
+            }
+            if (set.isEmpty()) {
+                return false;
+            }
+            chunk.call(null, set, null);
+            return chunk.isModified();
+        } finally {
+            set.recycle();
+        }
+    }
+
+}
@@ -0,0 +1,369 @@
+package com.fastasyncworldedit.core.world.anvil;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Decodes the rows of a non-interlaced PNG image one after another, so the image is decoded once and never has to be
+ * held in memory as a whole. Samples are returned as they are stored, without applying gamma or colour profiles.
+ */
+final class PngRowReader implements Closeable {
+
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+
+    private static final int GRAY = 0;
+    private static final int RGB = 2;
+    private static final int PALETTE = 3;
+    private static final int GRAY_ALPHA = 4;
+    private static final int RGBA = 6;
+
+    private final DataInputStream in;
+    private final int width;
+    private final int length;
+    private final int bitDepth;
+    private final int colorType;
+    private final int channels;
+    private final int bytesPerPixel;
+    private final Inflater inflater = new Inflater();
+    private final InputStream data;
+    private int[] palette;
+    // the sample of a colour which is transparent for grey and RGB images, -1 if none
+    private long transparent = -1;
+    private byte[] previous;
+    private byte[] current;
+    private int row;
+    // the number of bytes left in the current IDAT chunk
+    private int chunkRemaining;
+
+    private PngRowReader(DataInputStream in) throws IOException {
+        this.in = in;
+        in.readInt();
+        if (in.readInt() != IHDR) {
+            throw new IOException("PNG does not start with IHDR");
+        }
+        this.width = in.readInt();
+        this.length = in.readInt();
+        this.bitDepth = in.readUnsignedByte();
+        this.colorType = in.readUnsignedByte();
+        in.skipNBytes(3);
+        in.readInt();
+        this.channels = switch (colorType) {
+            case GRAY, PALETTE -> 1;
+            case GRAY_ALPHA -> 2;
+            case RGB -> 3;
+            case RGBA -> 4;
+            default -> throw new IOException("Unsupported PNG colour type " + colorType);
+        };
+        int bitsPerPixel = channels * bitDepth;
+        this.bytesPerPixel = Math.max(1, bitsPerPixel >> 3);
+        int rowBytes = (int) (((long) width * bitsPerPixel + 7) >> 3);
+        this.previous = new byte[rowBytes];
+        this.current = new byte[rowBytes];
+        readUntilData();
+        if (colorType == PALETTE && palette == null) {
+            throw new IOException("PNG palette is missing");
+        }
+        this.data = new InflaterInputStream(new IdatStream(), inflater, 16 * 1024);
+    }
+
+    /**
+     * Open a PNG image if it can be read row by row.
+     *
+     * @param file the image
+     * @return the reader, or {@code null} if the file is not a non-interlaced PNG image
+     * @throws IOException if the file cannot be read
+     */
+    @Nullable
+    static PngRowReader open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            // signature, IHDR length and type, IHDR data
+            in.mark(8 + 8 + 13);
+            byte[] header = in.readNBytes(8 + 8 + 13);
+            if (header.length != 8 + 8 + 13
+                    || readLong(header, 0) != SIGNATURE
+                    || readInt(header, 12) != IHDR
+                    // interlace method
+                    || header[28] != 0) {
+                in.close();
+                return null;
+            }
+            in.reset();
+            in.skipNBytes(8);
+            return new PngRowReader(in);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Read the next rows as ARGB colours.
+     *
+     * @param z0   the first row, which must follow the rows read before
+     * @param rows the number of rows
+     * @return the colours, indexed {@code (z - z0) * width + x}
+     * @throws IOException if the image cannot be read
+     */
+    int[] readColors(int z0, int rows) throws IOException {
+        if (z0 != row) {
+            throw new IllegalStateException("Rows must be read in order, expected row " + row + " but got " + z0);
+        }
+        int[] colors = new int[width * rows];
+        for (int z = 0; z < rows; z++) {
+            readRow();
+            convertRow(colors, z * width);
+        }
+        return colors;
+    }
+
+    private void readRow() throws IOException {
+        byte[] swap = previous;
+        previous = current;
+        current = swap;
+        int filter = data.read();
+        if (filter < 0) {
+            throw new EOFException("PNG image data ends at row " + row + " of " + length);
+        }
+        if (data.readNBytes(current, 0, current.length) != current.length) {
+            throw new EOFException("PNG image data ends at row " + row + " of " + length);
+        }
+        unfilter(filter);
+        row++;
+    }
+
+    private void unfilter(int filter) throws IOException {
+        byte[] cur = current;
+        byte[] prev = previous;
+        int bpp = bytesPerPixel;
+        switch (filter) {
+            case 0 -> {
+            }
+            case 1 -> {
+                for (int i = bpp; i < cur.length; i++) {
+                    cur[i] += cur[i - bpp];
+                }
+            }
+            case 2 -> {
+                for (int i = 0; i < cur.length; i++) {
+                    cur[i] += prev[i];
+                }
+            }
+            case 3 -> {
+                for (int i = 0; i < cur.length; i++) {
+                    int left = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    cur[i] += (byte) ((left + (prev[i] & 0xFF)) >> 1);
+                }
+            }
+            case 4 -> {
+                for (int i = 0; i < cur.length; i++) {
+                    int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+                    int b = prev[i] & 0xFF;
+                    int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    cur[i] += (byte) (pa <= pb && pa <= pc ? a : pb <= pc ? b : c);
+                }
+            }
+            default -> throw new IOException("Invalid PNG filter type " + filter + " at row " + row);
+        }
+    }
+
+    private void convertRow(int[] colors, int offset) {
+        for (int x = 0; x < width; x++) {
+            int argb;
+            switch (colorType) {
+                case GRAY -> {
+                    int gray = sample(x, 0);
+                    argb = 0xFF000000 | gray << 16 | gray << 8 | gray;
+                    if (transparent >= 0 && rawSample(x, 0) == transparent) {
+                        argb &= 0xFFFFFF;
+                    }
+                }
+                case GRAY_ALPHA -> {
+                    int gray = sample(x, 0);
+                    argb = sample(x, 1) << 24 | gray << 16 | gray << 8 | gray;
+                }
+                case RGB -> {
+                    argb = 0xFF000000 | sample(x, 0) << 16 | sample(x, 1) << 8 | sample(x, 2);
+                    if (transparent >= 0
+                            && ((long) rawSample(x, 0) << 32 | (long) rawSample(x, 1) << 16 | rawSample(x, 2)) == transparent) {
+                        argb &= 0xFFFFFF;
+                    }
+                }
+                case RGBA -> argb = sample(x, 3) << 24 | sample(x, 0) << 16 | sample(x, 1) << 8 | sample(x, 2);
+                default -> {
+                    int index = rawSample(x, 0);
+                    argb = index < palette.length ? palette[index] : 0;
+                }
+            }
+            colors[offset + x] = argb;
+        }
+    }
+
+    // the sample as stored in the image, of bitDepth bits
+    private int rawSample(int x, int channel) {
+        byte[] cur = current;
+        if (bitDepth == 8) {
+            return cur[x * channels + channel] & 0xFF;
+        }
+        if (bitDepth == 16) {
+            int i = (x * channels + channel) << 1;
+            return (cur[i] & 0xFF) << 8 | cur[i + 1] & 0xFF;
+        }
+        // sub-byte depths only exist for single channel images
+        int bit = x * bitDepth;
+        int shift = 8 - bitDepth - (bit & 7);
+        return (cur[bit >> 3] & 0xFF) >> shift & (1 << bitDepth) - 1;
+    }
+
+    // the sample scaled to 8 bits
+    private int sample(int x, int channel) {
+        int value = rawSample(x, channel);
+        return switch (bitDepth) {
+            case 8 -> value;
+            case 16 -> value >> 8;
+            default -> value * 255 / ((1 << bitDepth) - 1);
+        };
+    }
+
+    private void readUntilData() throws IOException {
+        while (true) {
+            int chunkLength = in.readInt();
+            int type = in.readInt();
+            switch (type) {
+                case IDAT -> {
+                    chunkRemaining = chunkLength;
+                    return;
+                }
+                case PLTE -> {
+                    palette = new int[chunkLength / 3];
+                    for (int i = 0; i < palette.length; i++) {
+                        palette[i] = 0xFF000000 | in.readUnsignedByte() << 16 | in.readUnsignedByte() << 8
+                                | in.readUnsignedByte();
+                    }
+                    in.skipNBytes(chunkLength - palette.length * 3L);
+                }
+                case TRNS -> readTransparency(chunkLength);
+                default -> in.skipNBytes(chunkLength);
+            }
+            // CRC
+            in.readInt();
+        }
+    }
+
+    private void readTransparency(int chunkLength) throws IOException {
+        switch (colorType) {
+            case PALETTE -> {
+                if (palette == null) {
+                    throw new IOException("PNG transparency comes before the palette");
+                }
+                int entries = Math.min(chunkLength, palette.length);
+                for (int i = 0; i < entries; i++) {
+                    palette[i] = in.readUnsignedByte() << 24 | palette[i] & 0xFFFFFF;
+                }
+                in.skipNBytes(chunkLength - entries);
+            }
+            case GRAY -> {
+                transparent = in.readUnsignedShort();
+                in.skipNBytes(chunkLength - 2);
+            }
+            case RGB -> {
+                transparent = (long) in.readUnsignedShort() << 32 | (long) in.readUnsignedShort() << 16
+                        | in.readUnsignedShort();
+                in.skipNBytes(chunkLength - 6);
+            }
+            default -> in.skipNBytes(chunkLength);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (long) readInt(bytes, offset) << 32 | readInt(bytes, offset + 4) & 0xFFFFFFFFL;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8
+                | bytes[offset + 3] & 0xFF;
+    }
+
+    /**
+     * The concatenated data of the consecutive IDAT chunks.
+     */
+    private final class IdatStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            chunkRemaining--;
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("PNG image data is truncated");
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextChunk()) {
+                return -1;
+            }
+            int n = in.read(b, off, Math.min(len, chunkRemaining));
+            if (n < 0) {
+                throw new EOFException("PNG image data is truncated");
+            }
+            chunkRemaining -= n;
+            return n;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (chunkRemaining == 0) {
+                // CRC of the previous chunk
+                in.readInt();
+                int chunkLength = in.readInt();
+                if (in.readInt() != IDAT) {
+                    // the image data ends, the remaining chunks are not needed
+                    chunkRemaining = -1;
+                    return false;
+                }
+                chunkRemaining = chunkLength;
+            }
+            return chunkRemaining > 0;
+        }
+
+    }
+
+}
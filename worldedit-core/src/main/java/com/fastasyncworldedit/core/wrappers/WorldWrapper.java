@@ -118,6 +118,11 @@ public void checkLoadedChunk(BlockVector3 pt) {
         parent.checkLoadedChunk(pt);
     }
 
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return parent.isChunkLoaded(chunkX, chunkZ);
+    }
+
     @Override
     public void fixAfterFastMode(Iterable<BlockVector2> chunks) {
         parent.fixAfterFastMode(chunks);
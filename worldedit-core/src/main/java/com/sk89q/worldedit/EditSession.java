@@ -30,6 +30,8 @@
 import com.fastasyncworldedit.core.extent.SingleRegionExtent;
 import com.fastasyncworldedit.core.extent.SourceMaskExtent;
 import com.fastasyncworldedit.core.extent.clipboard.WorldCopyClipboard;
+import com.fastasyncworldedit.core.extent.filter.DeformFilter;
+import com.fastasyncworldedit.core.extent.filter.ShapeFilter;
 import com.fastasyncworldedit.core.extent.processor.ExtentBatchProcessorHolder;
 import com.fastasyncworldedit.core.extent.processor.lighting.NullRelighter;
 import com.fastasyncworldedit.core.extent.processor.lighting.Relighter;
@@ -47,6 +49,7 @@
 import com.fastasyncworldedit.core.history.changeset.AbstractChangeSet;
 import com.fastasyncworldedit.core.history.changeset.BlockBagChangeSet;
 import com.fastasyncworldedit.core.limit.FaweLimit;
+import com.fastasyncworldedit.core.math.BlockVectorSet;
 import com.fastasyncworldedit.core.math.LocalBlockVectorSet;
 import com.fastasyncworldedit.core.math.MutableBlockVector2;
 import com.fastasyncworldedit.core.math.MutableBlockVector3;
@@ -96,6 +99,7 @@
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.function.pattern.WaterloggedRemover;
 import com.sk89q.worldedit.function.util.RegionOffset;
+import com.sk89q.worldedit.function.visitor.BreadthFirstSearch;
 import com.sk89q.worldedit.function.visitor.DownwardVisitor;
 import com.sk89q.worldedit.function.visitor.FlatRegionVisitor;
 import com.sk89q.worldedit.function.visitor.LayerVisitor;
@@ -104,7 +108,6 @@
 import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.history.UndoContext;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
-import com.sk89q.worldedit.internal.expression.EvaluationException;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
 import com.sk89q.worldedit.internal.expression.ExpressionTimeoutException;
@@ -1533,17 +1536,27 @@ public int fillXZ(BlockVector3 origin, Pattern pattern, double radius, int depth
                 Masks.negate(new ExistingBlockMask(this))
         );
 
+        //FAWE start - chunk partitioned flood fill
+        if (recursive) {
+            return this.changes = floodFill(
+                    Collections.singleton(origin),
+                    mask,
+                    pattern,
+                    BreadthFirstSearch.DEFAULT_DIRECTIONS,
+                    (int) (radius * 2 + 1),
+                    minY,
+                    maxY
+            );
+        }
+        //FAWE end
+
         // Want to replace blocks
         BlockReplace replace = new BlockReplace(this, pattern);
 
         // Pick how we're going to visit blocks
         RecursiveVisitor visitor;
         //FAWE start - provide extent for preloading, min/max y
-        if (recursive) {
-            visitor = new RecursiveVisitor(mask, replace, (int) (radius * 2 + 1), minY, maxY, this);
-        } else {
-            visitor = new DownwardVisitor(mask, replace, origin.y(), (int) (radius * 2 + 1), minY, maxY, this);
-        }
+        visitor = new DownwardVisitor(mask, replace, origin.y(), (int) (radius * 2 + 1), minY, maxY, this);
         //FAWE end
 
         // Start at the origin
@@ -1986,12 +1999,16 @@ public int moveRegion(
 
         BlockVector3 disAbs = displace.abs();
 
+        Extent source = this;
+        WorldCopyClipboard snapshot = null;
         if (disAbs.x() < size.x() && disAbs.y() < size.y() && disAbs.z() < size.z()) {
             // Buffer if overlapping
             enableQueue();
+            // Read the region as it was before the move, also from chunks already written
+            source = snapshot = WorldCopyClipboard.copyOnWrite(this, region, moveEntities, copyBiomes);
         }
 
-        ForwardExtentCopy copy = new ForwardExtentCopy(this, region, this, to);
+        ForwardExtentCopy copy = new ForwardExtentCopy(source, region, this, to);
 
         if (replacement == null) {
             replacement = BlockTypes.AIR.getDefaultState();
@@ -2012,12 +2029,22 @@ public int moveRegion(
         Mask sourceMask = this.getSourceMask();
         mask = MaskIntersection.of(sourceMask, mask, new RegionMask(allowedRegion)).optimize();
         if (mask != Masks.alwaysTrue()) {
+            if (source != this) {
+                new MaskTraverser(mask).reset(source);
+            }
             copy.setSourceMask(mask);
             if (sourceMask != null && sourceMask.equals(mask)) {
                 setSourceMask(null);
             }
         }
-        Operations.completeBlindly(copy);
+        try {
+            Operations.completeBlindly(copy);
+        } finally {
+            if (snapshot != null) {
+                // Every block has been read, so later changes of this session need not be kept
+                snapshot.untrackChanges(this);
+            }
+        }
         return this.changes = copy.getAffected();
         //FAWE end
     }
@@ -2104,27 +2131,25 @@ public int drainArea(BlockVector3 origin, double radius, boolean waterlogged, bo
                 liquidMask
         );
         //FAWE end
-        BlockReplace replace;
+        //FAWE start - chunk partitioned flood fill
+        Pattern replace;
         if (waterlogged) {
-            replace = new BlockReplace(this, new WaterloggedRemover(this));
+            replace = new WaterloggedRemover(this);
         } else {
-            replace = new BlockReplace(this, BlockTypes.AIR.getDefaultState());
+            replace = BlockTypes.AIR.getDefaultState();
         }
-        //FAWE start - provide extent for preloading, min/max y
-        RecursiveVisitor visitor = new RecursiveVisitor(mask, replace, (int) (radius * 2 + 1), minY, maxY, this);
-        //FAWE end
 
         // Around the origin in a 3x3 block
+        BlockVectorSet seeds = new BlockVectorSet();
         for (BlockVector3 position : CuboidRegion.fromCenter(origin, 1)) {
             if (mask.test(position)) {
-                visitor.visit(position);
+                seeds.add(position);
             }
         }
 
-        Operations.completeLegacy(visitor);
-
-        //FAWE start
-        return this.changes = visitor.getAffected();
+        return this.changes = floodFill(seeds, mask, replace, BreadthFirstSearch.DEFAULT_DIRECTIONS, (int) (radius * 2 + 1),
+                minY, maxY
+        );
         //FAWE end
     }
 
@@ -2154,21 +2179,17 @@ public int fixLiquid(BlockVector3 origin, double radius, BlockType fluid) throws
                 blockMask
         );
 
-        BlockReplace replace = new BlockReplace(this, fluid.getDefaultState());
-        //FAWE start - provide extent for preloading, world min/maxY
-        NonRisingVisitor visitor = new NonRisingVisitor(mask, replace, Integer.MAX_VALUE, minY, maxY, this);
-        //FAWE end
-
+        //FAWE start - chunk partitioned flood fill
         // Around the origin in a 3x3 block
+        BlockVectorSet seeds = new BlockVectorSet();
         for (BlockVector3 position : CuboidRegion.fromCenter(origin, 1)) {
             if (liquidMask.test(position)) {
-                visitor.visit(position);
+                seeds.add(position);
             }
         }
 
-        Operations.completeLegacy(visitor);
-
-        return visitor.getAffected();
+        return floodFill(seeds, mask, fluid.getDefaultState(), NonRisingVisitor.DIRECTIONS, Integer.MAX_VALUE, minY, maxY);
+        //FAWE end
     }
 
     /**
@@ -3140,6 +3161,24 @@ public int makeShape(
         final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(this, unit, zero);
         expression.setEnvironment(environment);
 
+        //FAWE start - evaluate solid shapes in batches on the parallel filter pipeline
+        if (!hollow) {
+            ShapeFilter filter = apply(region, new ShapeFilter(expression, timeout, zero, unit, pattern), true);
+            if (filter.getError() != null) {
+                throw filter.getError();
+            }
+            int changed = filter.getAffected();
+            this.changes += changed;
+            if (filter.getTimedOut() > 0) {
+                throw new ExpressionTimeoutException(
+                        String.format("%d blocks changed. %d blocks took too long to evaluate (increase with //timeout).",
+                                changed, filter.getTimedOut()
+                        ));
+            }
+            return changed;
+        }
+        //FAWE end
+
         final int[] timedOut = {0};
         final ArbitraryShape shape = new ArbitraryShape(region) {
             @Override
@@ -3244,44 +3283,14 @@ public int deformRegion(
             final Region region, final Vector3 zero, final Vector3 unit, final Expression expression,
             final int timeout
     ) throws ExpressionException, MaxChangedBlocksException {
-        final Variable x = expression.getSlots().getVariable("x")
-                .orElseThrow(IllegalStateException::new);
-        final Variable y = expression.getSlots().getVariable("y")
-                .orElseThrow(IllegalStateException::new);
-        final Variable z = expression.getSlots().getVariable("z")
-                .orElseThrow(IllegalStateException::new);
-
         final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(this, unit, zero);
         expression.setEnvironment(environment);
-        //FAWE start
-        final Vector3 zero2 = zero.add(0.5, 0.5, 0.5);
-
-        RegionVisitor visitor = new RegionVisitor(region, position -> {
-            try {
-                // offset, scale
-                final Vector3 scaled = position.toVector3().subtract(zero).divide(unit);
-
-                // transform
-                expression.evaluate(new double[]{scaled.x(), scaled.y(), scaled.z()}, timeout);
-                int xv = (int) Math.floor(x.value() * unit.x() + zero2.x());
-                int yv = (int) Math.floor(y.value() * unit.y() + zero2.y());
-                int zv = (int) Math.floor(z.value() * unit.z() + zero2.z());
-
-                BlockState get;
-                if (yv >= minY && yv <= maxY) {
-                    get = getBlock(xv, yv, zv);
-                } else {
-                    get = BlockTypes.AIR.getDefaultState();
-                }
-
-                // read block from world
-                return setBlock(position, get);
-            } catch (EvaluationException e) {
-                throw new RuntimeException(e);
-            }
-        }, this);
-        Operations.completeBlindly(visitor);
-        changes += visitor.getAffected();
+        //FAWE start - evaluate in batches on the parallel filter pipeline, reading the x, y and z slots back per batch
+        DeformFilter filter = apply(region, new DeformFilter(expression, timeout, zero, unit, minY, maxY), true);
+        if (filter.getError() != null) {
+            throw filter.getError();
+        }
+        changes += filter.getAffected();
         return changes;
         //FAWE end
     }
@@ -25,6 +25,7 @@
 import com.fastasyncworldedit.core.extent.ResettableExtent;
 import com.fastasyncworldedit.core.extent.clipboard.DiskOptimizedClipboard;
 import com.fastasyncworldedit.core.extent.clipboard.MultiClipboardHolder;
+import com.fastasyncworldedit.core.extent.clipboard.TiledDiskClipboard;
 import com.fastasyncworldedit.core.history.DiskStorageHistory;
 import com.fastasyncworldedit.core.internal.exception.FaweClipboardVersionMismatchException;
 import com.fastasyncworldedit.core.internal.io.FaweInputStream;
@@ -931,11 +932,12 @@ public void loadClipboardFromDisk(File file) throws FaweClipboardVersionMismatch
                     }
                 } catch (EmptyClipboardException ignored) {
                 }
-                DiskOptimizedClipboard doc = Fawe.instance().submitUUIDKeyQueuedTask(
+                Clipboard clip = Fawe.instance().submitUUIDKeyQueuedTask(
                         uuid,
-                        () -> DiskOptimizedClipboard.loadFromFile(file)
+                        () -> TiledDiskClipboard.isTiledFile(file)
+                                ? TiledDiskClipboard.loadFromFile(file).toClipboard()
+                                : DiskOptimizedClipboard.loadFromFile(file).toClipboard()
                 ).get();
-                Clipboard clip = doc.toClipboard();
                 ClipboardHolder holder = new ClipboardHolder(clip);
                 setClipboard(holder);
             }
@@ -947,17 +949,13 @@ public void deleteClipboardOnDisk() {
             ClipboardHolder holder = getExistingClipboard();
             if (holder != null) {
                 for (Clipboard clipboard : holder.getClipboards()) {
-                    DiskOptimizedClipboard doc;
-                    if (clipboard instanceof DiskOptimizedClipboard) {
-                        doc = (DiskOptimizedClipboard) clipboard;
-                    } else if (clipboard instanceof BlockArrayClipboard && ((BlockArrayClipboard) clipboard).getParent() instanceof DiskOptimizedClipboard) {
-                        doc = (DiskOptimizedClipboard) ((BlockArrayClipboard) clipboard).getParent();
-                    } else {
+                    Clipboard doc = clipboard instanceof BlockArrayClipboard bac ? bac.getParent() : clipboard;
+                    if (!(doc instanceof DiskOptimizedClipboard || doc instanceof TiledDiskClipboard)) {
                         continue;
                     }
                     Fawe.instance().submitUUIDKeyQueuedTask(uuid, () -> {
                         doc.close(); // Ensure closed before deletion
-                        doc.getFile().delete();
+                        new File(doc.getURI()).delete();
                     });
                 }
             }
@@ -53,6 +53,7 @@
 import com.fastasyncworldedit.core.function.mask.CachedMask;
 import com.fastasyncworldedit.core.function.mask.IdMask;
 import com.fastasyncworldedit.core.function.mask.SingleBlockTypeMask;
+import com.fastasyncworldedit.core.internal.io.ParallelGzipOutputStream;
 import com.fastasyncworldedit.core.limit.FaweLimit;
 import com.fastasyncworldedit.core.math.heightmap.ScalableHeightMap;
 import com.fastasyncworldedit.core.math.heightmap.ScalableHeightMap.Shape;
@@ -124,7 +125,6 @@
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypes;
-import org.anarres.parallelgzip.ParallelGZIPOutputStream;
 import org.enginehub.piston.annotation.Command;
 import org.enginehub.piston.annotation.CommandContainer;
 import org.enginehub.piston.annotation.param.Arg;
@@ -1039,7 +1039,7 @@ public void saveBrush(
             }
             file.createNewFile();
             try (DataOutputStream out = new DataOutputStream(
-                    new ParallelGZIPOutputStream(new FileOutputStream(file)))) {
+                    new ParallelGzipOutputStream(new FileOutputStream(file)))) {
                 out.writeUTF(tool.toString());
             } catch (Throwable e) {
                 e.printStackTrace();
@@ -28,6 +28,7 @@
 import com.fastasyncworldedit.core.extent.clipboard.DiskOptimizedClipboard;
 import com.fastasyncworldedit.core.extent.clipboard.MultiClipboardHolder;
 import com.fastasyncworldedit.core.extent.clipboard.ReadOnlyClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.TiledDiskClipboard;
 import com.fastasyncworldedit.core.extent.clipboard.URIClipboardHolder;
 import com.fastasyncworldedit.core.extent.clipboard.WorldCopyClipboard;
 import com.fastasyncworldedit.core.internal.io.FastByteArrayOutputStream;
@@ -193,7 +194,7 @@ public void lazyCopy(
             throw FaweCache.MAX_CHECKS;
         }
         session.setClipboard(null);
-        ReadOnlyClipboard lazyClipboard = WorldCopyClipboard.of(editSession, region, !skipEntities, copyBiomes);
+        ReadOnlyClipboard lazyClipboard = WorldCopyClipboard.copyOnWrite(editSession, region, !skipEntities, copyBiomes);
 
         lazyClipboard.setOrigin(session.getPlacementPosition(actor));
         session.setClipboard(new ClipboardHolder(lazyClipboard));
@@ -318,17 +319,13 @@ private void createCopy(
         try {
             Operations.completeLegacy(copy);
         } catch (Exception e) {
-            DiskOptimizedClipboard doc;
-            if (clipboard instanceof DiskOptimizedClipboard) {
-                doc = (DiskOptimizedClipboard) clipboard;
-            } else if (clipboard instanceof BlockArrayClipboard && ((BlockArrayClipboard) clipboard).getParent() instanceof DiskOptimizedClipboard) {
-                doc = (DiskOptimizedClipboard) ((BlockArrayClipboard) clipboard).getParent();
-            } else {
+            Clipboard doc = clipboard instanceof BlockArrayClipboard bac ? bac.getParent() : clipboard;
+            if (!(doc instanceof DiskOptimizedClipboard || doc instanceof TiledDiskClipboard)) {
                 throw e;
             }
             Fawe.instance().submitUUIDKeyQueuedTask(actor.getUniqueId(), () -> {
                 clipboard.close();
-                doc.getFile().delete();
+                new File(doc.getURI()).delete();
             });
             throw e;
         }
@@ -666,16 +663,12 @@ public void clearClipboard(Actor actor, LocalSession session) throws WorldEditEx
             return;
         }
         for (Clipboard clipboard : holder.getClipboards()) {
-            DiskOptimizedClipboard doc;
-            if (clipboard instanceof DiskOptimizedClipboard) {
-                doc = (DiskOptimizedClipboard) clipboard;
-            } else if (clipboard instanceof BlockArrayClipboard && ((BlockArrayClipboard) clipboard).getParent() instanceof DiskOptimizedClipboard) {
-                doc = (DiskOptimizedClipboard) ((BlockArrayClipboard) clipboard).getParent();
-            } else {
+            Clipboard doc = clipboard instanceof BlockArrayClipboard bac ? bac.getParent() : clipboard;
+            if (!(doc instanceof DiskOptimizedClipboard || doc instanceof TiledDiskClipboard)) {
                 continue;
             }
             doc.close(); // Ensure closed before deletion
-            doc.getFile().delete();
+            new File(doc.getURI()).delete();
         }
         //FAWE end
         session.setClipboard(null);
@@ -25,6 +25,9 @@
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.limit.FaweLimit;
 import com.fastasyncworldedit.core.util.UpdateNotification;
+import com.fastasyncworldedit.core.util.metrics.FaweMetrics;
+import com.fastasyncworldedit.core.util.metrics.Metric;
+import com.fastasyncworldedit.core.util.metrics.MetricsRegistry;
 import com.intellectualsites.paster.IncendoPaster;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.WorldEdit;
@@ -142,6 +145,26 @@ public void threads(Actor actor) throws WorldEditException {
             }
         }
     }
+
+    @Command(
+            name = "metrics",
+            desc = "Print timings and counters of chunk loading, processing, history, lighting and sync tasks"
+    )
+    @CommandPermissions(value = "worldedit.metrics", queued = false)
+    public void metrics(
+            Actor actor,
+            @Switch(name = 'r', desc = "Reset the metrics afterwards")
+                    boolean reset
+    ) {
+        MetricsRegistry registry = FaweMetrics.registry();
+        for (Metric metric : registry.getMetrics()) {
+            actor.print(TextComponent.of(metric.getName() + ": " + metric.summarize()));
+        }
+        if (reset) {
+            registry.reset();
+            actor.print(TextComponent.of("Metrics reset"));
+        }
+    }
     //FAWE end
 
     @Command(
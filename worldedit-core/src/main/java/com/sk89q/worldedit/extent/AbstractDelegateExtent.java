@@ -293,6 +293,19 @@ public int setBlocks(final Set<BlockVector3> vset, final Pattern pattern) {
         return extent.setBlocks(vset, pattern);
     }
 
+    @Override
+    public int floodFill(
+            final Set<BlockVector3> seeds,
+            final Mask mask,
+            final Pattern pattern,
+            final BlockVector3[] directions,
+            final int maxDepth,
+            final int minY,
+            final int maxY
+    ) throws MaxChangedBlocksException {
+        return extent.floodFill(seeds, mask, pattern, directions, maxDepth, minY, maxY);
+    }
+
     @Override
     public int getMinY() {
         return extent.getMinY();
@@ -52,6 +52,7 @@
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.function.pattern.BlockPattern;
 import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
 import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -882,6 +883,37 @@ default int setBlocks(final Set<BlockVector3> vset, final Pattern pattern) {
         return count;
     }
 
+    /**
+     * Recursively apply a pattern to all blocks connected to the given seeds that match a mask. Seeds are always applied.
+     *
+     * @param seeds      the positions to start from
+     * @param mask       the mask neighbouring blocks must match to be visited
+     * @param pattern    the pattern to apply
+     * @param directions the offsets of the neighbours to visit
+     * @param maxDepth   the maximum number of iterations
+     * @param minY       minimum y to visit. Inclusive.
+     * @param maxY       maximum y to visit. Inclusive.
+     * @return number of blocks affected
+     * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     */
+    default int floodFill(
+            Set<BlockVector3> seeds,
+            Mask mask,
+            Pattern pattern,
+            BlockVector3[] directions,
+            int maxDepth,
+            int minY,
+            int maxY
+    ) throws MaxChangedBlocksException {
+        RecursiveVisitor visitor = new RecursiveVisitor(mask, new BlockReplace(this, pattern), maxDepth, minY, maxY, this);
+        visitor.setDirections(directions);
+        for (BlockVector3 seed : seeds) {
+            visitor.visit(seed);
+        }
+        Operations.completeLegacy(visitor);
+        return visitor.getAffected();
+    }
+
     default boolean relight(int x, int y, int z) {
         return false;
     }
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.extent.clipboard;
 
 import com.fastasyncworldedit.core.extent.clipboard.SimpleClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.TiledDiskClipboard;
 import com.fastasyncworldedit.core.function.visitor.Order;
 import com.fastasyncworldedit.core.math.MutableBlockVector2;
 import com.fastasyncworldedit.core.math.OffsetBlockVector3;
@@ -369,6 +370,16 @@ public Iterator<BlockVector3> iterator(Order order) {
         OffsetBlockVector3 mutable = new OffsetBlockVector3(offset);
         return Iterators.transform(getParent().iterator(order), mutable::init);
     }
+
+    @Override
+    public void paste(Extent extent, BlockVector3 to, boolean pasteAir, boolean pasteEntities, boolean pasteBiomes) {
+        if (getParent() instanceof TiledDiskClipboard tiled) {
+            // Paste the parent directly, so it can read its tiles in order
+            tiled.pasteTiles(extent, to.subtract(getOrigin()).add(offset), pasteAir, pasteEntities, pasteBiomes);
+            return;
+        }
+        Clipboard.super.paste(extent, to, pasteAir, pasteEntities, pasteBiomes);
+    }
     //FAWE end
 
     @Override
@@ -24,6 +24,7 @@
 import com.fastasyncworldedit.core.extent.clipboard.DiskOptimizedClipboard;
 import com.fastasyncworldedit.core.extent.clipboard.MemoryOptimizedClipboard;
 import com.fastasyncworldedit.core.extent.clipboard.ReadOnlyClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.TiledDiskClipboard;
 import com.fastasyncworldedit.core.function.visitor.Order;
 import com.fastasyncworldedit.core.queue.Filter;
 import com.fastasyncworldedit.core.util.MaskTraverser;
@@ -98,6 +99,7 @@ static Clipboard create(Region region) {
      * Create a new {@link com.fastasyncworldedit.core.extent.clipboard.SimpleClipboard} instance.
      * Will be one of the following, depending on settings:
      *  - {@link DiskOptimizedClipboard}
+     *  - {@link TiledDiskClipboard}
      *  - {@link CPUOptimizedClipboard}
      *  - {@link MemoryOptimizedClipboard}
      *
@@ -106,6 +108,12 @@ static Clipboard create(Region region) {
     @Deprecated
     static Clipboard create(Region region, UUID uuid) {
         if (Settings.settings().CLIPBOARD.USE_DISK) {
+            BlockVector3 dimensions = region.getDimensions();
+            long volume = (long) dimensions.x() * dimensions.y() * dimensions.z();
+            // The linear layout is mapped at once, which is limited to 2 GB
+            if (Settings.settings().CLIPBOARD.TILED_DISK || (volume << 1) >= Integer.MAX_VALUE - 64) {
+                return new TiledDiskClipboard(region, uuid);
+            }
             return new DiskOptimizedClipboard(region, uuid);
         } else if (Settings.settings().CLIPBOARD.COMPRESSION_LEVEL == 0) {
             return new CPUOptimizedClipboard(region);
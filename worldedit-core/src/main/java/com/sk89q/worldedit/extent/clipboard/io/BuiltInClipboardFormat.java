@@ -25,6 +25,7 @@
 import com.fastasyncworldedit.core.extent.clipboard.io.FastSchematicWriterV3;
 import com.fastasyncworldedit.core.extent.clipboard.io.schematic.MinecraftStructure;
 import com.fastasyncworldedit.core.extent.clipboard.io.schematic.PNGWriter;
+import com.fastasyncworldedit.core.internal.io.ParallelGzipOutputStream;
 import com.fastasyncworldedit.core.internal.io.ResettableFileInputStream;
 import com.google.common.collect.ImmutableSet;
 import com.sk89q.jnbt.NBTConstants;
@@ -73,11 +74,12 @@ public ClipboardReader getReader(InputStream inputStream) throws IOException {
         @Override
         public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
             OutputStream gzip;
-            if (outputStream instanceof ParallelGZIPOutputStream || outputStream instanceof GZIPOutputStream) {
+            if (outputStream instanceof ParallelGzipOutputStream || outputStream instanceof ParallelGZIPOutputStream
+                    || outputStream instanceof GZIPOutputStream) {
                 gzip = outputStream;
             } else {
                 outputStream = new BufferedOutputStream(outputStream);
-                gzip = new ParallelGZIPOutputStream(outputStream);
+                gzip = new ParallelGzipOutputStream(outputStream);
             }
             NBTOutputStream nbtStream = new NBTOutputStream(new BufferedOutputStream(gzip));
             return new FastSchematicWriterV3(nbtStream);
@@ -152,11 +154,12 @@ public ClipboardReader getReader(InputStream inputStream) throws IOException {
         @Override
         public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
             OutputStream gzip;
-            if (outputStream instanceof ParallelGZIPOutputStream || outputStream instanceof GZIPOutputStream) {
+            if (outputStream instanceof ParallelGzipOutputStream || outputStream instanceof ParallelGZIPOutputStream
+                    || outputStream instanceof GZIPOutputStream) {
                 gzip = outputStream;
             } else {
                 outputStream = new BufferedOutputStream(outputStream);
-                gzip = new ParallelGZIPOutputStream(outputStream);
+                gzip = new ParallelGzipOutputStream(outputStream);
             }
             NBTOutputStream nbtStream = new NBTOutputStream(new BufferedOutputStream(gzip));
             return new FastSchematicWriterV2(nbtStream);
@@ -364,11 +367,12 @@ public ClipboardReader getReader(InputStream inputStream) throws IOException {
         @Override
         public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
             OutputStream gzip;
-            if (outputStream instanceof ParallelGZIPOutputStream || outputStream instanceof GZIPOutputStream) {
+            if (outputStream instanceof ParallelGzipOutputStream || outputStream instanceof ParallelGZIPOutputStream
+                    || outputStream instanceof GZIPOutputStream) {
                 gzip = outputStream;
             } else {
                 outputStream = new BufferedOutputStream(outputStream);
-                gzip = new ParallelGZIPOutputStream(outputStream);
+                gzip = new ParallelGzipOutputStream(outputStream);
             }
             NBTOutputStream nbtStream = new NBTOutputStream(new BufferedOutputStream(gzip));
             FastSchematicWriterV2 writer = new FastSchematicWriterV2(nbtStream);
@@ -406,7 +410,7 @@ public ClipboardReader getReader(InputStream inputStream) throws IOException {
         @Override
         public ClipboardWriter getWriter(OutputStream outputStream) throws IOException {
             outputStream = new BufferedOutputStream(outputStream);
-            OutputStream gzip = new ParallelGZIPOutputStream(outputStream);
+            OutputStream gzip = new ParallelGzipOutputStream(outputStream);
             return new MinecraftStructure(new DataOutputStream(new BufferedOutputStream(gzip)));
         }
 
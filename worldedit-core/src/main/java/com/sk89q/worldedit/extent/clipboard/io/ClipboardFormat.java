@@ -20,13 +20,13 @@
 package com.sk89q.worldedit.extent.clipboard.io;
 
 import com.fastasyncworldedit.core.extent.clipboard.URIClipboardHolder;
+import com.fastasyncworldedit.core.internal.io.ParallelGzipOutputStream;
 import com.fastasyncworldedit.core.util.MainUtil;
 import com.fastasyncworldedit.core.util.task.RunnableVal;
 import com.sk89q.worldedit.LocalSession;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.extension.platform.Actor;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
-import org.anarres.parallelgzip.ParallelGZIPOutputStream;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -175,7 +175,7 @@ public void run(OutputStream value) {
 
     default void write(OutputStream value, Clipboard clipboard) {
         try {
-            try (ParallelGZIPOutputStream gzip = new ParallelGZIPOutputStream(value)) {
+            try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(value)) {
                 try (ClipboardWriter writer = getWriter(gzip)) {
                     writer.write(clipboard);
                 }
@@ -208,6 +208,13 @@ public boolean test(BlockVector3 vector) {
         return ordinals[test] || replacesAir() && test == 0;
     }
 
+    @Override
+    public boolean[] toOrdinalTable() {
+        boolean[] table = ordinals.clone();
+        table[BlockTypesCache.ReservedIDs.__RESERVED__] |= replacesAir();
+        return table;
+    }
+
     @Override
     public boolean replacesAir() {
         return ordinals[BlockTypesCache.ReservedIDs.AIR]
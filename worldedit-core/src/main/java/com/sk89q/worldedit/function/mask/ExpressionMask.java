@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.function.mask;
 
+import com.fastasyncworldedit.core.extent.filter.block.FilterBlock;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.internal.expression.EvaluationException;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
@@ -40,6 +42,16 @@ public class ExpressionMask extends AbstractMask {
 
     private final Expression expression;
     private final IntSupplier timeout;
+    //FAWE start - the results of the row of blocks last evaluated
+    private double[] rowX;
+    private double[] rowY;
+    private double[] rowZ;
+    private double[] rowResults;
+    private boolean rowValid;
+    private int rowMinX;
+    private int rowBlockY;
+    private int rowBlockZ;
+    //FAWE end
 
     /**
      * Create a new instance.
@@ -69,6 +81,16 @@ public ExpressionMask(Expression expression, @Nullable IntSupplier timeout) {
     @Override
     public boolean test(BlockVector3 vector) {
         try {
+            //FAWE start - blocks of a chunk are filtered row by row, so evaluate pure expressions a row at once
+            if (vector instanceof FilterBlock && expression.isPure()) {
+                try {
+                    return testRow(vector.x(), vector.y(), vector.z());
+                } catch (EvaluationException ignored) {
+                    // evaluate the block alone below, the error might come from another block of the row
+                    rowValid = false;
+                }
+            }
+            //FAWE end
             if (expression.getEnvironment() instanceof WorldEditExpressionEnvironment) {
                 ((WorldEditExpressionEnvironment) expression.getEnvironment()).setCurrentBlock(vector.toVector3());
             }
@@ -85,6 +107,35 @@ public boolean test(BlockVector3 vector) {
         }
     }
 
+    //FAWE start
+    private boolean testRow(int x, int y, int z) {
+        int minX = x & ~15;
+        if (!rowValid || minX != rowMinX || y != rowBlockY || z != rowBlockZ) {
+            if (rowResults == null) {
+                rowX = new double[16];
+                rowY = new double[16];
+                rowZ = new double[16];
+                rowResults = new double[16];
+            }
+            for (int i = 0; i < 16; i++) {
+                rowX[i] = minX + i;
+                rowY[i] = y;
+                rowZ[i] = z;
+            }
+            rowValid = false;
+            int timeout = this.timeout == null
+                    ? WorldEdit.getInstance().getConfiguration().calculationTimeout
+                    : this.timeout.getAsInt();
+            expression.evaluate(rowX, rowY, rowZ, rowResults, 16, timeout);
+            rowValid = true;
+            rowMinX = minX;
+            rowBlockY = y;
+            rowBlockZ = z;
+        }
+        return rowResults[x - minX] > 0;
+    }
+    //FAWE end
+
     @Nullable
     @Override
     public Mask2D toMask2D() {
@@ -21,7 +21,10 @@
 
 import com.fastasyncworldedit.core.configuration.Settings;
 import com.fastasyncworldedit.core.history.changeset.AbstractChangeSet;
+import com.fastasyncworldedit.core.history.change.MutableBlockChange;
 import com.fastasyncworldedit.core.history.changeset.ChangeExchangeCoordinator;
+import com.fastasyncworldedit.core.queue.implementation.ParallelChangeReplay;
+import com.fastasyncworldedit.core.queue.implementation.ParallelQueueExtent;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.history.UndoContext;
@@ -59,8 +62,10 @@ public void perform(Change change, UndoContext context) {
 
     private final Iterator<Change> iterator;
     private final ChangeExchangeCoordinator changeExchangeCoordinator;
+    private final ParallelChangeReplay replay;
     private final Type type;
     private final UndoContext context;
+    private final UndoContext replayContext;
 
     /**
      * Create a new instance.
@@ -77,6 +82,14 @@ private ChangeSetExecutor(ChangeSet changeSet, Type type, UndoContext context, B
 
         this.type = type;
         this.context = context;
+        if (Settings.settings().EXPERIMENTAL.PARALLEL_UNDO && context.getExtent() instanceof ParallelQueueExtent parallel) {
+            this.replay = parallel.newChangeReplay();
+            this.replayContext = new UndoContext();
+            this.replayContext.setExtent(replay.getExtent());
+        } else {
+            this.replay = null;
+            this.replayContext = context;
+        }
         if (changeSet instanceof AbstractChangeSet abstractChangeSet) {
             if (Settings.settings().EXPERIMENTAL.UNDO_BATCH_SIZE > 0) {
                 this.changeExchangeCoordinator = abstractChangeSet.getCoordinatedChanges(blockBag, inventory, type == Type.REDO);
@@ -101,27 +114,50 @@ public Operation resume(RunContext run) throws WorldEditException {
         if (this.changeExchangeCoordinator != null) {
             try (this.changeExchangeCoordinator) {
                 Change[] changes = new Change[Settings.settings().EXPERIMENTAL.UNDO_BATCH_SIZE];
+                batches:
                 while ((changes = this.changeExchangeCoordinator.take(changes)) != null) {
                     for (final Change change : changes) {
                         if (change == null) {
-                            return null; // end
+                            break batches; // end
                         }
-                        type.perform(change, context);
+                        perform(change);
                     }
                 }
-                return null;
             }
+            finishReplay();
+            return null;
         }
         // FAWE end
         while (iterator.hasNext()) {
             Change change = iterator.next();
             //FAWE start - types > individual history step
-            type.perform(change, context);
+            perform(change);
             //FAWE end
         }
+        //FAWE start
+        finishReplay();
+        //FAWE end
         return null;
     }
 
+    //FAWE start - parallel replay
+    private void perform(Change change) throws WorldEditException {
+        // Block changes are mutable and reused, so the replay copies them right away. Tiles and biomes are added to the
+        // replay through its extent, so they are applied by the same worker as the blocks of their chunk
+        if (replay != null && change instanceof MutableBlockChange block) {
+            replay.add(block.x, block.y, block.z, block.ordinal);
+        } else {
+            type.perform(change, replayContext);
+        }
+    }
+
+    private void finishReplay() {
+        if (replay != null) {
+            replay.finish();
+        }
+    }
+    //FAWE end
+
     @Override
     public void cancel() {
     }
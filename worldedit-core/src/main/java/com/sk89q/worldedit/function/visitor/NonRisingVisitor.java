@@ -31,6 +31,16 @@
  */
 public class NonRisingVisitor extends RecursiveVisitor {
 
+    //FAWE start
+    public static final BlockVector3[] DIRECTIONS = {
+            BlockVector3.UNIT_X,
+            BlockVector3.UNIT_MINUS_X,
+            BlockVector3.UNIT_Z,
+            BlockVector3.UNIT_MINUS_Z,
+            BlockVector3.UNIT_MINUS_Y
+    };
+    //FAWE end
+
     /**
      * Create a new resursive visitor.
      *
@@ -75,13 +85,7 @@ public NonRisingVisitor(Mask mask, RegionFunction function, int depth, int minY,
      */
     public NonRisingVisitor(Mask mask, RegionFunction function, int depth, int minY, int maxY, Extent extent) {
         super(mask, function, depth, minY, maxY, extent);
-        setDirections(
-                BlockVector3.UNIT_X,
-                BlockVector3.UNIT_MINUS_X,
-                BlockVector3.UNIT_Z,
-                BlockVector3.UNIT_MINUS_Z,
-                BlockVector3.UNIT_MINUS_Y
-        );
+        setDirections(DIRECTIONS);
     }
     //FAWE end
 
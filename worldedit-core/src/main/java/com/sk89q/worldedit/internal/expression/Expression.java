@@ -23,16 +23,18 @@
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.antlr.ExpressionLexer;
 import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.invoke.BytecodeCompiler;
 import com.sk89q.worldedit.internal.expression.invoke.ExpressionCompiler;
 import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import javax.annotation.Nullable;
 import java.time.Instant;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -74,6 +76,25 @@ public class Expression implements Cloneable {
     private final CompiledExpression compiledExpression;
     //FAWE start
     private final String initialExpression;
+    /**
+     * The number of evaluations after which the expression is compiled to bytecode if {@link #optimize()} was not
+     * called.
+     */
+    private static final int OPTIMIZE_AFTER_EVALUATIONS = 64;
+    /**
+     * The most single evaluation timeouts a batch of evaluations may take in total.
+     */
+    private static final int BATCH_TIMEOUT_MULTIPLIER = 4;
+    private static final Set<String> IMPURE_FUNCTIONS = Set.of(
+            "megabuf", "gmegabuf", "closest", "gclosest", "random", "randint", "query", "queryAbs", "queryRel"
+    );
+    private final LocalSlot.Variable[] providedVariables;
+    // expressions without loops never check the deadline, so they can share one execution data
+    private final ExecutionData sharedData;
+    private CompiledExpression optimizedExpression;
+    private boolean optimized;
+    private int evaluations;
+    private Boolean pure;
     //FAWE end
 
     public static Expression compile(String expression, String... variableNames) throws ExpressionException {
@@ -115,6 +136,10 @@ private Expression(String expression, String... variableNames) throws Expression
         }
         ParseTreeWalker.DEFAULT.walk(new ExpressionValidator(slots.keySet(), functions), root);
         this.compiledExpression = new ExpressionCompiler().compileExpression(root, functions);
+        //FAWE start
+        this.providedVariables = providedVariables();
+        this.sharedData = hasLoops(root) ? null : new ExecutionData(slots, functions, Instant.MAX);
+        //FAWE end
     }
 
     private Expression(String expression, Set<String> variableNames) throws ExpressionException {
@@ -150,6 +175,10 @@ private Expression(String expression, Set<String> variableNames) throws Expressi
         }
         ParseTreeWalker.DEFAULT.walk(new ExpressionValidator(slots.keySet(), functions), root);
         this.compiledExpression = new ExpressionCompiler().compileExpression(root, functions);
+        //FAWE start
+        this.providedVariables = providedVariables();
+        this.sharedData = hasLoops(root) ? null : new ExecutionData(slots, functions, Instant.MAX);
+        //FAWE end
     }
 
     public double evaluate(double... values) throws EvaluationException {
@@ -157,28 +186,194 @@ public double evaluate(double... values) throws EvaluationException {
     }
 
     public double evaluate(double[] values, int timeout) throws EvaluationException {
+        //FAWE start - cached variables, no deadline without loops, compile to bytecode when evaluated often
         for (int i = 0; i < values.length; ++i) {
+            providedVariables[i].setValue(values[i]);
+        }
+
+        // evaluation exceptions are thrown out of this method
+        Double result = getExecutable().execute(executionData(timeout));
+        if (result == null) {
+            throw new EvaluationException(-1, "Expression must result in a value");
+        }
+        return result;
+    }
+
+    /**
+     * Evaluate the expression for many values at once. The timeout applies to the whole batch, scaled by the number
+     * of evaluations up to {@value #BATCH_TIMEOUT_MULTIPLIER}, so the clock is read once per batch instead of once
+     * per evaluation.
+     *
+     * @param values  the values of the provided slots, one array of at least {@code count} values per slot
+     * @param results the array to write the results to
+     * @param count   the number of evaluations
+     * @param timeout the timeout of a single evaluation in milliseconds
+     * @throws EvaluationException if an evaluation fails or does not result in a value
+     */
+    public void evaluate(double[][] values, double[] results, int count, int timeout) throws EvaluationException {
+        evaluate(values, results, null, count, timeout);
+    }
+
+    /**
+     * Evaluate the expression for a batch of positions, the first three provided slots being the coordinates.
+     *
+     * @param x       the values of the first provided slot
+     * @param y       the values of the second provided slot
+     * @param z       the values of the third provided slot
+     * @param results the array to write the results to
+     * @param count   the number of evaluations
+     * @param timeout the timeout of a single evaluation in milliseconds
+     * @throws EvaluationException if an evaluation fails or does not result in a value
+     * @see #evaluate(double[][], double[], int, int)
+     */
+    public void evaluate(double[] x, double[] y, double[] z, double[] results, int count, int timeout)
+            throws EvaluationException {
+        evaluate(new double[][]{x, y, z}, results, null, count, timeout);
+    }
+
+    /**
+     * Evaluate the expression for many values at once, also recording the values of the provided slots after each
+     * evaluation, for expressions changing them like the ones of {@code //deform}.
+     *
+     * @param values  the values of the provided slots, one array of at least {@code count} values per slot
+     * @param results the array to write the results to
+     * @param outputs the arrays to write the values of the provided slots after each evaluation to, or {@code null}
+     * @param count   the number of evaluations
+     * @param timeout the timeout of a single evaluation in milliseconds
+     * @throws EvaluationException if an evaluation fails or does not result in a value
+     * @see #evaluate(double[][], double[], int, int)
+     */
+    public void evaluate(double[][] values, double[] results, @Nullable double[][] outputs, int count, int timeout)
+            throws EvaluationException {
+        if (count <= 0) {
+            return;
+        }
+        if (!optimized) {
+            optimize();
+        }
+        CompiledExpression executable = getExecutable();
+        // a single slow evaluation may use up to the timeout of a few, but not that of the whole batch
+        ExecutionData data = executionData((long) timeout * Math.min(count, BATCH_TIMEOUT_MULTIPLIER));
+        for (int i = 0; i < count; i++) {
+            for (int slot = 0; slot < values.length; slot++) {
+                providedVariables[slot].setValue(values[slot][i]);
+            }
+            Double result = executable.execute(data);
+            if (result == null) {
+                throw new EvaluationException(-1, "Expression must result in a value");
+            }
+            results[i] = result;
+            if (outputs != null) {
+                for (int slot = 0; slot < outputs.length; slot++) {
+                    outputs[slot][i] = providedVariables[slot].value();
+                }
+            }
+        }
+    }
+
+    /**
+     * {@return whether the result only depends on the values of the provided slots} That is not the case if the
+     * expression assigns other variables, which are kept between evaluations, or calls functions with state or
+     * reading the world, like {@code megabuf}, {@code random} or {@code query}. Pure expressions may be evaluated
+     * for positions in any order, or in advance.
+     */
+    public boolean isPure() {
+        if (pure == null) {
+            pure = isPure(root);
+        }
+        return pure;
+    }
+
+    private boolean isPure(ParseTree tree) {
+        if (tree instanceof ExpressionParser.AssignmentContext assignment) {
+            if (!providedSlots.contains(assignment.target.getText())) {
+                return false;
+            }
+        } else if (tree instanceof ExpressionParser.PreCrementExprContext crement) {
+            if (!providedSlots.contains(crement.target.getText())) {
+                return false;
+            }
+        } else if (tree instanceof ExpressionParser.PostCrementExprContext crement) {
+            if (!providedSlots.contains(crement.target.getText())) {
+                return false;
+            }
+        } else if (tree instanceof ExpressionParser.SimpleForStatementContext loop) {
+            if (!providedSlots.contains(loop.counter.getText())) {
+                return false;
+            }
+        } else if (tree instanceof ExpressionParser.FunctionCallContext call) {
+            if (IMPURE_FUNCTIONS.contains(call.name.getText())) {
+                return false;
+            }
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (!isPure(tree.getChild(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CompiledExpression getExecutable() {
+        if (optimizedExpression != null) {
+            return optimizedExpression;
+        }
+        if (!optimized && ++evaluations >= OPTIMIZE_AFTER_EVALUATIONS) {
+            optimize();
+            if (optimizedExpression != null) {
+                return optimizedExpression;
+            }
+        }
+        return compiledExpression;
+    }
+
+    private ExecutionData executionData(long timeout) {
+        if (sharedData != null) {
+            return sharedData;
+        }
+        if (timeout < 0) {
+            // -1 disables the timeout
+            return new ExecutionData(slots, functions, Instant.MAX);
+        }
+        return new ExecutionData(slots, functions, Instant.now().plusMillis(timeout));
+    }
+
+    private LocalSlot.Variable[] providedVariables() {
+        LocalSlot.Variable[] variables = new LocalSlot.Variable[providedSlots.size()];
+        for (int i = 0; i < variables.length; i++) {
             String slotName = providedSlots.get(i);
-            LocalSlot.Variable slot = slots.getVariable(slotName)
+            variables[i] = slots.getVariable(slotName)
                     .orElseThrow(() -> new EvaluationException(
                             -1,
                             "Tried to assign to non-variable " + slotName + "."
                     ));
-
-            slot.setValue(values[i]);
         }
+        return variables;
+    }
 
-        Instant deadline = Instant.now().plusMillis(timeout);
-        // evaluation exceptions are thrown out of this method
-        Double result = compiledExpression.execute(new ExecutionData(slots, functions, deadline));
-        if (result == null) {
-            throw new EvaluationException(-1, "Expression must result in a value");
+    private static boolean hasLoops(ParseTree tree) {
+        if (tree instanceof ExpressionParser.WhileStatementContext
+                || tree instanceof ExpressionParser.DoStatementContext
+                || tree instanceof ExpressionParser.ForStatementContext
+                || tree instanceof ExpressionParser.SimpleForStatementContext) {
+            return true;
         }
-        return result;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            if (hasLoops(tree.getChild(i))) {
+                return true;
+            }
+        }
+        return false;
     }
+    //FAWE end
 
     public void optimize() {
-        // TODO optimizing
+        //FAWE start - compile to bytecode, keeping the method handles if that is not possible
+        if (!optimized) {
+            optimized = true;
+            optimizedExpression = new BytecodeCompiler().compileExpression(root, functions, slots);
+        }
+        //FAWE end
     }
 
     @Override
@@ -200,7 +395,8 @@ public void setEnvironment(ExpressionEnvironment environment) {
 
     //FAWE start
     public Expression clone() {
-        Expression expression = new Expression(initialExpression, new HashSet<>(providedSlots));
+        // keep the order of the provided slots, which batch evaluation relies on
+        Expression expression = new Expression(initialExpression, providedSlots.toArray(String[]::new));
         expression.setEnvironment(getEnvironment().clone());
         return expression;
     }
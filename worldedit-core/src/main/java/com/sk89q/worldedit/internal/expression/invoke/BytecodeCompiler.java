@@ -0,0 +1,902 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import com.sk89q.worldedit.antlr.ExpressionBaseListener;
+import com.sk89q.worldedit.antlr.ExpressionBaseVisitor;
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.CompiledExpression;
+import com.sk89q.worldedit.internal.expression.ExpressionHelper;
+import com.sk89q.worldedit.internal.expression.Functions;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import com.sk89q.worldedit.internal.util.LogManagerCompat;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.RuleNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.apache.logging.log4j.Logger;
+
+import javax.annotation.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.sk89q.worldedit.antlr.ExpressionLexer.ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.DIVIDE;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.DIVIDE_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.EXCLAMATION_MARK;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.INCREMENT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LEFT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NEAR;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NOT_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.POWER_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.RIGHT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES_ASSIGN;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ACC_FINAL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ACC_PRIVATE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ACC_PUBLIC;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ACC_STATIC;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ALOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ASTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.CHECKCAST;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DADD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DCMPG;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DCMPL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DDIV;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DLOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DMUL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DNEG;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DREM;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DRETURN;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DSTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DSUB;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.DUP2;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.GETSTATIC;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.GOTO;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.IFEQ;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.IFGT;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.IFNE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ILOAD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.INVOKEINTERFACE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.INVOKESPECIAL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.INVOKESTATIC;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.INVOKEVIRTUAL;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.ISTORE;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.L2D;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.POP2;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.PUTFIELD;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.PUTSTATIC;
+import static com.sk89q.worldedit.internal.expression.invoke.ClassFileBuilder.RETURN;
+
+/**
+ * Compiles an expression from an AST into a class of its own, keeping variables in primitive locals while it is
+ * evaluated. Expressions using {@code switch} or functions taking variables, like {@code query}, are not supported
+ * and should be left to {@link ExpressionCompiler}.
+ */
+public class BytecodeCompiler {
+
+    private static final Logger LOGGER = LogManagerCompat.getLogger();
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final String PACKAGE = "com/sk89q/worldedit/internal/expression/invoke/";
+    private static final String CLASS_NAME = PACKAGE + "GeneratedExpression";
+    private static final String BASE = PACKAGE + "BytecodeExpression";
+    private static final String COMPILING_VISITOR = PACKAGE + "CompilingVisitor";
+    private static final String MATH = "java/lang/Math";
+    private static final String METHOD_HANDLE = "java/lang/invoke/MethodHandle";
+    private static final String METHOD_HANDLE_DESCRIPTOR = "L" + METHOD_HANDLE + ";";
+    private static final String UNARY = "(D)D";
+    private static final String BINARY = "(DD)D";
+    private static final Set<String> UNARY_MATH_FUNCTIONS = Set.of(
+            "sin", "cos", "tan", "asin", "acos", "atan",
+            "sinh", "cosh", "tanh", "sqrt", "cbrt", "abs",
+            "ceil", "floor", "rint", "exp", "log", "log10"
+    );
+
+    /**
+     * Compile an expression.
+     *
+     * @param root      the parsed expression
+     * @param functions the functions the expression may call
+     * @param slots     the slots of the expression, its constants are inlined
+     * @return the compiled expression, or {@code null} if the expression uses something that is not supported
+     */
+    @Nullable
+    public CompiledExpression compileExpression(
+            ExpressionParser.AllStatementsContext root,
+            Functions functions,
+            SlotTable slots
+    ) {
+        try {
+            return new Generator(functions, slots).generate(root);
+        } catch (UnsupportedExpressionException e) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError | IllegalStateException e) {
+            LOGGER.debug("Could not compile expression to bytecode", e);
+            return null;
+        }
+    }
+
+    private static final class UnsupportedExpressionException extends RuntimeException {
+
+        private UnsupportedExpressionException(String message) {
+            super(message, null, false, false);
+        }
+
+    }
+
+    private static final class Generator extends ExpressionBaseVisitor<Void> {
+
+        private final Functions functions;
+        private final SlotTable slots;
+        private final ClassFileBuilder builder = new ClassFileBuilder(CLASS_NAME, BASE);
+        private final List<ClassFileBuilder.VType> locals = new ArrayList<>();
+        private int localSize;
+        // per name in the slot table: index, local holding its value, and whether it has been bound before
+        private final Map<String, Integer> slotIndices = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> valueLocals = new ArrayList<>();
+        private final List<Boolean> alwaysBound = new ArrayList<>();
+        private final Set<Integer> written = new LinkedHashSet<>();
+        private final Map<ParserRuleContext, Integer> loopLocals = new HashMap<>();
+        private final List<Token> sites = new ArrayList<>();
+        private final List<MethodHandle> handles = new ArrayList<>();
+        // break and continue targets of the enclosing loops
+        private final Deque<ClassFileBuilder.Label[]> loops = new ArrayDeque<>();
+        private final int result;
+        private final int present;
+        private final int scratch;
+        private ClassFileBuilder.Code code;
+        private ClassFileBuilder.Label exit;
+
+        private Generator(Functions functions, SlotTable slots) {
+            this.functions = functions;
+            this.slots = slots;
+            allocate(ClassFileBuilder.VType.object(BASE));
+            result = allocate(ClassFileBuilder.VType.DOUBLE);
+            present = allocate(ClassFileBuilder.VType.INT);
+            scratch = allocate(ClassFileBuilder.VType.DOUBLE);
+        }
+
+        private int allocate(ClassFileBuilder.VType type) {
+            int index = localSize;
+            locals.add(type);
+            localSize += type.size();
+            return index;
+        }
+
+        private CompiledExpression generate(ExpressionParser.AllStatementsContext root)
+                throws ReflectiveOperationException {
+            ParseTreeWalker.DEFAULT.walk(new Scanner(), root);
+
+            code = builder.method(ACC_FINAL, "run", "()D", locals);
+            prologue();
+            exit = new ClassFileBuilder.Label();
+            statements(root.statements());
+            code.bind(exit);
+            epilogue();
+            code.finish();
+
+            ClassFileBuilder.Code constructor = builder.method(ACC_PUBLIC, "<init>", "()V",
+                    List.of(ClassFileBuilder.VType.object(CLASS_NAME))
+            );
+            constructor.load(ALOAD, 0);
+            constructor.invoke(INVOKESPECIAL, BASE, "<init>", "()V");
+            constructor.op(RETURN, 0, null);
+            constructor.finish();
+            if (!handles.isEmpty()) {
+                staticInitializer();
+            }
+
+            byte[] bytes = builder.toByteArray();
+            MethodHandles.Lookup lookup = handles.isEmpty()
+                    ? LOOKUP.defineHiddenClass(bytes, true)
+                    : LOOKUP.defineHiddenClassWithClassData(bytes, List.copyOf(handles), true);
+            BytecodeExpression expression = (BytecodeExpression) lookup.lookupClass()
+                    .getDeclaredConstructor()
+                    .newInstance();
+            expression.init(names.toArray(String[]::new), sites.toArray(Token[]::new));
+            return expression;
+        }
+
+        /**
+         * Load the handles of the called functions from the class data into static final fields, so the JIT can
+         * treat them as constants.
+         */
+        private void staticInitializer() {
+            String list = "java/util/List";
+            ClassFileBuilder.Code init = builder.method(ACC_STATIC, "<clinit>", "()V",
+                    List.of(ClassFileBuilder.VType.object(list))
+            );
+            init.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                    "()Ljava/lang/invoke/MethodHandles$Lookup;"
+            );
+            init.constant(builder.string("_"), ClassFileBuilder.VType.object("java/lang/String"));
+            init.constant(builder.classRef(list), ClassFileBuilder.VType.object("java/lang/Class"));
+            init.invoke(INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;"
+            );
+            init.checkCast(list);
+            init.store(ASTORE, 0);
+            for (int i = 0; i < handles.size(); i++) {
+                builder.field(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "h" + i, METHOD_HANDLE_DESCRIPTOR);
+                init.load(ALOAD, 0);
+                init.intConstant(i);
+                init.invoke(INVOKEINTERFACE, list, "get", "(I)Ljava/lang/Object;");
+                init.checkCast(METHOD_HANDLE);
+                init.field(PUTSTATIC, CLASS_NAME, "h" + i, METHOD_HANDLE_DESCRIPTOR);
+            }
+            init.op(RETURN, 0, null);
+            init.finish();
+        }
+
+        private void prologue() {
+            // every local is initialized first, so all frames can share the same locals
+            int index = 0;
+            for (ClassFileBuilder.VType type : locals) {
+                if (type.equals(ClassFileBuilder.VType.DOUBLE)) {
+                    code.doubleConstant(0);
+                    code.store(DSTORE, index);
+                } else if (type.equals(ClassFileBuilder.VType.INT)) {
+                    code.intConstant(0);
+                    code.store(ISTORE, index);
+                }
+                index += type.size();
+            }
+            for (int i = 0; i < names.size(); i++) {
+                int local = valueLocals.get(i);
+                code.load(ALOAD, 0);
+                code.intConstant(i);
+                code.invoke(INVOKEVIRTUAL, BASE, "load", "(I)D");
+                code.store(DSTORE, local);
+                if (!alwaysBound.get(i)) {
+                    code.load(ALOAD, 0);
+                    code.intConstant(i);
+                    code.invoke(INVOKEVIRTUAL, BASE, "isBound", "(I)Z");
+                    code.store(ISTORE, local + 2);
+                }
+            }
+        }
+
+        private void epilogue() {
+            for (int i : written) {
+                code.load(ALOAD, 0);
+                code.intConstant(i);
+                code.load(DLOAD, valueLocals.get(i));
+                code.invoke(INVOKEVIRTUAL, BASE, "store", "(ID)V");
+            }
+            code.load(ALOAD, 0);
+            code.load(ILOAD, present);
+            code.field(PUTFIELD, BASE, "hasResult", "Z");
+            code.load(DLOAD, result);
+            code.op(DRETURN, 1, null);
+        }
+
+        private UnsupportedExpressionException unsupported(ParserRuleContext ctx) {
+            return new UnsupportedExpressionException("Unsupported: " + ctx.getClass().getSimpleName());
+        }
+
+        /**
+         * Collects the names and allocates the locals of the expression before the code is generated.
+         */
+        private final class Scanner extends ExpressionBaseListener {
+
+            private void reference(Token token, boolean write) {
+                String name = token.getText();
+                LocalSlot slot = slots.getSlot(name).orElse(null);
+                if (slot instanceof LocalSlot.Constant) {
+                    if (write) {
+                        // let the fallback report the error
+                        throw new UnsupportedExpressionException("Constant " + name + " is modified");
+                    }
+                    return;
+                }
+                Integer index = slotIndices.get(name);
+                if (index == null) {
+                    index = names.size();
+                    slotIndices.put(name, index);
+                    names.add(name);
+                    valueLocals.add(allocate(ClassFileBuilder.VType.DOUBLE));
+                    allocate(ClassFileBuilder.VType.INT);
+                    alwaysBound.add(slot != null);
+                }
+                if (write) {
+                    written.add(index);
+                }
+            }
+
+            private void loop(ParserRuleContext ctx, boolean counter) {
+                // result, whether it is present, and iteration count
+                int base = allocate(ClassFileBuilder.VType.DOUBLE);
+                allocate(ClassFileBuilder.VType.INT);
+                allocate(ClassFileBuilder.VType.INT);
+                if (counter) {
+                    // counter and last value
+                    allocate(ClassFileBuilder.VType.DOUBLE);
+                    allocate(ClassFileBuilder.VType.DOUBLE);
+                }
+                loopLocals.put(ctx, base);
+            }
+
+            @Override
+            public void enterIdExpr(ExpressionParser.IdExprContext ctx) {
+                reference(ctx.source, false);
+            }
+
+            @Override
+            public void enterAssignment(ExpressionParser.AssignmentContext ctx) {
+                reference(ctx.target, true);
+            }
+
+            @Override
+            public void enterPreCrementExpr(ExpressionParser.PreCrementExprContext ctx) {
+                reference(ctx.target, true);
+            }
+
+            @Override
+            public void enterPostCrementExpr(ExpressionParser.PostCrementExprContext ctx) {
+                reference(ctx.target, true);
+            }
+
+            @Override
+            public void enterWhileStatement(ExpressionParser.WhileStatementContext ctx) {
+                loop(ctx, false);
+            }
+
+            @Override
+            public void enterDoStatement(ExpressionParser.DoStatementContext ctx) {
+                loop(ctx, false);
+            }
+
+            @Override
+            public void enterForStatement(ExpressionParser.ForStatementContext ctx) {
+                loop(ctx, false);
+            }
+
+            @Override
+            public void enterSimpleForStatement(ExpressionParser.SimpleForStatementContext ctx) {
+                reference(ctx.counter, true);
+                loop(ctx, true);
+            }
+
+        }
+
+        // Statements. Like the CompilingVisitor, a statement sets the result, and statements without any code
+        // (empty statements and blocks) leave it alone unless they are the branch or body of another statement.
+
+        private static boolean isEmpty(ExpressionParser.StatementsContext ctx) {
+            return ctx.statement().stream().allMatch(Generator::isEmpty);
+        }
+
+        private static boolean isEmpty(ExpressionParser.StatementContext ctx) {
+            ParseTree statement = ctx.getChild(0);
+            if (statement instanceof ExpressionParser.EmptyStatementContext) {
+                return true;
+            }
+            return statement instanceof ExpressionParser.BlockContext block && isEmpty(block.statements());
+        }
+
+        private void statements(ExpressionParser.StatementsContext ctx) {
+            for (ExpressionParser.StatementContext statement : ctx.statement()) {
+                if (!isEmpty(statement)) {
+                    statement(statement);
+                }
+            }
+        }
+
+        private void nested(@Nullable ExpressionParser.StatementContext ctx) {
+            if (ctx == null || isEmpty(ctx)) {
+                setPresent(false);
+            } else {
+                statement(ctx);
+            }
+        }
+
+        private void setPresent(boolean value) {
+            code.intConstant(value ? 1 : 0);
+            code.store(ISTORE, present);
+        }
+
+        private void setResult() {
+            code.store(DSTORE, result);
+            setPresent(true);
+        }
+
+        private void statement(ExpressionParser.StatementContext ctx) {
+            ParseTree statement = ctx.getChild(0);
+            if (statement instanceof ExpressionParser.BlockContext block) {
+                statements(block.statements());
+            } else if (statement instanceof ExpressionParser.ExpressionStatementContext expression) {
+                expression.expression().accept(this);
+                setResult();
+            } else if (statement instanceof ExpressionParser.IfStatementContext ifStatement) {
+                ClassFileBuilder.Label otherwise = new ClassFileBuilder.Label();
+                ClassFileBuilder.Label end = new ClassFileBuilder.Label();
+                condition(ifStatement.condition, otherwise);
+                nested(ifStatement.trueBranch);
+                code.jump(GOTO, end);
+                code.bind(otherwise);
+                nested(ifStatement.falseBranch);
+                code.bind(end);
+            } else if (statement instanceof ExpressionParser.WhileStatementContext whileStatement) {
+                whileLoop(whileStatement, null, whileStatement.condition, whileStatement.body, null);
+            } else if (statement instanceof ExpressionParser.ForStatementContext forStatement) {
+                whileLoop(forStatement, forStatement.init, forStatement.condition, forStatement.body,
+                        forStatement.update
+                );
+            } else if (statement instanceof ExpressionParser.DoStatementContext doStatement) {
+                doLoop(doStatement);
+            } else if (statement instanceof ExpressionParser.SimpleForStatementContext simpleFor) {
+                simpleForLoop(simpleFor);
+            } else if (statement instanceof ExpressionParser.BreakStatementContext && !loops.isEmpty()) {
+                code.jump(GOTO, loops.peek()[0]);
+            } else if (statement instanceof ExpressionParser.ContinueStatementContext && !loops.isEmpty()) {
+                code.jump(GOTO, loops.peek()[1]);
+            } else if (statement instanceof ExpressionParser.ReturnStatementContext returnStatement) {
+                returnStatement.value.accept(this);
+                setResult();
+                code.jump(GOTO, exit);
+            } else if (!(statement instanceof ExpressionParser.EmptyStatementContext)) {
+                // switch statements, and break or continue outside a loop
+                throw unsupported(ctx);
+            }
+        }
+
+        /**
+         * Jump to {@code ifFalse} if the expression is zero.
+         */
+        private void condition(ExpressionParser.ExpressionContext ctx, ClassFileBuilder.Label ifFalse) {
+            ctx.accept(this);
+            code.doubleConstant(0);
+            code.op(DCMPL, 2, ClassFileBuilder.VType.INT);
+            code.jump(IFEQ, ifFalse);
+        }
+
+        private void loopBody(
+                int base,
+                ExpressionParser.StatementContext body,
+                ClassFileBuilder.Label end,
+                ClassFileBuilder.Label next
+        ) {
+            code.load(ALOAD, 0);
+            code.load(ILOAD, base + 3);
+            code.intConstant(body.start.getCharPositionInLine());
+            code.invoke(INVOKEVIRTUAL, BASE, "checkLoop", "(II)V");
+            code.increment(base + 3, 1);
+            loops.push(new ClassFileBuilder.Label[]{end, next});
+            nested(body);
+            loops.pop();
+            // the result of the loop is the result of the last body that completed without break or continue
+            code.load(DLOAD, result);
+            code.store(DSTORE, base);
+            code.load(ILOAD, present);
+            code.store(ISTORE, base + 2);
+        }
+
+        private void startLoop(int base) {
+            code.intConstant(0);
+            code.store(ISTORE, base + 2);
+            code.intConstant(0);
+            code.store(ISTORE, base + 3);
+        }
+
+        private void endLoop(int base, ClassFileBuilder.Label end) {
+            code.bind(end);
+            code.load(DLOAD, base);
+            code.store(DSTORE, result);
+            code.load(ILOAD, base + 2);
+            code.store(ISTORE, present);
+        }
+
+        private void whileLoop(
+                ParserRuleContext ctx,
+                @Nullable ExpressionParser.ExpressionContext init,
+                ExpressionParser.ExpressionContext condition,
+                ExpressionParser.StatementContext body,
+                @Nullable ExpressionParser.ExpressionContext update
+        ) {
+            int base = loopLocals.get(ctx);
+            ClassFileBuilder.Label top = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label next = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label end = new ClassFileBuilder.Label();
+            if (init != null) {
+                init.accept(this);
+                code.op(POP2, 1, null);
+            }
+            startLoop(base);
+            code.bind(top);
+            condition(condition, end);
+            loopBody(base, body, end, next);
+            code.bind(next);
+            if (update != null) {
+                update.accept(this);
+                code.op(POP2, 1, null);
+            }
+            code.jump(GOTO, top);
+            endLoop(base, end);
+        }
+
+        private void doLoop(ExpressionParser.DoStatementContext ctx) {
+            int base = loopLocals.get(ctx);
+            ClassFileBuilder.Label top = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label next = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label end = new ClassFileBuilder.Label();
+            startLoop(base);
+            code.bind(top);
+            loopBody(base, ctx.body, end, next);
+            code.bind(next);
+            condition(ctx.condition, end);
+            code.jump(GOTO, top);
+            endLoop(base, end);
+        }
+
+        private void simpleForLoop(ExpressionParser.SimpleForStatementContext ctx) {
+            int base = loopLocals.get(ctx);
+            int counter = base + 4;
+            int last = base + 6;
+            ClassFileBuilder.Label top = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label next = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label end = new ClassFileBuilder.Label();
+            ctx.first.accept(this);
+            code.store(DSTORE, counter);
+            ctx.last.accept(this);
+            code.store(DSTORE, last);
+            int slot = bindForWrite(ctx.counter);
+            startLoop(base);
+            code.bind(top);
+            code.load(DLOAD, counter);
+            code.load(DLOAD, last);
+            code.op(DCMPG, 2, ClassFileBuilder.VType.INT);
+            code.jump(IFGT, end);
+            code.load(DLOAD, counter);
+            code.store(DSTORE, valueLocals.get(slot));
+            loopBody(base, ctx.body, end, next);
+            code.bind(next);
+            code.load(DLOAD, counter);
+            code.doubleConstant(1);
+            code.op(DADD, 2, ClassFileBuilder.VType.DOUBLE);
+            code.store(DSTORE, counter);
+            code.jump(GOTO, top);
+            endLoop(base, end);
+        }
+
+        // Variables
+
+        private int slot(Token token) {
+            return slotIndices.get(token.getText());
+        }
+
+        /**
+         * Throw if the variable of the token has not been assigned yet.
+         */
+        private int checkBound(Token token) {
+            int slot = slot(token);
+            if (!alwaysBound.get(slot)) {
+                sites.add(token);
+                code.load(ALOAD, 0);
+                code.load(ILOAD, valueLocals.get(slot) + 2);
+                code.intConstant(sites.size() - 1);
+                code.invoke(INVOKEVIRTUAL, BASE, "checkBound", "(ZI)V");
+            }
+            return slot;
+        }
+
+        /**
+         * Create the variable of the token if it does not exist yet.
+         */
+        private int bindForWrite(Token token) {
+            int slot = slot(token);
+            if (!alwaysBound.get(slot)) {
+                code.load(ALOAD, 0);
+                code.intConstant(slot);
+                code.invoke(INVOKEVIRTUAL, BASE, "bindVariable", "(I)V");
+                code.intConstant(1);
+                code.store(ISTORE, valueLocals.get(slot) + 2);
+            }
+            return slot;
+        }
+
+        // Expressions, each leaves one double on the stack
+
+        @Override
+        public Void visitChildren(RuleNode node) {
+            // fallthrough rules and wrapped expressions have exactly one child rule
+            ParseTree only = null;
+            for (int i = 0; i < node.getChildCount(); i++) {
+                ParseTree child = node.getChild(i);
+                if (child instanceof ParserRuleContext) {
+                    if (only != null) {
+                        throw unsupported((ParserRuleContext) node);
+                    }
+                    only = child;
+                }
+            }
+            if (only == null) {
+                throw new UnsupportedExpressionException("Rule without children: " + node.getClass().getSimpleName());
+            }
+            return only.accept(this);
+        }
+
+        private void binary(ParserRuleContext left, ParserRuleContext right, int opcode) {
+            left.accept(this);
+            right.accept(this);
+            code.op(opcode, 2, ClassFileBuilder.VType.DOUBLE);
+        }
+
+        private void binary(ParserRuleContext left, ParserRuleContext right, String owner, String name) {
+            left.accept(this);
+            right.accept(this);
+            code.invoke(INVOKESTATIC, owner, name, BINARY);
+        }
+
+        @Override
+        public Void visitAssignment(ExpressionParser.AssignmentContext ctx) {
+            int type = ((TerminalNode) ctx.assignmentOperator().getChild(0)).getSymbol().getType();
+            ctx.source.accept(this);
+            if (type == ASSIGN) {
+                int slot = bindForWrite(ctx.target);
+                code.dup(DUP2);
+                code.store(DSTORE, valueLocals.get(slot));
+                return null;
+            }
+            code.store(DSTORE, scratch);
+            int slot = checkBound(ctx.target);
+            int local = valueLocals.get(slot);
+            code.load(DLOAD, local);
+            code.load(DLOAD, scratch);
+            switch (type) {
+                case POWER_ASSIGN -> code.invoke(INVOKESTATIC, MATH, "pow", BINARY);
+                case TIMES_ASSIGN -> code.op(DMUL, 2, ClassFileBuilder.VType.DOUBLE);
+                case DIVIDE_ASSIGN -> code.op(DDIV, 2, ClassFileBuilder.VType.DOUBLE);
+                case MODULO_ASSIGN -> code.op(DREM, 2, ClassFileBuilder.VType.DOUBLE);
+                case PLUS_ASSIGN -> code.op(DADD, 2, ClassFileBuilder.VType.DOUBLE);
+                case MINUS_ASSIGN -> code.op(DSUB, 2, ClassFileBuilder.VType.DOUBLE);
+                default -> throw unsupported(ctx);
+            }
+            code.dup(DUP2);
+            code.store(DSTORE, local);
+            return null;
+        }
+
+        @Override
+        public Void visitTernaryExpr(ExpressionParser.TernaryExprContext ctx) {
+            ClassFileBuilder.Label otherwise = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label end = new ClassFileBuilder.Label();
+            ctx.condition.accept(this);
+            code.doubleConstant(0);
+            code.op(DCMPL, 2, ClassFileBuilder.VType.INT);
+            code.jump(IFEQ, otherwise);
+            ctx.trueBranch.accept(this);
+            code.jump(GOTO, end);
+            code.bind(otherwise);
+            ctx.falseBranch.accept(this);
+            code.bind(end);
+            return null;
+        }
+
+        @Override
+        public Void visitConditionalOrExpr(ExpressionParser.ConditionalOrExprContext ctx) {
+            // left if it is true, right otherwise
+            ClassFileBuilder.Label end = new ClassFileBuilder.Label();
+            ctx.left.accept(this);
+            code.dup(DUP2);
+            code.doubleConstant(0);
+            code.op(DCMPL, 2, ClassFileBuilder.VType.INT);
+            code.jump(IFNE, end);
+            code.op(POP2, 1, null);
+            ctx.right.accept(this);
+            code.bind(end);
+            return null;
+        }
+
+        @Override
+        public Void visitConditionalAndExpr(ExpressionParser.ConditionalAndExprContext ctx) {
+            // right if left is true, zero otherwise
+            ClassFileBuilder.Label otherwise = new ClassFileBuilder.Label();
+            ClassFileBuilder.Label end = new ClassFileBuilder.Label();
+            ctx.left.accept(this);
+            code.doubleConstant(0);
+            code.op(DCMPL, 2, ClassFileBuilder.VType.INT);
+            code.jump(IFEQ, otherwise);
+            ctx.right.accept(this);
+            code.jump(GOTO, end);
+            code.bind(otherwise);
+            code.doubleConstant(0);
+            code.bind(end);
+            return null;
+        }
+
+        @Override
+        public Void visitEqualityExpr(ExpressionParser.EqualityExprContext ctx) {
+            binary(ctx.left, ctx.right, BASE, switch (ctx.op.getType()) {
+                case EQUAL -> "equal";
+                case NOT_EQUAL -> "notEqual";
+                case NEAR -> "near";
+                default -> throw unsupported(ctx);
+            });
+            return null;
+        }
+
+        @Override
+        public Void visitRelationalExpr(ExpressionParser.RelationalExprContext ctx) {
+            binary(ctx.left, ctx.right, BASE, switch (ctx.op.getType()) {
+                case LESS_THAN -> "lessThan";
+                case LESS_THAN_OR_EQUAL -> "lessThanOrEqual";
+                case GREATER_THAN -> "greaterThan";
+                case GREATER_THAN_OR_EQUAL -> "greaterThanOrEqual";
+                default -> throw unsupported(ctx);
+            });
+            return null;
+        }
+
+        @Override
+        public Void visitShiftExpr(ExpressionParser.ShiftExprContext ctx) {
+            binary(ctx.left, ctx.right, BASE, switch (ctx.op.getType()) {
+                case LEFT_SHIFT -> "shiftLeft";
+                case RIGHT_SHIFT -> "shiftRight";
+                default -> throw unsupported(ctx);
+            });
+            return null;
+        }
+
+        @Override
+        public Void visitAddExpr(ExpressionParser.AddExprContext ctx) {
+            binary(ctx.left, ctx.right, switch (ctx.op.getType()) {
+                case PLUS -> DADD;
+                case MINUS -> DSUB;
+                default -> throw unsupported(ctx);
+            });
+            return null;
+        }
+
+        @Override
+        public Void visitMultiplicativeExpr(ExpressionParser.MultiplicativeExprContext ctx) {
+            binary(ctx.left, ctx.right, switch (ctx.op.getType()) {
+                case TIMES -> DMUL;
+                case DIVIDE -> DDIV;
+                case MODULO -> DREM;
+                default -> throw unsupported(ctx);
+            });
+            return null;
+        }
+
+        @Override
+        public Void visitPowerExpr(ExpressionParser.PowerExprContext ctx) {
+            binary(ctx.left, ctx.right, MATH, "pow");
+            return null;
+        }
+
+        @Override
+        public Void visitPreCrementExpr(ExpressionParser.PreCrementExprContext ctx) {
+            int local = valueLocals.get(checkBound(ctx.target));
+            code.load(DLOAD, local);
+            code.doubleConstant(1);
+            code.op(ctx.op.getType() == INCREMENT ? DADD : DSUB, 2, ClassFileBuilder.VType.DOUBLE);
+            code.dup(DUP2);
+            code.store(DSTORE, local);
+            return null;
+        }
+
+        @Override
+        public Void visitPostCrementExpr(ExpressionParser.PostCrementExprContext ctx) {
+            int local = valueLocals.get(checkBound(ctx.target));
+            code.load(DLOAD, local);
+            code.dup(DUP2);
+            code.doubleConstant(1);
+            code.op(ctx.op.getType() == INCREMENT ? DADD : DSUB, 2, ClassFileBuilder.VType.DOUBLE);
+            code.store(DSTORE, local);
+            return null;
+        }
+
+        @Override
+        public Void visitPlusMinusExpr(ExpressionParser.PlusMinusExprContext ctx) {
+            ctx.expr.accept(this);
+            if (ctx.op.getType() == MINUS) {
+                code.op(DNEG, 1, ClassFileBuilder.VType.DOUBLE);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitNotExpr(ExpressionParser.NotExprContext ctx) {
+            ctx.expr.accept(this);
+            code.invoke(INVOKESTATIC, BASE, "not", UNARY);
+            return null;
+        }
+
+        @Override
+        public Void visitComplementExpr(ExpressionParser.ComplementExprContext ctx) {
+            ctx.expr.accept(this);
+            code.invoke(INVOKESTATIC, BASE, "complement", UNARY);
+            return null;
+        }
+
+        @Override
+        public Void visitPostfixExpr(ExpressionParser.PostfixExprContext ctx) {
+            if (ctx.op.getType() != EXCLAMATION_MARK) {
+                throw unsupported(ctx);
+            }
+            ctx.expr.accept(this);
+            code.invoke(INVOKESTATIC, COMPILING_VISITOR, "factorial", UNARY);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionCall(ExpressionParser.FunctionCallContext ctx) {
+            MethodHandle handle = ExpressionHelper.resolveFunction(functions, ctx);
+            String name = ctx.name.getText();
+            List<ExpressionParser.ExpressionContext> args = ctx.args;
+            if (UNARY_MATH_FUNCTIONS.contains(name) || name.equals("ln")) {
+                args.get(0).accept(this);
+                code.invoke(INVOKESTATIC, MATH, name.equals("ln") ? "log" : name, UNARY);
+            } else if (name.equals("round")) {
+                args.get(0).accept(this);
+                code.invoke(INVOKESTATIC, MATH, "round", "(D)J");
+                code.op(L2D, 1, ClassFileBuilder.VType.DOUBLE);
+            } else if (name.equals("atan2")) {
+                binary(args.get(0), args.get(1), MATH, "atan2");
+            } else if ((name.equals("min") || name.equals("max")) && !args.isEmpty()) {
+                // the same as Doubles.min and max, without the array
+                args.get(0).accept(this);
+                for (int i = 1; i < args.size(); i++) {
+                    args.get(i).accept(this);
+                    code.invoke(INVOKESTATIC, MATH, name, BINARY);
+                }
+            } else {
+                MethodType type = handle.type().unwrap();
+                if (type.returnType() != double.class || type.parameterList().stream().anyMatch(p -> p != double.class)) {
+                    // functions taking variables, like query
+                    throw unsupported(ctx);
+                }
+                String field = "h" + handles.size();
+                handles.add(handle.asType(type));
+                code.field(GETSTATIC, CLASS_NAME, field, METHOD_HANDLE_DESCRIPTOR);
+                for (ExpressionParser.ExpressionContext arg : args) {
+                    arg.accept(this);
+                }
+                code.invoke(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", type.toMethodDescriptorString());
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitConstantExpression(ExpressionParser.ConstantExpressionContext ctx) {
+            code.doubleConstant(Double.parseDouble(ctx.getText()));
+            return null;
+        }
+
+        @Override
+        public Void visitIdExpr(ExpressionParser.IdExprContext ctx) {
+            LocalSlot slot = slots.getSlot(ctx.source.getText()).orElse(null);
+            if (slot instanceof LocalSlot.Constant constant) {
+                code.doubleConstant(constant.value());
+            } else {
+                code.load(DLOAD, valueLocals.get(checkBound(ctx.source)));
+            }
+            return null;
+        }
+
+    }
+
+}
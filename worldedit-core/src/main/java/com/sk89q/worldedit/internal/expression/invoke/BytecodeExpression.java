@@ -0,0 +1,137 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import com.sk89q.worldedit.internal.expression.CompiledExpression;
+import com.sk89q.worldedit.internal.expression.ExecutionData;
+import com.sk89q.worldedit.internal.expression.ExpressionHelper;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import org.antlr.v4.runtime.Token;
+
+import java.util.Arrays;
+
+/**
+ * The base class of the classes generated by {@link BytecodeCompiler}. The generated {@link #run()} copies the
+ * slots it uses into locals when it starts and writes the assigned ones back when it completes.
+ */
+abstract class BytecodeExpression implements CompiledExpression {
+
+    private String[] names;
+    private Token[] sites;
+    private LocalSlot[] slots;
+    private SlotTable table;
+    private ExecutionData data;
+    /**
+     * Set by {@link #run()}, {@code false} if the expression did not result in a value.
+     */
+    boolean hasResult;
+
+    void init(String[] names, Token[] sites) {
+        this.names = names;
+        this.sites = sites;
+        this.slots = new LocalSlot[names.length];
+    }
+
+    @Override
+    public Double execute(ExecutionData data) {
+        SlotTable table = data.slots();
+        if (table != this.table) {
+            Arrays.fill(slots, null);
+            this.table = table;
+        }
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null) {
+                slots[i] = table.getSlot(names[i]).orElse(null);
+            }
+        }
+        this.data = data;
+        double result = run();
+        return hasResult ? result : null;
+    }
+
+    /**
+     * Evaluate the expression. Generated.
+     */
+    abstract double run();
+
+    final double load(int slot) {
+        LocalSlot localSlot = slots[slot];
+        return localSlot == null ? 0 : localSlot.value();
+    }
+
+    final boolean isBound(int slot) {
+        return slots[slot] != null;
+    }
+
+    final void checkBound(boolean bound, int site) {
+        if (!bound) {
+            Token token = sites[site];
+            throw ExpressionHelper.evalException(token, "'" + token.getText() + "' is not initialized yet");
+        }
+    }
+
+    final void bindVariable(int slot) {
+        if (slots[slot] == null) {
+            slots[slot] = table.initVariable(names[slot])
+                    .orElseThrow(() -> new IllegalStateException("Cannot overwrite non-variable '" + names[slot] + "'"));
+        }
+    }
+
+    final void store(int slot, double value) {
+        if (slots[slot] instanceof LocalSlot.Variable variable) {
+            variable.setValue(value);
+        }
+    }
+
+    final void checkLoop(int iterations, int positionInLine) {
+        ExpressionHelper.checkIterations(iterations, positionInLine);
+        // the clock is only read every 16 iterations, which is plenty for the timeout
+        if ((iterations & 15) == 0) {
+            data.checkDeadline();
+        }
+    }
+
+    static double lessThan(double left, double right) {
+        return ExpressionHandles.boolToDouble(left < right);
+    }
+
+    static double lessThanOrEqual(double left, double right) {
+        return ExpressionHandles.boolToDouble(left <= right);
+    }
+
+    static double greaterThan(double left, double right) {
+        return ExpressionHandles.boolToDouble(left > right);
+    }
+
+    static double greaterThanOrEqual(double left, double right) {
+        return ExpressionHandles.boolToDouble(left >= right);
+    }
+
+    static double equal(double left, double right) {
+        return ExpressionHandles.boolToDouble(left == right);
+    }
+
+    static double notEqual(double left, double right) {
+        return ExpressionHandles.boolToDouble(left != right);
+    }
+
+    static double near(double left, double right) {
+        return ExpressionHandles.boolToDouble(CompilingVisitor.almostEqual2sComplement(left, right));
+    }
+
+    static double shiftLeft(double left, double right) {
+        return (double) ((long) left << (long) right);
+    }
+
+    static double shiftRight(double left, double right) {
+        return (double) ((long) left >> (long) right);
+    }
+
+    static double complement(double value) {
+        return (double) ~(long) value;
+    }
+
+    static double not(double value) {
+        return ExpressionHandles.boolToDouble(value == 0);
+    }
+
+}
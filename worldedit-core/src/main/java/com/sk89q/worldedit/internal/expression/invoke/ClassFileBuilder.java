@@ -0,0 +1,655 @@
+package com.sk89q.worldedit.internal.expression.invoke;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal class file writer for {@link BytecodeCompiler}. It supports a constant pool, fields and methods whose
+ * locals keep one type for the whole method, so a full stack map frame can be written for every label.
+ */
+final class ClassFileBuilder {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int DLOAD = 0x18;
+    static final int ALOAD = 0x19;
+    static final int ISTORE = 0x36;
+    static final int DSTORE = 0x39;
+    static final int ASTORE = 0x3a;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP2 = 0x5c;
+    static final int DADD = 0x63;
+    static final int DSUB = 0x67;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int DREM = 0x73;
+    static final int DNEG = 0x77;
+    static final int IINC = 0x84;
+    static final int L2D = 0x8a;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFGT = 0x9d;
+    static final int GOTO = 0xa7;
+    static final int DRETURN = 0xaf;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int ATHROW = 0xbf;
+    static final int CHECKCAST = 0xc0;
+    static final int WIDE = 0xc4;
+
+    private static final int CLASS_FILE_VERSION = 61;
+
+    private final ByteVector pool = new ByteVector();
+    private final Map<String, Integer> poolEntries = new HashMap<>();
+    private int poolCount = 1;
+    private final String name;
+    private final String superName;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFileBuilder(String name, String superName) {
+        this.name = name;
+        this.superName = superName;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int utf8(String value) {
+        return poolEntry("U" + value, 1, () -> pool.putByte(1).putUtf8(value));
+    }
+
+    int classRef(String internalName) {
+        int nameIndex = utf8(internalName);
+        return poolEntry("C" + internalName, 1, () -> pool.putByte(7).putShort(nameIndex));
+    }
+
+    int string(String value) {
+        int valueIndex = utf8(value);
+        return poolEntry("S" + value, 1, () -> pool.putByte(8).putShort(valueIndex));
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return poolEntry("D" + bits, 2, () -> pool.putByte(6).putLong(bits));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor, boolean isInterface) {
+        return memberRef(isInterface ? 11 : 10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = poolEntry("N" + name + ' ' + descriptor, 1,
+                () -> pool.putByte(12).putShort(nameIndex).putShort(descriptorIndex)
+        );
+        return poolEntry(tag + owner + '.' + name + ' ' + descriptor, 1,
+                () -> pool.putByte(tag).putShort(ownerIndex).putShort(nameAndType)
+        );
+    }
+
+    private int poolEntry(String key, int size, Runnable writer) {
+        Integer index = poolEntries.get(key);
+        if (index != null) {
+            return index;
+        }
+        writer.run();
+        int added = poolCount;
+        poolCount += size;
+        if (poolCount > 0xFFFF) {
+            throw new IllegalStateException("Constant pool too large");
+        }
+        poolEntries.put(key, added);
+        return added;
+    }
+
+    void field(int access, String name, String descriptor) {
+        fields.add(new ByteVector()
+                .putShort(access)
+                .putShort(utf8(name))
+                .putShort(utf8(descriptor))
+                .putShort(0)
+                .toByteArray());
+    }
+
+    /**
+     * Start writing a method. The code is added to the class by {@link Code#finish()}.
+     *
+     * @param access     the access flags
+     * @param name       the name
+     * @param descriptor the descriptor
+     * @param locals     the types of all locals, including {@code this} or the parameters, used for stack map frames
+     * @return the code of the method
+     */
+    Code method(int access, String name, String descriptor, List<VType> locals) {
+        return new Code(access, name, descriptor, locals);
+    }
+
+    byte[] toByteArray() {
+        ByteVector out = new ByteVector()
+                .putInt(0xCAFEBABE)
+                .putShort(0)
+                .putShort(CLASS_FILE_VERSION);
+        int thisClass = classRef(name);
+        int superClass = classRef(superName);
+        out.putShort(poolCount).putBytes(pool.toByteArray())
+                .putShort(ACC_FINAL | ACC_SUPER)
+                .putShort(thisClass)
+                .putShort(superClass)
+                .putShort(0)
+                .putShort(fields.size());
+        fields.forEach(out::putBytes);
+        out.putShort(methods.size());
+        methods.forEach(out::putBytes);
+        return out.putShort(0).toByteArray();
+    }
+
+    /**
+     * A verification type of a local or stack entry.
+     */
+    record VType(int tag, String className) {
+
+        static final VType INT = new VType(1, null);
+        static final VType DOUBLE = new VType(3, null);
+        static final VType LONG = new VType(4, null);
+
+        static VType object(String internalName) {
+            return new VType(7, internalName);
+        }
+
+        int size() {
+            return tag == DOUBLE.tag || tag == LONG.tag ? 2 : 1;
+        }
+
+        static VType fromDescriptor(String descriptor) {
+            return switch (descriptor.charAt(0)) {
+                case 'V' -> null;
+                case 'D' -> DOUBLE;
+                case 'J' -> LONG;
+                case 'L' -> object(descriptor.substring(1, descriptor.length() - 1));
+                case '[' -> object(descriptor);
+                case 'F' -> throw new IllegalArgumentException("Floats are not supported");
+                default -> INT;
+            };
+        }
+
+    }
+
+    /**
+     * A position in the code, which gets a stack map frame when bound.
+     */
+    static final class Label {
+
+        private int position = -1;
+        private final List<Integer> jumps = new ArrayList<>();
+        private List<VType> stack;
+
+    }
+
+    /**
+     * The code of a method. Emitting code while the current position is unreachable is ignored, so no dead code is
+     * written without a frame.
+     */
+    final class Code {
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private final List<VType> locals;
+        private final int maxLocals;
+        private final ByteVector code = new ByteVector();
+        private final List<VType> stack = new ArrayList<>();
+        private final List<Label> labels = new ArrayList<>();
+        private final List<Integer> frameOffsets = new ArrayList<>();
+        private final List<List<VType>> frameStacks = new ArrayList<>();
+        private int stackSize;
+        private int maxStack;
+        private boolean reachable = true;
+
+        private Code(int access, String name, String descriptor, List<VType> locals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.locals = List.copyOf(locals);
+            this.maxLocals = locals.stream().mapToInt(VType::size).sum();
+        }
+
+        private void pop(int entries) {
+            for (int i = 0; i < entries; i++) {
+                stackSize -= stack.remove(stack.size() - 1).size();
+            }
+        }
+
+        private void push(VType type) {
+            if (type != null) {
+                stack.add(type);
+                stackSize += type.size();
+                maxStack = Math.max(maxStack, stackSize);
+            }
+        }
+
+        /**
+         * Emit an instruction without operands.
+         *
+         * @param opcode the opcode
+         * @param pops   the number of stack entries it consumes
+         * @param push   the type it pushes, or {@code null}
+         */
+        void op(int opcode, int pops, VType push) {
+            if (!reachable) {
+                return;
+            }
+            code.putByte(opcode);
+            pop(pops);
+            push(push);
+            if (opcode == DRETURN || opcode == RETURN || opcode == ARETURN || opcode == ATHROW) {
+                reachable = false;
+            }
+        }
+
+        /**
+         * Duplicate the top stack entry, which has to be a double or long for {@link #DUP2}.
+         */
+        void dup(int opcode) {
+            if (!reachable) {
+                return;
+            }
+            VType top = stack.get(stack.size() - 1);
+            if ((opcode == DUP2) != (top.size() == 2)) {
+                throw new IllegalStateException("Cannot duplicate " + top + " with " + opcode);
+            }
+            code.putByte(opcode);
+            push(top);
+        }
+
+        void intConstant(int value) {
+            if (!reachable) {
+                return;
+            }
+            if (value >= -1 && value <= 5) {
+                code.putByte(ICONST_0 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                code.putByte(BIPUSH).putByte(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                code.putByte(SIPUSH).putShort(value);
+            } else {
+                throw new IllegalArgumentException("Integer constant out of range: " + value);
+            }
+            push(VType.INT);
+        }
+
+        void doubleConstant(double value) {
+            if (!reachable) {
+                return;
+            }
+            if (Double.doubleToRawLongBits(value) == 0L) {
+                code.putByte(DCONST_0);
+            } else if (value == 1.0) {
+                code.putByte(DCONST_1);
+            } else {
+                code.putByte(LDC2_W).putShort(ClassFileBuilder.this.doubleConstant(value));
+            }
+            push(VType.DOUBLE);
+        }
+
+        /**
+         * Load a string or class constant.
+         */
+        void constant(int poolIndex, VType type) {
+            if (!reachable) {
+                return;
+            }
+            if (poolIndex <= 0xFF) {
+                code.putByte(LDC).putByte(poolIndex);
+            } else {
+                code.putByte(LDC_W).putShort(poolIndex);
+            }
+            push(type);
+        }
+
+        void load(int opcode, int index) {
+            if (!reachable) {
+                return;
+            }
+            localInsn(opcode, index);
+            push(switch (opcode) {
+                case ILOAD -> VType.INT;
+                case DLOAD -> VType.DOUBLE;
+                default -> localType(index);
+            });
+        }
+
+        void store(int opcode, int index) {
+            if (!reachable) {
+                return;
+            }
+            localInsn(opcode, index);
+            pop(1);
+        }
+
+        void increment(int index, int amount) {
+            if (!reachable) {
+                return;
+            }
+            if (index <= 0xFF && amount >= Byte.MIN_VALUE && amount <= Byte.MAX_VALUE) {
+                code.putByte(IINC).putByte(index).putByte(amount);
+            } else {
+                code.putByte(WIDE).putByte(IINC).putShort(index).putShort(amount);
+            }
+        }
+
+        private void localInsn(int opcode, int index) {
+            if (index <= 0xFF) {
+                code.putByte(opcode).putByte(index);
+            } else {
+                code.putByte(WIDE).putByte(opcode).putShort(index);
+            }
+        }
+
+        private VType localType(int index) {
+            int slot = 0;
+            for (VType local : locals) {
+                if (slot == index) {
+                    return local;
+                }
+                slot += local.size();
+            }
+            throw new IllegalArgumentException("No local at " + index);
+        }
+
+        void field(int opcode, String owner, String name, String descriptor) {
+            if (!reachable) {
+                return;
+            }
+            code.putByte(opcode).putShort(fieldRef(owner, name, descriptor));
+            VType type = VType.fromDescriptor(descriptor);
+            switch (opcode) {
+                case GETSTATIC -> push(type);
+                case PUTSTATIC -> pop(1);
+                case GETFIELD -> {
+                    pop(1);
+                    push(type);
+                }
+                case PUTFIELD -> pop(2);
+                default -> throw new IllegalArgumentException("Not a field instruction: " + opcode);
+            }
+        }
+
+        void invoke(int opcode, String owner, String name, String descriptor) {
+            if (!reachable) {
+                return;
+            }
+            boolean isInterface = opcode == INVOKEINTERFACE;
+            code.putByte(opcode).putShort(methodRef(owner, name, descriptor, isInterface));
+            int argumentSlots = 0;
+            int arguments = 0;
+            int i = 1;
+            while (descriptor.charAt(i) != ')') {
+                char c = descriptor.charAt(i);
+                int start = i;
+                while (c == '[') {
+                    c = descriptor.charAt(++i);
+                }
+                if (c == 'L') {
+                    i = descriptor.indexOf(';', i);
+                }
+                i++;
+                boolean array = descriptor.charAt(start) == '[';
+                argumentSlots += !array && (c == 'D' || c == 'J') ? 2 : 1;
+                arguments++;
+            }
+            if (opcode != INVOKESTATIC) {
+                arguments++;
+                argumentSlots++;
+            }
+            if (isInterface) {
+                code.putByte(argumentSlots).putByte(0);
+            }
+            pop(arguments);
+            push(VType.fromDescriptor(descriptor.substring(i + 1)));
+        }
+
+        void checkCast(String internalName) {
+            if (!reachable) {
+                return;
+            }
+            code.putByte(CHECKCAST).putShort(classRef(internalName));
+            pop(1);
+            push(VType.object(internalName));
+        }
+
+        /**
+         * Emit a jump, {@link #GOTO} or a conditional jump consuming an int.
+         */
+        void jump(int opcode, Label target) {
+            if (!reachable) {
+                return;
+            }
+            if (opcode != GOTO) {
+                pop(1);
+            }
+            if (target.stack == null) {
+                target.stack = List.copyOf(stack);
+            } else if (!target.stack.equals(stack)) {
+                throw new IllegalStateException("Inconsistent stack at jump: " + stack + " and " + target.stack);
+            }
+            target.jumps.add(code.size());
+            code.putByte(opcode).putShort(0);
+            if (!labels.contains(target)) {
+                labels.add(target);
+            }
+            if (opcode == GOTO) {
+                reachable = false;
+            }
+        }
+
+        void bind(Label label) {
+            if (label.position != -1) {
+                throw new IllegalStateException("Label bound twice");
+            }
+            if (label.stack == null) {
+                label.stack = List.copyOf(stack);
+            } else if (reachable && !label.stack.equals(stack)) {
+                throw new IllegalStateException("Inconsistent stack at label: " + stack + " and " + label.stack);
+            }
+            label.position = code.size();
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+            stack.clear();
+            stack.addAll(label.stack);
+            stackSize = stack.stream().mapToInt(VType::size).sum();
+            reachable = true;
+            int last = frameOffsets.size() - 1;
+            if (last >= 0 && frameOffsets.get(last) == label.position) {
+                return;
+            }
+            frameOffsets.add(label.position);
+            frameStacks.add(label.stack);
+        }
+
+        /**
+         * Resolve the jumps and add the method to the class.
+         */
+        void finish() {
+            if (reachable) {
+                throw new IllegalStateException("Method " + name + " does not end with a return");
+            }
+            byte[] bytes = code.toByteArray();
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalStateException("Method " + name + " is too large");
+            }
+            for (Label label : labels) {
+                if (label.position == -1) {
+                    throw new IllegalStateException("Unbound label in " + name);
+                }
+                for (int jump : label.jumps) {
+                    int offset = label.position - jump;
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new IllegalStateException("Jump too far in " + name);
+                    }
+                    bytes[jump + 1] = (byte) (offset >> 8);
+                    bytes[jump + 2] = (byte) offset;
+                }
+            }
+            int lastFrame = frameOffsets.isEmpty() ? -1 : frameOffsets.get(frameOffsets.size() - 1);
+            if (lastFrame >= bytes.length) {
+                throw new IllegalStateException("Frame after the end of " + name);
+            }
+
+            ByteVector attributes = new ByteVector();
+            int attributeCount = 0;
+            if (!frameOffsets.isEmpty()) {
+                ByteVector frames = new ByteVector().putShort(frameOffsets.size());
+                int previous = -1;
+                for (int i = 0; i < frameOffsets.size(); i++) {
+                    int offset = frameOffsets.get(i);
+                    frames.putByte(255).putShort(offset - previous - 1);
+                    previous = offset;
+                    frames.putShort(locals.size());
+                    locals.forEach(type -> writeType(frames, type));
+                    List<VType> frameStack = frameStacks.get(i);
+                    frames.putShort(frameStack.size());
+                    frameStack.forEach(type -> writeType(frames, type));
+                }
+                byte[] frameBytes = frames.toByteArray();
+                attributes.putShort(utf8("StackMapTable")).putInt(frameBytes.length).putBytes(frameBytes);
+                attributeCount++;
+            }
+            byte[] attributeBytes = attributes.toByteArray();
+
+            ByteVector method = new ByteVector()
+                    .putShort(access)
+                    .putShort(utf8(name))
+                    .putShort(utf8(descriptor))
+                    .putShort(1)
+                    .putShort(utf8("Code"))
+                    .putInt(12 + bytes.length + attributeBytes.length)
+                    .putShort(maxStack)
+                    .putShort(maxLocals)
+                    .putInt(bytes.length)
+                    .putBytes(bytes)
+                    .putShort(0)
+                    .putShort(attributeCount)
+                    .putBytes(attributeBytes);
+            methods.add(method.toByteArray());
+        }
+
+        private void writeType(ByteVector out, VType type) {
+            out.putByte(type.tag());
+            if (type.className() != null) {
+                out.putShort(classRef(type.className()));
+            }
+        }
+
+    }
+
+    /**
+     * A growable big-endian byte array.
+     */
+    private static final class ByteVector {
+
+        private byte[] data = new byte[64];
+        private int size;
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        ByteVector putByte(int value) {
+            ensure(1);
+            data[size++] = (byte) value;
+            return this;
+        }
+
+        ByteVector putShort(int value) {
+            ensure(2);
+            data[size++] = (byte) (value >>> 8);
+            data[size++] = (byte) value;
+            return this;
+        }
+
+        ByteVector putInt(int value) {
+            return putShort(value >>> 16).putShort(value);
+        }
+
+        ByteVector putLong(long value) {
+            return putInt((int) (value >>> 32)).putInt((int) value);
+        }
+
+        ByteVector putBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+            return this;
+        }
+
+        /**
+         * Write a string in the modified UTF-8 of class files, prefixed by its length.
+         */
+        ByteVector putUtf8(String value) {
+            ByteVector encoded = new ByteVector();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x01 && c <= 0x7F) {
+                    encoded.putByte(c);
+                } else if (c <= 0x7FF) {
+                    encoded.putByte(0xC0 | (c >> 6)).putByte(0x80 | (c & 0x3F));
+                } else {
+                    encoded.putByte(0xE0 | (c >> 12)).putByte(0x80 | ((c >> 6) & 0x3F)).putByte(0x80 | (c & 0x3F));
+                }
+            }
+            if (encoded.size > 0xFFFF) {
+                throw new IllegalArgumentException("String too long for the constant pool");
+            }
+            return putShort(encoded.size).putBytes(encoded.toByteArray());
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+    }
+
+}
@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.regions;
 
 import com.fastasyncworldedit.core.math.BlockVectorSet;
+import com.fastasyncworldedit.core.regions.ChunkKeys;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
@@ -192,6 +193,13 @@ public Set<BlockVector2> getChunks() {
         return chunks;
     }
 
+    //FAWE start
+    @Override
+    public long[] getChunkKeys() {
+        return ChunkKeys.of(this, this::containsChunk);
+    }
+    //FAWE end
+
     @Override
     public Set<BlockVector3> getChunkCubes() {
         final Set<BlockVector3> chunks = new BlockVectorSet();
@@ -199,21 +207,17 @@ public Set<BlockVector3> getChunkCubes() {
         final BlockVector3 min = getMinimumPoint();
         final BlockVector3 max = getMaximumPoint();
 
-        for (int x = min.x(); x <= max.x(); ++x) {
-            for (int y = min.y(); y <= max.y(); ++y) {
-                for (int z = min.z(); z <= max.z(); ++z) {
-                    if (!contains(BlockVector3.at(x, y, z))) {
-                        continue;
+        //FAWE start - rasterize per section instead of checking every block of the bounding box
+        for (int x = min.x() >> ChunkStore.CHUNK_SHIFTS; x <= max.x() >> ChunkStore.CHUNK_SHIFTS; ++x) {
+            for (int y = min.y() >> ChunkStore.CHUNK_SHIFTS; y <= max.y() >> ChunkStore.CHUNK_SHIFTS; ++y) {
+                for (int z = min.z() >> ChunkStore.CHUNK_SHIFTS; z <= max.z() >> ChunkStore.CHUNK_SHIFTS; ++z) {
+                    if (!getSectionMask(x, z, y).isEmpty()) {
+                        chunks.add(BlockVector3.at(x, y, z));
                     }
-
-                    chunks.add(BlockVector3.at(
-                            x >> ChunkStore.CHUNK_SHIFTS,
-                            y >> ChunkStore.CHUNK_SHIFTS,
-                            z >> ChunkStore.CHUNK_SHIFTS
-                    ));
                 }
             }
         }
+        //FAWE end
 
         return chunks;
     }
@@ -19,6 +19,7 @@
 
 package com.sk89q.worldedit.regions;
 
+import com.fastasyncworldedit.core.regions.SectionMask;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldedit.regions.polyhedron.Edge;
@@ -334,5 +335,22 @@ public AbstractRegion clone() {
     public boolean containsEntireCuboid(int bx, int tx, int by, int ty, int bz, int tz) {
         return false;
     }
+
+    @Override
+    public SectionMask getSectionMask(int chunkX, int chunkZ, int layer) {
+        if (!isDefined() || !SectionMask.intersects(this, chunkX, chunkZ, layer)) {
+            return SectionMask.EMPTY;
+        }
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        // The region is convex, so it contains the section if it contains all of its corners
+        for (int corner = 0; corner < 8; corner++) {
+            if (!contains(bx + (corner & 1) * 15, by + (corner >> 1 & 1) * 15, bz + (corner >> 2) * 15)) {
+                return SectionMask.rasterize(this, chunkX, chunkZ, layer);
+            }
+        }
+        return SectionMask.FULL;
+    }
     //FAWE end
 }
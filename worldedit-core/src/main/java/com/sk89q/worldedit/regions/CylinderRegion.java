@@ -25,6 +25,7 @@
 import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.regions.SectionMask;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -424,5 +425,25 @@ public void filter(
         }
         super.filter(chunk, filter, block, get, set, full);
     }
+
+    @Override
+    public SectionMask getSectionMask(int chunkX, int chunkZ, int layer) {
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        if (by + 15 < minY || by > maxY) {
+            return SectionMask.EMPTY;
+        }
+        // Containment only shrinks with the distance to the center along each horizontal axis
+        int cx = center.x();
+        int cz = center.z();
+        if (!contains(Math.max(bx, Math.min(bx + 15, cx)), Math.max(bz, Math.min(bz + 15, cz)))) {
+            return SectionMask.EMPTY;
+        }
+        if (by >= minY && by + 15 <= maxY && contains(cx - bx > 7 ? bx : bx + 15, cz - bz > 7 ? bz : bz + 15)) {
+            return SectionMask.FULL;
+        }
+        return SectionMask.rasterizeCentered(this, chunkX, chunkZ, layer, cx);
+    }
     //FAWE end
 }
@@ -26,6 +26,8 @@
 import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.regions.ChunkKeys;
+import com.fastasyncworldedit.core.regions.SectionMask;
 import com.fastasyncworldedit.core.util.MathMan;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -286,6 +288,40 @@ public boolean contains(int x, int z) {
         double czd = cz2 * inverseRadiusSqr.z();
         return cxd + czd <= 1;
     }
+
+    @Override
+    public SectionMask getSectionMask(int chunkX, int chunkZ, int layer) {
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        // Containment only shrinks with the distance to the center along each axis, so the blocks of the section
+        // closest to and furthest from the center tell if it is entirely outside or inside
+        if (!contains(nearest(center.x(), bx), nearest(center.y(), by), nearest(center.z(), bz))) {
+            return SectionMask.EMPTY;
+        }
+        if (contains(furthest(center.x(), bx), furthest(center.y(), by), furthest(center.z(), bz))) {
+            return SectionMask.FULL;
+        }
+        return SectionMask.rasterizeCentered(this, chunkX, chunkZ, layer, center.x());
+    }
+
+    @Override
+    public long[] getChunkKeys() {
+        // The column of a chunk closest to the center is the one most likely to be contained
+        return ChunkKeys.of(this, (chunkX, chunkZ) -> contains(
+                nearest(center.x(), chunkX << 4),
+                center.y(),
+                nearest(center.z(), chunkZ << 4)
+        ));
+    }
+
+    private static int nearest(int center, int min) {
+        return Math.max(min, Math.min(min + 15, center));
+    }
+
+    private static int furthest(int center, int min) {
+        return center - min > 7 ? min : min + 15;
+    }
     //FAWE end
 
     /**
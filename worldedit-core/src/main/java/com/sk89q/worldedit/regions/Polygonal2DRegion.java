@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.regions;
 
 import com.fastasyncworldedit.core.configuration.Caption;
+import com.fastasyncworldedit.core.regions.SectionMask;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.iterator.FlatRegion3DIterator;
@@ -530,5 +531,31 @@ public boolean containsEntireCuboid(int bx, int tx, int by, int ty, int bz, int
         }
         return true;
     }
+
+    @Override
+    public SectionMask getSectionMask(int chunkX, int chunkZ, int layer) {
+        int by = layer << 4;
+        if (points.size() < 3 || by + 15 < minY || by > maxY || !SectionMask.intersects(this, chunkX, chunkZ, layer)) {
+            return SectionMask.EMPTY;
+        }
+        // The region is a prism, so every layer of the section within its height has the same columns
+        int bx = chunkX << 4;
+        int bz = chunkZ << 4;
+        char[] columns = new char[16];
+        for (int z = 0; z < 16; z++) {
+            int row = 0;
+            for (int x = 0; x < 16; x++) {
+                if (contains(bx + x, bz + z)) {
+                    row |= 1 << x;
+                }
+            }
+            columns[z] = (char) row;
+        }
+        char[] rows = new char[256];
+        for (int y = Math.max(by, minY); y <= Math.min(by + 15, maxY); y++) {
+            System.arraycopy(columns, 0, rows, (y & 15) << 4, 16);
+        }
+        return SectionMask.of(rows);
+    }
     //FAWE end
 }
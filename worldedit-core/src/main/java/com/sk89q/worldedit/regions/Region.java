@@ -24,11 +24,14 @@
 import com.fastasyncworldedit.core.extent.filter.block.ChunkFilterBlock;
 import com.fastasyncworldedit.core.extent.processor.ProcessorScope;
 import com.fastasyncworldedit.core.limit.FaweLimit;
+import com.fastasyncworldedit.core.queue.BlockCountingFilter;
 import com.fastasyncworldedit.core.queue.Filter;
 import com.fastasyncworldedit.core.queue.IBatchProcessor;
 import com.fastasyncworldedit.core.queue.IChunk;
 import com.fastasyncworldedit.core.queue.IChunkGet;
 import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.fastasyncworldedit.core.regions.ChunkKeys;
+import com.fastasyncworldedit.core.regions.SectionMask;
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.extension.platform.Capability;
 import com.sk89q.worldedit.extent.Extent;
@@ -273,8 +276,16 @@ default void filter(
             if (!full && !get.hasSection(layer)) {
                 return;
             }
+            SectionMask mask = getSectionMask(chunk.getX(), chunk.getZ(), layer);
+            if (mask.isEmpty()) {
+                continue;
+            }
+            if (mask.isFull()) {
+                filter(chunk, filter, block, get, set, layer, full);
+                continue;
+            }
             block = block.initLayer(get, set, layer);
-            block.filter(filter, this);
+            block.filter(filter, mask);
         }
     }
 
@@ -324,6 +335,10 @@ default void filter(
         if (!full && !get.hasSection(layer)) {
             return;
         }
+        if (filter instanceof BlockCountingFilter counter) {
+            get.countBlocks(layer, counter);
+            return;
+        }
         block = block.initLayer(get, set, layer);
         block.filter(filter);
     }
@@ -370,6 +385,40 @@ default void filter(
         block.filter(filter, yStart, yEnd);
     }
 
+    /**
+     * Rasterize the region within a chunk section, telling if the section is entirely inside, entirely outside or
+     * partially inside the region, and which of its blocks are inside in the latter case. By default, sections outside
+     * the bounding box are empty, sections for which {@link #containsEntireCuboid} holds are full and only the others
+     * check every block. Regions which can tell more cheaply should override this.
+     *
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     * @param layer  the layer of the section
+     * @return the blocks of the section inside the region
+     */
+    default SectionMask getSectionMask(int chunkX, int chunkZ, int layer) {
+        if (!SectionMask.intersects(this, chunkX, chunkZ, layer)) {
+            return SectionMask.EMPTY;
+        }
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        if (containsEntireCuboid(bx, bx + 15, by, by + 15, bz, bz + 15)) {
+            return SectionMask.FULL;
+        }
+        return SectionMask.rasterize(this, chunkX, chunkZ, layer);
+    }
+
+    /**
+     * Get the chunks of {@link #getChunks()} as keys of {@link ChunkKeys}, ordered along a Z-order curve. Regions
+     * should override this to list their chunks without creating a vector for each of them.
+     *
+     * @return the keys of the chunks
+     */
+    default long[] getChunkKeys() {
+        return ChunkKeys.of(getChunks());
+    }
+
     default boolean containsEntireCuboid(int bx, int tx, int by, int ty, int bz, int tz) {
         return contains(bx, by, bz)
                 && contains(bx, by, tz)
@@ -412,25 +461,30 @@ default IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set) {
                 if (!set.hasSection(layer)) {
                     continue;
                 }
-                int by = layer << 4;
-                int ty = by + 15;
-                if (!containsEntireCuboid(bx, tx, by, ty, bz, tz)) {
-                    processExtra = true;
-                    char[] arr = set.loadIfPresent(layer);
-                    if (arr == null) {
-                        continue;
-                    }
-                    for (int y = 0, index = 0; y < 16; y++) {
-                        for (int z = 0; z < 16; z++) {
-                            for (int x = 0; x < 16; x++, index++) {
-                                if (arr[index] != BlockTypesCache.ReservedIDs.__RESERVED__ && !contains(bx + x, by + y, bz + z)) {
-                                    arr[index] = BlockTypesCache.ReservedIDs.__RESERVED__;
-                                }
+                SectionMask mask = getSectionMask(chunk.getX(), chunk.getZ(), layer);
+                if (mask.isFull()) {
+                    continue;
+                }
+                processExtra = true;
+                if (mask.isEmpty()) {
+                    set.setBlocks(layer, FaweCache.INSTANCE.EMPTY_CHAR_4096);
+                    continue;
+                }
+                char[] arr = set.loadIfPresent(layer);
+                if (arr == null) {
+                    continue;
+                }
+                for (int y = 0, index = 0; y < 16; y++) {
+                    for (int z = 0; z < 16; z++, index += 16) {
+                        int row = mask.getRow(y, z);
+                        for (int x = 0; x < 16; x++) {
+                            if ((row >> x & 1) == 0) {
+                                arr[index + x] = BlockTypesCache.ReservedIDs.__RESERVED__;
                             }
                         }
                     }
-                    set.setBlocks(layer, arr);
                 }
+                set.setBlocks(layer, arr);
             }
             if (processExtra) {
                 BlockVector3 chunkPos = chunk.getChunkBlockCoord().withY(0);
@@ -465,9 +519,11 @@ default IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set, boolean
             final int minLayer = Math.max(getMinimumY(), chunk.getMinY()) >> 4;
             final int maxLayer = Math.min(getMaximumY(), chunk.getMaxY()) >> 4;
             for (int layer = minLayer; layer <= maxLayer; layer++) {
-                int by = layer << 4;
-                int ty = by + 15;
-                if (containsEntireCuboid(bx, tx, by, ty, bz, tz)) {
+                SectionMask mask = getSectionMask(chunk.getX(), chunk.getZ(), layer);
+                if (mask.isEmpty()) {
+                    continue;
+                }
+                if (mask.isFull()) {
                     set.setBlocks(layer, FaweCache.INSTANCE.EMPTY_CHAR_4096);
                     processExtra = true;
                     continue;
@@ -475,8 +531,9 @@ default IChunkSet processSet(IChunk chunk, IChunkGet get, IChunkSet set, boolean
                 char[] arr = set.load(layer);
                 for (int y = 0, index = 0; y < 16; y++) {
                     for (int z = 0; z < 16; z++) {
+                        int row = mask.getRow(y, z);
                         for (int x = 0; x < 16; x++, index++) {
-                            if (arr[index] != BlockTypesCache.ReservedIDs.__RESERVED__ && contains(x, y, z)) {
+                            if (arr[index] != BlockTypesCache.ReservedIDs.__RESERVED__ && (row >> x & 1) != 0) {
                                 arr[index] = BlockTypesCache.ReservedIDs.__RESERVED__;
                                 processExtra = true;
                             }
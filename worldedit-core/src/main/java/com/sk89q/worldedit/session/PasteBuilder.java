@@ -19,10 +19,16 @@
 
 package com.sk89q.worldedit.session;
 
+import com.fastasyncworldedit.core.configuration.Caption;
+import com.fastasyncworldedit.core.extent.clipboard.LinearClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.WorldCopyClipboard;
+import com.fastasyncworldedit.core.extent.filter.ClipboardPasteFilter;
 import com.fastasyncworldedit.core.math.transform.MutatingOperationTransformHolder;
 import com.fastasyncworldedit.core.util.MaskTraverser;
+import com.google.common.collect.ImmutableList;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
 import com.sk89q.worldedit.function.RegionFunction;
@@ -32,8 +38,14 @@
 import com.sk89q.worldedit.function.mask.Masks;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.formatting.text.Component;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+
+import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -143,12 +155,20 @@ public PasteBuilder filter(RegionFunction function) {
      */
     public Operation build() {
         //FAWE start
+        if (clipboard instanceof WorldCopyClipboard worldCopy) {
+            // Keep the contents of the clipboard if the paste changes them
+            worldCopy.trackChanges(targetExtent);
+        }
         Extent extent = clipboard;
         Transform transform = this.transform;
         if (!transform.isIdentity()) {
             transform = MutatingOperationTransformHolder.transform(transform, true);
             extent = new BlockTransformExtent(extent, transform);
         }
+        Operation sectionCopy = buildSectionCopy(transform);
+        if (sectionCopy != null) {
+            return sectionCopy;
+        }
         //FAWE end
         ForwardExtentCopy copy = new ForwardExtentCopy(extent, clipboard.getRegion(), clipboard.getOrigin(), targetExtent, to);
         copy.setTransform(transform);
@@ -184,4 +204,57 @@ public Operation build() {
         return copy;
     }
 
+    //FAWE start
+    /**
+     * Build an operation copying the rows of the clipboard into the sections of the chunks pasted into, if the paste
+     * consists of nothing else.
+     */
+    @Nullable
+    private Operation buildSectionCopy(Transform transform) {
+        if (!(targetExtent instanceof EditSession editSession) || canApply != null || sourceMask != Masks.alwaysTrue()
+                || editSession.getMask() != null || editSession.getSourceMask() != null
+                || !ClipboardPasteFilter.supports(transform)) {
+            return null;
+        }
+        if (copyEntities && !clipboard.getEntities().isEmpty()) {
+            return null;
+        }
+        LinearClipboard linear;
+        if (clipboard instanceof BlockArrayClipboard blockArray && blockArray.getParent() instanceof LinearClipboard parent) {
+            linear = parent;
+        } else if (clipboard instanceof LinearClipboard) {
+            linear = (LinearClipboard) clipboard;
+        } else {
+            return null;
+        }
+        // Blocks outside of other regions are not pasted
+        if (!(clipboard.getRegion() instanceof CuboidRegion)) {
+            return null;
+        }
+        BlockVector3 from = clipboard.getOrigin().subtract(clipboard.getMinimumPoint());
+        ClipboardPasteFilter filter = new ClipboardPasteFilter(linear, from, to, transform, !ignoreAirBlocks,
+                copyBiomes && clipboard.hasBiomes()
+        );
+        return new Operation() {
+            @Override
+            public Operation resume(RunContext run) {
+                editSession.apply(filter.getRegion(), filter, true);
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public Iterable<Component> getStatusMessages() {
+                return ImmutableList.of(Caption.of(
+                        "worldedit.operation.affected.block",
+                        TextComponent.of(filter.getAffected())
+                ));
+            }
+        };
+    }
+    //FAWE end
+
 }
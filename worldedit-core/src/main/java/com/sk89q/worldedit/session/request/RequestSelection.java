@@ -122,6 +122,13 @@ public Set<BlockVector2> getChunks() {
         return getRegion().getChunks();
     }
 
+    //FAWE start
+    @Override
+    public long[] getChunkKeys() {
+        return getRegion().getChunkKeys();
+    }
+    //FAWE end
+
     @Override
     public Set<BlockVector3> getChunkCubes() {
         return getRegion().getChunkCubes();
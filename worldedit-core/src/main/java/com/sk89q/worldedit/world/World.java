@@ -430,6 +430,17 @@ default String id() {
      */
     void refreshChunk(final int chunkX, final int chunkZ);
 
+    /**
+     * {@return if the chunk is loaded} Edits use this to work on loaded chunks before others, so implementations
+     * which cannot tell should return {@code true}.
+     *
+     * @param chunkX the x-coordinate of the chunk
+     * @param chunkZ the z-coordinate of the chunk
+     */
+    default boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return true;
+    }
+
     @Override
     IChunkGet get(int x, int z);
 
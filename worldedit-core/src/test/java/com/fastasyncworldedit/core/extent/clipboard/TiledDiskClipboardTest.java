@@ -0,0 +1,240 @@
+package com.fastasyncworldedit.core.extent.clipboard;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that the blocks of a {@link TiledDiskClipboard} are read back unchanged after it is closed, whether its tiles
+ * are compacted or not, and that tiles stored beyond the first 2 GiB of the file can be mapped.
+ */
+@Isolated
+class TiledDiskClipboardTest {
+
+    // the size of the header and of an index entry of a tile
+    private static final int HEADER_SIZE = 64;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    // the position of the offset of the tile entities behind the tiles in the header
+    private static final int FOOTER_OFFSET_POSITION = 50;
+
+    private final char[] ordinal = new char[1];
+    @SuppressWarnings("rawtypes")
+    private BlockStateHolder block;
+    private int compressionLevel;
+    private File folder;
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        block = mock();
+        when(block.getOrdinalChar()).thenAnswer(invocation -> ordinal[0]);
+        compressionLevel = Settings.settings().CLIPBOARD.COMPRESSION_LEVEL;
+        folder = Files.createTempDirectory("fawe-clipboard").toFile();
+        file = new File(folder, "clipboard.bd");
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.settings().CLIPBOARD.COMPRESSION_LEVEL = compressionLevel;
+        // mapped files cannot be deleted on every platform until they are unmapped, so this is best effort
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @ParameterizedTest(name = "compression level = {0}")
+    @ValueSource(ints = {0, 1})
+    void testSaveAndReload(int level) {
+        Settings.settings().CLIPBOARD.COMPRESSION_LEVEL = level;
+        // 3 by 3 by 3 tiles, the last of each axis partially used
+        BlockVector3 dimensions = BlockVector3.at(40, 35, 47);
+        TiledDiskClipboard clipboard = new TiledDiskClipboard(dimensions, file);
+        char[] expected = fill(clipboard);
+        clipboard.close();
+        assertTrue(TiledDiskClipboard.isTiledFile(file));
+
+        TiledDiskClipboard loaded = TiledDiskClipboard.loadFromFile(file);
+        try {
+            assertEquals(dimensions, loaded.getDimensions());
+            assertArrayEquals(expected, ordinals(loaded));
+            // change a block of every tile, expanding compacted tiles again
+            for (int y = 0; y < dimensions.y(); y += 16) {
+                for (int z = 0; z < dimensions.z(); z += 16) {
+                    for (int x = 0; x < dimensions.x(); x += 16) {
+                        set(loaded, x + 3, y + 2, z + 1, 4);
+                        expected[index(dimensions, x + 3, y + 2, z + 1)] = 4;
+                    }
+                }
+            }
+        } finally {
+            loaded.close();
+        }
+
+        TiledDiskClipboard reloaded = TiledDiskClipboard.loadFromFile(file);
+        try {
+            assertArrayEquals(expected, ordinals(reloaded));
+        } finally {
+            reloaded.close();
+        }
+    }
+
+    @Test
+    void testCompactionStoresUniformTilesInIndex() {
+        Settings.settings().CLIPBOARD.COMPRESSION_LEVEL = 1;
+        // 2 by 2 by 2 whole tiles
+        BlockVector3 dimensions = BlockVector3.at(32, 32, 32);
+        TiledDiskClipboard clipboard = new TiledDiskClipboard(dimensions, file);
+        for (int y = 0; y < 32; y++) {
+            for (int z = 0; z < 32; z++) {
+                for (int x = 0; x < 32; x++) {
+                    // a different block in every tile
+                    set(clipboard, x, y, z, 10 + (x >> 4) + (z >> 4) * 2 + (y >> 4) * 4);
+                }
+            }
+        }
+        clipboard.close();
+
+        // no tile data is left behind the index
+        assertEquals(HEADER_SIZE + 8 * INDEX_ENTRY_SIZE, file.length());
+        TiledDiskClipboard loaded = TiledDiskClipboard.loadFromFile(file);
+        try {
+            for (int y = 0; y < 32; y++) {
+                for (int z = 0; z < 32; z++) {
+                    for (int x = 0; x < 32; x++) {
+                        assertEquals(10 + (x >> 4) + (z >> 4) * 2 + (y >> 4) * 4, loaded.getOrdinal(x, y, z));
+                    }
+                }
+            }
+        } finally {
+            loaded.close();
+        }
+    }
+
+    @Test
+    void testCompactionCompressesTiles() {
+        BlockVector3 dimensions = BlockVector3.at(32, 32, 32);
+        long[] lengths = new long[2];
+        for (int level = 0; level <= 1; level++) {
+            Settings.settings().CLIPBOARD.COMPRESSION_LEVEL = level;
+            TiledDiskClipboard clipboard = new TiledDiskClipboard(dimensions, file);
+            for (int y = 0; y < 32; y++) {
+                for (int z = 0; z < 32; z++) {
+                    for (int x = 0; x < 32; x++) {
+                        set(clipboard, x, y, z, 10 + (x + y + z) % 5);
+                    }
+                }
+            }
+            clipboard.close();
+            lengths[level] = file.length();
+        }
+        assertTrue(lengths[1] < lengths[0] / 4, "compressed to " + lengths[1] + " of " + lengths[0] + " bytes");
+    }
+
+    @Test
+    void testMapsTilesBeyondTwoGibibytes() throws IOException {
+        Settings.settings().CLIPBOARD.COMPRESSION_LEVEL = 0;
+        BlockVector3 dimensions = BlockVector3.at(32, 16, 16);
+        TiledDiskClipboard clipboard = new TiledDiskClipboard(dimensions, file);
+        set(clipboard, 1, 2, 3, 7);
+        clipboard.close();
+        // as if the tiles of the clipboard took the first 3 GiB of the file, which is sparse on most file systems
+        long end = 3L << 30;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(end);
+            raf.seek(FOOTER_OFFSET_POSITION);
+            raf.writeLong(end);
+        }
+
+        TiledDiskClipboard loaded = TiledDiskClipboard.loadFromFile(file);
+        try {
+            // the second tile is expanded at the end of the data
+            set(loaded, 20, 5, 6, 8);
+            assertEquals(8, loaded.getOrdinal(20, 5, 6));
+            assertEquals(7, loaded.getOrdinal(1, 2, 3));
+        } finally {
+            loaded.close();
+        }
+        assertTrue(file.length() > end);
+
+        TiledDiskClipboard reloaded = TiledDiskClipboard.loadFromFile(file);
+        try {
+            assertEquals(8, reloaded.getOrdinal(20, 5, 6));
+            assertEquals(7, reloaded.getOrdinal(1, 2, 3));
+            assertEquals(0, reloaded.getOrdinal(21, 5, 6));
+        } finally {
+            reloaded.close();
+        }
+    }
+
+    /**
+     * Fill a clipboard with tiles of a single block, tiles which compress well and tiles of random blocks which do not.
+     *
+     * @return the ordinals set, indexed as by {@link #index(BlockVector3, int, int, int)}
+     */
+    private char[] fill(TiledDiskClipboard clipboard) {
+        BlockVector3 dimensions = clipboard.getDimensions();
+        char[] ordinals = new char[dimensions.x() * dimensions.y() * dimensions.z()];
+        Random random = new Random(0);
+        for (int y = 0; y < dimensions.y(); y++) {
+            for (int z = 0; z < dimensions.z(); z++) {
+                for (int x = 0; x < dimensions.x(); x++) {
+                    int tile = (x >> 4) + (y >> 4) + (z >> 4);
+                    int ordinal = switch (tile % 3) {
+                        case 0 -> 5 + tile;
+                        case 1 -> 10 + (x + z) % 4;
+                        default -> 4 + random.nextInt(60000);
+                    };
+                    set(clipboard, x, y, z, ordinal);
+                    ordinals[index(dimensions, x, y, z)] = (char) ordinal;
+                }
+            }
+        }
+        return ordinals;
+    }
+
+    private static char[] ordinals(TiledDiskClipboard clipboard) {
+        BlockVector3 dimensions = clipboard.getDimensions();
+        char[] ordinals = new char[dimensions.x() * dimensions.y() * dimensions.z()];
+        for (int y = 0; y < dimensions.y(); y++) {
+            for (int z = 0; z < dimensions.z(); z++) {
+                for (int x = 0; x < dimensions.x(); x++) {
+                    ordinals[index(dimensions, x, y, z)] = clipboard.getOrdinal(x, y, z);
+                }
+            }
+        }
+        return ordinals;
+    }
+
+    private static int index(BlockVector3 dimensions, int x, int y, int z) {
+        return x + (z + y * dimensions.z()) * dimensions.x();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void set(TiledDiskClipboard clipboard, int x, int y, int z, int ordinal) {
+        this.ordinal[0] = (char) ordinal;
+        clipboard.setBlock(x, y, z, block);
+    }
+
+}
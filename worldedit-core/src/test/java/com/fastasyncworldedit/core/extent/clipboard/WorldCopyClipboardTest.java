@@ -0,0 +1,67 @@
+package com.fastasyncworldedit.core.extent.clipboard;
+
+import com.fastasyncworldedit.core.extent.processor.EmptyBatchProcessor;
+import com.fastasyncworldedit.core.extent.processor.ExtentBatchProcessorHolder;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class WorldCopyClipboardTest {
+
+    private static final BiomeType PLAINS = new BiomeType("test:plains");
+    private static final BiomeType DESERT = new BiomeType("test:desert");
+
+    @Test
+    void testCopyOnWriteKeepsTrackedChanges() {
+        // the queue of the edit session a lazy copy is made with
+        ExtentBatchProcessorHolder queue = mock(
+                ExtentBatchProcessorHolder.class,
+                withSettings().useConstructor().defaultAnswer(CALLS_REAL_METHODS)
+        );
+        WorldCopyClipboard clipboard = WorldCopyClipboard.copyOnWrite(
+                queue,
+                new CuboidRegion(null, BlockVector3.at(0, 0, 0), BlockVector3.at(15, 15, 15), false),
+                false,
+                true
+        );
+        assertTrue(clipboard.isCopyOnWrite());
+        assertNotSame(EmptyBatchProcessor.getInstance(), queue.getProcessor());
+
+        // a change of the biomes in the region is submitted through the queue, and then applied to the world
+        BiomeType[] world = {PLAINS};
+        IChunk chunk = mock();
+        IChunkGet get = mock();
+        when(get.getMinSectionPosition()).thenReturn(-4);
+        when(get.getMaxSectionPosition()).thenReturn(19);
+        when(get.getSectionCount()).thenReturn(24);
+        when(get.tiles()).thenReturn(Map.of());
+        when(get.getBiomeType(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> world[0]);
+        IChunkSet set = mock();
+        when(set.hasBiomes(0)).thenReturn(true);
+        queue.getProcessor().processSet(chunk, get, set);
+        world[0] = DESERT;
+
+        assertSame(PLAINS, clipboard.getBiomeType(4, 4, 4));
+
+        // e.g. once a move has read every block
+        clipboard.untrackChanges(queue);
+        assertSame(EmptyBatchProcessor.getInstance(), queue.getProcessor());
+        assertSame(PLAINS, clipboard.getBiomeType(4, 4, 4), "changes kept so far should still be read");
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.fastasyncworldedit.core.extent.clipboard.io;
+
+import com.fastasyncworldedit.core.Fawe;
+import com.fastasyncworldedit.core.internal.io.VarIntStreamIterator;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that palette data large enough for the schematic readers to decode it in parallel is decoded the same as
+ * the sequential path does, without FAWE running.
+ */
+class ParallelPaletteDecoderTest {
+
+    @ParameterizedTest(name = "var-int = {0}")
+    @ValueSource(booleans = {false, true})
+    void testMatchesSequentialDecoding(boolean varInt) throws IOException {
+        assertNull(Fawe.instance(), "the decoder should fall back to the common pool");
+        // more entries than one segment holds, with var-ints of 1 to 3 bytes crossing the segment boundaries
+        Random random = new Random(42);
+        char[] values = new char[1_500_000];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < values.length; i++) {
+            int value = varInt ? random.nextInt(1 << (7 * (1 + i % 3))) & 0xFFFF : random.nextInt(128);
+            values[i] = (char) value;
+            if (varInt) {
+                while ((value & ~0x7F) != 0) {
+                    out.write(value & 0x7F | 0x80);
+                    value >>>= 7;
+                }
+            }
+            out.write(value);
+        }
+        byte[] data = out.toByteArray();
+        assertTrue(data.length >= ParallelPaletteDecoder.MIN_PARALLEL_LENGTH);
+
+        char[] parallel = new char[values.length];
+        ParallelPaletteDecoder.decode(new DataInputStream(new ByteArrayInputStream(data)), data.length, varInt,
+                (index, value) -> parallel[index] = value
+        );
+
+        // the sequential path of FastSchematicReaderV3.readPaletteData
+        char[] sequential = new char[values.length];
+        if (varInt) {
+            int i = 0;
+            for (var iter = new VarIntStreamIterator(new ByteArrayInputStream(data), data.length); iter.hasNext(); i++) {
+                sequential[i] = (char) iter.nextInt();
+            }
+        } else {
+            for (int i = 0; i < data.length; i++) {
+                sequential[i] = (char) (data[i] & 0xFF);
+            }
+        }
+        assertArrayEquals(values, sequential);
+        assertArrayEquals(sequential, parallel);
+    }
+
+}
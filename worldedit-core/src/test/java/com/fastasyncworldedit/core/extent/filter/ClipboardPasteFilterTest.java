@@ -0,0 +1,187 @@
+package com.fastasyncworldedit.core.extent.filter;
+
+import com.fastasyncworldedit.core.extent.clipboard.CPUOptimizedClipboard;
+import com.fastasyncworldedit.core.extent.clipboard.LinearClipboard;
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that {@link ClipboardPasteFilter} places every block where a per-block paste with the same transform does,
+ * i.e. at the paste position plus the transformed offset of the block from the clipboard origin.
+ * <p>
+ * Block states cannot be transformed without a platform, so the filter under test marks transformed states by an
+ * offset instead, and no state has a tile entity.
+ */
+class ClipboardPasteFilterTest {
+
+    // marks an ordinal as transformed
+    private static final char TRANSFORMED = 1000;
+    // neither side is a multiple of 16, so the paste covers both whole and partial sections
+    private static final BlockVector3 DIMENSIONS = BlockVector3.at(40, 35, 45);
+    private static final BlockVector3 FROM = BlockVector3.at(7, 2, 11);
+    private static final BlockVector3 TO = BlockVector3.at(5, 3, -7);
+
+    static Stream<Arguments> transforms() {
+        Map<String, Transform> transforms = new LinkedHashMap<>();
+        transforms.put("none", null);
+        transforms.put("rotate 90", new AffineTransform().rotateY(90));
+        transforms.put("rotate 180", new AffineTransform().rotateY(180));
+        transforms.put("rotate 270", new AffineTransform().rotateY(270));
+        transforms.put("flip x", new AffineTransform().scale(-1, 1, 1));
+        transforms.put("flip z", new AffineTransform().scale(1, 1, -1));
+        transforms.put("rotate 90 and flip x", new AffineTransform().rotateY(90).scale(-1, 1, 1));
+        transforms.put("rotate 90 and flip z", new AffineTransform().rotateY(90).scale(1, 1, -1));
+        List<Arguments> arguments = new ArrayList<>();
+        for (Map.Entry<String, Transform> entry : transforms.entrySet()) {
+            arguments.add(Arguments.of(entry.getKey(), entry.getValue(), true));
+            arguments.add(Arguments.of(entry.getKey(), entry.getValue(), false));
+        }
+        return arguments.stream();
+    }
+
+    @ParameterizedTest(name = "transform = {0}, paste air = {2}")
+    @MethodSource("transforms")
+    void testMatchesPerBlockPaste(String name, @Nullable Transform transform, boolean pasteAir) {
+        LinearClipboard clipboard = clipboard();
+        ClipboardPasteFilter filter = new ClipboardPasteFilter(clipboard, FROM, TO, transform, pasteAir, false) {
+            @Override
+            char transformed(char ordinal) {
+                return (char) (ordinal + TRANSFORMED);
+            }
+
+            @Override
+            boolean isContainer(char ordinal) {
+                return false;
+            }
+        };
+
+        Map<BlockVector3, Character> expected = pastePerBlock(clipboard, transform, pasteAir);
+        Map<BlockVector3, Character> actual = paste(filter);
+
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), filter.getAffected());
+    }
+
+    /**
+     * Create a clipboard with a different block at most positions, and air or the reserved ordinal in between.
+     */
+    private static LinearClipboard clipboard() {
+        LinearClipboard clipboard = new CPUOptimizedClipboard(new CuboidRegion(
+                BlockVector3.at(100, 60, -30),
+                BlockVector3.at(100, 60, -30).add(DIMENSIONS).subtract(BlockVector3.ONE)
+        ));
+        char[] ordinal = new char[1];
+        @SuppressWarnings("rawtypes")
+        BlockStateHolder block = mock();
+        when(block.getOrdinalChar()).thenAnswer(invocation -> ordinal[0]);
+        for (int y = 0; y < DIMENSIONS.y(); y++) {
+            for (int z = 0; z < DIMENSIONS.z(); z++) {
+                for (int x = 0; x < DIMENSIONS.x(); x++) {
+                    // 0 to 3 are the reserved ordinal and the kinds of air
+                    ordinal[0] = (char) ((x * 7 + y * 13 + z * 31) % 50);
+                    //noinspection unchecked
+                    clipboard.setBlock(x, y, z, block);
+                }
+            }
+        }
+        return clipboard;
+    }
+
+    /**
+     * Place every block of the clipboard at the paste position plus its transformed offset from the origin, as
+     * {@link com.sk89q.worldedit.function.operation.ForwardExtentCopy} does.
+     */
+    private static Map<BlockVector3, Character> pastePerBlock(
+            LinearClipboard clipboard,
+            @Nullable Transform transform,
+            boolean pasteAir
+    ) {
+        Map<BlockVector3, Character> blocks = new HashMap<>();
+        for (int y = 0; y < DIMENSIONS.y(); y++) {
+            for (int z = 0; z < DIMENSIONS.z(); z++) {
+                for (int x = 0; x < DIMENSIONS.x(); x++) {
+                    char ordinal = clipboard.getOrdinal(x, y, z);
+                    if (ordinal == 0 || ordinal <= 3 && !pasteAir) {
+                        continue;
+                    }
+                    BlockVector3 offset = BlockVector3.at(x, y, z).subtract(FROM);
+                    if (transform != null) {
+                        offset = transform.apply(offset.toVector3()).toBlockPoint();
+                        ordinal += TRANSFORMED;
+                    }
+                    blocks.put(TO.add(offset), ordinal);
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Apply the filter to every chunk of the region it pastes into, returning the blocks set to the chunks.
+     */
+    private static Map<BlockVector3, Character> paste(ClipboardPasteFilter filter) {
+        Region region = filter.getRegion();
+        // the blocks to be set of each section, by chunk x, section y and chunk z
+        Map<BlockVector3, char[]> sections = new HashMap<>();
+        for (int chunkZ = region.getMinimumPoint().z() >> 4; chunkZ <= region.getMaximumPoint().z() >> 4; chunkZ++) {
+            for (int chunkX = region.getMinimumPoint().x() >> 4; chunkX <= region.getMaximumPoint().x() >> 4; chunkX++) {
+                filter.applyChunk(chunk(chunkX, chunkZ, sections), region);
+            }
+        }
+        Map<BlockVector3, Character> blocks = new HashMap<>();
+        sections.forEach((section, ordinals) -> {
+            for (int i = 0; i < ordinals.length; i++) {
+                if (ordinals[i] != 0) {
+                    BlockVector3 position = BlockVector3.at(
+                            section.x() << 4 | i & 15,
+                            section.y() << 4 | i >> 8,
+                            section.z() << 4 | i >> 4 & 15
+                    );
+                    blocks.put(position, ordinals[i]);
+                }
+            }
+        });
+        return blocks;
+    }
+
+    private static IChunk chunk(int chunkX, int chunkZ, Map<BlockVector3, char[]> sections) {
+        IChunk chunk = mock();
+        when(chunk.getX()).thenReturn(chunkX);
+        when(chunk.getZ()).thenReturn(chunkZ);
+        when(chunk.getMinY()).thenReturn(-64);
+        when(chunk.getMaxY()).thenReturn(319);
+        when(chunk.loadSet(anyInt())).thenAnswer(invocation -> sections.computeIfAbsent(
+                BlockVector3.at(chunkX, invocation.<Integer>getArgument(0), chunkZ),
+                section -> new char[4096]
+        ));
+        doAnswer(invocation -> {
+            sections.put(BlockVector3.at(chunkX, invocation.<Integer>getArgument(0), chunkZ), invocation.getArgument(1));
+            return null;
+        }).when(chunk).setBlocks(anyInt(), any());
+        return chunk;
+    }
+
+}
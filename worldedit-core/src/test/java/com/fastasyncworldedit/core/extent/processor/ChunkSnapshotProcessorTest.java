@@ -0,0 +1,79 @@
+package com.fastasyncworldedit.core.extent.processor;
+
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.fastasyncworldedit.core.queue.IChunkSet;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChunkSnapshotProcessorTest {
+
+    @Test
+    void testKeepsSectionsFromBeforeTheFirstChange() {
+        // an overlapping move writes to its own source region, possibly flushing a chunk before all of it has been read
+        ChunkSnapshotProcessor processor = new ChunkSnapshotProcessor(
+                new CuboidRegion(null, BlockVector3.at(0, 0, 0), BlockVector3.at(31, 31, 15), false),
+                false
+        );
+        char[][] sections = sections(10);
+        IChunk chunk = chunk(0);
+        IChunkGet get = get(sections);
+
+        // the first flush changes the lowest section of the region
+        processor.processSet(chunk, get, set(0));
+        Arrays.fill(sections[4], (char) 30);
+        // the second flush changes it again, next to the section above and one outside the region
+        processor.processSet(chunk, get, set(0, 1, 2));
+        Arrays.fill(sections[4], (char) 40);
+        Arrays.fill(sections[5], (char) 40);
+        Arrays.fill(sections[6], (char) 40);
+
+        assertEquals(10, processor.getOrdinal(5, 3, 5), "should keep the section from before the first change");
+        assertEquals(10, processor.getOrdinal(15, 20, 15));
+        assertEquals(-1, processor.getOrdinal(5, 40, 5), "should not keep sections outside of the region");
+        assertEquals(-1, processor.getOrdinal(20, 3, 5), "should not keep chunks that were not changed");
+    }
+
+    private static char[][] sections(int ordinal) {
+        char[][] sections = new char[24][4096];
+        for (char[] section : sections) {
+            Arrays.fill(section, (char) ordinal);
+        }
+        return sections;
+    }
+
+    private static IChunk chunk(int chunkX) {
+        IChunk chunk = mock();
+        when(chunk.getX()).thenReturn(chunkX);
+        when(chunk.getZ()).thenReturn(0);
+        return chunk;
+    }
+
+    private static IChunkGet get(char[][] sections) {
+        IChunkGet get = mock();
+        when(get.getMinSectionPosition()).thenReturn(-4);
+        when(get.getMaxSectionPosition()).thenReturn(19);
+        when(get.getSectionCount()).thenReturn(24);
+        when(get.load(anyInt())).thenAnswer(invocation -> sections[invocation.<Integer>getArgument(0) + 4]);
+        when(get.tiles()).thenReturn(Map.of());
+        return get;
+    }
+
+    private static IChunkSet set(int... layers) {
+        IChunkSet set = mock();
+        for (int layer : layers) {
+            when(set.hasSection(layer)).thenReturn(true);
+        }
+        return set;
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.fastasyncworldedit.core.history;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.history.change.MutableFullBlockChange;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.parallel.Isolated;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that block changes written by {@link DiskStorageHistory} are read back unchanged, in both the sequential and
+ * the chunk indexed format.
+ */
+@Isolated
+class DiskStorageHistoryTest {
+
+    private static final UUID PLAYER = new UUID(0, 0);
+
+    private boolean chunkIndex;
+    private File folder;
+    private World world;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        chunkIndex = Settings.settings().HISTORY.CHUNK_INDEX;
+        folder = Files.createTempDirectory("fawe-history").toFile();
+        world = mock();
+        when(world.getMinY()).thenReturn(-64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.settings().HISTORY.CHUNK_INDEX = chunkIndex;
+        // mapped files cannot be deleted on every platform until they are unmapped, so this is best effort
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        folder.delete();
+    }
+
+    @ParameterizedTest(name = "chunk index = {0}")
+    @ValueSource(booleans = {false, true})
+    void testRoundTrip(boolean chunkIndex) throws IOException {
+        List<Change> changes = write(chunkIndex);
+
+        DiskStorageHistory history = new DiskStorageHistory(folder, world, PLAYER, 0);
+        assertEquals(chunkIndex, history.isChunkIndexed());
+        assertEquals(changes, read(history, true));
+    }
+
+    @ParameterizedTest(name = "chunk index = {0}")
+    @ValueSource(booleans = {false, true})
+    void testUndoWithinRegion(boolean chunkIndex) throws IOException {
+        List<Change> changes = write(chunkIndex);
+        // covers parts of several chunks, neither corner is aligned to a chunk
+        Region region = new CuboidRegion(null, BlockVector3.at(-20, -10, 5), BlockVector3.at(9, 100, 40), false);
+        List<Change> expected = new ArrayList<>();
+        for (Change change : changes) {
+            if (region.contains(change.x(), change.y(), change.z())) {
+                expected.add(change);
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertNotEquals(changes.size(), expected.size());
+
+        DiskStorageHistory history = new DiskStorageHistory(folder, world, PLAYER, 0);
+        history.setRegions(new Region[]{region});
+        assertEquals(expected, read(history, false));
+    }
+
+    /**
+     * Write changes to several chunks one chunk after another, as edits are recorded, returning the changes in the order
+     * they were written.
+     */
+    private List<Change> write(boolean chunkIndex) throws IOException {
+        Settings.settings().HISTORY.CHUNK_INDEX = chunkIndex;
+        DiskStorageHistory history = new DiskStorageHistory(folder, world, PLAYER, 0);
+        List<Change> changes = new ArrayList<>();
+        int id = 1;
+        // chunk -1, 0 is visited a second time, so it is stored twice
+        int[][] chunks = {{0, 0}, {-1, 0}, {-2, 2}, {1, -3}, {0, 1}, {-1, 0}};
+        for (int[] chunk : chunks) {
+            for (int y = -64; y < 320; y += 37) {
+                for (int z = 0; z < 16; z += 3) {
+                    for (int x = 0; x < 16; x += 5) {
+                        Change change = new Change((chunk[0] << 4) + x, y, (chunk[1] << 4) + z, id, id * 7 + 1);
+                        history.add(change.x(), change.y(), change.z(), change.from(), change.to());
+                        changes.add(change);
+                        id++;
+                    }
+                }
+            }
+        }
+        history.close();
+        return changes;
+    }
+
+    private static List<Change> read(DiskStorageHistory history, boolean redo) throws IOException {
+        List<Change> changes = new ArrayList<>();
+        Iterator<MutableFullBlockChange> iterator = history.getFullBlockIterator(null, 0, redo);
+        while (iterator.hasNext()) {
+            MutableFullBlockChange change = iterator.next();
+            changes.add(new Change(change.x, change.y, change.z, change.from, change.to));
+        }
+        return changes;
+    }
+
+    private record Change(int x, int y, int z, int from, int to) {
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.fastasyncworldedit.core.internal.io;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ParallelGzipOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 32 * 1024;
+
+    @ParameterizedTest(name = "threads = {0}")
+    @ValueSource(ints = {1, 4})
+    void testRoundTripWithPartialLastBlock(int threads) throws IOException {
+        // Several full blocks and a partial last one, with repetitions reaching back into the previous block
+        byte[] data = data(BLOCK_SIZE * 5 + 1234);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, threads, BLOCK_SIZE)) {
+            int split = data.length - 100;
+            out.write(data, 0, split);
+            // single bytes for the rest, crossing no block boundary
+            for (int i = split; i < data.length; i++) {
+                out.write(data[i]);
+            }
+        }
+        assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+
+    @ParameterizedTest(name = "threads = {0}")
+    @ValueSource(ints = {1, 4})
+    void testRoundTripOfExactBlocks(int threads) throws IOException {
+        byte[] data = data(BLOCK_SIZE * 3);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream out = new ParallelGzipOutputStream(compressed, threads, BLOCK_SIZE)) {
+            out.write(data);
+        }
+        assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+
+    private static byte[] data(int length) {
+        Random random = new Random(42);
+        byte[] data = new byte[length];
+        int i = 0;
+        while (i < length) {
+            int run = Math.min(length - i, 1 + random.nextInt(64));
+            if (i > 1024 && random.nextBoolean()) {
+                // copy an earlier run, so the deflater can refer back to it
+                int from = random.nextInt(i - run);
+                System.arraycopy(data, from, data, i, run);
+            } else {
+                for (int j = 0; j < run; j++) {
+                    data[i + j] = (byte) random.nextInt(16);
+                }
+            }
+            i += run;
+        }
+        return data;
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+}
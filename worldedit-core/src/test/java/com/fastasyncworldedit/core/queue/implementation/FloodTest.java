@@ -0,0 +1,224 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.queue.IChunk;
+import com.fastasyncworldedit.core.queue.IQueueExtent;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.visitor.BreadthFirstSearch;
+import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that {@link Flood} fills the same positions as a {@link RecursiveVisitor}, whether the chunks are drained by
+ * one worker or split between several.
+ */
+class FloodTest {
+
+    private static final int MIN_Y = -20;
+    private static final int MAX_Y = 20;
+
+    @ParameterizedTest(name = "workers = {0}, diagonal = {1}")
+    @CsvSource({
+            "1, false",
+            "4, false",
+            "1, true",
+            "4, true"
+    })
+    void testMatchesRecursiveVisitor(int workers, boolean diagonal) {
+        BlockVector3[] directions = diagonal ? BreadthFirstSearch.DIAGONAL_DIRECTIONS : BreadthFirstSearch.DEFAULT_DIRECTIONS;
+        // a box crossing chunk and section borders, clipped by the height limits, split by a wall at x = 8 with a
+        // hole in it and closed by a ceiling at y = 5
+        Predicate<BlockVector3> open = pos -> pos.x() >= -18 && pos.x() <= 33
+                && pos.y() >= -40 && pos.y() <= 40
+                && pos.z() >= -18 && pos.z() <= 33
+                && (pos.x() != 8 || (pos.y() == 0 && pos.z() == 17))
+                && pos.y() != 5;
+        Set<BlockVector3> seeds = Set.of(BlockVector3.at(0, 0, 0), BlockVector3.at(-1, -17, 15));
+
+        Set<BlockVector3> filled = flood(new Flood(Integer.MAX_VALUE, Integer.MAX_VALUE, directions, MIN_Y, MAX_Y),
+                seeds, open, workers);
+
+        assertEquals(visit(seeds, open, directions, Integer.MAX_VALUE, MIN_Y, MAX_Y), filled);
+        // sanity checks of the scenario itself
+        assertTrue(filled.contains(BlockVector3.at(33, MIN_Y, 33)), "fill should pass the hole in the wall");
+        assertTrue(filled.contains(BlockVector3.at(-18, 4, -18)));
+        assertFalse(filled.contains(BlockVector3.at(0, 6, 0)), "fill should not pass the ceiling");
+        assertFalse(filled.contains(BlockVector3.at(0, MIN_Y - 1, 0)), "fill should not pass the height limit");
+    }
+
+    @ParameterizedTest(name = "workers = {0}")
+    @CsvSource({"1", "4"})
+    void testDepthLimitAlongCorridor(int workers) {
+        // a single path, so the depth of every position is its distance from the seed. It leaves the seed's chunk in
+        // both directions and turns upwards through the border of two sections
+        Predicate<BlockVector3> open = pos -> pos.z() == 0
+                && (pos.y() == 15 && pos.x() >= -20 && pos.x() <= 40 || pos.x() == 40 && pos.y() >= 15);
+        Set<BlockVector3> seeds = Set.of(BlockVector3.at(0, 15, 0));
+        int maxDepth = 50;
+
+        Set<BlockVector3> filled = flood(new Flood(Integer.MAX_VALUE, maxDepth, BreadthFirstSearch.DEFAULT_DIRECTIONS,
+                -64, 319), seeds, open, workers);
+
+        assertEquals(visit(seeds, open, BreadthFirstSearch.DEFAULT_DIRECTIONS, maxDepth, -64, 319), filled);
+        // 20 to the left, the seed, 40 to the right and the remaining 10 upwards
+        assertEquals(71, filled.size());
+        assertTrue(filled.contains(BlockVector3.at(40, 25, 0)));
+        assertFalse(filled.contains(BlockVector3.at(40, 26, 0)));
+    }
+
+    @ParameterizedTest(name = "workers = {0}")
+    @CsvSource({"1", "4"})
+    void testDepthLimitInOpenArea(int workers) {
+        // chunks are not drained in global breadth first order, so a position may be reached by a longer path first
+        Predicate<BlockVector3> open = pos -> true;
+        Set<BlockVector3> seeds = Set.of(BlockVector3.at(15, 15, 15), BlockVector3.at(-3, 0, 40));
+        int maxDepth = 24;
+
+        Set<BlockVector3> filled = flood(new Flood(Integer.MAX_VALUE, maxDepth, BreadthFirstSearch.DEFAULT_DIRECTIONS,
+                MIN_Y, MAX_Y), seeds, open, workers);
+
+        assertEquals(visit(seeds, open, BreadthFirstSearch.DEFAULT_DIRECTIONS, maxDepth, MIN_Y, MAX_Y), filled);
+    }
+
+    @ParameterizedTest(name = "workers = {0}")
+    @CsvSource({"1", "4"})
+    void testDepthLimitInMaze(int workers) {
+        // a layer with 30% of its positions closed, so positions are reached by several paths of different lengths,
+        // which wind in and out of chunks. A position first reached by a longer path must be expanded again once a
+        // shorter path reaches it
+        Predicate<BlockVector3> open = pos -> pos.y() == 0
+                && Math.floorMod(pos.x() * 73856093 ^ pos.z() * 19349663, 10) < 7;
+        Set<BlockVector3> seeds = Set.of(BlockVector3.at(0, 0, 0), BlockVector3.at(1, 0, 0));
+        int maxDepth = 30;
+
+        Set<BlockVector3> filled = flood(new Flood(Integer.MAX_VALUE, maxDepth, BreadthFirstSearch.DEFAULT_DIRECTIONS,
+                MIN_Y, MAX_Y), seeds, open, workers);
+
+        assertEquals(visit(seeds, open, BreadthFirstSearch.DEFAULT_DIRECTIONS, maxDepth, MIN_Y, MAX_Y), filled);
+    }
+
+    /**
+     * Drain a flood, filling the seeds and every open position it reaches.
+     */
+    private static Set<BlockVector3> flood(Flood flood, Set<BlockVector3> seeds, Predicate<BlockVector3> open, int workers) {
+        for (BlockVector3 seed : seeds) {
+            flood.start(seed.x(), seed.y(), seed.z());
+        }
+        Set<BlockVector3> filled = new HashSet<>();
+        if (workers == 1) {
+            IQueueExtent<IChunk> queue = mock();
+            when(queue.getOrCreateChunk(anyInt(), anyInt())).thenAnswer(invocation -> chunk(
+                    invocation.getArgument(0),
+                    invocation.getArgument(1),
+                    seeds,
+                    open,
+                    filled
+            ));
+            flood.run(queue, null);
+            return filled;
+        }
+        Flood.Worker[] pool = new Flood.Worker[workers];
+        for (int i = 0; i < workers; i++) {
+            pool[i] = flood.newWorker();
+        }
+        List<Flood.ChunkState>[] batches;
+        while ((batches = flood.nextRound(workers)) != null) {
+            for (int i = 0; i < workers; i++) {
+                for (Flood.ChunkState state : batches[i]) {
+                    IChunk chunk = chunk(state.getChunkX(), state.getChunkZ(), seeds, open, filled);
+                    pool[i].drain(chunk, state, null, null);
+                }
+            }
+            for (Flood.Worker worker : pool) {
+                flood.merge(worker);
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * Create a chunk draining the flood the way {@link com.fastasyncworldedit.core.extent.filter.block.CharFilterBlock}
+     * does, testing positions against the given predicate instead of blocks.
+     */
+    private static IChunk chunk(
+            int chunkX,
+            int chunkZ,
+            Set<BlockVector3> seeds,
+            Predicate<BlockVector3> open,
+            Set<BlockVector3> filled
+    ) {
+        IChunk chunk = mock();
+        doAnswer(invocation -> {
+            Flood.Worker worker = invocation.getArgument(0);
+            int layer;
+            while ((layer = worker.nextLayer()) != Integer.MIN_VALUE) {
+                int value;
+                while ((value = worker.poll()) != -1) {
+                    int index = value & 4095;
+                    int x = index & 15;
+                    int z = index >> 4 & 15;
+                    int y = index >> 8;
+                    BlockVector3 pos = BlockVector3.at(chunkX << 4 | x, layer << 4 | y, chunkZ << 4 | z);
+                    if (seeds.contains(pos) || open.test(pos)) {
+                        assertTrue(filled.add(pos), pos + " was filled twice");
+                        worker.apply(x, y, z, value >> 12);
+                    }
+                }
+            }
+            return null;
+        }).when(chunk).flood(any(), any(), any());
+        return chunk;
+    }
+
+    private static Set<BlockVector3> visit(
+            Set<BlockVector3> seeds,
+            Predicate<BlockVector3> open,
+            BlockVector3[] directions,
+            int maxDepth,
+            int minY,
+            int maxY
+    ) {
+        Set<BlockVector3> visited = new HashSet<>();
+        RecursiveVisitor visitor = new RecursiveVisitor(new PredicateMask(open), position -> {
+            visited.add(position.toImmutable());
+            return true;
+        }, maxDepth, minY, maxY);
+        visitor.setDirections(directions);
+        for (BlockVector3 seed : seeds) {
+            visitor.visit(seed);
+        }
+        Operations.completeBlindly(visitor);
+        return visited;
+    }
+
+    private record PredicateMask(Predicate<BlockVector3> predicate) implements Mask {
+
+        @Override
+        public boolean test(BlockVector3 vector) {
+            return predicate.test(vector);
+        }
+
+        @Override
+        public Mask copy() {
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,212 @@
+package com.fastasyncworldedit.core.queue.implementation;
+
+import com.fastasyncworldedit.core.configuration.Settings;
+import com.fastasyncworldedit.core.extent.processor.BatchProcessorHolder;
+import com.fastasyncworldedit.core.math.BlockVectorSet;
+import com.fastasyncworldedit.core.queue.IQueueChunk;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.function.visitor.BreadthFirstSearch;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Isolated;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Isolated
+class ParallelQueueExtentTest {
+
+    private int parallelThreads;
+
+    @BeforeEach
+    void setUp() {
+        parallelThreads = Settings.settings().QUEUE.PARALLEL_THREADS;
+        Settings.settings().QUEUE.PARALLEL_THREADS = 4;
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.settings().QUEUE.PARALLEL_THREADS = parallelThreads;
+    }
+
+    @Test
+    void testSetBlocksCountsEachCallOnItsOwn() throws Exception {
+        ParallelQueueExtent extent = new ParallelQueueExtent(mockHandler(), null, false, null);
+        Pattern pattern = mock();
+        when(pattern.fork()).thenReturn(pattern);
+        when(pattern.apply(any(), any(), any())).thenReturn(true);
+
+        // Enough positions over several chunks to take the parallel path
+        Set<BlockVector3> positions = new BlockVectorSet();
+        for (int x = 0; x < 64; x++) {
+            for (int z = 0; z < 64; z++) {
+                positions.add(BlockVector3.at(x, 64, z));
+            }
+        }
+
+        assertEquals(positions.size(), extent.setBlocks(positions, pattern));
+        assertEquals(positions.size(), extent.setBlocks(positions, pattern), "second call should not add the first count");
+    }
+
+    @Test
+    void testFloodFillRethrowsAfterFlushingEveryQueue() {
+        List<SingleThreadQueueExtent> queues = new CopyOnWriteArrayList<>();
+        ParallelQueueExtent extent = new ParallelQueueExtent(mockHandler(queues), null, false, null);
+        // only the queues created for the flood's workers
+        queues.clear();
+        Mask mask = mock();
+        when(mask.copy()).thenReturn(mask);
+        Pattern pattern = mock();
+        when(pattern.fork()).thenReturn(pattern);
+
+        // a row of chunks the flood walks along one after another, failing in the third
+        assertThrows(IllegalStateException.class, () -> extent.floodFill(Set.of(BlockVector3.at(0, 64, 0)), mask, pattern,
+                BreadthFirstSearch.DEFAULT_DIRECTIONS, Integer.MAX_VALUE, -64, 319
+        ));
+
+        assertFalse(queues.isEmpty());
+        for (SingleThreadQueueExtent queue : queues) {
+            verify(queue).flush();
+            verify(queue, never()).getOrCreateChunk(3, 0);
+        }
+    }
+
+    @Test
+    void testChangeReplayAppliesTilesOnTheQueueOfTheirChunk() {
+        List<SingleThreadQueueExtent> queues = new CopyOnWriteArrayList<>();
+        Map<BlockVector2, SingleThreadQueueExtent> owners = new ConcurrentHashMap<>();
+        CompoundTag tag = mock();
+        ParallelQueueExtent extent = new ParallelQueueExtent(mockHandler(queues, queue -> doAnswer(invocation -> {
+            int x = invocation.getArgument(0);
+            int z = invocation.getArgument(2);
+            BlockVector2 chunk = BlockVector2.at(x >> 4, z >> 4);
+            assertSame(owners.computeIfAbsent(chunk, key -> queue), queue, "tiles of " + chunk + " were split");
+            return true;
+        }).when(queue).setTile(anyInt(), anyInt(), anyInt(), any())), null, false, null);
+        SingleThreadQueueExtent base = queues.remove(0);
+        ParallelChangeReplay replay = extent.newChangeReplay();
+
+        // tiles are set through the extent the undo context uses, spread over 6 by 6 chunks
+        Extent replayExtent = replay.getExtent();
+        for (int x = -32; x < 64; x += 5) {
+            for (int z = -32; z < 64; z += 7) {
+                replayExtent.setTile(x, 64, z, tag);
+            }
+        }
+        replay.finish();
+
+        // every chunk is owned by one worker queue, which also replays the blocks of that chunk
+        assertEquals(36, owners.size());
+        verify(base, never()).setTile(anyInt(), anyInt(), anyInt(), any());
+        for (SingleThreadQueueExtent queue : queues) {
+            verify(queue).flush();
+        }
+    }
+
+    @Test
+    void testChangeReplayRethrowsAfterFlushingEveryQueue() {
+        List<SingleThreadQueueExtent> queues = new CopyOnWriteArrayList<>();
+        ParallelQueueExtent extent = new ParallelQueueExtent(mockHandler(queues, queue ->
+                when(queue.setTile(eq(32), anyInt(), anyInt(), any())).thenThrow(new IllegalStateException("Tile failed"))
+        ), null, false, null);
+        queues.clear();
+        ParallelChangeReplay replay = extent.newChangeReplay();
+        CompoundTag tag = mock();
+
+        // a tile in each of a row of chunks, failing in chunk 2
+        for (int x = 0; x < 256; x += 16) {
+            replay.addTile(x, 64, 0, tag);
+        }
+
+        assertThrows(IllegalStateException.class, replay::finish);
+        assertFalse(queues.isEmpty());
+        for (SingleThreadQueueExtent queue : queues) {
+            verify(queue).flush();
+        }
+    }
+
+    private static QueueHandler mockHandler() {
+        return mockHandler(new CopyOnWriteArrayList<>());
+    }
+
+    private static QueueHandler mockHandler(List<SingleThreadQueueExtent> queues) {
+        return mockHandler(queues, queue -> {
+        });
+    }
+
+    /**
+     * Mock a handler submitting to the common pool, adding the queues it creates to the given list after passing them to
+     * the given setup.
+     */
+    private static QueueHandler mockHandler(List<SingleThreadQueueExtent> queues, Consumer<SingleThreadQueueExtent> setup) {
+        QueueHandler handler = mock();
+        when(handler.submit(any(Runnable.class))).thenAnswer(invocation ->
+                ForkJoinPool.commonPool().submit(invocation.<Runnable>getArgument(0)));
+        when(handler.getQueue(any(), any(), any())).thenAnswer(invocation -> {
+            SingleThreadQueueExtent queue = mock();
+            BatchProcessorHolder processor = invocation.getArgument(1);
+            BatchProcessorHolder postProcessor = invocation.getArgument(2);
+            when(queue.getProcessor()).thenReturn(processor);
+            when(queue.getPostProcessor()).thenReturn(postProcessor);
+            when(queue.getMinY()).thenReturn(-64);
+            when(queue.getMaxY()).thenReturn(319);
+            when(queue.getOrCreateChunk(anyInt(), anyInt())).thenAnswer(chunk -> rowChunk(
+                    chunk.getArgument(0),
+                    chunk.getArgument(1)
+            ));
+            setup.accept(queue);
+            queues.add(queue);
+            return queue;
+        });
+        return handler;
+    }
+
+    /**
+     * Create a chunk which floods the row of blocks at y = 64 and z = 0 from x = 0 onwards, failing in chunk 2.
+     */
+    private static IQueueChunk<?> rowChunk(int chunkX, int chunkZ) {
+        IQueueChunk<?> chunk = mock();
+        doAnswer(invocation -> {
+            if (chunkX == 2) {
+                throw new IllegalStateException("Chunk " + chunkX + ", " + chunkZ + " failed");
+            }
+            Flood.Worker worker = invocation.getArgument(0);
+            while (worker.nextLayer() != Integer.MIN_VALUE) {
+                int value;
+                while ((value = worker.poll()) != -1) {
+                    int index = value & 4095;
+                    if (chunkX >= 0 && index >> 4 == 0) {
+                        worker.apply(index & 15, 0, 0, value >> 12);
+                    }
+                }
+            }
+            return null;
+        }).when(chunk).flood(any(), any(), any());
+        return chunk;
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.fastasyncworldedit.core.queue.implementation.chunk;
+
+import com.fastasyncworldedit.core.queue.IChunkCache;
+import com.fastasyncworldedit.core.queue.IChunkGet;
+import com.sk89q.worldedit.world.World;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SharedChunkCacheTest {
+
+    private static final long REVALIDATE_MILLIS = 500;
+
+    @Test
+    void testExternalChangeSeenAfterRevalidation() throws InterruptedException {
+        SharedChunkCache cache = new SharedChunkCache(Long.MAX_VALUE, REVALIDATE_MILLIS);
+        World world = mock();
+        IChunkGet before = chunk((char) 1);
+        when(world.get(0, 0)).thenReturn(before);
+        IChunkCache<IChunkGet> view = cache.forWorld(world);
+
+        assertEquals(1, view.get(0, 0).load(0)[0]);
+        // changed outside of FAWE, e.g. by a player, so the chunk is not invalidated by a queue
+        IChunkGet after = chunk((char) 2);
+        when(world.get(0, 0)).thenReturn(after);
+        assertSame(before, view.get(0, 0), "chunk should be cached within the revalidation interval");
+
+        Thread.sleep(REVALIDATE_MILLIS + 100);
+        assertSame(after, view.get(0, 0));
+        assertEquals(2, view.get(0, 0).load(0)[0]);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testTrimEvictsChunksDueForRevalidation() throws InterruptedException {
+        SharedChunkCache cache = new SharedChunkCache(Long.MAX_VALUE, REVALIDATE_MILLIS);
+        World world = mock();
+        IChunkGet chunk = chunk((char) 1);
+        when(world.get(0, 0)).thenReturn(chunk);
+        cache.forWorld(world).get(0, 0);
+
+        // weighed with the sections of the platform chunk it pins
+        assertTrue(cache.getEstimatedBytes() > 24L * 4096 * Character.BYTES);
+        assertEquals(1, cache.size());
+        cache.trim(false);
+        assertEquals(1, cache.size());
+
+        Thread.sleep(REVALIDATE_MILLIS + 100);
+        assertTrue(cache.trim(false));
+        assertEquals(0, cache.getEstimatedBytes());
+    }
+
+    private static IChunkGet chunk(char value) {
+        IChunkGet chunk = mock();
+        char[] blocks = new char[4096];
+        Arrays.fill(blocks, value);
+        when(chunk.getSectionCount()).thenReturn(24);
+        when(chunk.load(0)).thenReturn(blocks);
+        return chunk;
+    }
+
+}
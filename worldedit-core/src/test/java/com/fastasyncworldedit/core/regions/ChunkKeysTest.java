@@ -0,0 +1,145 @@
+package com.fastasyncworldedit.core.regions;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that {@link ChunkKeys} encodes chunks losslessly and orders them along the region aligned Z-order curve.
+ */
+class ChunkKeysTest {
+
+    @ParameterizedTest(name = "({0}, {1})")
+    @CsvSource({
+            "0, 0",
+            "1, -1",
+            "-1, 1",
+            "-37, 13",
+            "1875000, -1875000",
+            "2147483647, -2147483648",
+            "-2147483648, 2147483647"
+    })
+    void testKeyRoundTrip(int chunkX, int chunkZ) {
+        long key = ChunkKeys.key(chunkX, chunkZ);
+        assertEquals(chunkX, ChunkKeys.x(key));
+        assertEquals(chunkZ, ChunkKeys.z(key));
+    }
+
+    @ParameterizedTest(name = "origin ({0}, {1})")
+    @CsvSource({
+            "0, 0",
+            "-37, 13",
+            "5, -70",
+            "-1, -1",
+            "1000003, -999983"
+    })
+    void testCollectionOrder(int minX, int minZ) {
+        List<BlockVector2> chunks = new ArrayList<>();
+        for (int x = minX; x < minX + 70; x++) {
+            for (int z = minZ; z < minZ + 45; z++) {
+                // leave holes, so not only full squares are ordered
+                if ((x * 31 + z * 17) % 5 != 0) {
+                    chunks.add(BlockVector2.at(x, z));
+                }
+            }
+        }
+        long[] keys = ChunkKeys.of(chunks);
+        assertArrayEquals(expected(chunks), keys);
+        assertRegionFilesContiguous(keys);
+    }
+
+    @Test
+    void testRegionMatchesCollection() {
+        // neither corner is aligned to a chunk or a region file
+        Region region = new CuboidRegion(null, BlockVector3.at(-600, 0, 217), BlockVector3.at(123, 10, 1000), false);
+        List<BlockVector2> accepted = new ArrayList<>();
+        long[] keys = ChunkKeys.of(region, (chunkX, chunkZ) -> {
+            if ((chunkX ^ chunkZ) % 3 != 0) {
+                accepted.add(BlockVector2.at(chunkX, chunkZ));
+                return true;
+            }
+            return false;
+        });
+        assertArrayEquals(ChunkKeys.of(accepted), keys);
+        assertArrayEquals(expected(accepted), keys);
+        assertRegionFilesContiguous(keys);
+    }
+
+    @Test
+    void testSparseHugeRegion() {
+        // a bounding box of 4096 x 4096 chunks, of which only the diagonal is accepted
+        Region region = new CuboidRegion(null, BlockVector3.at(-32768, 0, -32768), BlockVector3.at(32767, 0, 32767), false);
+        long[] keys = ChunkKeys.of(region, (chunkX, chunkZ) -> chunkX == chunkZ);
+        assertEquals(4096, keys.length);
+        Set<Long> unique = new HashSet<>();
+        for (long key : keys) {
+            assertEquals(ChunkKeys.x(key), ChunkKeys.z(key));
+            unique.add(key);
+        }
+        assertEquals(keys.length, unique.size());
+        // the diagonal is ordered along the curve, which visits it in increasing order
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(ChunkKeys.x(keys[i - 1]) < ChunkKeys.x(keys[i]));
+        }
+    }
+
+    @Test
+    void testEmpty() {
+        assertEquals(0, ChunkKeys.of(List.of()).length);
+    }
+
+    /**
+     * Sort the chunks by their Z-order code relative to the region file containing the smallest coordinates, computed
+     * bit by bit.
+     */
+    private static long[] expected(List<BlockVector2> chunks) {
+        int originX = Math.floorDiv(chunks.stream().mapToInt(BlockVector2::x).min().orElseThrow(), 32) * 32;
+        int originZ = Math.floorDiv(chunks.stream().mapToInt(BlockVector2::z).min().orElseThrow(), 32) * 32;
+        return chunks.stream()
+                .sorted(Comparator.comparingLong(chunk -> morton(chunk.x() - originX, chunk.z() - originZ)))
+                .mapToLong(chunk -> ChunkKeys.key(chunk.x(), chunk.z()))
+                .toArray();
+    }
+
+    private static long morton(int x, int z) {
+        long code = 0;
+        for (int bit = 0; bit < 31; bit++) {
+            code |= (long) (x >> bit & 1) << (bit << 1);
+            code |= (long) (z >> bit & 1) << ((bit << 1) + 1);
+        }
+        return code;
+    }
+
+    private static void assertRegionFilesContiguous(long[] keys) {
+        Set<Long> finished = new HashSet<>();
+        long current = regionFile(keys[0]);
+        for (long key : keys) {
+            long regionFile = regionFile(key);
+            if (regionFile != current) {
+                assertTrue(finished.add(current), "region file visited twice");
+                current = regionFile;
+            }
+            assertFalse(finished.contains(regionFile), "region file visited twice");
+        }
+    }
+
+    private static long regionFile(long key) {
+        return ChunkKeys.key(ChunkKeys.x(key) >> 5, ChunkKeys.z(key) >> 5);
+    }
+
+}
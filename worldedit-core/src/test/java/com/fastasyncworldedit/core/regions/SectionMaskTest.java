@@ -0,0 +1,135 @@
+package com.fastasyncworldedit.core.regions;
+
+import com.fastasyncworldedit.util.StubPlatform;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.ConvexPolyhedralRegion;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Polygonal2DRegion;
+import com.sk89q.worldedit.regions.Region;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionMaskTest {
+
+    @BeforeAll
+    static void setUp() {
+        // required for AbstractRegion recalculation testing height limits with null world
+        WorldEdit.getInstance().getPlatformManager().register(new StubPlatform());
+        WorldEdit.getInstance().getPlatformManager().handlePlatformsRegistered(null);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("provideRegions")
+    void testMaskMatchesContains(String name, Supplier<Region> supplier) {
+        Region region = supplier.get();
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        int partial = 0;
+        // One section beyond the bounding box on each side, to cover empty sections as well
+        for (int chunkX = (min.x() >> 4) - 1; chunkX <= (max.x() >> 4) + 1; chunkX++) {
+            for (int chunkZ = (min.z() >> 4) - 1; chunkZ <= (max.z() >> 4) + 1; chunkZ++) {
+                for (int layer = (min.y() >> 4) - 1; layer <= (max.y() >> 4) + 1; layer++) {
+                    SectionMask mask = region.getSectionMask(chunkX, chunkZ, layer);
+                    if (!mask.isEmpty() && !mask.isFull()) {
+                        partial++;
+                    }
+                    assertSection(region, mask, chunkX, chunkZ, layer);
+                }
+            }
+        }
+        assertTrue(partial > 0, "expected sections at the edge of the region to be partial");
+    }
+
+    private static void assertSection(Region region, SectionMask mask, int chunkX, int chunkZ, int layer) {
+        int bx = chunkX << 4;
+        int by = layer << 4;
+        int bz = chunkZ << 4;
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    int blockX = bx + x;
+                    int blockY = by + y;
+                    int blockZ = bz + z;
+                    assertEquals(
+                            region.contains(blockX, blockY, blockZ),
+                            mask.contains(x, y, z),
+                            () -> "block (%d, %d, %d) of section (%d, %d, %d)".formatted(
+                                    blockX, blockY, blockZ, chunkX, layer, chunkZ)
+                    );
+                }
+            }
+        }
+    }
+
+    private static Stream<Arguments> provideRegions() {
+        return Stream.of(
+                Arguments.of("cuboid", (Supplier<Region>) () -> new CuboidRegion(
+                        BlockVector3.at(-21, 3, 7),
+                        BlockVector3.at(40, 70, 45)
+                )),
+                Arguments.of("cylinder", (Supplier<Region>) () -> new CylinderRegion(
+                        BlockVector3.at(5, 64, -7),
+                        Vector2.at(20.5, 13),
+                        50,
+                        90
+                )),
+                Arguments.of("sphere", (Supplier<Region>) () -> new EllipsoidRegion(
+                        null,
+                        BlockVector3.at(-3, 70, 9),
+                        Vector3.at(23, 23, 23)
+                )),
+                Arguments.of("ellipsoid", (Supplier<Region>) () -> new EllipsoidRegion(
+                        null,
+                        BlockVector3.at(-3, 70, 9),
+                        Vector3.at(21, 17, 25)
+                )),
+                Arguments.of("concave polygon", (Supplier<Region>) () -> new Polygonal2DRegion(
+                        null,
+                        List.of(
+                                BlockVector2.at(-7, -3),
+                                BlockVector2.at(40, 0),
+                                BlockVector2.at(40, 40),
+                                BlockVector2.at(20, 10),
+                                BlockVector2.at(0, 40)
+                        ),
+                        60,
+                        100
+                )),
+                Arguments.of("convex polyhedron", (Supplier<Region>) () -> {
+                    ConvexPolyhedralRegion region = new ConvexPolyhedralRegion(null);
+                    tetrahedron().forEach(region::addVertex);
+                    return region;
+                }),
+                Arguments.of("polyhedron", (Supplier<Region>) () -> {
+                    PolyhedralRegion region = new PolyhedralRegion(null);
+                    tetrahedron().forEach(region::addVertex);
+                    return region;
+                })
+        );
+    }
+
+    private static List<BlockVector3> tetrahedron() {
+        return List.of(
+                BlockVector3.at(-20, 40, -15),
+                BlockVector3.at(35, 45, -5),
+                BlockVector3.at(0, 50, 38),
+                BlockVector3.at(5, 95, 3)
+        );
+    }
+
+}
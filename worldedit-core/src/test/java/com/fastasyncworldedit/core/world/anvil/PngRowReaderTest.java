@@ -0,0 +1,281 @@
+package com.fastasyncworldedit.core.world.anvil;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Verifies that {@link PngRowReader} decodes the same colours as {@link ImageIO}. The images are encoded by the test, so
+ * every colour type, bit depth and filter type is covered, which an encoder choosing its own filters would not do.
+ */
+class PngRowReaderTest {
+
+    // odd sizes, so rows of sub-byte depths end in a partial byte
+    private static final int WIDTH = 37;
+    private static final int LENGTH = 23;
+    // a filter type which changes from row to row
+    private static final int MIXED = -1;
+
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("fawe-png", ".png").toFile();
+    }
+
+    @AfterEach
+    void tearDown() {
+        file.delete();
+    }
+
+    static Stream<Arguments> formats() {
+        int[][] depths = {
+                {0, 1}, {0, 2}, {0, 4}, {0, 8}, {0, 16},
+                {2, 8}, {2, 16},
+                {3, 1}, {3, 2}, {3, 4}, {3, 8},
+                {4, 8}, {4, 16},
+                {6, 8}, {6, 16}
+        };
+        List<Arguments> arguments = new ArrayList<>();
+        for (int[] depth : depths) {
+            for (int filter = MIXED; filter <= 4; filter++) {
+                arguments.add(Arguments.of(depth[0], depth[1], filter));
+            }
+        }
+        return arguments.stream();
+    }
+
+    @ParameterizedTest(name = "colour type = {0}, bit depth = {1}, filter = {2}")
+    @MethodSource("formats")
+    void testMatchesImageIO(int colorType, int bitDepth, int filter) throws IOException {
+        Files.write(file.toPath(), encode(colorType, bitDepth, filter, false, new Random(colorType * 31L + bitDepth)));
+        BufferedImage image = ImageIO.read(file);
+        assertNotNull(image);
+        int[] expected = colors(image);
+
+        try (PngRowReader reader = PngRowReader.open(file)) {
+            assertNotNull(reader);
+            assertEquals(WIDTH, reader.getWidth());
+            assertEquals(LENGTH, reader.getLength());
+            // read in two bands, as the generator does
+            int split = 10;
+            int[] actual = new int[WIDTH * LENGTH];
+            System.arraycopy(reader.readColors(0, split), 0, actual, 0, WIDTH * split);
+            System.arraycopy(reader.readColors(split, LENGTH - split), 0, actual, WIDTH * split, WIDTH * (LENGTH - split));
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testInterlacedImageIsNotOpened() throws IOException {
+        Files.write(file.toPath(), encode(6, 8, MIXED, true, new Random(0)));
+        // the image is valid, it is left to ImageIO
+        assertNotNull(ImageIO.read(file));
+        assertNull(PngRowReader.open(file));
+    }
+
+    @Test
+    void testOtherFormatIsNotOpened() throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, LENGTH, BufferedImage.TYPE_INT_RGB);
+        ImageIO.write(image, "bmp", file);
+        assertNull(PngRowReader.open(file));
+    }
+
+    /**
+     * The ARGB colours of an image decoded by ImageIO. The samples of its raster are scaled to 8 bits the way the reader
+     * does, as ImageIO may keep 16-bit samples, for which {@link BufferedImage#getRGB} rounds instead.
+     */
+    private static int[] colors(BufferedImage image) {
+        Raster raster = image.getRaster();
+        int[] colors = new int[WIDTH * LENGTH];
+        for (int z = 0, i = 0; z < LENGTH; z++) {
+            for (int x = 0; x < WIDTH; x++, i++) {
+                if (image.getColorModel() instanceof IndexColorModel model) {
+                    colors[i] = model.getRGB(raster.getSample(x, z, 0));
+                    continue;
+                }
+                int[] samples = new int[raster.getNumBands()];
+                for (int band = 0; band < samples.length; band++) {
+                    int value = raster.getSample(x, z, band);
+                    samples[band] = raster.getSampleModel().getSampleSize(band) == 16 ? value >> 8 : value;
+                }
+                colors[i] = switch (samples.length) {
+                    case 1 -> 0xFF000000 | samples[0] * 0x010101;
+                    case 2 -> samples[1] << 24 | samples[0] * 0x010101;
+                    case 3 -> 0xFF000000 | samples[0] << 16 | samples[1] << 8 | samples[2];
+                    default -> samples[3] << 24 | samples[0] << 16 | samples[1] << 8 | samples[2];
+                };
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Encode an image of random samples, with a random palette and transparency for palette images.
+     */
+    private static byte[] encode(int colorType, int bitDepth, int filter, boolean interlaced, Random random)
+            throws IOException {
+        int channels = switch (colorType) {
+            case 2 -> 3;
+            case 4 -> 2;
+            case 6 -> 4;
+            default -> 1;
+        };
+        int[][] samples = new int[LENGTH][WIDTH * channels];
+        for (int[] row : samples) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = random.nextInt(1 << bitDepth);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(WIDTH);
+        headerData.writeInt(LENGTH);
+        headerData.write(new byte[]{(byte) bitDepth, (byte) colorType, 0, 0, (byte) (interlaced ? 1 : 0)});
+        writeChunk(out, "IHDR", header.toByteArray());
+
+        if (colorType == 3) {
+            int entries = 1 << bitDepth;
+            byte[] palette = new byte[entries * 3];
+            random.nextBytes(palette);
+            writeChunk(out, "PLTE", palette);
+            // fewer alpha values than entries, the others stay opaque
+            byte[] alpha = new byte[Math.max(1, entries / 2)];
+            random.nextBytes(alpha);
+            writeChunk(out, "tRNS", alpha);
+        }
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(data, new Deflater(Deflater.BEST_SPEED))) {
+            if (interlaced) {
+                // Adam7 passes: x offset, y offset, x step, y step
+                int[][] passes = {
+                        {0, 0, 8, 8}, {4, 0, 8, 8}, {0, 4, 4, 8}, {2, 0, 4, 4}, {0, 2, 2, 4}, {1, 0, 2, 2}, {0, 1, 1, 2}
+                };
+                for (int[] pass : passes) {
+                    int passWidth = (WIDTH - pass[0] + pass[2] - 1) / pass[2];
+                    int passLength = (LENGTH - pass[1] + pass[3] - 1) / pass[3];
+                    if (passWidth <= 0 || passLength <= 0) {
+                        continue;
+                    }
+                    int[][] passSamples = new int[passLength][passWidth * channels];
+                    for (int z = 0; z < passLength; z++) {
+                        for (int x = 0; x < passWidth; x++) {
+                            System.arraycopy(samples[pass[1] + z * pass[3]], (pass[0] + x * pass[2]) * channels,
+                                    passSamples[z], x * channels, channels);
+                        }
+                    }
+                    writeRows(deflater, passSamples, channels, bitDepth, filter);
+                }
+            } else {
+                writeRows(deflater, samples, channels, bitDepth, filter);
+            }
+        }
+        // split the data over several chunks
+        byte[] compressed = data.toByteArray();
+        for (int offset = 0; offset < compressed.length; offset += 100) {
+            byte[] chunk = new byte[Math.min(100, compressed.length - offset)];
+            System.arraycopy(compressed, offset, chunk, 0, chunk.length);
+            writeChunk(out, "IDAT", chunk);
+        }
+        writeChunk(out, "IEND", new byte[0]);
+        return out.toByteArray();
+    }
+
+    private static void writeRows(DeflaterOutputStream out, int[][] samples, int channels, int bitDepth, int filter)
+            throws IOException {
+        int bytesPerPixel = Math.max(1, channels * bitDepth >> 3);
+        byte[] previous = null;
+        for (int z = 0; z < samples.length; z++) {
+            byte[] row = pack(samples[z], bitDepth);
+            int type = filter == MIXED ? z % 5 : filter;
+            out.write(type);
+            out.write(filter(type, row, previous == null ? new byte[row.length] : previous, bytesPerPixel));
+            previous = row;
+        }
+    }
+
+    private static byte[] pack(int[] samples, int bitDepth) {
+        byte[] row = new byte[(samples.length * bitDepth + 7) >> 3];
+        for (int i = 0; i < samples.length; i++) {
+            switch (bitDepth) {
+                case 16 -> {
+                    row[i << 1] = (byte) (samples[i] >> 8);
+                    row[(i << 1) + 1] = (byte) samples[i];
+                }
+                case 8 -> row[i] = (byte) samples[i];
+                default -> {
+                    int bit = i * bitDepth;
+                    row[bit >> 3] |= (byte) (samples[i] << 8 - bitDepth - (bit & 7));
+                }
+            }
+        }
+        return row;
+    }
+
+    private static byte[] filter(int type, byte[] row, byte[] previous, int bytesPerPixel) {
+        byte[] filtered = new byte[row.length];
+        for (int i = 0; i < row.length; i++) {
+            int a = i >= bytesPerPixel ? row[i - bytesPerPixel] & 0xFF : 0;
+            int b = previous[i] & 0xFF;
+            int c = i >= bytesPerPixel ? previous[i - bytesPerPixel] & 0xFF : 0;
+            int predictor = switch (type) {
+                case 0 -> 0;
+                case 1 -> a;
+                case 2 -> b;
+                case 3 -> (a + b) >> 1;
+                default -> {
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    yield pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                }
+            };
+            filtered[i] = (byte) (row[i] - predictor);
+        }
+        return filtered;
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data) throws IOException {
+        DataOutputStream chunk = new DataOutputStream(out);
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data);
+        chunk.writeInt(data.length);
+        chunk.write(name);
+        chunk.write(data);
+        chunk.writeInt((int) crc.getValue());
+    }
+
+}
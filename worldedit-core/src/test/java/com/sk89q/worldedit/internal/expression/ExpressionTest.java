@@ -31,7 +31,9 @@
 import static com.sk89q.worldedit.internal.expression.ExpressionTestCase.testCase;
 import static java.lang.Math.atan2;
 import static java.lang.Math.sin;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -449,6 +451,42 @@ public void testTimeout() {
         assertTrue(e.getMessage().contains("Calculations exceeded time limit"));
     }
 
+    @Test
+    public void testBatchEvaluate() throws ExpressionException {
+        Expression expression = compile("x * y + z", "x", "y", "z");
+        double[] results = new double[3];
+        expression.evaluate(new double[][]{{1, 2, 3}, {4, 5, 6}, {7, 8, 9}}, results, 3, 1000);
+        assertArrayEquals(new double[]{11, 18, 27}, results);
+    }
+
+    @Test
+    public void testBatchEvaluateOutputs() throws ExpressionException {
+        Expression expression = compile("x = x * 2; y = -y; 1", "x", "y");
+        double[] results = new double[2];
+        double[][] outputs = new double[2][2];
+        expression.evaluate(new double[][]{{1, 2}, {3, 4}}, results, outputs, 2, 1000);
+        assertArrayEquals(new double[]{1, 1}, results);
+        assertArrayEquals(new double[]{2, 4}, outputs[0]);
+        assertArrayEquals(new double[]{-3, -4}, outputs[1]);
+    }
+
+    @Test
+    public void testPure() throws ExpressionException {
+        assertTrue(compile("x = x * 2; x < y", "x", "y").isPure());
+        assertFalse(compile("n = x; n", "x").isPure());
+        assertFalse(compile("random() < x", "x").isPure());
+        assertFalse(compile("megabuf(x)", "x").isPure());
+    }
+
+    @Test
+    public void testVariablesKeptWhenOptimizedLater() throws ExpressionException {
+        Expression expression = Expression.compile("n += x; n", "x");
+        expression.getSlots().initVariable("n");
+        for (int i = 1; i <= 100; i++) {
+            assertEquals(i * (i + 1) / 2.0, expression.evaluate(new double[]{i}, 1000));
+        }
+    }
+
     @Test
     public void testRound() {
         checkTestCase("round(1.3)", 1);